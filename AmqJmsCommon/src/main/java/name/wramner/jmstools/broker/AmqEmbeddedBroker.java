@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.broker;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Embedded Apache ActiveMQ broker. The activemq-broker library and its dependencies, including activemq-kahadb-store
+ * for persistent messages, must be available on the classpath or on the extra classpath in the settings. JMX is
+ * disabled. Persistent messages are stored with KahaDB and the journal type selects its disk sync strategy, ALWAYS
+ * (default), PERIODIC or NEVER. With a paging limit the broker uses at most that much memory for messages and keeps
+ * the rest in the store.
+ *
+ * @author Erik Wramner
+ */
+public class AmqEmbeddedBroker extends EmbeddedBroker {
+    private static final List<String> JOURNAL_TYPES = Arrays.asList("ALWAYS", "PERIODIC", "NEVER");
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private Object _brokerService;
+
+    /**
+     * Constructor.
+     *
+     * @param settings The broker settings.
+     * @throws IllegalArgumentException if the journal type is not supported.
+     */
+    public AmqEmbeddedBroker(EmbeddedBrokerSettings settings) {
+        super(settings);
+        if (settings.getJournalType() != null && !JOURNAL_TYPES.contains(settings.getJournalType())) {
+            throw new IllegalArgumentException(
+                            "Unsupported journal type " + settings.getJournalType() + ", use one of " + JOURNAL_TYPES);
+        }
+    }
+
+    /**
+     * Program entry point for the sibling JVM.
+     *
+     * @param args The broker settings as arguments.
+     * @throws Exception on failure to start or stop the broker.
+     * @see EmbeddedBrokerSettings#parse(String[])
+     */
+    public static void main(String[] args) throws Exception {
+        runUntilInputClosed(new AmqEmbeddedBroker(EmbeddedBrokerSettings.parse(args)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void startBroker(ClassLoader classLoader, File dataDirectory) throws Exception {
+        EmbeddedBrokerSettings settings = getSettings();
+        Object brokerService = newInstance(classLoader, "org.apache.activemq.broker.BrokerService");
+        invoke(brokerService, "setBrokerName", "jmstools");
+        invoke(brokerService, "setUseJmx", Boolean.FALSE);
+        invoke(brokerService, "setUseShutdownHook", Boolean.FALSE);
+        invoke(brokerService, "setPersistent", Boolean.valueOf(settings.isPersistent()));
+        invoke(brokerService, "setDataDirectoryFile", dataDirectory);
+        if (settings.isPersistent() && settings.getJournalType() != null) {
+            Object persistenceAdapter = newInstance(classLoader,
+                            "org.apache.activemq.store.kahadb.KahaDBPersistenceAdapter");
+            invoke(persistenceAdapter, "setDirectory", new File(dataDirectory, "kahadb"));
+            invoke(persistenceAdapter, "setJournalDiskSyncStrategy", settings.getJournalType());
+            invoke(brokerService, "setPersistenceAdapter", persistenceAdapter);
+        }
+        if (settings.getPagingMegabytes() != null) {
+            Object memoryUsage = invoke(invoke(brokerService, "getSystemUsage"), "getMemoryUsage");
+            invoke(memoryUsage, "setLimit",
+                            Long.valueOf(settings.getPagingMegabytes().longValue() * BYTES_PER_MEGABYTE));
+        }
+        invoke(brokerService, "addConnector", "tcp://localhost:" + settings.getPort());
+        invoke(brokerService, "start");
+        invoke(brokerService, "waitUntilStarted");
+        _brokerService = brokerService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void stopBroker() throws Exception {
+        if (_brokerService != null) {
+            invoke(_brokerService, "stop");
+            invoke(_brokerService, "waitUntilStopped");
+            _brokerService = null;
+        }
+    }
+}
@@ -23,6 +23,9 @@ import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.ActiveMQXAConnectionFactory;
 import org.kohsuke.args4j.Option;
 
+import name.wramner.jmstools.broker.AmqEmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBrokerSettings;
 import name.wramner.jmstools.consumer.AmqJmsConsumer.AmqConsumerConfiguration;
 import name.wramner.jmstools.messages.AmqObjectMessageAdapter;
 import name.wramner.jmstools.messages.ObjectMessageAdapter;
@@ -59,7 +62,8 @@ public class AmqJmsConsumer extends JmsConsumer<AmqConsumerConfiguration> {
      * @author Erik Wramner
      */
     public static class AmqConsumerConfiguration extends JmsConsumerConfiguration {
-        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "ActiveMQ broker URL", required = true)
+        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "ActiveMQ broker URL", forbids = {
+                        "-embedded" })
         private String _brokerUrl;
 
         @Option(name = "-user", aliases = { "--jms-user",
@@ -71,21 +75,40 @@ public class AmqJmsConsumer extends JmsConsumer<AmqConsumerConfiguration> {
                                         "-user" })
         private String _password;
 
+        @Override
+        public boolean isBrokerConfigured() {
+            return _brokerUrl != null || isEmbeddedBrokerEnabled();
+        }
+
+        @Override
+        public boolean isEmbeddedBrokerSupported() {
+            return true;
+        }
+
+        @Override
+        protected EmbeddedBroker createEmbeddedBroker(EmbeddedBrokerSettings settings) {
+            return new AmqEmbeddedBroker(settings);
+        }
+
+        private String getBrokerUrl() {
+            return isEmbeddedBrokerEnabled() ? getEmbeddedBrokerUrl() : _brokerUrl;
+        }
+
         @Override
         public ConnectionFactory createConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQConnectionFactory(_userName, _password, _brokerUrl);
+                return new ActiveMQConnectionFactory(_userName, _password, getBrokerUrl());
             } else {
-                return new ActiveMQConnectionFactory(_brokerUrl);
+                return new ActiveMQConnectionFactory(getBrokerUrl());
             }
         }
 
         @Override
         public XAConnectionFactory createXAConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQXAConnectionFactory(_userName, _password, _brokerUrl);
+                return new ActiveMQXAConnectionFactory(_userName, _password, getBrokerUrl());
             } else {
-                return new ActiveMQXAConnectionFactory(_brokerUrl);
+                return new ActiveMQXAConnectionFactory(getBrokerUrl());
             }
         }
 
@@ -26,6 +26,9 @@ import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.ActiveMQXAConnectionFactory;
 import org.kohsuke.args4j.Option;
 
+import name.wramner.jmstools.broker.AmqEmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBrokerSettings;
 import name.wramner.jmstools.messages.AmqObjectMessageAdapter;
 import name.wramner.jmstools.messages.ObjectMessageAdapter;
 import name.wramner.jmstools.producer.AmqJmsProducer.AmqProducerConfiguration;
@@ -65,7 +68,8 @@ public class AmqJmsProducer extends JmsProducer<AmqProducerConfiguration> {
      * @author Erik Wramner
      */
     public static class AmqProducerConfiguration extends JmsProducerConfiguration {
-        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "ActiveMQ broker URL", required = true)
+        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "ActiveMQ broker URL", forbids = {
+                        "-embedded" })
         private String _brokerUrl;
 
         @Option(name = "-user", aliases = { "--jms-user",
@@ -77,6 +81,25 @@ public class AmqJmsProducer extends JmsProducer<AmqProducerConfiguration> {
                                         "-user" })
         private String _password;
 
+        @Override
+        public boolean isBrokerConfigured() {
+            return _brokerUrl != null || isEmbeddedBrokerEnabled();
+        }
+
+        @Override
+        public boolean isEmbeddedBrokerSupported() {
+            return true;
+        }
+
+        @Override
+        protected EmbeddedBroker createEmbeddedBroker(EmbeddedBrokerSettings settings) {
+            return new AmqEmbeddedBroker(settings);
+        }
+
+        private String getBrokerUrl() {
+            return isEmbeddedBrokerEnabled() ? getEmbeddedBrokerUrl() : _brokerUrl;
+        }
+
         @Override
         public DelayedDeliveryAdapter createDelayedDeliveryAdapter() {
             return new DelayedDeliveryAdapter() {
@@ -92,18 +115,18 @@ public class AmqJmsProducer extends JmsProducer<AmqProducerConfiguration> {
         @Override
         public ConnectionFactory createConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQConnectionFactory(_userName, _password, _brokerUrl);
+                return new ActiveMQConnectionFactory(_userName, _password, getBrokerUrl());
             } else {
-                return new ActiveMQConnectionFactory(_brokerUrl);
+                return new ActiveMQConnectionFactory(getBrokerUrl());
             }
         }
 
         @Override
         public XAConnectionFactory createXAConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQXAConnectionFactory(_userName, _password, _brokerUrl);
+                return new ActiveMQXAConnectionFactory(_userName, _password, getBrokerUrl());
             } else {
-                return new ActiveMQXAConnectionFactory(_brokerUrl);
+                return new ActiveMQXAConnectionFactory(getBrokerUrl());
             }
         }
 
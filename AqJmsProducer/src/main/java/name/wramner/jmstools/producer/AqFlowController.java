@@ -21,6 +21,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,11 +44,12 @@ public class AqFlowController implements AutoCloseable, FlowController {
     private final int _pauseAtDepth;
     private final int _resumeAtDepth;
     private final long _pollingIntervalMillis;
-    private final Object _flowControlMonitor = new Object();
+    private final ReentrantLock _flowControlLock = new ReentrantLock();
+    private final Condition _belowLimit = _flowControlLock.newCondition();
     private final Object _lifeCycleMonitor = new Object();
     private final Thread _backgroundThread;
-    private boolean _aboveLimit;
-    private boolean _stop;
+    private volatile boolean _aboveLimit;
+    private volatile boolean _stop;
 
     public AqFlowController(String jdbcUrl, String jdbcUser, String jdbcPassword, int pauseAtDepth, int resumeAtDepth,
                     String queueName, int pollingIntervalSeconds) {
@@ -82,6 +85,13 @@ public class AqFlowController implements AutoCloseable, FlowController {
             _stop = true;
             _lifeCycleMonitor.notifyAll();
         }
+        // Wake up workers waiting for the limit, they check the stop flag
+        _flowControlLock.lock();
+        try {
+            _belowLimit.signalAll();
+        } finally {
+            _flowControlLock.unlock();
+        }
         try {
             _backgroundThread.join();
         } catch (InterruptedException e) {
@@ -91,22 +101,25 @@ public class AqFlowController implements AutoCloseable, FlowController {
 
     @Override
     public void sleepIfAboveLimit() {
-        synchronized (_flowControlMonitor) {
-            if (_aboveLimit && !_stop) {
-                try {
-                    long endTime = System.currentTimeMillis() + MAX_SLEEP_TIME_MS;
-                    for (long sleepMillis = MAX_SLEEP_TIME_MS; _aboveLimit && sleepMillis > 0
-                                    && !_stop; sleepMillis = endTime - System.currentTimeMillis()) {
-                        _flowControlMonitor.wait(sleepMillis);
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return;
-                }
+        // A lock rather than a monitor, so that workers on virtual threads do not pin their carriers while waiting
+        _flowControlLock.lock();
+        try {
+            long sleepNanos = TimeUnit.MILLISECONDS.toNanos(MAX_SLEEP_TIME_MS);
+            while (_aboveLimit && sleepNanos > 0L && !_stop) {
+                sleepNanos = _belowLimit.awaitNanos(sleepNanos);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            _flowControlLock.unlock();
         }
     }
 
+    @Override
+    public boolean isPaused() {
+        return _aboveLimit;
+    }
+
     private class QueueDepthPoller implements Runnable {
         private static final String QUEUE_DEPTH_SQL_FMT = "select count(*) from %s where q_name = ? and state = 0";
         private static final int MAX_CONSEQUTIVE_DB_ERRORS = 10;
@@ -157,7 +170,7 @@ public class AqFlowController implements AutoCloseable, FlowController {
                     long endTime = System.currentTimeMillis() + _pollingIntervalMillis;
                     for (long sleepMillis = _pollingIntervalMillis; !_stop
                                     && sleepMillis > 0; sleepMillis = endTime - System.currentTimeMillis()) {
-                        _flowControlMonitor.wait(sleepMillis);
+                        _lifeCycleMonitor.wait(sleepMillis);
                     }
                 } catch (InterruptedException e) {
                     _logger.debug("Interrupted, stopping!", e);
@@ -235,11 +248,14 @@ public class AqFlowController implements AutoCloseable, FlowController {
         }
 
         private void setAboveLimit(boolean aboveLimit) {
-            synchronized (_flowControlMonitor) {
+            _flowControlLock.lock();
+            try {
                 _aboveLimit = aboveLimit;
                 if (!aboveLimit) {
-                    _flowControlMonitor.notifyAll();
+                    _belowLimit.signalAll();
                 }
+            } finally {
+                _flowControlLock.unlock();
             }
         }
     }
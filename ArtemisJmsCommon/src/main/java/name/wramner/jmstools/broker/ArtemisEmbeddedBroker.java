@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.broker;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Embedded Apache ActiveMQ Artemis broker. The artemis-server library and its dependencies must be available on the
+ * classpath or on the extra classpath in the settings. Security and JMX management are disabled and queues are created
+ * on demand. The journal type can be NIO (default), ASYNCIO or MAPPED. With a paging limit all addresses page messages
+ * to disk when they use more memory than that.
+ *
+ * @author Erik Wramner
+ */
+public class ArtemisEmbeddedBroker extends EmbeddedBroker {
+    private static final List<String> JOURNAL_TYPES = Arrays.asList("NIO", "ASYNCIO", "MAPPED");
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private Object _server;
+
+    /**
+     * Constructor.
+     *
+     * @param settings The broker settings.
+     * @throws IllegalArgumentException if the journal type is not supported.
+     */
+    public ArtemisEmbeddedBroker(EmbeddedBrokerSettings settings) {
+        super(settings);
+        if (settings.getJournalType() != null && !JOURNAL_TYPES.contains(settings.getJournalType())) {
+            throw new IllegalArgumentException(
+                            "Unsupported journal type " + settings.getJournalType() + ", use one of " + JOURNAL_TYPES);
+        }
+    }
+
+    /**
+     * Program entry point for the sibling JVM.
+     *
+     * @param args The broker settings as arguments.
+     * @throws Exception on failure to start or stop the broker.
+     * @see EmbeddedBrokerSettings#parse(String[])
+     */
+    public static void main(String[] args) throws Exception {
+        runUntilInputClosed(new ArtemisEmbeddedBroker(EmbeddedBrokerSettings.parse(args)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void startBroker(ClassLoader classLoader, File dataDirectory) throws Exception {
+        EmbeddedBrokerSettings settings = getSettings();
+        Object config = newInstance(classLoader, "org.apache.activemq.artemis.core.config.impl.ConfigurationImpl");
+        invoke(config, "setPersistenceEnabled", Boolean.valueOf(settings.isPersistent()));
+        invoke(config, "setSecurityEnabled", Boolean.FALSE);
+        invoke(config, "setJMXManagementEnabled", Boolean.FALSE);
+        invoke(config, "setJournalDirectory", new File(dataDirectory, "journal").getAbsolutePath());
+        invoke(config, "setBindingsDirectory", new File(dataDirectory, "bindings").getAbsolutePath());
+        invoke(config, "setPagingDirectory", new File(dataDirectory, "paging").getAbsolutePath());
+        invoke(config, "setLargeMessagesDirectory", new File(dataDirectory, "largemessages").getAbsolutePath());
+        if (settings.getJournalType() != null) {
+            invoke(config, "setJournalType", enumConstant(classLoader,
+                            "org.apache.activemq.artemis.core.server.JournalType", settings.getJournalType()));
+        }
+        invoke(config, "addAcceptorConfiguration", "jmstools", "tcp://localhost:" + settings.getPort());
+        if (settings.getPagingMegabytes() != null) {
+            Object addressSettings = newInstance(classLoader,
+                            "org.apache.activemq.artemis.core.settings.impl.AddressSettings");
+            invoke(addressSettings, "setMaxSizeBytes",
+                            Long.valueOf(settings.getPagingMegabytes().longValue() * BYTES_PER_MEGABYTE));
+            invoke(addressSettings, "setAddressFullMessagePolicy", enumConstant(classLoader,
+                            "org.apache.activemq.artemis.core.settings.impl.AddressFullMessagePolicy", "PAGE"));
+            invoke(config, "addAddressesSetting", "#", addressSettings);
+        }
+        Object server = newInstance(classLoader, "org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ");
+        invoke(server, "setConfiguration", config);
+        invoke(server, "start");
+        _server = server;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void stopBroker() throws Exception {
+        if (_server != null) {
+            invoke(_server, "stop");
+            _server = null;
+        }
+    }
+}
@@ -23,6 +23,9 @@ import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
 import org.apache.activemq.artemis.jms.client.ActiveMQXAConnectionFactory;
 import org.kohsuke.args4j.Option;
 
+import name.wramner.jmstools.broker.ArtemisEmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBrokerSettings;
 import name.wramner.jmstools.consumer.ArtemisJmsConsumer.ArtemisConsumerConfiguration;
 
 /**
@@ -59,7 +62,8 @@ public class ArtemisJmsConsumer extends JmsConsumer<ArtemisConsumerConfiguration
      * @author Anton Roskvist
      */
     public static class ArtemisConsumerConfiguration extends JmsConsumerConfiguration {
-        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "Artemis broker URL", required = true)
+        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "Artemis broker URL", forbids = {
+                        "-embedded" })
         private String _brokerUrl;
 
         @Option(name = "-user", aliases = { "--jms-user",
@@ -71,21 +75,40 @@ public class ArtemisJmsConsumer extends JmsConsumer<ArtemisConsumerConfiguration
                                         "-user" })
         private String _password;
 
+        @Override
+        public boolean isBrokerConfigured() {
+            return _brokerUrl != null || isEmbeddedBrokerEnabled();
+        }
+
+        @Override
+        public boolean isEmbeddedBrokerSupported() {
+            return true;
+        }
+
+        @Override
+        protected EmbeddedBroker createEmbeddedBroker(EmbeddedBrokerSettings settings) {
+            return new ArtemisEmbeddedBroker(settings);
+        }
+
+        private String getBrokerUrl() {
+            return isEmbeddedBrokerEnabled() ? getEmbeddedBrokerUrl() : _brokerUrl;
+        }
+
         @Override
         public ConnectionFactory createConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQConnectionFactory(_brokerUrl, _userName, _password);
+                return new ActiveMQConnectionFactory(getBrokerUrl(), _userName, _password);
             } else {
-                return new ActiveMQConnectionFactory(_brokerUrl);
+                return new ActiveMQConnectionFactory(getBrokerUrl());
             }
         }
 
         @Override
         public XAConnectionFactory createXAConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQXAConnectionFactory(_brokerUrl, _userName, _password);
+                return new ActiveMQXAConnectionFactory(getBrokerUrl(), _userName, _password);
             } else {
-                return new ActiveMQXAConnectionFactory(_brokerUrl);
+                return new ActiveMQXAConnectionFactory(getBrokerUrl());
             }
         }
     }
@@ -26,6 +26,9 @@ import org.apache.activemq.artemis.jms.client.ActiveMQConnectionFactory;
 import org.apache.activemq.artemis.jms.client.ActiveMQXAConnectionFactory;
 import org.kohsuke.args4j.Option;
 
+import name.wramner.jmstools.broker.ArtemisEmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBrokerSettings;
 import name.wramner.jmstools.producer.ArtemisJmsProducer.ArtemisProducerConfiguration;
 
 /**
@@ -65,7 +68,8 @@ public class ArtemisJmsProducer extends JmsProducer<ArtemisProducerConfiguration
      * @author Anton Roskvist
      */
     public static class ArtemisProducerConfiguration extends JmsProducerConfiguration {
-        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "Artemis broker URL", required = true)
+        @Option(name = "-url", aliases = { "--jms-broker-url" }, usage = "Artemis broker URL", forbids = {
+                        "-embedded" })
         private String _brokerUrl;
 
         @Option(name = "-user", aliases = { "--jms-user",
@@ -77,6 +81,25 @@ public class ArtemisJmsProducer extends JmsProducer<ArtemisProducerConfiguration
                                         "-user" })
         private String _password;
 
+        @Override
+        public boolean isBrokerConfigured() {
+            return _brokerUrl != null || isEmbeddedBrokerEnabled();
+        }
+
+        @Override
+        public boolean isEmbeddedBrokerSupported() {
+            return true;
+        }
+
+        @Override
+        protected EmbeddedBroker createEmbeddedBroker(EmbeddedBrokerSettings settings) {
+            return new ArtemisEmbeddedBroker(settings);
+        }
+
+        private String getBrokerUrl() {
+            return isEmbeddedBrokerEnabled() ? getEmbeddedBrokerUrl() : _brokerUrl;
+        }
+
         @Override
         public DelayedDeliveryAdapter createDelayedDeliveryAdapter() {
             return new DelayedDeliveryAdapter() {
@@ -92,18 +115,18 @@ public class ArtemisJmsProducer extends JmsProducer<ArtemisProducerConfiguration
         @Override
         public ConnectionFactory createConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQConnectionFactory(_brokerUrl, _userName, _password);
+                return new ActiveMQConnectionFactory(getBrokerUrl(), _userName, _password);
             } else {
-                return new ActiveMQConnectionFactory(_brokerUrl);
+                return new ActiveMQConnectionFactory(getBrokerUrl());
             }
         }
 
         @Override
         public XAConnectionFactory createXAConnectionFactory() throws JMSException {
             if (_userName != null && _password != null) {
-                return new ActiveMQXAConnectionFactory(_brokerUrl, _userName, _password);
+                return new ActiveMQXAConnectionFactory(getBrokerUrl(), _userName, _password);
             } else {
-                return new ActiveMQXAConnectionFactory(_brokerUrl);
+                return new ActiveMQXAConnectionFactory(getBrokerUrl());
             }
         }
     }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import name.wramner.jmstools.messages.ChecksumAlgorithm;
+import name.wramner.jmstools.messages.ChecksummedMessageData;
+
+/**
+ * Benchmark for the payload checksums. The MD5 hex string is what the message data classes compute by default,
+ * the other algorithms are there for comparison.
+ *
+ * @author Erik Wramner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChecksumBenchmark {
+    /** The payload size in bytes. */
+    @Param({ "1024", "65536", "1048576" })
+    public int payloadSize;
+
+    private byte[] _payload;
+
+    /**
+     * Create a random payload.
+     */
+    @Setup
+    public void setUp() {
+        _payload = new byte[payloadSize];
+        new Random(42L).nextBytes(_payload);
+    }
+
+    /**
+     * Calculate the MD5 checksum as a hex string.
+     *
+     * @return checksum.
+     */
+    @Benchmark
+    public String calculateChecksum() {
+        return ChecksummedMessageData.calculateChecksum(_payload);
+    }
+
+    /**
+     * Calculate the CRC32C checksum.
+     *
+     * @return checksum.
+     */
+    @Benchmark
+    public long crc32c() {
+        return ChecksumAlgorithm.CRC32C.getNumericChecksumFunction().calculate(_payload, 0, _payload.length);
+    }
+
+    /**
+     * Calculate the XXHASH64 checksum.
+     *
+     * @return checksum.
+     */
+    @Benchmark
+    public long xxHash64() {
+        return ChecksumAlgorithm.XXHASH64.getNumericChecksumFunction().calculate(_payload, 0, _payload.length);
+    }
+}
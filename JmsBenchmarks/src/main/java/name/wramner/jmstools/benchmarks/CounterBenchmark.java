@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import name.wramner.jmstools.counter.AtomicCounter;
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.counter.StripedCounter;
+
+/**
+ * Benchmark for the shared message counters under contention. All worker threads increment the same counter for
+ * every message, while the stop controllers and the statistics thread read it.
+ *
+ * @author Erik Wramner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CounterBenchmark {
+    /** The counter implementation, ATOMIC or STRIPED. */
+    @Param({ "ATOMIC", "STRIPED" })
+    public String counterType;
+
+    private Counter _counter;
+
+    /**
+     * Create the counter.
+     */
+    @Setup
+    public void setUp() {
+        _counter = "STRIPED".equals(counterType) ? new StripedCounter() : new AtomicCounter();
+    }
+
+    /**
+     * Increment the counter from a single thread.
+     */
+    @Benchmark
+    public void increment() {
+        _counter.incrementCount(1);
+    }
+
+    /**
+     * Increment the counter from all available threads.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void incrementContended() {
+        _counter.incrementCount(1);
+    }
+
+    /**
+     * Increment the counter from several threads, while another thread reads it.
+     */
+    @Benchmark
+    @Group("incrementAndRead")
+    @GroupThreads(3)
+    public void incrementWhileReading() {
+        _counter.incrementCount(1);
+    }
+
+    /**
+     * Read the counter while other threads increment it.
+     *
+     * @return the count.
+     */
+    @Benchmark
+    @Group("incrementAndRead")
+    @GroupThreads(1)
+    public long readWhileIncrementing() {
+        return _counter.getCount();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import name.wramner.jmstools.analyzer.LogFileReader;
+import name.wramner.jmstools.messagelog.MessageLogColumn;
+import name.wramner.jmstools.messagelog.MessageLogColumnType;
+import name.wramner.jmstools.messagelog.MessageLogFormat;
+import name.wramner.jmstools.messagelog.MessageLogWriter;
+import name.wramner.jmstools.messagelog.StreamMessageLogOutput;
+
+/**
+ * Benchmark for parsing message logs in the log analyzer. A producer log is written to a temporary file before the
+ * benchmark and each operation reads all of it. The entries are not inserted into the database, so this measures
+ * the parsing alone.
+ *
+ * @author Erik Wramner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogImportBenchmark {
+    private static final int MESSAGES_PER_TRANSACTION = 10;
+    private static final char COMMITTED = 'C';
+
+    /** The message log format. */
+    @Param({ "TEXT", "BINARY" })
+    public MessageLogFormat messageLogFormat;
+
+    /** The number of entries in the log. */
+    @Param({ "100000" })
+    public int numberOfEntries;
+
+    private File _logFile;
+
+    /**
+     * Write the producer log.
+     *
+     * @throws IOException on write errors.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        _logFile = File.createTempFile("jmstools-benchmark", messageLogFormat.getFileSuffix());
+        try (MessageLogWriter writer = messageLogFormat.createWriter(new StreamMessageLogOutput(_logFile))) {
+            writer.writeHeader(new MessageLogColumn("ProducedTime", MessageLogColumnType.TIMESTAMP),
+                            new MessageLogColumn("ID", MessageLogColumnType.ID),
+                            new MessageLogColumn("Length", MessageLogColumnType.INT),
+                            new MessageLogColumn("DelaySeconds", MessageLogColumnType.INT),
+                            new MessageLogColumn("JMSID", MessageLogColumnType.STRING));
+            long time = System.currentTimeMillis();
+            for (int i = 0; i < numberOfEntries; i++) {
+                writer.addTimestamp(time + i);
+                writer.addId(UUID.randomUUID().toString());
+                writer.addInt(1024);
+                writer.addInt(0);
+                writer.addString("ID:" + UUID.randomUUID().toString());
+                writer.endEntry();
+                if ((i + 1) % MESSAGES_PER_TRANSACTION == 0) {
+                    writer.writePendingEntries(COMMITTED);
+                }
+            }
+            writer.writePendingEntries(COMMITTED);
+        }
+    }
+
+    /**
+     * Delete the producer log.
+     */
+    @TearDown
+    public void tearDown() {
+        if (!_logFile.delete()) {
+            _logFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * Read and parse all entries in the log.
+     *
+     * @param blackhole The sink for the entries.
+     * @throws IOException on read errors.
+     * @throws SQLException never, there is no database.
+     */
+    @Benchmark
+    public void readLog(Blackhole blackhole) throws IOException, SQLException {
+        LogFileReader.forFile(_logFile).read(_logFile, entry -> blackhole.consume(entry));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.benchmarks;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import name.wramner.jmstools.messagelog.MessageLogColumn;
+import name.wramner.jmstools.messagelog.MessageLogColumnType;
+import name.wramner.jmstools.messagelog.MessageLogFormat;
+import name.wramner.jmstools.messagelog.MessageLogOutput;
+import name.wramner.jmstools.messagelog.MessageLogWriter;
+
+/**
+ * Benchmark for the message log formatting done by the client workers. Each operation logs one transaction with
+ * the same columns as the producer and commits it. The output is discarded, so the disk is not involved.
+ *
+ * @author Erik Wramner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageLogWriterBenchmark {
+    private static final int NUMBER_OF_IDS = 1024;
+    private static final char COMMITTED = 'C';
+
+    /** The message log format. */
+    @Param({ "TEXT", "BINARY" })
+    public MessageLogFormat messageLogFormat;
+
+    /** The number of messages per transaction. */
+    @Param({ "1", "100" })
+    public int messagesPerTransaction;
+
+    private final String[] _ids = new String[NUMBER_OF_IDS];
+    private final String[] _jmsIds = new String[NUMBER_OF_IDS];
+    private DiscardingMessageLogOutput _output;
+    private MessageLogWriter _writer;
+    private int _index;
+
+    /**
+     * Create the writer and the message ids.
+     *
+     * @throws IOException on failure to write the header.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        for (int i = 0; i < NUMBER_OF_IDS; i++) {
+            _ids[i] = UUID.randomUUID().toString();
+            _jmsIds[i] = "ID:" + UUID.randomUUID().toString();
+        }
+        _output = new DiscardingMessageLogOutput();
+        _writer = messageLogFormat.createWriter(_output);
+        _writer.writeHeader(new MessageLogColumn("ProducedTime", MessageLogColumnType.TIMESTAMP),
+                        new MessageLogColumn("ID", MessageLogColumnType.ID),
+                        new MessageLogColumn("Length", MessageLogColumnType.INT),
+                        new MessageLogColumn("DelaySeconds", MessageLogColumnType.INT),
+                        new MessageLogColumn("JMSID", MessageLogColumnType.STRING));
+    }
+
+    /**
+     * Close the writer.
+     *
+     * @throws IOException on failure to close.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        _writer.close();
+    }
+
+    /**
+     * Log and commit one transaction.
+     *
+     * @return the number of bytes written so far.
+     * @throws IOException on write errors.
+     */
+    @Benchmark
+    public long logTransaction() throws IOException {
+        for (int i = 0; i < messagesPerTransaction; i++) {
+            int index = _index++ & (NUMBER_OF_IDS - 1);
+            _writer.addTimestamp(System.currentTimeMillis());
+            _writer.addId(_ids[index]);
+            _writer.addInt(1024);
+            _writer.addInt(0);
+            _writer.addString(_jmsIds[index]);
+            _writer.endEntry();
+        }
+        _writer.writePendingEntries(COMMITTED);
+        return _output._bytesWritten;
+    }
+
+    /**
+     * Message log output that counts and discards the data.
+     */
+    private static class DiscardingMessageLogOutput implements MessageLogOutput {
+        private long _bytesWritten;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            _bytesWritten += length;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+        }
+    }
+}
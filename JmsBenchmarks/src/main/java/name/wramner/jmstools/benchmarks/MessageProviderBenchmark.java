@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import name.wramner.jmstools.loopback.LoopbackBroker;
+import name.wramner.jmstools.loopback.LoopbackConnectionFactory;
+import name.wramner.jmstools.messages.BytesMessageProvider;
+import name.wramner.jmstools.messages.ChecksumAlgorithm;
+import name.wramner.jmstools.messages.MessageCache;
+import name.wramner.jmstools.messages.MessageProvider;
+import name.wramner.jmstools.messages.TextMessageProvider;
+
+/**
+ * Benchmark for creating messages with payload and properties, the main cost in the producer apart from the
+ * broker. The messages are created in a session from the in-memory loopback provider, so the time is spent in
+ * JmsTools rather than in a real JMS client.
+ *
+ * @author Erik Wramner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageProviderBenchmark {
+    private static final int NUMBER_OF_MESSAGES = 16;
+
+    /** The message type, TEXT or BYTES. */
+    @Param({ "TEXT", "BYTES" })
+    public String messageType;
+
+    /** The payload size in bytes or characters. */
+    @Param({ "1024", "65536" })
+    public int messageSize;
+
+    /** The checksum algorithm for the payload. */
+    @Param({ "MD5", "CRC32C", "XXHASH64" })
+    public ChecksumAlgorithm checksumAlgorithm;
+
+    /** True to reuse messages with a message cache, as with the -reuse option. */
+    @Param({ "false", "true" })
+    public boolean reuseMessages;
+
+    private Connection _connection;
+    private Session _session;
+    private MessageProvider _messageProvider;
+    private MessageCache _messageCache;
+    private int _payloadLength;
+
+    /**
+     * Create the loopback session and the message provider.
+     *
+     * @throws JMSException on failure to create the session.
+     */
+    @Setup
+    public void setUp() throws JMSException {
+        _connection = new LoopbackConnectionFactory(new LoopbackBroker(1, 0, 0, 0)).createConnection();
+        _session = _connection.createSession(true, Session.SESSION_TRANSACTED);
+        _messageProvider = "BYTES".equals(messageType)
+                        ? new BytesMessageProvider(messageSize, messageSize, NUMBER_OF_MESSAGES, null, 0,
+                                        Collections.emptyMap())
+                        : new TextMessageProvider(messageSize, messageSize, NUMBER_OF_MESSAGES, null, 0,
+                                        Collections.emptyMap());
+        _messageCache = reuseMessages ? new MessageCache() : null;
+    }
+
+    /**
+     * Close the loopback connection.
+     *
+     * @throws JMSException on failure to close.
+     */
+    @TearDown
+    public void tearDown() throws JMSException {
+        _connection.close();
+    }
+
+    /**
+     * Create a message the way the producer does.
+     *
+     * @return message.
+     * @throws JMSException on failure to create the message.
+     */
+    @Benchmark
+    public Message createMessageWithPayloadAndProperties() throws JMSException {
+        return _messageProvider.createMessageWithPayloadAndProperties(_session, checksumAlgorithm,
+                        length -> _payloadLength = length, _messageCache);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import name.wramner.jmstools.counter.AtomicCounter;
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.counter.StripedCounter;
+import name.wramner.jmstools.stopcontroller.BaseStopController;
+import name.wramner.jmstools.stopcontroller.CountStopController;
+import name.wramner.jmstools.stopcontroller.DurationStopController;
+
+/**
+ * Benchmark for the stop controllers. The workers call keepRunning for every message, so it must be cheap even
+ * when many threads share the controller. The controllers never stop during the benchmark.
+ *
+ * @author Erik Wramner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StopControllerBenchmark {
+    private static final int ONE_YEAR_IN_MINUTES = 365 * 24 * 60;
+
+    /** The stop controller, COUNT or DURATION. */
+    @Param({ "COUNT", "DURATION" })
+    public String stopControllerType;
+
+    /** The counter implementation, ATOMIC or STRIPED. */
+    @Param({ "ATOMIC", "STRIPED" })
+    public String counterType;
+
+    private Counter _counter;
+    private BaseStopController _stopController;
+
+    /**
+     * Create the counter and the stop controller.
+     */
+    @Setup
+    public void setUp() {
+        _counter = "STRIPED".equals(counterType) ? new StripedCounter() : new AtomicCounter();
+        _stopController = "DURATION".equals(stopControllerType) ? new DurationStopController(ONE_YEAR_IN_MINUTES)
+                        : new CountStopController(Long.MAX_VALUE, _counter);
+    }
+
+    /**
+     * Check if the workers should keep running from a single thread.
+     *
+     * @return true.
+     */
+    @Benchmark
+    public boolean keepRunning() {
+        return _stopController.keepRunning();
+    }
+
+    /**
+     * Count a message and check if the workers should keep running from all available threads, like the workers.
+     *
+     * @return true.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean countAndKeepRunningContended() {
+        _counter.incrementCount(1);
+        return _stopController.keepRunning();
+    }
+}
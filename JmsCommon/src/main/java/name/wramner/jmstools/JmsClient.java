@@ -15,9 +15,14 @@
  */
 package name.wramner.jmstools;
 
+import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +34,12 @@ import org.kohsuke.args4j.CmdLineParser;
 import com.atomikos.icatch.config.UserTransactionService;
 import com.atomikos.icatch.config.UserTransactionServiceImp;
 
+import name.wramner.jmstools.broker.EmbeddedBroker;
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.metrics.MetricsExporter;
+import name.wramner.jmstools.metrics.MetricsRegistry;
+import name.wramner.jmstools.stopcontroller.StopController;
+
 /**
  * Base class for JMS producers and consumers with support for command line parsing and thread creation/joining. It also
  * initializes and stops the transaction manager for XA transactions if they are enabled.
@@ -37,6 +48,7 @@ import com.atomikos.icatch.config.UserTransactionServiceImp;
  * @param <T> configuration class.
  */
 public abstract class JmsClient<T extends JmsClientConfiguration> {
+    private static final String STATISTICS_FILE_BASE_NAME = "statistics_";
     private UserTransactionService _userTransactionService;
 
     /**
@@ -48,14 +60,18 @@ public abstract class JmsClient<T extends JmsClientConfiguration> {
     public void run(String[] args) {
         T config = createConfiguration();
         if (parseCommandLine(args, config)) {
+            EmbeddedBroker embeddedBroker = null;
             try {
+                embeddedBroker = config.startEmbeddedBroker();
                 if (config.useXa()) {
                     _userTransactionService = new UserTransactionServiceImp();
                     _userTransactionService.init(createAtomikosInitializationProperties(config));
                 }
                 List<Thread> threads = createThreadsWithWorkers(config);
-                startThreads(threads);
-                waitForThreadsToComplete(threads);
+                try (MetricsExporter metricsExporter = config.createMetricsExporter(getClass().getSimpleName())) {
+                    startThreads(threads);
+                    waitForThreadsToComplete(threads);
+                }
             } catch (Exception e) {
                 System.out.println("Failed with exception: " + e.getMessage());
                 e.printStackTrace(System.out);
@@ -64,11 +80,28 @@ public abstract class JmsClient<T extends JmsClientConfiguration> {
                     int maxWaitSeconds = config.getJtaTimeoutSeconds() + 10;
                     _userTransactionService.shutdown(TimeUnit.MILLISECONDS.convert(maxWaitSeconds, TimeUnit.SECONDS));
                 }
+                if (embeddedBroker != null) {
+                    stopEmbeddedBroker(embeddedBroker);
+                }
             }
             System.exit(0);
         }
     }
 
+    /**
+     * Stop the embedded broker when the test is done.
+     *
+     * @param embeddedBroker The broker.
+     */
+    protected void stopEmbeddedBroker(EmbeddedBroker embeddedBroker) {
+        try {
+            embeddedBroker.close();
+        } catch (Exception e) {
+            System.out.println("Failed to stop embedded broker: " + e.getMessage());
+            e.printStackTrace(System.out);
+        }
+    }
+
     /**
      * Create initialization properties for the Atomikos transaction manager.
      *
@@ -126,6 +159,66 @@ public abstract class JmsClient<T extends JmsClientConfiguration> {
      */
     protected abstract List<Thread> createThreadsWithWorkers(T config) throws JMSException;
 
+    /**
+     * Register the metrics common to producers and consumers if metrics are exported.
+     *
+     * @param config The configuration.
+     * @param messageCounter The message counter.
+     */
+    protected void registerMetrics(T config, Counter messageCounter) {
+        MetricsRegistry metricsRegistry = config.getMetricsRegistry();
+        if (metricsRegistry != null) {
+            metricsRegistry.addCounter("jmstools_messages_total", "Messages processed and committed", messageCounter);
+            metricsRegistry.addCounter("jmstools_rollbacks_total", "Transactions rolled back",
+                            config.getRollbackCounter());
+            metricsRegistry.addCounter("jmstools_in_doubt_total", "Commits with unknown outcome",
+                            config.getInDoubtCounter());
+            metricsRegistry.addCounter("jmstools_errors_total", "Errors that forced a worker to reconnect",
+                            config.getErrorCounter());
+            if (config.getChurnMessages() != null) {
+                metricsRegistry.addCounter("jmstools_connections_total",
+                                "Connections opened with their sessions and producers or consumers",
+                                config.getConnectionCounter());
+            }
+            metricsRegistry.setLatencyStatistics(config.getLatencyStatistics());
+        }
+    }
+
+    /**
+     * Create a thread that logs statistics every interval. The common counters for messages, bytes, commits,
+     * rollbacks, commits in doubt and errors are always included. Latencies are included if they are recorded. The
+     * statistics are written to a CSV file as well if one has been specified or if message logging is enabled, in which
+     * case the file ends up next to the message logs.
+     *
+     * @param config The configuration.
+     * @param stopController The stop controller.
+     * @param messageCounter The message counter.
+     * @param additionalCounters Additional counters by name, may be empty.
+     * @return thread, not started.
+     */
+    protected Thread createStatisticsLoggerThread(T config, StopController stopController, Counter messageCounter,
+                    Map<String, Counter> additionalCounters) {
+        Map<String, Counter> counters = new LinkedHashMap<>();
+        counters.put("messages", messageCounter);
+        counters.put("bytes", config.getByteCounter());
+        counters.put("commits", config.getCommitCounter());
+        counters.put("rollbacks", config.getRollbackCounter());
+        counters.put("in_doubt", config.getInDoubtCounter());
+        counters.put("errors", config.getErrorCounter());
+        if (config.getChurnMessages() != null) {
+            counters.put("connections", config.getConnectionCounter());
+        }
+        counters.putAll(additionalCounters);
+        File csvFile = config.getStatisticsFile();
+        File logDirectory = config.getLogDirectory();
+        if (csvFile == null && logDirectory != null) {
+            csvFile = new File(logDirectory, STATISTICS_FILE_BASE_NAME + getClass().getSimpleName() + "_"
+                            + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + ".csv");
+        }
+        return new Thread(new StatisticsLogger(stopController, config.getStatisticsIntervalSeconds(), counters,
+                        config.getLatencyStatistics(), csvFile), "StatisticsLogger");
+    }
+
     /**
      * Parse the command line into the specified configuration.
      *
@@ -171,6 +264,36 @@ public abstract class JmsClient<T extends JmsClientConfiguration> {
      * @return true if valid, false to abort.
      */
     protected boolean isConfigurationValid(T config) {
+        if (config.getStatisticsIntervalSeconds() < 1) {
+            System.out.println("Please specify a statistics interval of at least one second!");
+            return false;
+        }
+        Integer connections = config.getConnections();
+        if (connections != null && (connections.intValue() < 1 || connections.intValue() > config.getThreads())) {
+            System.out.println("Please specify between one connection and one connection per thread!");
+            return false;
+        }
+        if (config.getChurnMessages() != null && config.getChurnMessages().intValue() < 1) {
+            System.out.println("Please specify at least one message per connection!");
+            return false;
+        }
+        if (config.isEmbeddedBrokerEnabled() && !config.isEmbeddedBrokerSupported()) {
+            System.out.println("Embedded brokers are not supported by this client!");
+            return false;
+        }
+        if (!config.isBrokerConfigured()) {
+            System.out.println("Please specify a broker URL or start an embedded broker!");
+            return false;
+        }
+        if (config.getEmbeddedBrokerPagingMegabytes() != null
+                        && config.getEmbeddedBrokerPagingMegabytes().intValue() < 1) {
+            System.out.println("Please specify at least one MB for the embedded broker before paging!");
+            return false;
+        }
+        if (config.getClientsPerSession() < 1) {
+            System.out.println("Please specify at least one producer or consumer per session!");
+            return false;
+        }
         return true;
     }
 
@@ -16,17 +16,27 @@
 package name.wramner.jmstools;
 
 import java.io.File;
+import java.io.IOException;
 
 import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
 import javax.jms.XAConnectionFactory;
+import javax.management.JMException;
 
 import org.kohsuke.args4j.Option;
 
-import name.wramner.jmstools.counter.AtomicCounter;
+import name.wramner.jmstools.broker.EmbeddedBroker;
+import name.wramner.jmstools.broker.EmbeddedBrokerMode;
+import name.wramner.jmstools.broker.EmbeddedBrokerSettings;
 import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.counter.StripedCounter;
+import name.wramner.jmstools.latency.LatencyStatistics;
+import name.wramner.jmstools.messagelog.MessageLogFlusher;
+import name.wramner.jmstools.messagelog.MessageLogFormat;
 import name.wramner.jmstools.messages.DefaultObjectMessageAdapter;
 import name.wramner.jmstools.messages.ObjectMessageAdapter;
+import name.wramner.jmstools.metrics.MetricsExporter;
+import name.wramner.jmstools.metrics.MetricsRegistry;
 
 /**
  * Base class for JMS client configuration classes. Includes options common to both consumers and producers.
@@ -37,6 +47,10 @@ public abstract class JmsClientConfiguration {
     private static final int DEFAULT_JTA_TIMEOUT_SECONDS = 300;
     private static final int DEFAULT_TM_CHECKPOINT_INTERVAL_SECONDS = 30;
     private static final int DEFAULT_TM_RECOVERY_INTERVAL_SECONDS = 60;
+    private static final int DEFAULT_LATENCY_INTERVAL_SECONDS = 60;
+    private static final int DEFAULT_STATISTICS_INTERVAL_SECONDS = 60;
+    private static final int DEFAULT_EMBEDDED_BROKER_PORT = 61616;
+    private static final int ASYNC_MESSAGE_LOG_BUFFER_BYTES = 1024 * 1024;
 
     @Option(name = "-v", aliases = { "--version" }, usage = "Print version")
     private boolean _printVersion;
@@ -47,6 +61,18 @@ public abstract class JmsClientConfiguration {
     @Option(name = "-t", aliases = { "--threads" }, usage = "Number of threads")
     private int _threads = 1;
 
+    @Option(name = "-vt", aliases = { "--virtual-threads" }, usage = "Run workers on virtual threads if supported"
+                    + " by the JVM (Java 21+), for very many threads")
+    private boolean _virtualThreads;
+
+    @Option(name = "-connections", aliases = { "--connections" }, usage = "Number of connections shared by the worker"
+                    + " threads, each thread has its own session, by default one connection per thread")
+    private Integer _connections;
+
+    @Option(name = "-clients", aliases = { "--clients-per-session" }, usage = "Number of producers or consumers per"
+                    + " session, used in turn by the worker thread")
+    private int _clientsPerSession = 1;
+
     @Option(name = "-queue", aliases = { "--queue-name" }, usage = "Queue name", forbids = "-topic")
     private String _queueName;
 
@@ -64,15 +90,62 @@ public abstract class JmsClientConfiguration {
                     "--commit-delay-millis" }, usage = "Optional delay in ms before commit/rollback")
     protected Integer _commitDelayMillis;
 
-    @Option(name = "-stats", aliases = "--log-statistics", usage = "Log statistics every minute")
+    @Option(name = "-stats", aliases = "--log-statistics", usage = "Log statistics every interval, by default every minute")
     private boolean _stats;
 
+    @Option(name = "-statsint", aliases = "--statistics-interval-seconds", usage = "Seconds between two statistics log entries", depends = {
+                    "-stats" })
+    private int _statisticsIntervalSeconds = DEFAULT_STATISTICS_INTERVAL_SECONDS;
+
+    @Option(name = "-statsfile", aliases = "--statistics-file", usage = "CSV file for statistics, by default written to the"
+                    + " log directory if message logging is enabled", depends = { "-stats" })
+    private File _statisticsFile;
+
+    @Option(name = "-latency", aliases = "--log-latency", usage = "Log send, receive and commit latency percentiles")
+    private boolean _latency;
+
+    @Option(name = "-latencyint", aliases = "--latency-interval-seconds", usage = "Seconds between two latency log entries", depends = {
+                    "-latency" })
+    private int _latencyIntervalSeconds = DEFAULT_LATENCY_INTERVAL_SECONDS;
+
+    private LatencyStatistics _latencyStatistics;
+
+    @Option(name = "-metricsport", aliases = "--metrics-http-port", usage = "Serve live metrics in Prometheus text"
+                    + " format over HTTP on this port")
+    private Integer _metricsHttpPort;
+
+    @Option(name = "-jmx", aliases = "--jmx-metrics", usage = "Expose live metrics as a JMX MBean")
+    private boolean _jmxMetrics;
+
+    private MetricsRegistry _metricsRegistry;
+    private final Counter _rollbackCounter = new StripedCounter();
+    private final Counter _inDoubtCounter = new StripedCounter();
+    private final Counter _errorCounter = new StripedCounter();
+    private final Counter _commitCounter = new StripedCounter();
+    private final Counter _byteCounter = new StripedCounter();
+    private final Counter _connectionCounter = new StripedCounter();
+
+    @Option(name = "-churn", aliases = "--connection-churn-messages", usage = "Open a new connection, session and"
+                    + " producer or consumer for every batch of this many messages, then close them, in order to"
+                    + " measure the setup cost", forbids = { "-connections" })
+    private Integer _churnMessages;
+
     @Option(name = "-rollback", aliases = "--rollback-percentage", usage = "Percentage to rollback rather than commit, decimals supported")
     private Double _rollbackPercentage;
 
     @Option(name = "-log", aliases = "--log-directory", usage = "Directory for detailed message logs, enables message logging")
     private File _logDirectory;
 
+    @Option(name = "-asynclog", aliases = "--async-message-log", usage = "Write message logs in a background thread", depends = {
+                    "-log" })
+    private boolean _asyncMessageLog;
+
+    private MessageLogFlusher _messageLogFlusher;
+
+    @Option(name = "-logformat", aliases = "--message-log-format", usage = "Format for message logs", depends = {
+                    "-log" })
+    private MessageLogFormat _messageLogFormat = MessageLogFormat.TEXT;
+
     @Option(name = "-xa", aliases = "--xa-transactions", usage = "Use XA (two-phase) transactions")
     private boolean _useXa;
 
@@ -107,6 +180,36 @@ public abstract class JmsClientConfiguration {
     @Option(name = "-noretry", aliases = "--abort-on-errors", usage = "Abort on errors, do not try again")
     private boolean _abortOnError;
 
+    @Option(name = "-embedded", aliases = "--embedded-broker", usage = "Start an embedded broker in-process or in a"
+                    + " sibling JVM and connect to it (ActiveMQ and Artemis only)")
+    private EmbeddedBrokerMode _embeddedBrokerMode;
+
+    @Option(name = "-brokerport", aliases = "--embedded-broker-port", usage = "Port for the embedded broker", depends = {
+                    "-embedded" })
+    private int _embeddedBrokerPort = DEFAULT_EMBEDDED_BROKER_PORT;
+
+    @Option(name = "-brokerdir", aliases = "--embedded-broker-directory", usage = "Data directory for the embedded"
+                    + " broker, by default a temporary directory", depends = { "-embedded" })
+    private File _embeddedBrokerDirectory;
+
+    @Option(name = "-brokernopersist", aliases = "--embedded-broker-non-persistent", usage = "Keep messages in memory"
+                    + " in the embedded broker", depends = { "-embedded" })
+    private boolean _embeddedBrokerNonPersistent;
+
+    @Option(name = "-brokerjournal", aliases = "--embedded-broker-journal-type", usage = "Journal type for the"
+                    + " embedded broker", depends = { "-embedded" })
+    private String _embeddedBrokerJournalType;
+
+    @Option(name = "-brokerpaging", aliases = "--embedded-broker-paging-mb", usage = "Memory in MB for messages in"
+                    + " the embedded broker before paging them to disk", depends = { "-embedded" })
+    private Integer _embeddedBrokerPagingMegabytes;
+
+    @Option(name = "-brokercp", aliases = "--embedded-broker-classpath", usage = "Classpath with the libraries for"
+                    + " the embedded broker", depends = { "-embedded" })
+    private String _embeddedBrokerClasspath;
+
+    private EmbeddedBroker _embeddedBroker;
+
     /**
      * Check if version should be printed.
      *
@@ -152,6 +255,33 @@ public abstract class JmsClientConfiguration {
         return _threads;
     }
 
+    /**
+     * Get the number of connections shared by the worker threads.
+     *
+     * @return connections or null for one connection per thread.
+     */
+    public Integer getConnections() {
+        return _connections;
+    }
+
+    /**
+     * Get the number of producers or consumers per session.
+     *
+     * @return producers or consumers per session.
+     */
+    public int getClientsPerSession() {
+        return _clientsPerSession;
+    }
+
+    /**
+     * Create a thread factory for the workers.
+     *
+     * @return factory for virtual threads if requested and supported, otherwise for platform threads.
+     */
+    public WorkerThreadFactory createWorkerThreadFactory() {
+        return new WorkerThreadFactory(_virtualThreads);
+    }
+
     /**
      * Get the queue or topic name.
      *
@@ -171,7 +301,7 @@ public abstract class JmsClientConfiguration {
     }
 
     /**
-     * Check if statistics should be logged every minute. Statistics are cheap.
+     * Check if statistics should be logged every interval. Statistics are cheap.
      *
      * @return true to log statistics.
      */
@@ -179,6 +309,146 @@ public abstract class JmsClientConfiguration {
         return _stats;
     }
 
+    /**
+     * Get the number of seconds between two statistics log entries.
+     *
+     * @return interval in seconds.
+     */
+    public int getStatisticsIntervalSeconds() {
+        return _statisticsIntervalSeconds;
+    }
+
+    /**
+     * Get the CSV file for statistics given on the command line.
+     *
+     * @return file or null for the default.
+     */
+    public File getStatisticsFile() {
+        return _statisticsFile;
+    }
+
+    /**
+     * Check if latency percentiles should be logged. Latencies are recorded in memory by each worker thread, which is
+     * much cheaper than logging every message.
+     *
+     * @return true to log latencies.
+     */
+    public boolean isLatencyLoggingEnabled() {
+        return _latency;
+    }
+
+    /**
+     * Get the number of seconds between two latency log entries.
+     *
+     * @return interval in seconds.
+     */
+    public int getLatencyIntervalSeconds() {
+        return _latencyIntervalSeconds;
+    }
+
+    /**
+     * Get the latency statistics shared by all worker threads. The same instance is returned for all calls.
+     *
+     * @return latency statistics or null if latency logging is disabled.
+     */
+    public synchronized LatencyStatistics getLatencyStatistics() {
+        if (_latencyStatistics == null && _latency) {
+            _latencyStatistics = new LatencyStatistics();
+        }
+        return _latencyStatistics;
+    }
+
+    /**
+     * Get the metrics registry shared by all components. The same instance is returned for all calls.
+     *
+     * @return metrics registry or null if metrics are not exported.
+     */
+    public synchronized MetricsRegistry getMetricsRegistry() {
+        if (_metricsRegistry == null && (_metricsHttpPort != null || _jmxMetrics)) {
+            _metricsRegistry = new MetricsRegistry();
+        }
+        return _metricsRegistry;
+    }
+
+    /**
+     * Create an exporter that publishes the metrics over HTTP and/or JMX as configured.
+     *
+     * @param name The name of the client, used for the MBean.
+     * @return started exporter or null if metrics are not exported.
+     * @throws IOException if the HTTP server cannot be started.
+     * @throws JMException if the MBean cannot be registered.
+     */
+    public MetricsExporter createMetricsExporter(String name) throws IOException, JMException {
+        MetricsRegistry metricsRegistry = getMetricsRegistry();
+        if (metricsRegistry == null) {
+            return null;
+        }
+        return new MetricsExporter(metricsRegistry, _metricsHttpPort, _jmxMetrics ? name : null);
+    }
+
+    /**
+     * Get the counter for transactions that have been rolled back, shared by all workers.
+     *
+     * @return rollback counter.
+     */
+    public Counter getRollbackCounter() {
+        return _rollbackCounter;
+    }
+
+    /**
+     * Get the counter for commits that failed in a way that leaves the outcome unknown, shared by all workers.
+     *
+     * @return in-doubt counter.
+     */
+    public Counter getInDoubtCounter() {
+        return _inDoubtCounter;
+    }
+
+    /**
+     * Get the counter for errors that forced a worker to reconnect, shared by all workers.
+     *
+     * @return error counter.
+     */
+    public Counter getErrorCounter() {
+        return _errorCounter;
+    }
+
+    /**
+     * Get the counter for committed transactions, shared by all workers.
+     *
+     * @return commit counter.
+     */
+    public Counter getCommitCounter() {
+        return _commitCounter;
+    }
+
+    /**
+     * Get the counter for payload bytes in committed transactions, shared by all workers.
+     *
+     * @return byte counter.
+     */
+    public Counter getByteCounter() {
+        return _byteCounter;
+    }
+
+    /**
+     * Get the counter for connections opened with their sessions and producers or consumers, shared by all workers.
+     *
+     * @return connection counter.
+     */
+    public Counter getConnectionCounter() {
+        return _connectionCounter;
+    }
+
+    /**
+     * Get the number of messages to process per connection in connection churn mode.
+     *
+     * @return messages per connection or null to keep connections open.
+     */
+    public Integer getChurnMessages() {
+        return _churnMessages;
+    }
+
     /**
      * Get the percentage of transactions (message batches) to roll back.
      *
@@ -201,13 +471,34 @@ public abstract class JmsClientConfiguration {
         return _logDirectory;
     }
 
+    /**
+     * Get the flusher that writes message logs in the background. The same instance is returned for all calls.
+     *
+     * @return flusher or null if message logs should be written by the worker threads.
+     */
+    public synchronized MessageLogFlusher getMessageLogFlusher() {
+        if (_messageLogFlusher == null && _asyncMessageLog) {
+            _messageLogFlusher = new MessageLogFlusher(ASYNC_MESSAGE_LOG_BUFFER_BYTES);
+        }
+        return _messageLogFlusher;
+    }
+
+    /**
+     * Get the file format for message logs.
+     *
+     * @return format.
+     */
+    public MessageLogFormat getMessageLogFormat() {
+        return _messageLogFormat;
+    }
+
     /**
      * Create a thread-safe counter for received messages.
      *
      * @return message counter.
      */
     public Counter createMessageCounter() {
-        return new AtomicCounter();
+        return new StripedCounter();
     }
 
     /**
@@ -278,6 +569,85 @@ public abstract class JmsClientConfiguration {
         return _checkpointIntervalSeconds;
     }
 
+    /**
+     * Check if an embedded broker should be started.
+     *
+     * @return true for an embedded broker.
+     */
+    public boolean isEmbeddedBrokerEnabled() {
+        return _embeddedBrokerMode != null;
+    }
+
+    /**
+     * Check if the client can start an embedded broker. Sub-classes for brokers that can be embedded should override
+     * this together with {@link #createEmbeddedBroker(EmbeddedBrokerSettings)}.
+     *
+     * @return true if embedded brokers are supported.
+     */
+    public boolean isEmbeddedBrokerSupported() {
+        return false;
+    }
+
+    /**
+     * Get the memory in MB for messages in the embedded broker before they are paged to disk.
+     *
+     * @return paging limit in MB or null for the broker default.
+     */
+    public Integer getEmbeddedBrokerPagingMegabytes() {
+        return _embeddedBrokerPagingMegabytes;
+    }
+
+    /**
+     * Check if the configuration says how to connect to the broker. Sub-classes that need a broker URL or similar
+     * should override this and accept an embedded broker instead if they support it.
+     *
+     * @return true if the broker has been configured.
+     */
+    public boolean isBrokerConfigured() {
+        return true;
+    }
+
+    /**
+     * Start the embedded broker if enabled. The connection factories connect to it once it has been started.
+     *
+     * @return started broker, to be closed when the test is done, or null if not enabled.
+     * @throws UnsupportedOperationException if the client cannot embed a broker.
+     * @throws Exception on failure to start the broker.
+     */
+    public EmbeddedBroker startEmbeddedBroker() throws Exception {
+        if (_embeddedBrokerMode == null) {
+            return null;
+        }
+        EmbeddedBroker broker = createEmbeddedBroker(new EmbeddedBrokerSettings(_embeddedBrokerMode,
+                        _embeddedBrokerPort, _embeddedBrokerDirectory, !_embeddedBrokerNonPersistent,
+                        _embeddedBrokerJournalType, _embeddedBrokerPagingMegabytes, _embeddedBrokerClasspath));
+        if (broker == null) {
+            throw new UnsupportedOperationException("Embedded brokers are not supported by this client");
+        }
+        broker.start();
+        _embeddedBroker = broker;
+        return broker;
+    }
+
+    /**
+     * Get the URL for the embedded broker.
+     *
+     * @return broker URL or null if no embedded broker has been started.
+     */
+    protected String getEmbeddedBrokerUrl() {
+        return _embeddedBroker != null ? _embeddedBroker.getBrokerUrl() : null;
+    }
+
+    /**
+     * Create an embedded broker. Sub-classes for brokers that can be embedded should override this.
+     *
+     * @param settings The broker settings.
+     * @return broker that has not been started or null if not supported.
+     */
+    protected EmbeddedBroker createEmbeddedBroker(EmbeddedBrokerSettings settings) {
+        return null;
+    }
+
     /**
      * Create a JMS connection factory for normal transactions.
      *
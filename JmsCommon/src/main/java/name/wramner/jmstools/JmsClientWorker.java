@@ -15,17 +15,11 @@
  */
 package name.wramner.jmstools;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jms.JMSException;
 import javax.jms.TransactionRolledBackException;
@@ -37,6 +31,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.latency.LatencyRecorder;
+import name.wramner.jmstools.latency.LatencyStatistics;
+import name.wramner.jmstools.latency.LatencyType;
+import name.wramner.jmstools.messagelog.MessageLogColumn;
+import name.wramner.jmstools.messagelog.MessageLogFlusher;
+import name.wramner.jmstools.messagelog.MessageLogFormat;
+import name.wramner.jmstools.messagelog.MessageLogOutput;
+import name.wramner.jmstools.messagelog.MessageLogWriter;
+import name.wramner.jmstools.messagelog.StreamMessageLogOutput;
 import name.wramner.jmstools.messages.ObjectMessageAdapter;
 import name.wramner.jmstools.rm.ResourceManager;
 import name.wramner.jmstools.rm.ResourceManagerFactory;
@@ -55,14 +58,25 @@ public abstract class JmsClientWorker<T extends JmsClientConfiguration> implemen
     protected final ResourceManagerFactory _resourceManagerFactory;
     protected final StopController _stopController;
     protected final Counter _messageCounter;
+    private final Counter _rollbackCounter;
+    private final Counter _inDoubtCounter;
+    private final Counter _errorCounter;
+    private final Counter _commitCounter;
+    private final Counter _byteCounter;
+    private final Counter _connectionCounter;
     protected final ObjectMessageAdapter _objectMessageAdapter;
     private final File _logFile;
     private final boolean _rollbacksEnabled;
     private final double _rollbackProbability;
-    private final List<String[]> _pendingLogEntries;
     private final boolean _abortOnError;
     private final long _commitDelayMillis;
-    private OutputStream _os;
+    private final int _churnMessages;
+    private final LatencyRecorder _latencyRecorder;
+    private final MessageLogFlusher _messageLogFlusher;
+    private final MessageLogFormat _messageLogFormat;
+    private MessageLogWriter _messageLogWriter;
+    private long _pendingBytes;
+    private final AtomicInteger _messagesOnConnection = new AtomicInteger();
 
     /**
      * Constructor.
@@ -78,6 +92,13 @@ public abstract class JmsClientWorker<T extends JmsClientConfiguration> implemen
         _resourceManagerFactory = resourceManagerFactory;
         _stopController = stopController;
         _messageCounter = counter;
+        _rollbackCounter = config.getRollbackCounter();
+        _inDoubtCounter = config.getInDoubtCounter();
+        _errorCounter = config.getErrorCounter();
+        _commitCounter = config.getCommitCounter();
+        _byteCounter = config.getByteCounter();
+        _connectionCounter = config.getConnectionCounter();
+        _churnMessages = config.getChurnMessages() != null ? config.getChurnMessages().intValue() : 0;
         _logFile = logFile;
         _rollbacksEnabled = config.getRollbackPercentage() != null;
         if (_rollbacksEnabled) {
@@ -85,10 +106,13 @@ public abstract class JmsClientWorker<T extends JmsClientConfiguration> implemen
         } else {
             _rollbackProbability = 0.0;
         }
-        _pendingLogEntries = new ArrayList<String[]>();
         _objectMessageAdapter = config.getObjectMessageAdapter();
         _abortOnError = config.isAbortOnErrorEnabled();
         _commitDelayMillis = config.getCommitDelayMillis() != null ? config.getCommitDelayMillis().longValue() : 0L;
+        LatencyStatistics latencyStatistics = config.getLatencyStatistics();
+        _latencyRecorder = latencyStatistics != null ? latencyStatistics.createRecorder() : null;
+        _messageLogFlusher = logFile != null ? config.getMessageLogFlusher() : null;
+        _messageLogFormat = config.getMessageLogFormat();
     }
 
     /**
@@ -134,17 +158,27 @@ public abstract class JmsClientWorker<T extends JmsClientConfiguration> implemen
      * @return true on success.
      */
     private boolean processMessages() {
+        _messagesOnConnection.set(0);
         try (ResourceManager resourceManager = _resourceManagerFactory.createResourceManager()) {
+            if (_churnMessages > 0) {
+                long startNanos = getLatencyStartTime();
+                openResources(resourceManager);
+                recordLatency(LatencyType.CONNECT, startNanos);
+                _connectionCounter.incrementCount(1);
+            }
             processMessages(resourceManager);
             return true;
         } catch (JMSException e) {
+            _errorCounter.incrementCount(1);
             _logger.error("JMS error!", e);
             logPendingMessagesRolledBack();
         } catch (RollbackException | HeuristicRollbackException e) {
+            _errorCounter.incrementCount(1);
             _logger.error("Failed to commit!", e);
             // Should already be logged, but safe to call again (nothing happens)
             logPendingMessagesRolledBack();
         } catch (HeuristicMixedException e) {
+            _errorCounter.incrementCount(1);
             _logger.error("Failed to commit, but part of the transaction MAY have completed!", e);
             // Should already be logged, but safe to call again (nothing happens)
             logPendingMessagesInDoubt();
@@ -165,11 +199,30 @@ public abstract class JmsClientWorker<T extends JmsClientConfiguration> implemen
                     throws RollbackException, JMSException, HeuristicMixedException, HeuristicRollbackException;
 
     /**
-     * Get header names for the detailed message log.
+     * Open the connection, session and producers or consumers up front. This is used in connection churn mode, where
+     * the time needed to set them up is measured.
+     *
+     * @param resourceManager The resource manager.
+     * @throws JMSException on JMS errors.
+     */
+    protected abstract void openResources(ResourceManager resourceManager) throws JMSException;
+
+    /**
+     * Check if the worker should keep processing messages with the current resources. That is the case until the stop
+     * controller is done or, in connection churn mode, until enough messages have been committed on the connection.
+     *
+     * @return true to keep running.
+     */
+    protected boolean keepRunning() {
+        return _stopController.keepRunning() && (_churnMessages == 0 || _messagesOnConnection.get() < _churnMessages);
+    }
+
+    /**
+     * Get the columns for the detailed message log, excluding the state and commit time that are always present.
      *
-     * @return header names.
+     * @return columns.
      */
-    protected abstract String[] getMessageLogHeaders();
+    protected abstract MessageLogColumn[] getMessageLogColumns();
 
     /**
      * Commit or roll back depending on the configured roll back probability.
@@ -189,31 +242,86 @@ public abstract class JmsClientWorker<T extends JmsClientConfiguration> implemen
         }
         if (shouldRollback()) {
             resourceManager.rollback();
+            _rollbackCounter.incrementCount(1);
             logPendingMessagesRolledBack();
         } else {
             try {
+                long startNanos = getLatencyStartTime();
                 resourceManager.commit();
+                recordLatency(LatencyType.COMMIT, startNanos);
             } catch (TransactionRolledBackException | RollbackException | HeuristicRollbackException e) {
+                _rollbackCounter.incrementCount(1);
                 logPendingMessagesRolledBack();
                 throw e;
             } catch (JMSException | HeuristicMixedException e) {
                 // Here the messages may have been committed, race condition
+                _inDoubtCounter.incrementCount(1);
                 logPendingMessagesInDoubt();
                 throw e;
             }
             _messageCounter.incrementCount(messageCount);
+            _messagesOnConnection.addAndGet(messageCount);
+            _commitCounter.incrementCount(1);
+            if (_pendingBytes > 0L) {
+                _byteCounter.incrementCount(_pendingBytes);
+                _pendingBytes = 0L;
+            }
             logPendingMessagesCommitted();
         }
     }
 
     /**
-     * Add fields for logging a consumed or produced message.
+     * Add the payload size for a message in the current transaction. The bytes are counted when the transaction
+     * commits and discarded if it rolls back or fails.
+     *
+     * @param bytes The payload size in bytes.
+     */
+    protected void addPendingBytes(long bytes) {
+        _pendingBytes += bytes;
+    }
+
+    /**
+     * Get the writer for the detailed message log. Add the fields for a consumed or produced message in the order
+     * given by {@link #getMessageLogColumns()}, then end the entry. The entry is written when the transaction
+     * completes.
+     *
+     * @return writer, null unless logging is enabled.
+     */
+    protected MessageLogWriter getMessageLogWriter() {
+        return _messageLogWriter;
+    }
+
+    /**
+     * Get the start time for a latency measurement.
+     *
+     * @return start time in nanoseconds or 0 if latencies are not recorded.
+     */
+    protected long getLatencyStartTime() {
+        return _latencyRecorder != null ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the latency for an operation if latencies are recorded.
+     *
+     * @param type The operation type.
+     * @param startNanos The start time from {@link #getLatencyStartTime()}.
+     */
+    protected void recordLatency(LatencyType type, long startNanos) {
+        if (_latencyRecorder != null) {
+            _latencyRecorder.recordLatency(type, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Record the latency for an operation that ended at a known time if latencies are recorded.
      *
-     * @param fields The fields to log.
+     * @param type The operation type.
+     * @param startNanos The start time from {@link #getLatencyStartTime()}.
+     * @param endNanos The end time from {@link System#nanoTime()}.
      */
-    protected void logMessage(String... fields) {
-        if (_os != null) {
-            _pendingLogEntries.add(fields);
+    protected void recordLatency(LatencyType type, long startNanos, long endNanos) {
+        if (_latencyRecorder != null) {
+            _latencyRecorder.recordLatency(type, endNanos - startNanos);
         }
     }
 
@@ -236,86 +344,45 @@ public abstract class JmsClientWorker<T extends JmsClientConfiguration> implemen
     }
 
     private void cleanupMessageLog() {
-        if (_os != null) {
-            flushSafely(_os);
-            closeSafely(_os);
+        if (_messageLogWriter != null) {
+            try {
+                _messageLogWriter.close();
+            } catch (IOException e) {
+                _logger.error("Failed to close message log", e);
+            }
         }
     }
 
-    private void initMessageLogIfEnabled() throws FileNotFoundException {
+    private void initMessageLogIfEnabled() throws IOException {
         if (messageLogEnabled()) {
-            _os = new BufferedOutputStream(new FileOutputStream(_logFile));
-            logHeader();
+            MessageLogOutput output = _messageLogFlusher != null ? _messageLogFlusher.createOutput(_logFile)
+                            : new StreamMessageLogOutput(_logFile);
+            _messageLogWriter = _messageLogFormat.createWriter(output);
+            _messageLogWriter.writeHeader(getMessageLogColumns());
         }
     }
 
     private void logPendingMessagesCommitted() {
-        logPendingMessages("C");
+        logPendingMessages('C');
     }
 
     private void logPendingMessagesRolledBack() {
-        logPendingMessages("R");
+        _pendingBytes = 0L;
+        logPendingMessages('R');
     }
 
     private void logPendingMessagesInDoubt() {
-        logPendingMessages("?");
+        _pendingBytes = 0L;
+        logPendingMessages('?');
     }
 
-    private void logHeader() {
-        if (_os != null) {
-            StringBuilder sb = new StringBuilder(256);
-            sb.append("State");
-            sb.append('\t');
-            sb.append("CommitTime");
-            for (String header : getMessageLogHeaders()) {
-                sb.append('\t');
-                sb.append(header);
-            }
-            sb.append('\n');
-            write(sb);
-        }
-    }
-
-    private void logPendingMessages(String action) {
-        if (_os != null) {
-            StringBuilder sb = new StringBuilder(256);
-            String nowString = String.valueOf(System.currentTimeMillis());
-            for (String[] fields : _pendingLogEntries) {
-                sb.append(action);
-                sb.append('\t');
-                sb.append(nowString);
-                for (String field : fields) {
-                    sb.append('\t');
-                    if (field != null) {
-                        sb.append(field);
-                    }
-                }
-                sb.append('\n');
+    private void logPendingMessages(char state) {
+        if (_messageLogWriter != null) {
+            try {
+                _messageLogWriter.writePendingEntries(state);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            write(sb);
-            _pendingLogEntries.clear();
-        }
-    }
-
-    private void write(StringBuilder sb) {
-        try {
-            _os.write(sb.toString().getBytes(Charset.defaultCharset()));
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
-    }
-
-    private static void closeSafely(OutputStream os) {
-        try {
-            os.close();
-        } catch (IOException e) {
-        }
-    }
-
-    private static void flushSafely(OutputStream os) {
-        try {
-            os.flush();
-        } catch (IOException e) {
         }
     }
 }
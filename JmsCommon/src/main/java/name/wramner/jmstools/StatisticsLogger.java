@@ -15,65 +15,231 @@
  */
 package name.wramner.jmstools;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
 
-import name.wramner.jmstools.counter.Counter;
-import name.wramner.jmstools.stopcontroller.StopController;
-
+import org.HdrHistogram.Histogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.latency.LatencyStatistics;
+import name.wramner.jmstools.latency.LatencyStatistics.IntervalSampler;
+import name.wramner.jmstools.latency.LatencyType;
+import name.wramner.jmstools.stopcontroller.StopController;
+
 /**
- * This class logs delta values for counters every minute.
- * 
+ * This class logs delta values and per-second rates for counters every interval, optionally with latency percentiles.
+ * The same figures can be written to a CSV file with one row per interval for charts and reports.
+ *
  * @author Erik Wramner
  */
 public class StatisticsLogger implements Runnable {
-    private static final long ONE_MINUTE_IN_MS = 60000L;
-    private static final char SEPARATOR = '\t';
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final double[] CSV_PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+    private static final String[] CSV_PERCENTILE_NAMES = { "p50", "p90", "p99", "p999" };
+    private static final char CSV_SEPARATOR = ',';
     private final Logger _statisticsLogger = LoggerFactory.getLogger("statistics");
     private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final List<String> _names = new ArrayList<>();
     private final List<Counter> _counters = new ArrayList<>();
     private final StopController _stopController;
+    private final long _intervalMillis;
+    private final LatencyStatistics _latencyStatistics;
+    private final File _csvFile;
 
     /**
      * Constructor.
-     * 
+     *
      * @param stopController The stop controller.
-     * @param counters The counters to log statistics for.
+     * @param intervalSeconds The number of seconds between two log entries.
+     * @param counters The counters to log statistics for by name, in order.
+     * @param latencyStatistics The latency statistics or null to skip latencies.
+     * @param csvFile The CSV file or null for none.
      */
-    public StatisticsLogger(StopController stopController, Counter... counters) {
-        for (Counter counter : counters) {
-            _counters.add(counter);
+    public StatisticsLogger(StopController stopController, int intervalSeconds, Map<String, Counter> counters,
+                    LatencyStatistics latencyStatistics, File csvFile) {
+        for (Entry<String, Counter> entry : counters.entrySet()) {
+            _names.add(entry.getKey());
+            _counters.add(entry.getValue());
         }
         _stopController = stopController;
+        _intervalMillis = intervalSeconds * 1000L;
+        _latencyStatistics = latencyStatistics;
+        _csvFile = csvFile;
     }
 
     /**
-     * Log delta values for counters every minute, then sleep and repeat until the stop controller returns false.
+     * Log delta values and rates for counters every interval, then sleep and repeat until the stop controller returns
+     * false.
      */
     @Override
     public void run() {
         _logger.debug("Statistics logger started...");
-        try {
-            int[] prevCounts = new int[_counters.size()];
-            StringBuilder sb = new StringBuilder(80);
+        IntervalSampler sampler = _latencyStatistics != null ? _latencyStatistics.createIntervalSampler() : null;
+        try (PrintWriter csvWriter = createCsvWriter()) {
+            long[] prevCounts = new long[_counters.size()];
+            long[] deltas = new long[_counters.size()];
+            long prevNanos = System.nanoTime();
             while (_stopController.keepRunning()) {
-                _stopController.waitForTimeoutOrDone(ONE_MINUTE_IN_MS);
+                _stopController.waitForTimeoutOrDone(_intervalMillis);
+                long nanos = System.nanoTime();
+                double elapsedSeconds = Math.max(nanos - prevNanos, 1L) / NANOS_PER_SECOND;
+                prevNanos = nanos;
                 for (int i = 0; i < prevCounts.length; i++) {
-                    int count = _counters.get(i).getCount();
-                    if (i > 0) {
-                        sb.append(SEPARATOR);
-                    }
-                    sb.append(count - prevCounts[i]);
+                    long count = _counters.get(i).getCount();
+                    deltas[i] = count - prevCounts[i];
                     prevCounts[i] = count;
                 }
-                _statisticsLogger.info(sb.toString());
-                sb.setLength(0);
+                Histogram[] histograms = sampleLatencies(sampler);
+                _statisticsLogger.info(formatLogEntry(deltas, elapsedSeconds, histograms));
+                if (csvWriter != null) {
+                    csvWriter.println(formatCsvRow(deltas, elapsedSeconds, histograms));
+                    csvWriter.flush();
+                    if (csvWriter.checkError()) {
+                        _logger.error("Failed to write statistics to {}", _csvFile);
+                    }
+                }
             }
+        } catch (IOException e) {
+            _logger.error("Failed to create statistics file " + _csvFile, e);
         } finally {
             _logger.debug("Statistics logger stopped.");
         }
     }
+
+    private PrintWriter createCsvWriter() throws IOException {
+        if (_csvFile == null) {
+            return null;
+        }
+        PrintWriter writer = new PrintWriter(Files.newBufferedWriter(_csvFile.toPath(), StandardCharsets.UTF_8));
+        writer.println(formatCsvHeader());
+        writer.flush();
+        return writer;
+    }
+
+    private Histogram[] sampleLatencies(IntervalSampler sampler) {
+        if (sampler == null) {
+            return null;
+        }
+        sampler.sampleInterval();
+        LatencyType[] types = LatencyType.values();
+        Histogram[] histograms = new Histogram[types.length];
+        for (int i = 0; i < types.length; i++) {
+            histograms[i] = sampler.getIntervalHistogram(types[i]);
+        }
+        return histograms;
+    }
+
+    /**
+     * Format a log entry with space-separated key=value pairs.
+     *
+     * @param deltas The counter values for the interval.
+     * @param elapsedSeconds The length of the interval.
+     * @param histograms The latency histograms for the interval or null.
+     * @return log entry.
+     */
+    String formatLogEntry(long[] deltas, double elapsedSeconds, Histogram[] histograms) {
+        StringBuilder sb = new StringBuilder(160);
+        for (int i = 0; i < deltas.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(_names.get(i)).append('=').append(deltas[i]);
+            sb.append(' ').append(_names.get(i)).append("/s=")
+                            .append(formatDecimal(deltas[i] / elapsedSeconds));
+        }
+        if (histograms != null) {
+            for (LatencyType type : LatencyType.values()) {
+                Histogram histogram = histograms[type.ordinal()];
+                if (histogram.getTotalCount() > 0L) {
+                    String name = type.getDisplayName();
+                    sb.append(' ').append(name).append("_p50_ms=").append(formatMillis(histogram, 50.0));
+                    sb.append(' ').append(name).append("_p99_ms=").append(formatMillis(histogram, 99.0));
+                    sb.append(' ').append(name).append("_p99.9_ms=").append(formatMillis(histogram, 99.9));
+                    sb.append(' ').append(name).append("_max_ms=")
+                                    .append(formatDecimal(histogram.getMaxValue() / MICROS_PER_MILLI));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Format the header for the CSV file. The latency columns are always present so that all files from the same
+     * version have the same layout.
+     *
+     * @return header.
+     */
+    String formatCsvHeader() {
+        StringBuilder sb = new StringBuilder(400);
+        sb.append("timestamp").append(CSV_SEPARATOR).append("interval_seconds");
+        for (String name : _names) {
+            sb.append(CSV_SEPARATOR).append(name);
+            sb.append(CSV_SEPARATOR).append(name).append("_per_second");
+        }
+        for (LatencyType type : LatencyType.values()) {
+            String name = type.getDisplayName();
+            sb.append(CSV_SEPARATOR).append(name).append("_count");
+            for (String percentileName : CSV_PERCENTILE_NAMES) {
+                sb.append(CSV_SEPARATOR).append(name).append('_').append(percentileName).append("_ms");
+            }
+            sb.append(CSV_SEPARATOR).append(name).append("_max_ms");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Format a CSV row for an interval. Latency columns are empty when there are no values.
+     *
+     * @param deltas The counter values for the interval.
+     * @param elapsedSeconds The length of the interval.
+     * @param histograms The latency histograms for the interval or null.
+     * @return row.
+     */
+    String formatCsvRow(long[] deltas, double elapsedSeconds, Histogram[] histograms) {
+        StringBuilder sb = new StringBuilder(200);
+        sb.append(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(OffsetDateTime.now().truncatedTo(ChronoUnit.MILLIS)));
+        sb.append(CSV_SEPARATOR).append(formatDecimal(elapsedSeconds));
+        for (long delta : deltas) {
+            sb.append(CSV_SEPARATOR).append(delta);
+            sb.append(CSV_SEPARATOR).append(formatDecimal(delta / elapsedSeconds));
+        }
+        for (LatencyType type : LatencyType.values()) {
+            Histogram histogram = histograms != null ? histograms[type.ordinal()] : null;
+            long count = histogram != null ? histogram.getTotalCount() : 0L;
+            sb.append(CSV_SEPARATOR).append(count);
+            for (double percentile : CSV_PERCENTILES) {
+                sb.append(CSV_SEPARATOR);
+                if (count > 0L) {
+                    sb.append(formatMillis(histogram, percentile));
+                }
+            }
+            sb.append(CSV_SEPARATOR);
+            if (count > 0L) {
+                sb.append(formatDecimal(histogram.getMaxValue() / MICROS_PER_MILLI));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String formatMillis(Histogram histogram, double percentile) {
+        return formatDecimal(histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI);
+    }
+
+    private static String formatDecimal(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Factory for worker threads. Workers can run on virtual threads, making it possible to simulate thousands of lightly
+ * loaded clients without thousands of platform threads. Virtual threads are created with reflection as the code must
+ * still run on Java 8; if they are not supported by the JVM the factory falls back to platform threads.
+ *
+ * @author Erik Wramner
+ */
+public class WorkerThreadFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerThreadFactory.class);
+    private static final Method OF_VIRTUAL_METHOD;
+    private static final Method BUILDER_NAME_METHOD;
+    private static final Method BUILDER_UNSTARTED_METHOD;
+    private final boolean _virtual;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            name = builderClass.getMethod("name", String.class);
+            unstarted = builderClass.getMethod("unstarted", Runnable.class);
+            // Fails on Java 19 and 20 unless preview features are enabled
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL_METHOD = ofVirtual;
+        BUILDER_NAME_METHOD = name;
+        BUILDER_UNSTARTED_METHOD = unstarted;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param virtualThreadsRequested The flag to use virtual threads if they are supported.
+     */
+    public WorkerThreadFactory(boolean virtualThreadsRequested) {
+        if (virtualThreadsRequested && !isVirtualThreadSupported()) {
+            LOGGER.warn("Virtual threads are not supported by this JVM, using platform threads");
+        }
+        _virtual = virtualThreadsRequested && isVirtualThreadSupported();
+    }
+
+    /**
+     * Check if the JVM supports virtual threads.
+     *
+     * @return true if supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL_METHOD != null;
+    }
+
+    /**
+     * Check if this factory creates virtual threads.
+     *
+     * @return true for virtual threads, false for platform threads.
+     */
+    public boolean isVirtual() {
+        return _virtual;
+    }
+
+    /**
+     * Create a new thread, not started.
+     *
+     * @param runnable The task for the thread.
+     * @param name The thread name.
+     * @return thread.
+     */
+    public Thread createThread(Runnable runnable, String name) {
+        if (_virtual) {
+            try {
+                Object builder = BUILDER_NAME_METHOD.invoke(OF_VIRTUAL_METHOD.invoke(null), name);
+                return (Thread) BUILDER_UNSTARTED_METHOD.invoke(builder, runnable);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Failed to create virtual thread", e);
+            }
+        }
+        return new Thread(runnable, name);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.broker;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for brokers started by the clients themselves, so that a test can run on a single machine without a
+ * separate broker installation. The broker runs in-process or in a sibling JVM depending on the settings. The broker
+ * libraries are not dependencies of the clients, they are loaded at runtime from the classpath or from an extra
+ * classpath in the settings. Sub-classes therefore use reflection in order to configure and start the broker.
+ * <p>
+ * Sub-classes must have a main method that calls {@link #runUntilInputClosed(EmbeddedBroker)}, as that is what runs in
+ * the sibling JVM.
+ *
+ * @author Erik Wramner
+ */
+public abstract class EmbeddedBroker implements AutoCloseable {
+    static final String READY_MARKER = "JmsTools embedded broker started";
+    private static final String TEMP_DIRECTORY_PREFIX = "jmstools-broker";
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final EmbeddedBrokerSettings _settings;
+    private File _dataDirectory;
+    private boolean _deleteDataDirectory;
+    private SiblingJvmProcess _siblingJvm;
+
+    /**
+     * Constructor.
+     *
+     * @param settings The broker settings.
+     */
+    protected EmbeddedBroker(EmbeddedBrokerSettings settings) {
+        _settings = settings;
+    }
+
+    /**
+     * Start the broker, in-process or in a sibling JVM, and wait until it accepts clients. A temporary data directory
+     * is created if none has been configured. It is deleted when the broker is closed.
+     *
+     * @throws Exception on failure to start the broker.
+     */
+    public void start() throws Exception {
+        _dataDirectory = _settings.getDataDirectory();
+        if (_dataDirectory == null) {
+            _dataDirectory = Files.createTempDirectory(TEMP_DIRECTORY_PREFIX).toFile();
+            _deleteDataDirectory = true;
+        }
+        try {
+            if (_settings.getMode() == EmbeddedBrokerMode.SIBLING_JVM) {
+                _siblingJvm = SiblingJvmProcess.start(getClass(), _settings.forSiblingJvm(_dataDirectory),
+                                _settings.getClasspath());
+            } else {
+                startInProcess();
+            }
+        } catch (Exception e) {
+            deleteTemporaryDataDirectory();
+            throw e;
+        }
+        _logger.info("Embedded broker in {} mode listening on {}", _settings.getMode(), getBrokerUrl());
+    }
+
+    /**
+     * Get the URL clients should use in order to connect to the broker.
+     *
+     * @return broker URL.
+     */
+    public String getBrokerUrl() {
+        return "tcp://localhost:" + _settings.getPort();
+    }
+
+    /**
+     * Get the broker settings.
+     *
+     * @return settings.
+     */
+    protected EmbeddedBrokerSettings getSettings() {
+        return _settings;
+    }
+
+    /**
+     * Stop the broker and delete the temporary data directory if there is one.
+     *
+     * @throws Exception on failure to stop the broker.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            if (_siblingJvm != null) {
+                _siblingJvm.close();
+            } else {
+                stopBroker();
+            }
+        } finally {
+            deleteTemporaryDataDirectory();
+        }
+    }
+
+    /**
+     * Start the broker in the current JVM.
+     *
+     * @param classLoader The class loader for the broker classes.
+     * @param dataDirectory The data directory.
+     * @throws Exception on failure to start the broker.
+     */
+    protected abstract void startBroker(ClassLoader classLoader, File dataDirectory) throws Exception;
+
+    /**
+     * Stop the broker started with {@link #startBroker(ClassLoader, File)}.
+     *
+     * @throws Exception on failure to stop the broker.
+     */
+    protected abstract void stopBroker() throws Exception;
+
+    /**
+     * Start a broker in-process and keep it running until the standard input is closed. This is used by the main
+     * methods that run in sibling JVMs; the parent closes the input in order to stop the broker.
+     *
+     * @param broker The broker.
+     * @throws Exception on failure to start or stop the broker.
+     */
+    protected static void runUntilInputClosed(EmbeddedBroker broker) throws Exception {
+        broker.start();
+        try {
+            System.out.println(READY_MARKER);
+            System.out.flush();
+            while (System.in.read() != -1) {
+                // Wait for the parent to close the stream
+            }
+        } finally {
+            broker.close();
+        }
+    }
+
+    /**
+     * Create an object with its public no-argument constructor.
+     *
+     * @param classLoader The class loader.
+     * @param className The class name.
+     * @return new instance.
+     * @throws ReflectiveOperationException if the class is missing or cannot be created.
+     */
+    protected static Object newInstance(ClassLoader classLoader, String className)
+                    throws ReflectiveOperationException {
+        return classLoader.loadClass(className).getConstructor().newInstance();
+    }
+
+    /**
+     * Get an enum constant.
+     *
+     * @param classLoader The class loader.
+     * @param className The enum class name.
+     * @param name The constant name.
+     * @return enum constant.
+     * @throws ReflectiveOperationException if the class is missing.
+     * @throws IllegalArgumentException if the constant is missing.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected static Object enumConstant(ClassLoader classLoader, String className, String name)
+                    throws ReflectiveOperationException {
+        return Enum.valueOf((Class<? extends Enum>) classLoader.loadClass(className), name);
+    }
+
+    /**
+     * Invoke a public method by name. The first method with the same name and compatible parameters is used, which
+     * is good enough for the simple setters needed in order to configure a broker. Exceptions thrown by the method
+     * are unwrapped.
+     *
+     * @param target The target object.
+     * @param methodName The method name.
+     * @param args The arguments.
+     * @return the return value from the method.
+     * @throws Exception on failure to find the method or if the method fails.
+     */
+    protected static Object invoke(Object target, String methodName, Object... args) throws Exception {
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(methodName) && isCompatible(method.getParameterTypes(), args)) {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+        }
+        throw new NoSuchMethodException(target.getClass().getName() + "." + methodName);
+    }
+
+    private static boolean isCompatible(Class<?>[] parameterTypes, Object[] args) {
+        if (parameterTypes.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            Class<?> parameterType = parameterTypes[i];
+            if (args[i] == null ? parameterType.isPrimitive()
+                            : !MethodType.methodType(parameterType).wrap().returnType().isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startInProcess() throws Exception {
+        Thread currentThread = Thread.currentThread();
+        ClassLoader originalClassLoader = currentThread.getContextClassLoader();
+        ClassLoader brokerClassLoader = _settings.createClassLoader(getClass().getClassLoader());
+        currentThread.setContextClassLoader(brokerClassLoader);
+        try {
+            startBroker(brokerClassLoader, _dataDirectory);
+        } finally {
+            currentThread.setContextClassLoader(originalClassLoader);
+        }
+    }
+
+    private void deleteTemporaryDataDirectory() throws IOException {
+        if (_deleteDataDirectory) {
+            _deleteDataDirectory = false;
+            try (Stream<Path> paths = Files.walk(_dataDirectory.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
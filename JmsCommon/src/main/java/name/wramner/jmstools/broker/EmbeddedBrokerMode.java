@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.broker;
+
+/**
+ * The ways an embedded broker can be started.
+ *
+ * @author Erik Wramner
+ */
+public enum EmbeddedBrokerMode {
+    /**
+     * Run the broker in the same JVM as the workers. This is the simplest option, but the broker and the clients
+     * compete for heap, garbage collection and CPU in the same process.
+     */
+    IN_PROCESS,
+    /**
+     * Run the broker in a separate JVM started from the same Java installation. The JVM is stopped with the client.
+     */
+    SIBLING_JVM
+}
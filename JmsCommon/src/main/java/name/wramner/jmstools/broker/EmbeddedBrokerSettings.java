@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.broker;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for an embedded broker. The settings can be converted to command line arguments and back in order to start
+ * the same broker in a sibling JVM.
+ *
+ * @author Erik Wramner
+ */
+public class EmbeddedBrokerSettings {
+    private static final String MODE_ARG = "--mode";
+    private static final String PORT_ARG = "--port";
+    private static final String DATA_DIRECTORY_ARG = "--data-directory";
+    private static final String NON_PERSISTENT_ARG = "--non-persistent";
+    private static final String JOURNAL_TYPE_ARG = "--journal-type";
+    private static final String PAGING_MEGABYTES_ARG = "--paging-mb";
+    private static final String CLASSPATH_ARG = "--classpath";
+    private final EmbeddedBrokerMode _mode;
+    private final int _port;
+    private final File _dataDirectory;
+    private final boolean _persistent;
+    private final String _journalType;
+    private final Integer _pagingMegabytes;
+    private final String _classpath;
+
+    /**
+     * Constructor.
+     *
+     * @param mode The mode, in-process or sibling JVM.
+     * @param port The port the broker listens on for clients.
+     * @param dataDirectory The directory for the journal and other broker files or null for a temporary directory.
+     * @param persistent The persistence flag, false to keep messages in memory only.
+     * @param journalType The broker-specific journal type or null for the default.
+     * @param pagingMegabytes The memory in MB for messages before the broker pages them to disk or null for default.
+     * @param classpath Extra classpath with the broker libraries or null if they are on the classpath already.
+     */
+    public EmbeddedBrokerSettings(EmbeddedBrokerMode mode, int port, File dataDirectory, boolean persistent,
+                    String journalType, Integer pagingMegabytes, String classpath) {
+        _mode = mode;
+        _port = port;
+        _dataDirectory = dataDirectory;
+        _persistent = persistent;
+        _journalType = journalType;
+        _pagingMegabytes = pagingMegabytes;
+        _classpath = classpath;
+    }
+
+    /**
+     * Parse settings from command line arguments created by {@link #toArguments()}.
+     *
+     * @param args The arguments.
+     * @return settings.
+     * @throws IllegalArgumentException if the arguments are invalid.
+     */
+    public static EmbeddedBrokerSettings parse(String[] args) {
+        EmbeddedBrokerMode mode = EmbeddedBrokerMode.IN_PROCESS;
+        int port = 0;
+        File dataDirectory = null;
+        boolean persistent = true;
+        String journalType = null;
+        Integer pagingMegabytes = null;
+        String classpath = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals(NON_PERSISTENT_ARG)) {
+                persistent = false;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+            case MODE_ARG:
+                mode = EmbeddedBrokerMode.valueOf(value);
+                break;
+            case PORT_ARG:
+                port = Integer.parseInt(value);
+                break;
+            case DATA_DIRECTORY_ARG:
+                dataDirectory = new File(value);
+                break;
+            case JOURNAL_TYPE_ARG:
+                journalType = value;
+                break;
+            case PAGING_MEGABYTES_ARG:
+                pagingMegabytes = Integer.valueOf(value);
+                break;
+            case CLASSPATH_ARG:
+                classpath = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        return new EmbeddedBrokerSettings(mode, port, dataDirectory, persistent, journalType, pagingMegabytes,
+                        classpath);
+    }
+
+    /**
+     * Convert the settings to command line arguments that can be parsed with {@link #parse(String[])}.
+     *
+     * @return arguments.
+     */
+    public List<String> toArguments() {
+        List<String> args = new ArrayList<>();
+        args.add(MODE_ARG);
+        args.add(_mode.name());
+        args.add(PORT_ARG);
+        args.add(String.valueOf(_port));
+        if (_dataDirectory != null) {
+            args.add(DATA_DIRECTORY_ARG);
+            args.add(_dataDirectory.getAbsolutePath());
+        }
+        if (!_persistent) {
+            args.add(NON_PERSISTENT_ARG);
+        }
+        if (_journalType != null) {
+            args.add(JOURNAL_TYPE_ARG);
+            args.add(_journalType);
+        }
+        if (_pagingMegabytes != null) {
+            args.add(PAGING_MEGABYTES_ARG);
+            args.add(_pagingMegabytes.toString());
+        }
+        if (_classpath != null) {
+            args.add(CLASSPATH_ARG);
+            args.add(_classpath);
+        }
+        return args;
+    }
+
+    /**
+     * Create settings for running the same broker in a sibling JVM. The sibling runs the broker in-process, uses the
+     * given data directory and has the broker libraries on its classpath already.
+     *
+     * @param dataDirectory The data directory.
+     * @return settings for the sibling JVM.
+     */
+    public EmbeddedBrokerSettings forSiblingJvm(File dataDirectory) {
+        return new EmbeddedBrokerSettings(EmbeddedBrokerMode.IN_PROCESS, _port, dataDirectory, _persistent,
+                        _journalType, _pagingMegabytes, null);
+    }
+
+    /**
+     * Create a class loader for the broker. If there is an extra classpath the loader includes it, otherwise the
+     * parent is returned as is.
+     *
+     * @param parent The parent class loader.
+     * @return class loader.
+     * @throws MalformedURLException if the classpath contains an invalid entry.
+     */
+    public ClassLoader createClassLoader(ClassLoader parent) throws MalformedURLException {
+        if (_classpath == null) {
+            return parent;
+        }
+        String[] entries = _classpath.split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            urls[i] = new File(entries[i]).toURI().toURL();
+        }
+        return new URLClassLoader(urls, parent);
+    }
+
+    /**
+     * Get the mode.
+     *
+     * @return mode.
+     */
+    public EmbeddedBrokerMode getMode() {
+        return _mode;
+    }
+
+    /**
+     * Get the port the broker listens on for clients.
+     *
+     * @return port.
+     */
+    public int getPort() {
+        return _port;
+    }
+
+    /**
+     * Get the data directory.
+     *
+     * @return data directory or null for a temporary directory.
+     */
+    public File getDataDirectory() {
+        return _dataDirectory;
+    }
+
+    /**
+     * Check if messages should be persisted.
+     *
+     * @return true for persistent messages, false to keep them in memory.
+     */
+    public boolean isPersistent() {
+        return _persistent;
+    }
+
+    /**
+     * Get the broker-specific journal type.
+     *
+     * @return journal type or null for the default.
+     */
+    public String getJournalType() {
+        return _journalType;
+    }
+
+    /**
+     * Get the memory in MB for messages before the broker pages them to disk.
+     *
+     * @return paging limit in MB or null for the broker default.
+     */
+    public Integer getPagingMegabytes() {
+        return _pagingMegabytes;
+    }
+
+    /**
+     * Get the extra classpath with the broker libraries.
+     *
+     * @return classpath or null.
+     */
+    public String getClasspath() {
+        return _classpath;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.broker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A broker running in a separate JVM. The JVM is started with the same Java installation and classpath as the client
+ * and runs the main method of the broker class, which starts the broker in-process, prints a marker line when it is
+ * ready and stops when its standard input is closed. The output from the sibling JVM is forwarded to the log.
+ *
+ * @author Erik Wramner
+ */
+class SiblingJvmProcess implements AutoCloseable {
+    private static final long START_TIMEOUT_SECONDS = 120L;
+    private static final long STOP_TIMEOUT_SECONDS = 60L;
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final CountDownLatch _startedLatch = new CountDownLatch(1);
+    private final Process _process;
+    private volatile boolean _ready;
+
+    /**
+     * Constructor. Starts the JVM but does not wait for the broker.
+     *
+     * @param mainClass The main class for the sibling JVM.
+     * @param settings The settings for the broker in the sibling JVM.
+     * @param extraClasspath Extra classpath for the broker libraries or null.
+     * @throws IOException on failure to start the JVM.
+     */
+    private SiblingJvmProcess(Class<?> mainClass, EmbeddedBrokerSettings settings, String extraClasspath)
+                    throws IOException {
+        String classpath = System.getProperty("java.class.path");
+        if (extraClasspath != null) {
+            classpath = classpath + File.pathSeparator + extraClasspath;
+        }
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.add("-cp");
+        command.add(classpath);
+        command.add(mainClass.getName());
+        command.addAll(settings.toArguments());
+        _process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Thread t = new Thread(this::forwardOutput, "EmbeddedBrokerOutput");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Start a sibling JVM with a broker and wait for the broker to start.
+     *
+     * @param mainClass The main class for the sibling JVM.
+     * @param settings The settings for the broker in the sibling JVM.
+     * @param extraClasspath Extra classpath for the broker libraries or null.
+     * @return process with a started broker.
+     * @throws IOException on failure to start the JVM or the broker.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    static SiblingJvmProcess start(Class<?> mainClass, EmbeddedBrokerSettings settings, String extraClasspath)
+                    throws IOException, InterruptedException {
+        SiblingJvmProcess process = new SiblingJvmProcess(mainClass, settings, extraClasspath);
+        try {
+            process.awaitStart();
+        } catch (IOException | InterruptedException e) {
+            process._process.destroyForcibly();
+            throw e;
+        }
+        return process;
+    }
+
+    /**
+     * Stop the broker by closing the standard input for the sibling JVM and wait for it to terminate. Kill it if it
+     * does not stop in time.
+     *
+     * @throws IOException on failure to close the input.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        try {
+            _process.getOutputStream().close();
+        } finally {
+            if (!_process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                _logger.warn("Embedded broker JVM did not stop in {} seconds, killing it", STOP_TIMEOUT_SECONDS);
+                _process.destroyForcibly();
+            }
+        }
+    }
+
+    private void awaitStart() throws IOException, InterruptedException {
+        if (!_startedLatch.await(START_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException("Embedded broker JVM did not start in " + START_TIMEOUT_SECONDS + " seconds");
+        }
+        if (!_ready) {
+            throw new IOException("Embedded broker JVM terminated during startup, see log for details");
+        }
+    }
+
+    private void forwardOutput() {
+        try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(_process.getInputStream(), Charset.defaultCharset()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!_ready && line.equals(EmbeddedBroker.READY_MARKER)) {
+                    _ready = true;
+                    _startedLatch.countDown();
+                } else {
+                    _logger.info("Broker: {}", line);
+                }
+            }
+        } catch (IOException e) {
+            _logger.debug("Failed to read output from embedded broker JVM", e);
+        } finally {
+            _startedLatch.countDown();
+        }
+    }
+}
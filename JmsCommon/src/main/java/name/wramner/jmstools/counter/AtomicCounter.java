@@ -15,21 +15,22 @@
  */
 package name.wramner.jmstools.counter;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A {@link Counter} implemented with atomics.
+ * A {@link Counter} implemented with a single atomic. It is cheap to read, but all threads update the same memory
+ * location, so it is best suited for counters that are updated infrequently.
  * 
  * @author Erik Wramner
  */
 public class AtomicCounter implements Counter {
-    private final AtomicInteger _count = new AtomicInteger();
+    private final AtomicLong _count = new AtomicLong();
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void incrementCount(int count) {
+    public void incrementCount(long count) {
         _count.addAndGet(count);
     }
 
@@ -37,7 +38,7 @@ public class AtomicCounter implements Counter {
      * {@inheritDoc}
      */
     @Override
-    public int getCount() {
+    public long getCount() {
         return _count.get();
     }
 }
\ No newline at end of file
@@ -17,8 +17,8 @@ package name.wramner.jmstools.counter;
 
 /**
  * A counter is thread-safe and can be incremented and read. A counter can keep track of the number of received messages
- * across all threads, for example. Given the intended use integer precision should be good enough; no one sends more
- * than {@link Integer#MAX_VALUE} messages in a performance test.
+ * across all threads, for example. The count is a long, as long soak tests at high rates can exceed
+ * {@link Integer#MAX_VALUE} messages.
  * 
  * @author Erik Wramner
  */
@@ -28,12 +28,12 @@ public interface Counter {
      * 
      * @param count The positive value to add to the counter.
      */
-    void incrementCount(int count);
+    void incrementCount(long count);
 
     /**
      * Get current value for counter.
      * 
      * @return current count.
      */
-    int getCount();
+    long getCount();
 }
\ No newline at end of file
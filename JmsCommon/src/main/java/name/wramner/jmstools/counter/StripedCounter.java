@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Counter} striped over several memory locations with a {@link LongAdder}. Threads that increment the counter
+ * at the same time update different cells instead of competing for one, so it scales with many worker threads. Reading
+ * the count sums the cells without writing anything, so readers such as stop controllers and statistics loggers do not
+ * slow the workers down. The count is exact when no increments are in progress.
+ *
+ * @author Erik Wramner
+ */
+public class StripedCounter implements Counter {
+    private final LongAdder _count = new LongAdder();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void incrementCount(long count) {
+        _count.add(count);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCount() {
+        return _count.sum();
+    }
+}
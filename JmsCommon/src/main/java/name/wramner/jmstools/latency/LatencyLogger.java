@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.latency;
+
+import java.util.Locale;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import name.wramner.jmstools.stopcontroller.StopController;
+
+/**
+ * This class logs latency percentiles for the workers every interval and a summary for the whole run when the stop
+ * controller is done.
+ *
+ * @author Erik Wramner
+ */
+public class LatencyLogger implements Runnable {
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private final Logger _latencyLogger = LoggerFactory.getLogger("latency");
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final StopController _stopController;
+    private final LatencyStatistics _latencyStatistics;
+    private final long _intervalMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param stopController The stop controller.
+     * @param latencyStatistics The latency statistics to log.
+     * @param intervalSeconds The number of seconds between two log entries.
+     */
+    public LatencyLogger(StopController stopController, LatencyStatistics latencyStatistics, int intervalSeconds) {
+        _stopController = stopController;
+        _latencyStatistics = latencyStatistics;
+        _intervalMillis = intervalSeconds * 1000L;
+    }
+
+    /**
+     * Log latencies every interval, then sleep and repeat until the stop controller returns false. Finally log the
+     * summary.
+     */
+    @Override
+    public void run() {
+        _logger.debug("Latency logger started...");
+        try {
+            while (_stopController.keepRunning()) {
+                _stopController.waitForTimeoutOrDone(_intervalMillis);
+                _latencyStatistics.sampleInterval();
+                for (LatencyType type : LatencyType.values()) {
+                    log("Interval", type, _latencyStatistics.getIntervalHistogram(type));
+                }
+            }
+            for (LatencyType type : LatencyType.values()) {
+                log("Summary", type, _latencyStatistics.getTotalHistogram(type));
+            }
+        } finally {
+            _logger.debug("Latency logger stopped.");
+        }
+    }
+
+    private void log(String prefix, LatencyType type, Histogram histogram) {
+        if (histogram.getTotalCount() > 0L) {
+            _latencyLogger.info(String.format(Locale.ROOT,
+                            "%s %s ms: count=%d p50=%.3f p99=%.3f p99.9=%.3f max=%.3f", prefix,
+                            type.getDisplayName(), histogram.getTotalCount(), toMillis(histogram, 50.0),
+                            toMillis(histogram, 99.0), toMillis(histogram, 99.9),
+                            histogram.getMaxValue() / MICROS_PER_MILLI));
+        }
+    }
+
+    private static double toMillis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+}
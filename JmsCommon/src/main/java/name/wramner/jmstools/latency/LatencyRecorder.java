@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.latency;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+/**
+ * A latency recorder belongs to a single worker thread and records the latency for timed operations. The recorded
+ * values are collected by {@link LatencyStatistics} from another thread without blocking the worker. Latencies are
+ * recorded in microseconds.
+ *
+ * @author Erik Wramner
+ */
+public class LatencyRecorder {
+    private final SingleWriterRecorder[] _recorders;
+    private final Histogram[] _recycledHistograms;
+
+    /**
+     * Constructor.
+     *
+     * @param numberOfSignificantValueDigits The precision for the recorded values.
+     */
+    LatencyRecorder(int numberOfSignificantValueDigits) {
+        LatencyType[] types = LatencyType.values();
+        _recorders = new SingleWriterRecorder[types.length];
+        _recycledHistograms = new Histogram[types.length];
+        for (int i = 0; i < types.length; i++) {
+            _recorders[i] = new SingleWriterRecorder(numberOfSignificantValueDigits);
+        }
+    }
+
+    /**
+     * Record the latency for an operation. Only the thread owning the recorder may call this method.
+     *
+     * @param type The operation type.
+     * @param elapsedNanos The elapsed time in nanoseconds.
+     */
+    public void recordLatency(LatencyType type, long elapsedNanos) {
+        _recorders[type.ordinal()].recordValue(Math.max(0L, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+    }
+
+    /**
+     * Add the values recorded since the last call to the given histogram. Only a single thread may call this method.
+     *
+     * @param type The operation type.
+     * @param target The histogram to add the values to.
+     */
+    void addIntervalValues(LatencyType type, Histogram target) {
+        int index = type.ordinal();
+        Histogram interval = _recorders[index].getIntervalHistogram(_recycledHistograms[index]);
+        target.add(interval);
+        _recycledHistograms[index] = interval;
+    }
+}
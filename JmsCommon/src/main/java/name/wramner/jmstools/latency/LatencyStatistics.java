@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.latency;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency statistics for all workers. Each worker gets its own {@link LatencyRecorder}, so recording never contends
+ * with other threads. Reporting threads periodically merge the recorders into interval histograms and keep a running
+ * total for the final summary.
+ * <p>
+ * Several reporters can sample at different intervals, for example the latency log and the statistics log. Each one
+ * uses its own {@link IntervalSampler}, so the values drained from the recorders on behalf of one reporter are still
+ * seen by the others in their next interval.
+ *
+ * @author Erik Wramner
+ */
+public class LatencyStatistics {
+    private static final int NUMBER_OF_SIGNIFICANT_VALUE_DIGITS = 3;
+    private final List<LatencyRecorder> _recorders = new CopyOnWriteArrayList<>();
+    private final List<IntervalSampler> _samplers = new CopyOnWriteArrayList<>();
+    private final Histogram[] _drainedHistograms;
+    private final Histogram[] _totalHistograms;
+    private final IntervalSampler _defaultSampler;
+
+    /**
+     * Constructor.
+     */
+    public LatencyStatistics() {
+        _drainedHistograms = createHistograms();
+        _totalHistograms = createHistograms();
+        _defaultSampler = createIntervalSampler();
+    }
+
+    /**
+     * Create a recorder for a worker thread. The recorder must only be used by one thread.
+     *
+     * @return recorder.
+     */
+    public LatencyRecorder createRecorder() {
+        LatencyRecorder recorder = new LatencyRecorder(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS);
+        _recorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * Create a sampler with its own intervals. Each sampler sees every recorded value once, regardless of how often
+     * the other samplers are sampled.
+     *
+     * @return sampler.
+     */
+    public IntervalSampler createIntervalSampler() {
+        IntervalSampler sampler = new IntervalSampler();
+        _samplers.add(sampler);
+        return sampler;
+    }
+
+    /**
+     * Collect the values recorded by all workers since the last call into new interval histograms and add them to the
+     * totals. Only one thread may call this method.
+     */
+    public void sampleInterval() {
+        _defaultSampler.sampleInterval();
+    }
+
+    /**
+     * Get a copy of the histogram for the last sampled interval.
+     *
+     * @param type The operation type.
+     * @return histogram with latencies in microseconds.
+     */
+    public Histogram getIntervalHistogram(LatencyType type) {
+        return _defaultSampler.getIntervalHistogram(type);
+    }
+
+    /**
+     * Get a copy of the histogram with all sampled values.
+     *
+     * @param type The operation type.
+     * @return histogram with latencies in microseconds.
+     */
+    public synchronized Histogram getTotalHistogram(LatencyType type) {
+        return _totalHistograms[type.ordinal()].copy();
+    }
+
+    /**
+     * Drain the values recorded since the last call from all recorders, add them to the totals and to the pending
+     * values for every sampler.
+     */
+    private synchronized void drainRecorders() {
+        for (LatencyType type : LatencyType.values()) {
+            Histogram drained = _drainedHistograms[type.ordinal()];
+            drained.reset();
+            for (LatencyRecorder recorder : _recorders) {
+                recorder.addIntervalValues(type, drained);
+            }
+            _totalHistograms[type.ordinal()].add(drained);
+            for (IntervalSampler sampler : _samplers) {
+                sampler._pendingHistograms[type.ordinal()].add(drained);
+            }
+        }
+    }
+
+    private static Histogram[] createHistograms() {
+        LatencyType[] types = LatencyType.values();
+        Histogram[] histograms = new Histogram[types.length];
+        for (int i = 0; i < types.length; i++) {
+            histograms[i] = new Histogram(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS);
+        }
+        return histograms;
+    }
+
+    /**
+     * A sampler keeps the interval histograms for one reporter.
+     */
+    public class IntervalSampler {
+        private final Histogram[] _pendingHistograms = createHistograms();
+        private final Histogram[] _intervalHistograms = createHistograms();
+
+        private IntervalSampler() {
+        }
+
+        /**
+         * Collect the values recorded since the last call into new interval histograms. Only one thread may call this
+         * method for a given sampler.
+         */
+        public void sampleInterval() {
+            synchronized (LatencyStatistics.this) {
+                drainRecorders();
+                for (LatencyType type : LatencyType.values()) {
+                    Histogram interval = _intervalHistograms[type.ordinal()];
+                    Histogram pending = _pendingHistograms[type.ordinal()];
+                    interval.reset();
+                    interval.add(pending);
+                    pending.reset();
+                }
+            }
+        }
+
+        /**
+         * Get a copy of the histogram for the last sampled interval.
+         *
+         * @param type The operation type.
+         * @return histogram with latencies in microseconds.
+         */
+        public Histogram getIntervalHistogram(LatencyType type) {
+            synchronized (LatencyStatistics.this) {
+                return _intervalHistograms[type.ordinal()].copy();
+            }
+        }
+    }
+}
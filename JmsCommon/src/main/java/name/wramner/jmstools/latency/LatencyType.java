@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.latency;
+
+/**
+ * The operations that can be timed by the workers.
+ *
+ * @author Erik Wramner
+ */
+public enum LatencyType {
+    SEND("send"), RECEIVE("receive"), COMMIT("commit"), CONNECT("connect");
+
+    private final String _displayName;
+
+    private LatencyType(String displayName) {
+        _displayName = displayName;
+    }
+
+    /**
+     * Get the name to use in logs.
+     *
+     * @return display name.
+     */
+    public String getDisplayName() {
+        return _displayName;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer for compact binary logs. All numbers are big-endian. The file starts with the magic number "JMTL" as four
+ * ASCII bytes, a short with the format version and a short with the number of columns. Each column is described by a
+ * type code byte and its name as a short length followed by UTF-8 bytes. The entries follow, each with the state as an
+ * ASCII byte, the commit time as a long and then the fields:
+ * <ul>
+ * <li>TIMESTAMP: long with milliseconds since the epoch.</li>
+ * <li>INT: int, {@link Integer#MIN_VALUE} for null.</li>
+ * <li>STRING: unsigned short length followed by UTF-8 bytes, 0xFFFF for null.</li>
+ * <li>ID: a kind byte, 0 for null, 1 for a canonical UUID stored as two longs and 2 for a string as above.</li>
+ * </ul>
+ *
+ * @author Erik Wramner
+ */
+public class BinaryMessageLogWriter extends MessageLogWriter {
+    /**
+     * The magic number that starts every binary log, "JMTL" in ASCII.
+     */
+    public static final int MAGIC_NUMBER = 0x4A4D544C;
+    /**
+     * The current format version.
+     */
+    public static final short FORMAT_VERSION = 1;
+    /**
+     * Id kind for null.
+     */
+    public static final byte ID_KIND_NULL = 0;
+    /**
+     * Id kind for 128-bit ids stored as two longs.
+     */
+    public static final byte ID_KIND_128_BIT = 1;
+    /**
+     * Id kind for string ids.
+     */
+    public static final byte ID_KIND_STRING = 2;
+    /**
+     * Length used for null strings.
+     */
+    public static final int NULL_STRING_LENGTH = 0xFFFF;
+    private static final int UUID_LENGTH = 36;
+    private MessageLogColumnType[] _columnTypes = new MessageLogColumnType[0];
+    private int _fieldIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param output The output for the encoded records.
+     */
+    public BinaryMessageLogWriter(MessageLogOutput output) {
+        super(output);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeHeader(MessageLogColumn... columns) throws IOException {
+        _columnTypes = new MessageLogColumnType[columns.length];
+        ensurePendingCapacity(8);
+        putInt(MAGIC_NUMBER);
+        putShort(FORMAT_VERSION);
+        putShort(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            _columnTypes[i] = columns[i].getType();
+            byte[] name = columns[i].getName().getBytes(StandardCharsets.UTF_8);
+            ensurePendingCapacity(3 + name.length);
+            _pending[_pendingLength++] = columns[i].getType().getCode();
+            putShort(name.length);
+            System.arraycopy(name, 0, _pending, _pendingLength, name.length);
+            _pendingLength += name.length;
+        }
+        byte[] header = new byte[_pendingLength];
+        System.arraycopy(_pending, 0, header, 0, _pendingLength);
+        _pendingLength = 0;
+        writeDirect(header);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addTimestamp(long timeMillis) {
+        _fieldIndex++;
+        ensurePendingCapacity(8);
+        putLong(timeMillis);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addInt(int value) {
+        _fieldIndex++;
+        ensurePendingCapacity(4);
+        putInt(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addId(String id) {
+        ensurePendingCapacity(17);
+        if (id == null) {
+            _pending[_pendingLength++] = ID_KIND_NULL;
+        } else if (!putUuid(id)) {
+            int kindPosition = _pendingLength++;
+            _pending[kindPosition] = ID_KIND_STRING;
+            try {
+                putString(id);
+            } catch (IllegalArgumentException e) {
+                _pendingLength = kindPosition;
+                throw e;
+            }
+        }
+        _fieldIndex++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addString(String value) {
+        putString(value);
+        _fieldIndex++;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNull() {
+        MessageLogColumnType type = _fieldIndex < _columnTypes.length ? _columnTypes[_fieldIndex]
+                        : MessageLogColumnType.STRING;
+        switch (type) {
+        case TIMESTAMP:
+            throw new IllegalStateException("Timestamps can't be null");
+        case INT:
+            addInt(Integer.MIN_VALUE);
+            break;
+        case ID:
+            addId(null);
+            break;
+        default:
+            addString(null);
+            break;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endEntry() {
+        _fieldIndex = 0;
+        super.endEntry();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int encodePrefix(char state, long commitTimeMillis, byte[] target) {
+        target[0] = (byte) state;
+        for (int i = 0; i < 8; i++) {
+            target[1 + i] = (byte) (commitTimeMillis >>> (56 - 8 * i));
+        }
+        return 9;
+    }
+
+    private boolean putUuid(String id) {
+        if (id.length() != UUID_LENGTH) {
+            return false;
+        }
+        long high = 0L;
+        long low = 0L;
+        int nibbles = 0;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+                continue;
+            }
+            int value;
+            if (c >= '0' && c <= '9') {
+                value = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                value = c - 'a' + 10;
+            } else {
+                // Upper case would not survive a round trip, store as string
+                return false;
+            }
+            if (nibbles++ < 16) {
+                high = (high << 4) | value;
+            } else {
+                low = (low << 4) | value;
+            }
+        }
+        _pending[_pendingLength++] = ID_KIND_128_BIT;
+        putLong(high);
+        putLong(low);
+        return true;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensurePendingCapacity(2);
+            putShort(NULL_STRING_LENGTH);
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                // Rare, fall back to the charset for the whole value
+                putStringBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        // Validate before writing, a failed field must not leave bytes behind
+        checkStringLength(length);
+        ensurePendingCapacity(2 + length);
+        putShort(length);
+        for (int i = 0; i < length; i++) {
+            _pending[_pendingLength++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void putStringBytes(byte[] bytes) {
+        checkStringLength(bytes.length);
+        ensurePendingCapacity(2 + bytes.length);
+        putShort(bytes.length);
+        System.arraycopy(bytes, 0, _pending, _pendingLength, bytes.length);
+        _pendingLength += bytes.length;
+    }
+
+    private void checkStringLength(int length) {
+        if (length >= NULL_STRING_LENGTH) {
+            throw new IllegalArgumentException("String with " + length + " bytes too long for binary message log");
+        }
+    }
+
+    private void putShort(int value) {
+        _pending[_pendingLength++] = (byte) (value >>> 8);
+        _pending[_pendingLength++] = (byte) value;
+    }
+
+    private void putInt(int value) {
+        _pending[_pendingLength++] = (byte) (value >>> 24);
+        _pending[_pendingLength++] = (byte) (value >>> 16);
+        _pending[_pendingLength++] = (byte) (value >>> 8);
+        _pending[_pendingLength++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+/**
+ * A column in the message log.
+ *
+ * @author Erik Wramner
+ */
+public class MessageLogColumn {
+    private final String _name;
+    private final MessageLogColumnType _type;
+
+    /**
+     * Constructor.
+     *
+     * @param name The column name.
+     * @param type The value type.
+     */
+    public MessageLogColumn(String name, MessageLogColumnType type) {
+        _name = name;
+        _type = type;
+    }
+
+    /**
+     * Get the column name.
+     *
+     * @return name.
+     */
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Get the column type.
+     *
+     * @return type.
+     */
+    public MessageLogColumnType getType() {
+        return _type;
+    }
+}
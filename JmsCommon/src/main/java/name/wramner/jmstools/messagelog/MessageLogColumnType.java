@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+/**
+ * The value types for message log columns. The codes are stored in binary message logs.
+ *
+ * @author Erik Wramner
+ */
+public enum MessageLogColumnType {
+    /**
+     * Time in milliseconds since the epoch.
+     */
+    TIMESTAMP(1),
+    /**
+     * Application message id, stored as 128 bits when it is a canonical UUID and as a string otherwise.
+     */
+    ID(2),
+    /**
+     * Any string.
+     */
+    STRING(3),
+    /**
+     * An integer.
+     */
+    INT(4);
+
+    private final byte _code;
+
+    private MessageLogColumnType(int code) {
+        _code = (byte) code;
+    }
+
+    /**
+     * Get the code used in binary logs.
+     *
+     * @return code.
+     */
+    public byte getCode() {
+        return _code;
+    }
+
+    /**
+     * Get the type for a code in a binary log.
+     *
+     * @param code The code.
+     * @return type or null if unknown.
+     */
+    public static MessageLogColumnType forCode(byte code) {
+        for (MessageLogColumnType type : values()) {
+            if (type._code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
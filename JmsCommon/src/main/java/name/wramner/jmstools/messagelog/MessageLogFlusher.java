@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The message log flusher drains {@link RingBufferMessageLogOutput} instances to their files in a background thread,
+ * moving file I/O off the worker threads. The daemon thread is started when an output is created and there is no
+ * running thread. It exits when all outputs have been closed and drained. If the thread fails, the failure is
+ * recorded in all outputs, so that their writers get it.
+ *
+ * @author Erik Wramner
+ */
+public class MessageLogFlusher implements Runnable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final List<RingBufferMessageLogOutput> _outputs = new CopyOnWriteArrayList<>();
+    private final ReentrantLock _lifeCycleLock = new ReentrantLock();
+    private final int _bufferCapacity;
+    private boolean _running;
+
+    /**
+     * Constructor.
+     *
+     * @param bufferCapacity The buffer size for each output in bytes, must be a power of two.
+     */
+    public MessageLogFlusher(int bufferCapacity) {
+        _bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * Create an asynchronous output for a log file.
+     *
+     * @param file The log file.
+     * @return output.
+     * @throws IOException on failure to open the file.
+     */
+    public MessageLogOutput createOutput(File file) throws IOException {
+        RingBufferMessageLogOutput output = new RingBufferMessageLogOutput(FileChannel.open(file.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                        _bufferCapacity);
+        register(output);
+        return output;
+    }
+
+    /**
+     * Add an output to drain, starting the flusher thread unless it is running.
+     *
+     * @param output The output.
+     */
+    void register(RingBufferMessageLogOutput output) {
+        _lifeCycleLock.lock();
+        try {
+            _outputs.add(output);
+            if (!_running) {
+                Thread thread = new Thread(this, "MessageLogFlusher");
+                thread.setDaemon(true);
+                thread.start();
+                _running = true;
+            }
+        } finally {
+            _lifeCycleLock.unlock();
+        }
+    }
+
+    /**
+     * Check if the flusher thread is running.
+     *
+     * @return true if running.
+     */
+    boolean isRunning() {
+        _lifeCycleLock.lock();
+        try {
+            return _running;
+        } finally {
+            _lifeCycleLock.unlock();
+        }
+    }
+
+    /**
+     * Drain the outputs until all of them have been closed, close the outputs that are done.
+     */
+    @Override
+    public void run() {
+        _logger.debug("Message log flusher started...");
+        try {
+            while (true) {
+                int bytesWritten = 0;
+                for (RingBufferMessageLogOutput output : _outputs) {
+                    bytesWritten += output.drain();
+                    if (output.isDone()) {
+                        // Writer is waiting, make sure everything is out
+                        while (output.drain() > 0) {
+                            // Keep draining
+                        }
+                        output.closeChannel();
+                        _outputs.remove(output);
+                    }
+                }
+                if (_outputs.isEmpty() && stopIfIdle()) {
+                    _logger.debug("Message log flusher stopped");
+                    return;
+                }
+                if (bytesWritten == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            _logger.error("Message log flusher failed!", e);
+            failOutputs(e);
+        }
+    }
+
+    private boolean stopIfIdle() {
+        _lifeCycleLock.lock();
+        try {
+            if (_outputs.isEmpty()) {
+                _running = false;
+                return true;
+            }
+            return false;
+        } finally {
+            _lifeCycleLock.unlock();
+        }
+    }
+
+    private void failOutputs(Throwable failure) {
+        _lifeCycleLock.lock();
+        try {
+            _running = false;
+            for (RingBufferMessageLogOutput output : _outputs) {
+                output.fail(failure);
+                _outputs.remove(output);
+            }
+        } finally {
+            _lifeCycleLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+/**
+ * The supported message log file formats.
+ *
+ * @author Erik Wramner
+ */
+public enum MessageLogFormat {
+    /**
+     * Tab-separated text, easy to read and process with standard tools.
+     */
+    TEXT(".log") {
+        @Override
+        public MessageLogWriter createWriter(MessageLogOutput output) {
+            return new TextMessageLogWriter(output);
+        }
+    },
+    /**
+     * Compact binary format, faster to write and to import.
+     */
+    BINARY(".bin") {
+        @Override
+        public MessageLogWriter createWriter(MessageLogOutput output) {
+            return new BinaryMessageLogWriter(output);
+        }
+    };
+
+    private final String _fileSuffix;
+
+    private MessageLogFormat(String fileSuffix) {
+        _fileSuffix = fileSuffix;
+    }
+
+    /**
+     * Get the suffix for log files in this format.
+     *
+     * @return file suffix.
+     */
+    public String getFileSuffix() {
+        return _fileSuffix;
+    }
+
+    /**
+     * Create a writer for this format.
+     *
+     * @param output The output.
+     * @return writer.
+     */
+    public abstract MessageLogWriter createWriter(MessageLogOutput output);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination for encoded message log records.
+ *
+ * @author Erik Wramner
+ */
+public interface MessageLogOutput extends Closeable {
+
+    /**
+     * Write encoded data. The data is copied before the method returns, so the caller may reuse the array.
+     *
+     * @param data The data.
+     * @param offset The offset of the first byte to write.
+     * @param length The number of bytes to write.
+     * @throws IOException on write errors.
+     */
+    void write(byte[] data, int offset, int length) throws IOException;
+}
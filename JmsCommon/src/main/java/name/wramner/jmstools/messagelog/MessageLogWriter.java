@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The message log writer encodes log entries for consumed or produced messages. Entries are kept as encoded bytes
+ * until the outcome of the transaction is known, then they are written with the state (C for committed, R for rolled
+ * back and ? for in doubt) and the commit time. The encoding avoids creating strings and string builders, so the
+ * garbage generated per message is minimal. Subclasses define the format. A writer is used by a single thread.
+ *
+ * @author Erik Wramner
+ */
+public abstract class MessageLogWriter implements Closeable {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int MAX_PREFIX_LENGTH = 32;
+    private final MessageLogOutput _output;
+    private final byte[] _prefix = new byte[MAX_PREFIX_LENGTH];
+    private int[] _entryEnds = new int[64];
+    private int _entryCount;
+    private byte[] _outputBuffer = new byte[INITIAL_BUFFER_SIZE];
+    private int _outputLength;
+    protected byte[] _pending = new byte[INITIAL_BUFFER_SIZE];
+    protected int _pendingLength;
+
+    /**
+     * Constructor.
+     *
+     * @param output The output for the encoded records.
+     */
+    protected MessageLogWriter(MessageLogOutput output) {
+        _output = output;
+    }
+
+    /**
+     * Write the file header.
+     *
+     * @param columns The columns for the fields in the entries, excluding state and commit time.
+     * @throws IOException on write errors.
+     */
+    public abstract void writeHeader(MessageLogColumn... columns) throws IOException;
+
+    /**
+     * Add a time field to the current entry.
+     *
+     * @param timeMillis The time in milliseconds since the epoch.
+     */
+    public abstract void addTimestamp(long timeMillis);
+
+    /**
+     * Add an application message id field to the current entry.
+     *
+     * @param id The id, null for an empty field.
+     */
+    public abstract void addId(String id);
+
+    /**
+     * Add a string field to the current entry.
+     *
+     * @param value The value, null for an empty field.
+     */
+    public abstract void addString(String value);
+
+    /**
+     * Add an integer field to the current entry.
+     *
+     * @param value The value.
+     */
+    public abstract void addInt(int value);
+
+    /**
+     * Add an empty field to the current entry.
+     */
+    public abstract void addNull();
+
+    /**
+     * End the current entry. It is pending until the outcome is known.
+     */
+    public void endEntry() {
+        if (_entryCount == _entryEnds.length) {
+            _entryEnds = Arrays.copyOf(_entryEnds, _entryEnds.length * 2);
+        }
+        _entryEnds[_entryCount++] = _pendingLength;
+    }
+
+    /**
+     * End the current entry and write it at once with the given state and the current time as commit time. Other
+     * pending entries remain pending. This is used when the outcome for a single message is known, for example when
+     * an asynchronous send fails.
+     *
+     * @param state The state, C for committed, R for rolled back and ? for in doubt.
+     * @throws IOException on write errors.
+     */
+    public void writeEntry(char state) throws IOException {
+        endEntry();
+        _entryCount--;
+        int entryStart = _entryCount > 0 ? _entryEnds[_entryCount - 1] : 0;
+        int entryLength = _pendingLength - entryStart;
+        int prefixLength = encodePrefix(state, System.currentTimeMillis(), _prefix);
+        ensureOutputCapacity(prefixLength + entryLength);
+        System.arraycopy(_prefix, 0, _outputBuffer, 0, prefixLength);
+        System.arraycopy(_pending, entryStart, _outputBuffer, prefixLength, entryLength);
+        _pendingLength = entryStart;
+        try {
+            _output.write(_outputBuffer, 0, prefixLength + entryLength);
+        } finally {
+            _outputLength = 0;
+        }
+    }
+
+    /**
+     * Check if there are pending entries.
+     *
+     * @return true if there is at least one pending entry.
+     */
+    public boolean hasPendingEntries() {
+        return _entryCount > 0;
+    }
+
+    /**
+     * Write all pending entries with the given state and the current time as commit time.
+     *
+     * @param state The state, C for committed, R for rolled back and ? for in doubt.
+     * @throws IOException on write errors.
+     */
+    public void writePendingEntries(char state) throws IOException {
+        if (_entryCount == 0) {
+            return;
+        }
+        int prefixLength = encodePrefix(state, System.currentTimeMillis(), _prefix);
+        ensureOutputCapacity(_pendingLength + _entryCount * prefixLength);
+        int entryStart = 0;
+        for (int i = 0; i < _entryCount; i++) {
+            int entryEnd = _entryEnds[i];
+            System.arraycopy(_prefix, 0, _outputBuffer, _outputLength, prefixLength);
+            _outputLength += prefixLength;
+            System.arraycopy(_pending, entryStart, _outputBuffer, _outputLength, entryEnd - entryStart);
+            _outputLength += entryEnd - entryStart;
+            entryStart = entryEnd;
+        }
+        _entryCount = 0;
+        _pendingLength = 0;
+        try {
+            _output.write(_outputBuffer, 0, _outputLength);
+        } finally {
+            _outputLength = 0;
+        }
+    }
+
+    /**
+     * Close the output. Pending entries are discarded, so they should be written first.
+     *
+     * @throws IOException on errors.
+     */
+    @Override
+    public void close() throws IOException {
+        _output.close();
+    }
+
+    /**
+     * Encode the state and commit time that start every entry.
+     *
+     * @param state The state.
+     * @param commitTimeMillis The commit time.
+     * @param target The target array, large enough for any prefix.
+     * @return number of bytes used.
+     */
+    protected abstract int encodePrefix(char state, long commitTimeMillis, byte[] target);
+
+    /**
+     * Write data directly to the output, for headers.
+     *
+     * @param data The data.
+     * @throws IOException on write errors.
+     */
+    protected void writeDirect(byte[] data) throws IOException {
+        _output.write(data, 0, data.length);
+    }
+
+    /**
+     * Make room for more bytes in the pending buffer.
+     *
+     * @param additionalBytes The number of bytes that will be added.
+     */
+    protected void ensurePendingCapacity(int additionalBytes) {
+        if (_pendingLength + additionalBytes > _pending.length) {
+            _pending = Arrays.copyOf(_pending, Math.max(_pending.length * 2, _pendingLength + additionalBytes));
+        }
+    }
+
+    private void ensureOutputCapacity(int bytes) {
+        if (bytes > _outputBuffer.length) {
+            _outputBuffer = Arrays.copyOf(_outputBuffer, Math.max(_outputBuffer.length * 2, bytes));
+        }
+    }
+}
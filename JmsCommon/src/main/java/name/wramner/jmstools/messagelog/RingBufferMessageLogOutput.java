@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous message log output. The owning worker thread copies encoded records into a ring buffer and returns
+ * immediately, the {@link MessageLogFlusher} drains the buffer to a file channel in the background. There must be
+ * exactly one writing thread. If the buffer is full the writer waits for the flusher to catch up, so nothing is lost.
+ * If the flusher fails the writer gets the failure, and closing gives up after a while rather than hang.
+ *
+ * @author Erik Wramner
+ */
+public class RingBufferMessageLogOutput implements MessageLogOutput {
+    private static final long FULL_BUFFER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+    private static final long CLOSE_TIMEOUT_SECONDS = 60L;
+    private final byte[] _buffer;
+    private final int _mask;
+    private final AtomicLong _writePosition = new AtomicLong();
+    private final AtomicLong _readPosition = new AtomicLong();
+    private final FileChannel _channel;
+    private final ByteBuffer _channelBuffer;
+    private final CountDownLatch _closedLatch = new CountDownLatch(1);
+    private volatile boolean _closeRequested;
+    private volatile IOException _failure;
+
+    /**
+     * Constructor.
+     *
+     * @param channel The file channel, closed by the flusher.
+     * @param capacity The buffer capacity, must be a power of two.
+     */
+    RingBufferMessageLogOutput(FileChannel channel, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        _buffer = new byte[capacity];
+        _mask = capacity - 1;
+        _channel = channel;
+        _channelBuffer = ByteBuffer.wrap(_buffer);
+    }
+
+    /**
+     * Copy the data to the ring buffer, waiting for space if needed.
+     *
+     * @param data The data.
+     * @param offset The offset of the first byte to write.
+     * @param length The number of bytes to write.
+     * @throws IOException if the flusher has failed to write to the file.
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        int remaining = length;
+        int sourceOffset = offset;
+        while (remaining > 0) {
+            checkFailure();
+            long writePosition = _writePosition.get();
+            int free = _buffer.length - (int) (writePosition - _readPosition.get());
+            if (free == 0) {
+                LockSupport.parkNanos(FULL_BUFFER_PARK_NANOS);
+                continue;
+            }
+            int index = (int) writePosition & _mask;
+            int chunk = Math.min(Math.min(remaining, free), _buffer.length - index);
+            System.arraycopy(data, sourceOffset, _buffer, index, chunk);
+            _writePosition.lazySet(writePosition + chunk);
+            sourceOffset += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * Wait for the flusher to write all remaining data and close the file.
+     *
+     * @throws IOException if the flusher has failed to write to the file or has not finished in time.
+     */
+    @Override
+    public void close() throws IOException {
+        _closeRequested = true;
+        try {
+            if (!_closedLatch.await(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                checkFailure();
+                throw new IOException("Timed out waiting for message log to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for message log to be written", e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Write available data to the file. Called by the flusher thread only.
+     *
+     * @return number of bytes written.
+     */
+    int drain() {
+        long readPosition = _readPosition.get();
+        int available = (int) (_writePosition.get() - readPosition);
+        if (available == 0 || _failure != null) {
+            return 0;
+        }
+        int index = (int) readPosition & _mask;
+        int chunk = Math.min(available, _buffer.length - index);
+        try {
+            _channelBuffer.limit(index + chunk);
+            _channelBuffer.position(index);
+            while (_channelBuffer.hasRemaining()) {
+                _channel.write(_channelBuffer);
+            }
+        } catch (IOException e) {
+            _failure = e;
+        }
+        _readPosition.lazySet(readPosition + chunk);
+        return chunk;
+    }
+
+    /**
+     * Check if the writer has closed the output and all data has been drained. Called by the flusher thread only.
+     *
+     * @return true if done.
+     */
+    boolean isDone() {
+        return _closeRequested && (_failure != null || _writePosition.get() == _readPosition.get());
+    }
+
+    /**
+     * Close the file and release the writer. Called by the flusher thread only.
+     */
+    void closeChannel() {
+        try {
+            _channel.close();
+        } catch (IOException e) {
+            if (_failure == null) {
+                _failure = e;
+            }
+        } finally {
+            _closedLatch.countDown();
+        }
+    }
+
+    /**
+     * Record a failure in the flusher thread, close the file and release the writer. Called by the flusher thread only.
+     *
+     * @param failure The failure.
+     */
+    void fail(Throwable failure) {
+        if (_failure == null) {
+            _failure = new IOException("Message log flusher failed", failure);
+        }
+        closeChannel();
+    }
+
+    private void checkFailure() throws IOException {
+        IOException failure = _failure;
+        if (failure != null) {
+            throw new IOException("Failed to write message log", failure);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Synchronous message log output that writes to a buffered stream in the calling thread.
+ *
+ * @author Erik Wramner
+ */
+public class StreamMessageLogOutput implements MessageLogOutput {
+    private final OutputStream _os;
+
+    /**
+     * Constructor.
+     *
+     * @param file The log file.
+     * @throws IOException on failure to open the file.
+     */
+    public StreamMessageLogOutput(File file) throws IOException {
+        _os = new BufferedOutputStream(new FileOutputStream(file));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        _os.write(data, offset, length);
+    }
+
+    /**
+     * Flush and close the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            _os.flush();
+        } finally {
+            _os.close();
+        }
+    }
+}
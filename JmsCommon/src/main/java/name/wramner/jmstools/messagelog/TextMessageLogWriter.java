@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Writer for tab-separated text logs. Each entry is a line with the state, the commit time and the fields. The first
+ * line holds the column names.
+ *
+ * @author Erik Wramner
+ */
+public class TextMessageLogWriter extends MessageLogWriter {
+    private static final int MAX_LONG_DIGITS = 20;
+    private static final byte FIELD_SEPARATOR = '\t';
+    private static final byte LINE_SEPARATOR = '\n';
+    private final Charset _charset = Charset.defaultCharset();
+    private final byte[] _digits = new byte[MAX_LONG_DIGITS];
+
+    /**
+     * Constructor.
+     *
+     * @param output The output for the encoded records.
+     */
+    public TextMessageLogWriter(MessageLogOutput output) {
+        super(output);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeHeader(MessageLogColumn... columns) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("State");
+        sb.append('\t');
+        sb.append("CommitTime");
+        for (MessageLogColumn column : columns) {
+            sb.append('\t');
+            sb.append(column.getName());
+        }
+        sb.append('\n');
+        writeDirect(sb.toString().getBytes(_charset));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addTimestamp(long timeMillis) {
+        ensurePendingCapacity(MAX_LONG_DIGITS + 1);
+        _pending[_pendingLength++] = FIELD_SEPARATOR;
+        _pendingLength = encodeLong(timeMillis, _pending, _pendingLength);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addInt(int value) {
+        ensurePendingCapacity(MAX_LONG_DIGITS + 1);
+        _pending[_pendingLength++] = FIELD_SEPARATOR;
+        _pendingLength = encodeLong(value, _pending, _pendingLength);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addId(String id) {
+        addString(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addString(String value) {
+        if (value == null) {
+            addNull();
+            return;
+        }
+        int length = value.length();
+        ensurePendingCapacity(length + 1);
+        _pending[_pendingLength++] = FIELD_SEPARATOR;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // Rare, fall back to the charset for the whole value
+                _pendingLength -= i;
+                byte[] bytes = value.getBytes(_charset);
+                ensurePendingCapacity(bytes.length);
+                System.arraycopy(bytes, 0, _pending, _pendingLength, bytes.length);
+                _pendingLength += bytes.length;
+                return;
+            }
+            _pending[_pendingLength++] = (byte) c;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNull() {
+        ensurePendingCapacity(1);
+        _pending[_pendingLength++] = FIELD_SEPARATOR;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void endEntry() {
+        ensurePendingCapacity(1);
+        _pending[_pendingLength++] = LINE_SEPARATOR;
+        super.endEntry();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int encodePrefix(char state, long commitTimeMillis, byte[] target) {
+        target[0] = (byte) state;
+        target[1] = FIELD_SEPARATOR;
+        return encodeLong(commitTimeMillis, target, 2);
+    }
+
+    private int encodeLong(long value, byte[] target, int offset) {
+        if (value == Long.MIN_VALUE) {
+            byte[] bytes = Long.toString(value).getBytes(_charset);
+            System.arraycopy(bytes, 0, target, offset, bytes.length);
+            return offset + bytes.length;
+        }
+        int position = offset;
+        long remaining = value;
+        if (remaining < 0L) {
+            target[position++] = '-';
+            remaining = -remaining;
+        }
+        int digitCount = 0;
+        do {
+            _digits[digitCount++] = (byte) ('0' + (remaining % 10L));
+            remaining /= 10L;
+        } while (remaining > 0L);
+        while (digitCount > 0) {
+            target[position++] = _digits[--digitCount];
+        }
+        return position;
+    }
+}
@@ -18,6 +18,8 @@ package name.wramner.jmstools.messages;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
@@ -30,16 +32,23 @@ import java.util.Properties;
 import java.util.Random;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.Session;
 
+import name.wramner.jmstools.messages.PreparedMessageStream.PreparedMessage;
+import name.wramner.jmstools.stopcontroller.StopController;
+
 /**
  * A message provider initializes messages that can be sent. Messages can be read from a file/directory or generated
  * randomly. When messages are read from the file system, prepared JMS headers may be read as well. A file that ends
  * with &quot;.payload&quot; is assumed to correspond to a file with the same base name and the suffix
- * &quot;.headers&quot;.
+ * &quot;.headers&quot;. Large sets of prepared messages can be packed into a {@link MappedMessageCorpus} in order to
+ * keep the payloads off the heap, or streamed from a directory tree or archive by a background reader when they do
+ * not fit at all.
  *
  * @author Erik Wramner
  *
@@ -55,6 +64,9 @@ public abstract class BaseMessageProvider<T extends ChecksummedMessageData> impl
     private final AtomicInteger _messageIndex = new AtomicInteger(0);
     private final Double _outlierPercentage;
     private final int _outlierSize;
+    private final MappedMessageCorpus _corpus;
+    private final PreparedMessageStream<T> _stream;
+    private final AtomicReferenceArray<MessagePropertySet> _propertySets;
 
     /**
      * Constructor for single message.
@@ -71,6 +83,9 @@ public abstract class BaseMessageProvider<T extends ChecksummedMessageData> impl
         _noDuplicates = noDuplicates;
         _outlierPercentage = null;
         _outlierSize = 0;
+        _corpus = null;
+        _stream = null;
+        _propertySets = new AtomicReferenceArray<>(1);
     }
 
     /**
@@ -101,6 +116,57 @@ public abstract class BaseMessageProvider<T extends ChecksummedMessageData> impl
         _outlierPercentage = null;
         _outlierSize = 0;
         _noDuplicates = noDuplicates;
+        _corpus = null;
+        _stream = null;
+        _propertySets = new AtomicReferenceArray<>(_messageDataList.size());
+    }
+
+    /**
+     * Constructor for prepared messages streamed from a directory tree or a zip or tar archive by a background thread.
+     * Only the read-ahead window is kept in memory. Unordered messages are picked randomly within that window.
+     *
+     * @param source The file, directory tree or archive.
+     * @param encoding The character encoding.
+     * @param commonHeaders The JMS headers to use for all messages.
+     * @param ordered The flag to send messages in order or randomly.
+     * @param noDuplicates The flag to stop rather than reading the source again.
+     * @param readAheadMessages The maximum number of messages to read ahead.
+     */
+    protected BaseMessageProvider(File source, String encoding, Map<String, String> commonHeaders, boolean ordered,
+                    boolean noDuplicates, int readAheadMessages) {
+        Charset charset = Charset.forName(encoding);
+        _stream = new PreparedMessageStream<>(source, bytes -> createMessageData(bytes, charset), ordered,
+                        noDuplicates, readAheadMessages);
+        _commonHeaders = commonHeaders;
+        _ordered = ordered;
+        _outlierPercentage = null;
+        _outlierSize = 0;
+        _noDuplicates = noDuplicates;
+        _corpus = null;
+        _propertySets = null;
+    }
+
+    /**
+     * Constructor for prepared messages in a memory-mapped corpus.
+     *
+     * @param corpus The corpus.
+     * @param commonHeaders The JMS headers to use for all messages.
+     * @param ordered The flag to send messages in order or randomly.
+     * @param noDuplicates The flag to stop rather than returning the same message twice.
+     */
+    protected BaseMessageProvider(MappedMessageCorpus corpus, Map<String, String> commonHeaders, boolean ordered,
+                    boolean noDuplicates) {
+        if (corpus.size() == 0) {
+            throw new IllegalArgumentException("The message corpus is empty");
+        }
+        _corpus = corpus;
+        _commonHeaders = commonHeaders;
+        _ordered = ordered;
+        _outlierPercentage = null;
+        _outlierSize = 0;
+        _noDuplicates = noDuplicates;
+        _stream = null;
+        _propertySets = new AtomicReferenceArray<>(corpus.size());
     }
 
     /**
@@ -135,6 +201,9 @@ public abstract class BaseMessageProvider<T extends ChecksummedMessageData> impl
         _outlierPercentage = outlierPercentage;
         _outlierSize = outlierSize;
         _noDuplicates = false;
+        _corpus = null;
+        _stream = null;
+        _propertySets = new AtomicReferenceArray<>(numberOfMessages);
     }
 
     /**
@@ -163,33 +232,120 @@ public abstract class BaseMessageProvider<T extends ChecksummedMessageData> impl
      */
     protected abstract Message createMessageWithPayload(Session session, T messageData) throws JMSException;
 
+    /**
+     * Create a JMS message for the specified session with a payload from a memory-mapped corpus.
+     *
+     * @param session The session.
+     * @param payload The payload, UTF-8 encoded for text messages.
+     * @return message.
+     * @throws JMSException on errors.
+     */
+    protected abstract Message createMessageWithPayload(Session session, ByteBuffer payload) throws JMSException;
+
     /**
      * Create a JMS message for the specified session with a prepared payload and possibly prepared JMS properties
-     * and/or checksum and length properties..
+     * and/or checksum and length properties. Messages with payloads kept on the heap get properties prepared once per
+     * payload and may be reused from the message cache. Corpus messages get properties prepared once per payload as
+     * well, but they are always new messages, as are outliers and streamed messages.
      *
      * @param session The session.
-     * @param addIntegrityProperties The flag to add integrity properties.
+     * @param checksumAlgorithm The checksum algorithm for integrity properties or null.
+     * @param payloadLengthListener Listener for the payload length.
+     * @param messageCache The message cache or null.
      * @return message.
      * @throws JMSException on errors.
      */
     @Override
-    public Message createMessageWithPayloadAndProperties(Session session, boolean addIntegrityProperties)
-                    throws JMSException {
+    public Message createMessageWithPayloadAndProperties(Session session, ChecksumAlgorithm checksumAlgorithm,
+                    IntConsumer payloadLengthListener, MessageCache messageCache) throws JMSException {
+        if (_corpus != null) {
+            int index = getNextMessageDataIndex();
+            if (index < 0) {
+                return null;
+            }
+            MappedMessageData messageData = _corpus.getMessageData(index);
+            Message msg = createMessageWithPayload(session, messageData.getPayload());
+            getPropertySet(index, _corpus.getHeaders(index), messageData, checksumAlgorithm).applyTo(msg);
+            payloadLengthListener.accept(messageData.getLength());
+            return msg;
+        }
         T messageData;
         Map<String, String> headers;
         if (_outlierPercentage != null && _random.nextDouble() < (_outlierPercentage.doubleValue() / 100.0)) {
             messageData = createRandomMessageData(_outlierSize);
             headers = Collections.emptyMap();
+        } else if (_stream != null) {
+            PreparedMessage<T> preparedMessage = _stream.take();
+            if (preparedMessage == null) {
+                // No duplicates and the whole source has been read once
+                return null;
+            }
+            messageData = preparedMessage.getMessageData();
+            headers = preparedMessage.getHeaders();
         } else {
             int index = getNextMessageDataIndex();
             if (index < 0) {
                 // No duplicates and all messages returned once
                 return null;
             }
-            messageData = _messageDataList.get(index);
-            headers = _messageHeaderList.get(index);
+            return createMessageWithPreparedProperties(session, index, checksumAlgorithm, payloadLengthListener,
+                            messageCache);
         }
         Message msg = createMessageWithPayload(session, messageData);
+        addProperties(msg, headers, messageData, checksumAlgorithm, payloadLengthListener);
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isExhausted() {
+        return _stream != null && _stream.isExhausted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setStopController(StopController stopController) {
+        if (_stream != null) {
+            _stream.setStopController(stopController);
+        }
+    }
+
+    private Message createMessageWithPreparedProperties(Session session, int index,
+                    ChecksumAlgorithm checksumAlgorithm, IntConsumer payloadLengthListener, MessageCache messageCache)
+                    throws JMSException {
+        T messageData = _messageDataList.get(index);
+        MessagePropertySet propertySet = getPropertySet(index, _messageHeaderList.get(index), messageData,
+                        checksumAlgorithm);
+        Message msg = messageCache != null ? messageCache.get(session, index) : null;
+        if (msg != null) {
+            msg.clearProperties();
+        } else {
+            msg = createMessageWithPayload(session, messageData);
+            if (messageCache != null) {
+                messageCache.put(index, msg);
+            }
+        }
+        propertySet.applyTo(msg);
+        payloadLengthListener.accept(messageData.getLength());
+        return msg;
+    }
+
+    private MessagePropertySet getPropertySet(int index, Map<String, String> headers,
+                    ChecksummedMessageData messageData, ChecksumAlgorithm checksumAlgorithm) {
+        MessagePropertySet propertySet = _propertySets.get(index);
+        if (propertySet == null || propertySet.getChecksumAlgorithm() != checksumAlgorithm) {
+            propertySet = MessagePropertySet.create(headers, _commonHeaders, messageData, checksumAlgorithm);
+            _propertySets.set(index, propertySet);
+        }
+        return propertySet;
+    }
+
+    private void addProperties(Message msg, Map<String, String> headers, ChecksummedMessageData messageData,
+                    ChecksumAlgorithm checksumAlgorithm, IntConsumer payloadLengthListener) throws JMSException {
         for (Entry<String, String> entry : headers.entrySet()) {
             msg.setStringProperty(entry.getKey(), entry.getValue());
         }
@@ -198,15 +354,15 @@ public abstract class BaseMessageProvider<T extends ChecksummedMessageData> impl
                 msg.setStringProperty(entry.getKey(), entry.getValue());
             }
         }
-        if (addIntegrityProperties) {
-            msg.setStringProperty(CHECKSUM_PROPERTY_NAME, messageData.getChecksum());
+        if (checksumAlgorithm != null) {
+            checksumAlgorithm.setChecksumProperties(msg, messageData);
             msg.setIntProperty(LENGTH_PROPERTY_NAME, messageData.getLength());
         }
-        return msg;
+        payloadLengthListener.accept(messageData.getLength());
     }
 
     private int getNextMessageDataIndex() {
-        int numberOfMessages = _messageDataList.size();
+        int numberOfMessages = _corpus != null ? _corpus.size() : _messageDataList.size();
         if (_ordered) {
             int index = _messageIndex.incrementAndGet();
             if (_noDuplicates && index > numberOfMessages) {
@@ -231,19 +387,37 @@ public abstract class BaseMessageProvider<T extends ChecksummedMessageData> impl
         }
     }
 
-    private Map<String, String> readHeaders(File file) throws IOException {
+    /**
+     * Read prepared headers in properties format.
+     *
+     * @param file The headers file.
+     * @return headers, empty if the file does not exist.
+     * @throws IOException on read errors.
+     */
+    static Map<String, String> readHeaders(File file) throws IOException {
         if (file.isFile()) {
             try (FileInputStream is = new FileInputStream(file)) {
-                Properties props = new Properties();
-                props.load(is);
-                Map<String, String> headerMap = new TreeMap<>();
-                for (Object key : props.keySet()) {
-                    headerMap.put((String) key, props.getProperty((String) key));
-                }
-                return headerMap;
+                return readHeaders(is);
             }
         } else {
             return Collections.emptyMap();
         }
     }
+
+    /**
+     * Read prepared headers in properties format from a stream.
+     *
+     * @param is The input stream, not closed.
+     * @return headers.
+     * @throws IOException on read errors.
+     */
+    static Map<String, String> readHeaders(InputStream is) throws IOException {
+        Properties props = new Properties();
+        props.load(is);
+        Map<String, String> headerMap = new TreeMap<>();
+        for (Object key : props.keySet()) {
+            headerMap.put((String) key, props.getProperty((String) key));
+        }
+        return headerMap;
+    }
 }
\ No newline at end of file
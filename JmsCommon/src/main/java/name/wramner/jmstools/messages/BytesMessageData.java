@@ -29,7 +29,7 @@ public class BytesMessageData extends ChecksummedMessageData {
      * @param data The payload.
      */
     public BytesMessageData(byte[] data) {
-        super(data);
+        super(data.length);
         _data = data;
     }
 
@@ -41,4 +41,12 @@ public class BytesMessageData extends ChecksummedMessageData {
     public byte[] getData() {
         return _data;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected byte[] getPayloadBytes() {
+        return _data;
+    }
 }
\ No newline at end of file
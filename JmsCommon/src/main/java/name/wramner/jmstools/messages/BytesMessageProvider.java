@@ -17,6 +17,7 @@ package name.wramner.jmstools.messages;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Map;
 
@@ -31,6 +32,9 @@ import javax.jms.Session;
  * @author Erik Wramner
  */
 public class BytesMessageProvider extends BaseMessageProvider<BytesMessageData> {
+    private static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> PAYLOAD_BUFFER = ThreadLocal.withInitial(() -> new byte[0]);
+
     /**
      * Constructor for prepared messages.
      *
@@ -46,6 +50,34 @@ public class BytesMessageProvider extends BaseMessageProvider<BytesMessageData>
         super(directory, encoding, commonHeaders, ordered, noDuplicates);
     }
 
+    /**
+     * Constructor for prepared messages streamed from a directory tree or a zip or tar archive.
+     *
+     * @param source The message directory or archive.
+     * @param encoding The encoding (not really used, passed to superclass).
+     * @param commonHeaders The JMS headers common to all messages.
+     * @param ordered The flag to send messages in source order or in random order within the read-ahead window.
+     * @param noDuplicates The flag to stop rather than reading the source again.
+     * @param readAheadMessages The maximum number of messages to read ahead.
+     */
+    public BytesMessageProvider(File source, String encoding, Map<String, String> commonHeaders, boolean ordered,
+                    boolean noDuplicates, int readAheadMessages) {
+        super(source, encoding, commonHeaders, ordered, noDuplicates, readAheadMessages);
+    }
+
+    /**
+     * Constructor for prepared messages in a memory-mapped corpus.
+     *
+     * @param corpus The corpus.
+     * @param commonHeaders The JMS headers common to all messages.
+     * @param ordered The flag to send messages in alphabetical order or in random order.
+     * @param noDuplicates The flag to stop rather than returning the same message twice.
+     */
+    public BytesMessageProvider(MappedMessageCorpus corpus, Map<String, String> commonHeaders, boolean ordered,
+                    boolean noDuplicates) {
+        super(corpus, commonHeaders, ordered, noDuplicates);
+    }
+
     /**
      * Constructor for random messages.
      *
@@ -88,4 +120,29 @@ public class BytesMessageProvider extends BaseMessageProvider<BytesMessageData>
         msg.writeBytes(messageData.getData());
         return msg;
     }
+
+    /**
+     * Create a bytes message with a payload from a memory-mapped corpus. {@link BytesMessage#writeBytes(byte[])} only
+     * accepts arrays, so the payload must be copied once. For payloads up to 64KB the array is kept by the thread and
+     * reused for the next message, which is safe as the message copies the bytes into its body. Larger payloads get a
+     * new array, as there may be thousands of worker threads and the copy costs more than the allocation anyway.
+     *
+     * @param session The session.
+     * @param payload The payload.
+     * @return message.
+     * @throws JMSException on errors.
+     */
+    @Override
+    protected Message createMessageWithPayload(Session session, ByteBuffer payload) throws JMSException {
+        BytesMessage msg = session.createBytesMessage();
+        int length = payload.remaining();
+        byte[] buffer = length <= MAX_REUSED_BUFFER_SIZE ? PAYLOAD_BUFFER.get() : new byte[length];
+        if (buffer.length < length) {
+            buffer = new byte[length];
+            PAYLOAD_BUFFER.set(buffer);
+        }
+        payload.get(buffer, 0, length);
+        msg.writeBytes(buffer, 0, length);
+        return msg;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * The supported payload checksum algorithms. MD5 is stored as a hex string in the original checksum property and is
+ * kept for compatibility with older versions. The other algorithms are much cheaper and are stored as a long property
+ * together with a property naming the algorithm, so the consumer can detect which algorithm to use. Only the numeric
+ * algorithms override {@link #getNumericChecksumFunction()}; the enum holds no state of its own.
+ *
+ * @author Erik Wramner
+ */
+public enum ChecksumAlgorithm {
+    /**
+     * MD5 as a hex string, compatible with older versions but relatively expensive.
+     */
+    MD5 {
+        @Override
+        public void setChecksumProperties(Message msg, ChecksummedMessageData messageData) throws JMSException {
+            msg.setStringProperty(MessageProvider.CHECKSUM_PROPERTY_NAME, messageData.getChecksum());
+        }
+
+        @Override
+        public Map<String, Object> getChecksumProperties(ChecksummedMessageData messageData) {
+            return Collections.singletonMap(MessageProvider.CHECKSUM_PROPERTY_NAME, messageData.getChecksum());
+        }
+
+        @Override
+        public String getExpectedChecksum(Message msg) throws JMSException {
+            return msg.getStringProperty(MessageProvider.CHECKSUM_PROPERTY_NAME);
+        }
+
+        @Override
+        public String calculateText(byte[] data, int length) {
+            return ChecksummedMessageData.calculateChecksum(data, length);
+        }
+
+        @Override
+        public IncrementalChecksum createIncrementalChecksum() {
+            return new IncrementalChecksum.Md5();
+        }
+    },
+    /**
+     * CRC-32C, hardware accelerated on Java 9 and later.
+     */
+    CRC32C {
+        @Override
+        public NumericChecksumFunction getNumericChecksumFunction() {
+            return Crc32c::calculate;
+        }
+
+        @Override
+        public IncrementalChecksum createIncrementalChecksum() {
+            return new IncrementalChecksum.Numeric(Crc32c.newChecksum());
+        }
+    },
+    /**
+     * 64-bit xxHash, fast on all Java versions.
+     */
+    XXHASH64 {
+        @Override
+        public NumericChecksumFunction getNumericChecksumFunction() {
+            return XxHash64::calculate;
+        }
+
+        @Override
+        public IncrementalChecksum createIncrementalChecksum() {
+            return new IncrementalChecksum.Numeric(new XxHash64());
+        }
+    };
+
+    /**
+     * Find the algorithm used for a message based on its properties.
+     *
+     * @param msg The message.
+     * @return algorithm or null if the message has no known checksum.
+     * @throws JMSException on JMS errors.
+     */
+    public static ChecksumAlgorithm forMessage(Message msg) throws JMSException {
+        String algorithmName = msg.getStringProperty(MessageProvider.CHECKSUM_ALGORITHM_PROPERTY_NAME);
+        if (algorithmName != null) {
+            for (ChecksumAlgorithm algorithm : values()) {
+                if (algorithm.name().equals(algorithmName)) {
+                    return algorithm;
+                }
+            }
+            return null;
+        }
+        return msg.propertyExists(MessageProvider.CHECKSUM_PROPERTY_NAME) ? MD5 : null;
+    }
+
+    /**
+     * Set the checksum properties for a message.
+     *
+     * @param msg The message.
+     * @param messageData The message data with the cached checksum.
+     * @throws JMSException on JMS errors.
+     */
+    public void setChecksumProperties(Message msg, ChecksummedMessageData messageData) throws JMSException {
+        msg.setStringProperty(MessageProvider.CHECKSUM_ALGORITHM_PROPERTY_NAME, name());
+        msg.setLongProperty(MessageProvider.NUMERIC_CHECKSUM_PROPERTY_NAME, messageData.getChecksum(this));
+    }
+
+    /**
+     * Get the checksum properties for message data without setting them, so that they can be prepared once and set on
+     * many messages.
+     *
+     * @param messageData The message data with the cached checksum.
+     * @return property values by name, as String or Long.
+     */
+    public Map<String, Object> getChecksumProperties(ChecksummedMessageData messageData) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put(MessageProvider.CHECKSUM_ALGORITHM_PROPERTY_NAME, name());
+        properties.put(MessageProvider.NUMERIC_CHECKSUM_PROPERTY_NAME, Long.valueOf(messageData.getChecksum(this)));
+        return properties;
+    }
+
+    /**
+     * Get the expected checksum from the message properties as text, for logging.
+     *
+     * @param msg The message.
+     * @return checksum.
+     * @throws JMSException on JMS errors.
+     */
+    public String getExpectedChecksum(Message msg) throws JMSException {
+        return Long.toHexString(msg.getLongProperty(MessageProvider.NUMERIC_CHECKSUM_PROPERTY_NAME));
+    }
+
+    /**
+     * Check if the algorithm computes a numeric checksum. Check this before calling
+     * {@link #getNumericChecksumFunction()}.
+     *
+     * @return true if numeric.
+     */
+    public boolean isNumeric() {
+        return getNumericChecksumFunction() != null;
+    }
+
+    /**
+     * Get the function for calculating the numeric checksum.
+     *
+     * @return function or null if the algorithm is not numeric.
+     */
+    public NumericChecksumFunction getNumericChecksumFunction() {
+        return null;
+    }
+
+    /**
+     * Create a reusable checksum for incremental calculation.
+     *
+     * @return checksum.
+     */
+    public abstract IncrementalChecksum createIncrementalChecksum();
+
+    /**
+     * Calculate a checksum as text, for logging.
+     *
+     * @param data The payload buffer.
+     * @param length The payload length.
+     * @return checksum.
+     */
+    public String calculateText(byte[] data, int length) {
+        return Long.toHexString(getNumericChecksumFunction().calculate(data, 0, length));
+    }
+}
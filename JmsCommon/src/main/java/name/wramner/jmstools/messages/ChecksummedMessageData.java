@@ -15,37 +15,64 @@
  */
 package name.wramner.jmstools.messages;
 
-import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
- * Base class for message data classes. Calculates and caches an MD5 checksum for the payload as well as the payload
- * size in bytes.
+ * Base class for message data classes. Calculates and caches a checksum for the payload as well as the payload size in
+ * bytes. The checksums are calculated on first use, as only one algorithm is normally needed.
  * 
  * @author Erik Wramner
  */
-public class ChecksummedMessageData {
-    private final String _checksum;
+public abstract class ChecksummedMessageData {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
     private final int _length;
+    private volatile String _checksum;
+    private volatile NumericChecksum _numericChecksum;
 
     /**
      * Constructor.
      * 
-     * @param data The payload as raw bytes.
+     * @param length The payload size in bytes.
      */
-    public ChecksummedMessageData(byte[] data) {
-        _checksum = calculateChecksum(data);
-        _length = data.length;
+    protected ChecksummedMessageData(int length) {
+        _length = length;
     }
 
     /**
-     * Get checksum.
+     * Get MD5 checksum.
      * 
      * @return checksum.
      */
     public String getChecksum() {
-        return _checksum;
+        String checksum = _checksum;
+        if (checksum == null) {
+            byte[] data = getPayloadBytes();
+            checksum = calculateChecksum(data, data.length);
+            _checksum = checksum;
+        }
+        return checksum;
+    }
+
+    /**
+     * Get numeric checksum.
+     *
+     * @param algorithm The numeric checksum algorithm.
+     * @return checksum.
+     * @throws IllegalArgumentException if the algorithm is not numeric.
+     */
+    public long getChecksum(ChecksumAlgorithm algorithm) {
+        NumericChecksum checksum = _numericChecksum;
+        if (checksum == null || checksum._algorithm != algorithm) {
+            if (!algorithm.isNumeric()) {
+                throw new IllegalArgumentException("Not a numeric checksum algorithm: " + algorithm);
+            }
+            byte[] data = getPayloadBytes();
+            checksum = new NumericChecksum(algorithm,
+                            algorithm.getNumericChecksumFunction().calculate(data, 0, data.length));
+            _numericChecksum = checksum;
+        }
+        return checksum._value;
     }
 
     /**
@@ -58,16 +85,61 @@ public class ChecksummedMessageData {
     }
 
     /**
-     * Compute checksum.
+     * Get the payload as raw bytes for checksum calculation.
+     *
+     * @return payload bytes.
+     */
+    protected abstract byte[] getPayloadBytes();
+
+    /**
+     * Compute MD5 checksum.
      * 
      * @param data The raw bytes.
      * @return checksum in text format.
      */
     public static String calculateChecksum(byte[] data) {
+        return calculateChecksum(data, data.length);
+    }
+
+    /**
+     * Compute MD5 checksum for the first bytes in a buffer.
+     *
+     * @param data The buffer.
+     * @param length The number of bytes to include.
+     * @return checksum in text format.
+     */
+    public static String calculateChecksum(byte[] data, int length) {
         try {
-            return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(data)));
+            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            messageDigest.update(data, 0, length);
+            return toHex(messageDigest.digest());
         } catch (NoSuchAlgorithmException e) {
             throw new java.lang.IllegalStateException("JVM does not support MD5", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Format bytes as lowercase hex.
+     *
+     * @param data The bytes.
+     * @return hex string.
+     */
+    static String toHex(byte[] data) {
+        char[] chars = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(data[i] >>> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX_DIGITS[data[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private static class NumericChecksum {
+        private final ChecksumAlgorithm _algorithm;
+        private final long _value;
+
+        NumericChecksum(ChecksumAlgorithm algorithm, long value) {
+            _algorithm = algorithm;
+            _value = value;
+        }
+    }
+}
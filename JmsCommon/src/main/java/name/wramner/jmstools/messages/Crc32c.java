@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.lang.reflect.Constructor;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) checksum. The JDK implementation, which uses hardware instructions where available, is used on
+ * Java 9 and later. On Java 8 a portable slicing-by-8 implementation is used instead.
+ *
+ * @author Erik Wramner
+ */
+public final class Crc32c {
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[][] TABLES = createTables();
+    private static final Constructor<? extends Checksum> JDK_CONSTRUCTOR = findJdkConstructor();
+    private static final ThreadLocal<Checksum> JDK_CHECKSUM = JDK_CONSTRUCTOR != null
+                    ? ThreadLocal.withInitial(Crc32c::newChecksum) : null;
+
+    private Crc32c() {
+    }
+
+    /**
+     * Calculate the checksum.
+     *
+     * @param data The data.
+     * @param offset The offset in the data.
+     * @param length The number of bytes.
+     * @return unsigned 32-bit checksum.
+     */
+    public static long calculate(byte[] data, int offset, int length) {
+        if (JDK_CHECKSUM != null) {
+            Checksum checksum = JDK_CHECKSUM.get();
+            checksum.reset();
+            checksum.update(data, offset, length);
+            return checksum.getValue();
+        }
+        return calculatePortable(data, offset, length);
+    }
+
+    /**
+     * Create a checksum instance for incremental updates. The instance is not thread safe.
+     *
+     * @return new checksum.
+     */
+    public static Checksum newChecksum() {
+        if (JDK_CONSTRUCTOR != null) {
+            try {
+                return JDK_CONSTRUCTOR.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create CRC32C", e);
+            }
+        }
+        return new PortableChecksum();
+    }
+
+    /**
+     * Calculate the checksum without the JDK implementation.
+     *
+     * @param data The data.
+     * @param offset The offset in the data.
+     * @param length The number of bytes.
+     * @return unsigned 32-bit checksum.
+     */
+    static long calculatePortable(byte[] data, int offset, int length) {
+        return ~update(~0, data, offset, length) & 0xffffffffL;
+    }
+
+    private static int update(int crc, byte[] data, int offset, int length) {
+        final int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        final int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int i = offset;
+        int end = offset + length;
+        while (end - i >= 8) {
+            crc ^= (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16
+                            | (data[i + 3] & 0xff) << 24;
+            crc = t7[crc & 0xff] ^ t6[(crc >>> 8) & 0xff] ^ t5[(crc >>> 16) & 0xff] ^ t4[crc >>> 24]
+                            ^ t3[data[i + 4] & 0xff] ^ t2[data[i + 5] & 0xff] ^ t1[data[i + 6] & 0xff]
+                            ^ t0[data[i + 7] & 0xff];
+            i += 8;
+        }
+        while (i < end) {
+            crc = (crc >>> 8) ^ t0[(crc ^ data[i++]) & 0xff];
+        }
+        return crc;
+    }
+
+    private static int[][] createTables() {
+        int[][] tables = new int[8][256];
+        for (int n = 0; n < 256; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? (c >>> 1) ^ POLYNOMIAL : c >>> 1;
+            }
+            tables[0][n] = c;
+        }
+        for (int n = 0; n < 256; n++) {
+            for (int k = 1; k < 8; k++) {
+                int previous = tables[k - 1][n];
+                tables[k][n] = (previous >>> 8) ^ tables[0][previous & 0xff];
+            }
+        }
+        return tables;
+    }
+
+    private static Constructor<? extends Checksum> findJdkConstructor() {
+        try {
+            Constructor<? extends Checksum> constructor = Class.forName("java.util.zip.CRC32C")
+                            .asSubclass(Checksum.class).getConstructor();
+            constructor.newInstance();
+            return constructor;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Portable incremental checksum, used when the JDK implementation is missing.
+     */
+    static class PortableChecksum implements Checksum {
+        private int _crc = ~0;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void update(int b) {
+            _crc = (_crc >>> 8) ^ TABLES[0][(_crc ^ b) & 0xff];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void update(byte[] data, int offset, int length) {
+            _crc = Crc32c.update(_crc, data, offset, length);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getValue() {
+            return ~_crc & 0xffffffffL;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reset() {
+            _crc = ~0;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Checksum;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * A payload checksum that is calculated incrementally, so that large payloads can be verified chunk by chunk without
+ * materializing the full payload as a byte array. Instances are created with
+ * {@link ChecksumAlgorithm#createIncrementalChecksum()} and can be reused after {@link #reset()}. They are not thread
+ * safe.
+ *
+ * @author Erik Wramner
+ */
+public abstract class IncrementalChecksum {
+
+    /**
+     * Reset the checksum in order to start over with a new payload.
+     */
+    public abstract void reset();
+
+    /**
+     * Add data to the checksum.
+     *
+     * @param data The data.
+     * @param offset The offset in the data.
+     * @param length The number of bytes.
+     */
+    public abstract void update(byte[] data, int offset, int length);
+
+    /**
+     * Check if the data added since the last reset matches the checksum properties of a message.
+     *
+     * @param msg The message.
+     * @return true if the checksum is correct.
+     * @throws JMSException on JMS errors.
+     */
+    public abstract boolean matches(Message msg) throws JMSException;
+
+    /**
+     * Get the checksum for the data added since the last reset as text, for logging.
+     *
+     * @return checksum.
+     */
+    public abstract String getText();
+
+    /**
+     * MD5 checksum stored as a hex string.
+     */
+    static class Md5 extends IncrementalChecksum {
+        private final MessageDigest _messageDigest;
+        private String _text;
+
+        Md5() {
+            try {
+                _messageDigest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("JVM does not support MD5", e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reset() {
+            _messageDigest.reset();
+            _text = null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void update(byte[] data, int offset, int length) {
+            _messageDigest.update(data, offset, length);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean matches(Message msg) throws JMSException {
+            return getText().equals(ChecksumAlgorithm.MD5.getExpectedChecksum(msg));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getText() {
+            // Computing the digest resets it, so keep the result until the next reset
+            if (_text == null) {
+                _text = ChecksummedMessageData.toHex(_messageDigest.digest());
+            }
+            return _text;
+        }
+    }
+
+    /**
+     * Numeric checksum stored as a long property.
+     */
+    static class Numeric extends IncrementalChecksum {
+        private final Checksum _checksum;
+
+        Numeric(Checksum checksum) {
+            _checksum = checksum;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void reset() {
+            _checksum.reset();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void update(byte[] data, int offset, int length) {
+            _checksum.update(data, offset, length);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean matches(Message msg) throws JMSException {
+            return msg.getLongProperty(MessageProvider.NUMERIC_CHECKSUM_PROPERTY_NAME) == _checksum.getValue();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getText() {
+            return Long.toHexString(_checksum.getValue());
+        }
+    }
+}
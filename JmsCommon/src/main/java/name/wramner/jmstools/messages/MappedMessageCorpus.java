@@ -0,0 +1,276 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * A corpus of prepared messages packed into a single file that is memory-mapped when used. The file contains the
+ * payloads, the headers for each message and an index with the offsets, lengths and precomputed checksums, so the
+ * payloads are never loaded onto the heap. They are served as slices of the mapped file when messages are created.
+ * Opening a corpus is fast regardless of the payload size and the operating system keeps the hot parts of the file in
+ * the page cache. The headers are small and decoded once when the corpus is opened, with identical header sets
+ * shared, so sending a message never decodes them again.
+ * <p>
+ * The corpus is packed once from a directory with prepared messages, using the same rules as
+ * {@link BaseMessageProvider}. Text messages are stored as UTF-8 regardless of the encoding for the files, so the
+ * checksums match the ones computed by {@link TextMessageData}.
+ * <p>
+ * The layout is a fixed header, the payloads, the headers and finally the index. Payloads are placed so that none of
+ * them crosses a segment boundary, which makes it possible to map corpora larger than 2GB in segments.
+ *
+ * @author Erik Wramner
+ */
+public class MappedMessageCorpus {
+    private static final long MAGIC = 0x4a4d53434f525031L; // "JMSCORP1"
+    private static final int HEADER_SIZE = 64;
+    private static final int INDEX_ENTRY_SIZE = 48;
+    private static final int MD5_LENGTH = 16;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1L;
+    private final boolean _text;
+    private final int _size;
+    private final ByteBuffer _index;
+    private final Map<String, String>[] _headerSets;
+    private final MappedByteBuffer[] _segments;
+
+    private MappedMessageCorpus(File corpusFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(corpusFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(MapMode.READ_ONLY, 0L, HEADER_SIZE);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException("File " + corpusFile + " is not a message corpus");
+            }
+            _text = header.get(8) != 0;
+            _size = header.getInt(12);
+            long dataLength = header.getLong(16);
+            long headersLength = header.getLong(24);
+            long headersOffset = HEADER_SIZE + dataLength;
+            _index = channel.map(MapMode.READ_ONLY, headersOffset + headersLength, (long) _size * INDEX_ENTRY_SIZE);
+            _headerSets = decodeHeaderSets(channel.map(MapMode.READ_ONLY, headersOffset, headersLength));
+            int numberOfSegments = (int) ((dataLength + SEGMENT_SIZE - 1L) >>> SEGMENT_SHIFT);
+            _segments = new MappedByteBuffer[numberOfSegments];
+            for (int i = 0; i < numberOfSegments; i++) {
+                long segmentOffset = i * SEGMENT_SIZE;
+                _segments[i] = channel.map(MapMode.READ_ONLY, HEADER_SIZE + segmentOffset,
+                                Math.min(SEGMENT_SIZE, dataLength - segmentOffset));
+            }
+        }
+    }
+
+    /**
+     * Open a packed corpus.
+     *
+     * @param corpusFile The corpus file.
+     * @return corpus.
+     * @throws IOException on read errors or if the file is not a corpus.
+     */
+    public static MappedMessageCorpus open(File corpusFile) throws IOException {
+        return new MappedMessageCorpus(corpusFile);
+    }
+
+    /**
+     * Pack the prepared messages in a file or directory into a corpus file and open it. Only one message is held in
+     * memory at a time.
+     *
+     * @param fileOrDirectory The single file or the directory containing files.
+     * @param encoding The character encoding for text messages.
+     * @param text The flag to pack the files as text, otherwise the bytes are stored as is.
+     * @param corpusFile The corpus file, replaced if it exists.
+     * @return corpus.
+     * @throws IOException on read or write errors.
+     */
+    public static MappedMessageCorpus pack(File fileOrDirectory, Charset encoding, boolean text, File corpusFile)
+                    throws IOException {
+        File[] files;
+        if (fileOrDirectory.isDirectory()) {
+            files = fileOrDirectory.listFiles();
+            Arrays.sort(files);
+        } else {
+            files = new File[] { fileOrDirectory };
+        }
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream headerStream = new DataOutputStream(headerBytes);
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexStream = new DataOutputStream(indexBytes);
+        MessageDigest md5 = createMd5();
+        int size = 0;
+        try (FileChannel channel = FileChannel.open(corpusFile.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long dataOffset = 0L;
+            channel.position(HEADER_SIZE);
+            for (File file : files) {
+                String name = file.getName();
+                if (!file.isFile() || name.endsWith(".headers")) {
+                    continue;
+                }
+                byte[] payload = Files.readAllBytes(file.toPath());
+                if (text) {
+                    payload = TextMessageData.textToBytes(new String(payload, encoding));
+                }
+                Map<String, String> headers = name.endsWith(".payload")
+                                ? BaseMessageProvider.readHeaders(new File(file.getParentFile(),
+                                                name.substring(0, name.length() - ".payload".length()) + ".headers"))
+                                : Collections.emptyMap();
+                if (payload.length > SEGMENT_SIZE) {
+                    throw new IOException("File " + file + " is too large for a message corpus");
+                }
+                long segmentRemaining = SEGMENT_SIZE - (dataOffset & SEGMENT_MASK);
+                if (payload.length > segmentRemaining) {
+                    // Pad so that the payload starts in the next segment
+                    dataOffset += segmentRemaining;
+                }
+                channel.write(ByteBuffer.wrap(payload), HEADER_SIZE + dataOffset);
+
+                indexStream.writeLong(dataOffset);
+                indexStream.writeInt(payload.length);
+                indexStream.writeInt(headerStream.size());
+                indexStream.writeLong(Crc32c.calculate(payload, 0, payload.length));
+                indexStream.writeLong(XxHash64.calculate(payload, 0, payload.length));
+                indexStream.write(md5.digest(payload));
+                writeHeaders(headerStream, headers);
+                dataOffset += payload.length;
+                size++;
+            }
+            channel.write(ByteBuffer.wrap(headerBytes.toByteArray()), HEADER_SIZE + dataOffset);
+            channel.write(ByteBuffer.wrap(indexBytes.toByteArray()), HEADER_SIZE + dataOffset + headerBytes.size());
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(0, MAGIC);
+            header.put(8, (byte) (text ? 1 : 0));
+            header.putInt(12, size);
+            header.putLong(16, dataOffset);
+            header.putLong(24, headerBytes.size());
+            channel.write(header, 0L);
+        }
+        return open(corpusFile);
+    }
+
+    /**
+     * Check if the corpus has been packed for text messages.
+     *
+     * @return true for text, false for bytes and object messages.
+     */
+    public boolean isText() {
+        return _text;
+    }
+
+    /**
+     * Get the number of messages in the corpus.
+     *
+     * @return number of messages.
+     */
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Get the message data for a message. The data is a light-weight view of the mapped file.
+     *
+     * @param index The message index.
+     * @return message data.
+     */
+    MappedMessageData getMessageData(int index) {
+        int entry = index * INDEX_ENTRY_SIZE;
+        long dataOffset = _index.getLong(entry);
+        int length = _index.getInt(entry + 8);
+        ByteBuffer payload = _segments[(int) (dataOffset >>> SEGMENT_SHIFT)].duplicate();
+        int position = (int) (dataOffset & SEGMENT_MASK);
+        payload.position(position);
+        payload.limit(position + length);
+        byte[] md5 = new byte[MD5_LENGTH];
+        ByteBuffer indexEntry = _index.duplicate();
+        indexEntry.position(entry + 32);
+        indexEntry.get(md5);
+        return new MappedMessageData(payload.slice(), _index.getLong(entry + 16), _index.getLong(entry + 24), md5);
+    }
+
+    /**
+     * Get the headers for a message. The map is shared by all messages with the same headers and must not be modified.
+     *
+     * @param index The message index.
+     * @return headers, possibly empty.
+     */
+    Map<String, String> getHeaders(int index) {
+        return _headerSets[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String>[] decodeHeaderSets(ByteBuffer headers) {
+        Map<String, String>[] headerSets = new Map[_size];
+        Map<Map<String, String>, Map<String, String>> distinctHeaderSets = new HashMap<>();
+        for (int index = 0; index < _size; index++) {
+            headers.position(_index.getInt(index * INDEX_ENTRY_SIZE + 12));
+            int count = headers.getInt();
+            if (count == 0) {
+                headerSets[index] = Collections.emptyMap();
+            } else {
+                Map<String, String> headerMap = new TreeMap<>();
+                for (int i = 0; i < count; i++) {
+                    headerMap.put(readString(headers), readString(headers));
+                }
+                headerSets[index] = distinctHeaderSets.computeIfAbsent(headerMap, Collections::unmodifiableMap);
+            }
+        }
+        return headerSets;
+    }
+
+    private static void writeHeaders(DataOutputStream headerStream, Map<String, String> headers) throws IOException {
+        headerStream.writeInt(headers.size());
+        for (Entry<String, String> entry : headers.entrySet()) {
+            writeString(headerStream, entry.getKey());
+            writeString(headerStream, entry.getValue());
+        }
+    }
+
+    private static void writeString(DataOutputStream stream, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest createMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM does not support MD5", e);
+        }
+    }
+}
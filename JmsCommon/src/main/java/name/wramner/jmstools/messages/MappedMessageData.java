@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Message data for a message in a {@link MappedMessageCorpus}. The payload is a slice of the mapped file and the
+ * checksums have been computed when the corpus was packed, so creating an instance is cheap.
+ *
+ * @author Erik Wramner
+ */
+public class MappedMessageData extends ChecksummedMessageData {
+    private final ByteBuffer _payload;
+    private final long _crc32c;
+    private final long _xxHash64;
+    private final byte[] _md5;
+
+    /**
+     * Constructor.
+     *
+     * @param payload The payload slice.
+     * @param crc32c The CRC-32C checksum.
+     * @param xxHash64 The xxHash64 checksum.
+     * @param md5 The raw MD5 digest.
+     */
+    MappedMessageData(ByteBuffer payload, long crc32c, long xxHash64, byte[] md5) {
+        super(payload.remaining());
+        _payload = payload;
+        _crc32c = crc32c;
+        _xxHash64 = xxHash64;
+        _md5 = md5;
+    }
+
+    /**
+     * Get the payload as a read-only buffer positioned at the start of the payload.
+     *
+     * @return payload.
+     */
+    public ByteBuffer getPayload() {
+        return _payload.duplicate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getChecksum() {
+        return toHex(_md5);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getChecksum(ChecksumAlgorithm algorithm) {
+        switch (algorithm) {
+        case CRC32C:
+            return _crc32c;
+        case XXHASH64:
+            return _xxHash64;
+        default:
+            return super.getChecksum(algorithm);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected byte[] getPayloadBytes() {
+        byte[] bytes = new byte[getLength()];
+        getPayload().get(bytes);
+        return bytes;
+    }
+}
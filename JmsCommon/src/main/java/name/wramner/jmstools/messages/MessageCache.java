@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.util.Arrays;
+
+import javax.jms.Message;
+import javax.jms.Session;
+
+/**
+ * Cache for messages that have been sent and can be sent again. The JMS specification allows a client to send the
+ * same message object several times and to modify it between sends, so a message created for a prepared payload can
+ * be reused with its body intact; only the properties are cleared and set again. That saves both the allocation and
+ * the copy of the payload for every send.
+ * <p>
+ * Messages belong to the session that created them, so the cache is cleared when the session changes. Instances are
+ * not thread safe; use one per worker.
+ *
+ * @author Erik Wramner
+ */
+public class MessageCache {
+    private Session _session;
+    private Message[] _messages = new Message[16];
+
+    /**
+     * Get a cached message.
+     *
+     * @param session The current session.
+     * @param index The payload index.
+     * @return message or null if not cached for the session.
+     */
+    Message get(Session session, int index) {
+        if (session != _session) {
+            _session = session;
+            Arrays.fill(_messages, null);
+            return null;
+        }
+        return index < _messages.length ? _messages[index] : null;
+    }
+
+    /**
+     * Cache a message for the current session.
+     *
+     * @param index The payload index.
+     * @param msg The message.
+     */
+    void put(int index, Message msg) {
+        if (index >= _messages.length) {
+            _messages = Arrays.copyOf(_messages, Math.max(index + 1, _messages.length * 2));
+        }
+        _messages[index] = msg;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * The complete set of properties for a prepared payload: prepared headers, common headers, checksum and length. The
+ * set is built once per payload and checksum algorithm and then applied to every message sent with that payload, so
+ * the per-send cost is a loop over two arrays rather than map iteration and checksum formatting.
+ *
+ * @author Erik Wramner
+ */
+final class MessagePropertySet {
+    private final ChecksumAlgorithm _checksumAlgorithm;
+    private final String[] _names;
+    private final Object[] _values;
+
+    private MessagePropertySet(ChecksumAlgorithm checksumAlgorithm, Map<String, Object> properties) {
+        _checksumAlgorithm = checksumAlgorithm;
+        _names = new String[properties.size()];
+        _values = new Object[properties.size()];
+        int i = 0;
+        for (Entry<String, Object> entry : properties.entrySet()) {
+            _names[i] = entry.getKey();
+            _values[i] = entry.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * Create a property set. Later properties override earlier ones with the same name, in the order prepared headers,
+     * common headers, checksum properties.
+     *
+     * @param headers The prepared headers for the payload.
+     * @param commonHeaders The common headers or null.
+     * @param messageData The message data.
+     * @param checksumAlgorithm The checksum algorithm or null for no checksum and length properties.
+     * @return property set.
+     */
+    static MessagePropertySet create(Map<String, String> headers, Map<String, String> commonHeaders,
+                    ChecksummedMessageData messageData, ChecksumAlgorithm checksumAlgorithm) {
+        Map<String, Object> properties = new LinkedHashMap<>(headers);
+        if (commonHeaders != null) {
+            properties.putAll(commonHeaders);
+        }
+        if (checksumAlgorithm != null) {
+            properties.putAll(checksumAlgorithm.getChecksumProperties(messageData));
+            properties.put(MessageProvider.LENGTH_PROPERTY_NAME, Integer.valueOf(messageData.getLength()));
+        }
+        return new MessagePropertySet(checksumAlgorithm, properties);
+    }
+
+    /**
+     * Get the checksum algorithm the set was created for.
+     *
+     * @return algorithm or null.
+     */
+    ChecksumAlgorithm getChecksumAlgorithm() {
+        return _checksumAlgorithm;
+    }
+
+    /**
+     * Set all properties on a message.
+     *
+     * @param msg The message.
+     * @throws JMSException on JMS errors.
+     */
+    void applyTo(Message msg) throws JMSException {
+        for (int i = 0; i < _names.length; i++) {
+            msg.setObjectProperty(_names[i], _values[i]);
+        }
+    }
+}
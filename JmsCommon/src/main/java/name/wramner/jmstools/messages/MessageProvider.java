@@ -15,10 +15,14 @@
  */
 package name.wramner.jmstools.messages;
 
+import java.util.function.IntConsumer;
+
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.Session;
 
+import name.wramner.jmstools.stopcontroller.StopController;
+
 /**
  * A message provider can create JMS messages enriched with a checksum property that can be checked on the other side.
  * <p>
@@ -29,15 +33,70 @@ import javax.jms.Session;
 public interface MessageProvider {
     static final String UNIQUE_MESSAGE_ID_PROPERTY_NAME = "EWJMSToolsUniqueMessageId";
     static final String CHECKSUM_PROPERTY_NAME = "EWJMSToolsPayloadChecksumMD5";
+    static final String NUMERIC_CHECKSUM_PROPERTY_NAME = "EWJMSToolsPayloadChecksum";
+    static final String CHECKSUM_ALGORITHM_PROPERTY_NAME = "EWJMSToolsPayloadChecksumAlgorithm";
     static final String LENGTH_PROPERTY_NAME = "EWJMSToolsPayloadLength";
 
     /**
      * Create message with payload and properties, optionally with checksum and length properties added.
      *
      * @param session The JMS session.
-     * @param addIntegrityProperties The flag to add checksum and length properties.
-     * @return message.
+     * @param checksumAlgorithm The algorithm for the checksum property or null for no checksum and length properties.
+     * @return message or null if there are no more messages.
+     * @throws JMSException on JMS errors.
+     */
+    default Message createMessageWithPayloadAndProperties(Session session, ChecksumAlgorithm checksumAlgorithm)
+                    throws JMSException {
+        return createMessageWithPayloadAndProperties(session, checksumAlgorithm, length -> {
+        });
+    }
+
+    /**
+     * Create message with payload and properties, optionally with checksum and length properties added. The payload
+     * length is reported to the listener, as the body of a produced bytes message cannot be read back.
+     *
+     * @param session The JMS session.
+     * @param checksumAlgorithm The algorithm for the checksum property or null for no checksum and length properties.
+     * @param payloadLengthListener Listener for the payload length in bytes or characters.
+     * @return message or null if there are no more messages.
+     * @throws JMSException on JMS errors.
+     */
+    default Message createMessageWithPayloadAndProperties(Session session, ChecksumAlgorithm checksumAlgorithm,
+                    IntConsumer payloadLengthListener) throws JMSException {
+        return createMessageWithPayloadAndProperties(session, checksumAlgorithm, payloadLengthListener, null);
+    }
+
+    /**
+     * Create message with payload and properties, optionally with checksum and length properties added. If a message
+     * cache is specified a message sent earlier with the same payload may be returned, with its properties reset.
+     * The caller must not modify the payload and must not reuse a message until the previous send has completed.
+     *
+     * @param session The JMS session.
+     * @param checksumAlgorithm The algorithm for the checksum property or null for no checksum and length properties.
+     * @param payloadLengthListener Listener for the payload length in bytes or characters.
+     * @param messageCache The cache with messages for the session or null to create a new message.
+     * @return message or null if there are no more messages.
      * @throws JMSException on JMS errors.
      */
-    Message createMessageWithPayloadAndProperties(Session session, boolean addIntegrityProperties) throws JMSException;
+    Message createMessageWithPayloadAndProperties(Session session, ChecksumAlgorithm checksumAlgorithm,
+                    IntConsumer payloadLengthListener, MessageCache messageCache) throws JMSException;
+
+    /**
+     * Check if a provider that streams prepared messages has returned all of them and will return no more. Providers
+     * that know their messages up front can be stopped with a count instead and always return false.
+     *
+     * @return true if exhausted.
+     */
+    default boolean isExhausted() {
+        return false;
+    }
+
+    /**
+     * Set the stop controller for the test. A provider that streams prepared messages uses it in order to stop waiting
+     * for messages when the test ends. Other providers never wait and ignore it.
+     *
+     * @param stopController The stop controller.
+     */
+    default void setStopController(StopController stopController) {
+    }
 }
\ No newline at end of file
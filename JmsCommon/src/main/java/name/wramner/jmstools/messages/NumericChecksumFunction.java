@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+/**
+ * A one-shot numeric payload checksum. Only the numeric {@link ChecksumAlgorithm} values have one; MD5 is a digest
+ * stored as text and does not.
+ *
+ * @author Erik Wramner
+ */
+@FunctionalInterface
+public interface NumericChecksumFunction {
+    /**
+     * Calculate a numeric checksum.
+     *
+     * @param data The data.
+     * @param offset The offset in the data.
+     * @param length The number of bytes.
+     * @return checksum.
+     */
+    long calculate(byte[] data, int offset, int length);
+}
@@ -17,6 +17,7 @@ package name.wramner.jmstools.messages;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Map;
 
@@ -49,6 +50,37 @@ public class ObjectMessageProvider extends BaseMessageProvider<BytesMessageData>
         _adapter = adapter;
     }
 
+    /**
+     * Constructor for prepared messages streamed from a directory tree or a zip or tar archive.
+     *
+     * @param source The message directory or archive.
+     * @param adapter The object message adapter.
+     * @param commonHeaders The JMS headers common to all messages.
+     * @param ordered The flag to send messages in source order or in random order within the read-ahead window.
+     * @param noDuplicates The flag to stop rather than reading the source again.
+     * @param readAheadMessages The maximum number of messages to read ahead.
+     */
+    public ObjectMessageProvider(File source, ObjectMessageAdapter adapter, Map<String, String> commonHeaders,
+                    boolean ordered, boolean noDuplicates, int readAheadMessages) {
+        super(source, "UTF-8", commonHeaders, ordered, noDuplicates, readAheadMessages);
+        _adapter = adapter;
+    }
+
+    /**
+     * Constructor for prepared messages in a memory-mapped corpus.
+     *
+     * @param corpus The corpus.
+     * @param adapter The object message adapter.
+     * @param commonHeaders The JMS headers common to all messages.
+     * @param ordered The flag to send messages in alphabetical order or in random order.
+     * @param noDuplicates The flag to stop rather than returning the same message twice.
+     */
+    public ObjectMessageProvider(MappedMessageCorpus corpus, ObjectMessageAdapter adapter,
+                    Map<String, String> commonHeaders, boolean ordered, boolean noDuplicates) {
+        super(corpus, commonHeaders, ordered, noDuplicates);
+        _adapter = adapter;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -74,4 +106,16 @@ public class ObjectMessageProvider extends BaseMessageProvider<BytesMessageData>
         _adapter.setObjectPayload(msg, messageData.getData());
         return msg;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Message createMessageWithPayload(Session session, ByteBuffer payload) throws JMSException {
+        ObjectMessage msg = session.createObjectMessage();
+        byte[] data = new byte[payload.remaining()];
+        payload.get(data);
+        _adapter.setObjectPayload(msg, data);
+        return msg;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+/**
+ * Verify payload checksums incrementally. Bytes messages are read in fixed-size chunks into a reused buffer and text
+ * messages are encoded into the same buffer, so the cost in memory is constant regardless of the message size. The
+ * checksums are the same as for {@link BytesMessageData} and {@link TextMessageData}.
+ * <p>
+ * Instances are not thread safe, each worker should have its own.
+ *
+ * @author Erik Wramner
+ */
+public class PayloadChecksumVerifier {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 16;
+    private final byte[] _buffer;
+    private final ByteBuffer _byteBuffer;
+    private final CharsetEncoder _encoder;
+    private final IncrementalChecksum[] _checksums = new IncrementalChecksum[ChecksumAlgorithm.values().length];
+    private IncrementalChecksum _lastChecksum;
+    private int _length;
+
+    /**
+     * Constructor with default buffer size.
+     */
+    public PayloadChecksumVerifier() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize The buffer size in bytes.
+     * @throws IllegalArgumentException if the buffer is too small to hold an encoded character.
+     */
+    public PayloadChecksumVerifier(int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Buffer size must be at least " + MIN_BUFFER_SIZE);
+        }
+        _buffer = new byte[bufferSize];
+        _byteBuffer = ByteBuffer.wrap(_buffer);
+        // Replace bad characters just like String.getBytes, so the checksum is the same as the producer used
+        _encoder = TextMessageData.TEXT_ENCODING.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Verify the payload checksum for a bytes or text message. The payload length and the calculated checksum are
+     * available from {@link #getLength()} and {@link #getCalculatedChecksum()} afterwards. Bytes messages are reset
+     * after reading, so the body can be read again.
+     *
+     * @param msg The message.
+     * @param algorithm The checksum algorithm.
+     * @return true if the checksum is correct.
+     * @throws JMSException on JMS errors.
+     * @throws IllegalArgumentException if the message is neither a bytes nor a text message.
+     */
+    public boolean verify(Message msg, ChecksumAlgorithm algorithm) throws JMSException {
+        IncrementalChecksum checksum = getChecksum(algorithm);
+        checksum.reset();
+        _lastChecksum = checksum;
+        if (msg instanceof BytesMessage) {
+            _length = updateWithBytes(checksum, (BytesMessage) msg);
+        } else if (msg instanceof TextMessage) {
+            _length = updateWithText(checksum, ((TextMessage) msg).getText());
+        } else {
+            throw new IllegalArgumentException("Unsupported message type " + msg.getClass().getName());
+        }
+        return checksum.matches(msg);
+    }
+
+    /**
+     * Get the payload length in bytes for the last verified message.
+     *
+     * @return length.
+     */
+    public int getLength() {
+        return _length;
+    }
+
+    /**
+     * Get the calculated checksum for the last verified message as text, for logging.
+     *
+     * @return checksum.
+     */
+    public String getCalculatedChecksum() {
+        return _lastChecksum != null ? _lastChecksum.getText() : null;
+    }
+
+    private IncrementalChecksum getChecksum(ChecksumAlgorithm algorithm) {
+        IncrementalChecksum checksum = _checksums[algorithm.ordinal()];
+        if (checksum == null) {
+            checksum = algorithm.createIncrementalChecksum();
+            _checksums[algorithm.ordinal()] = checksum;
+        }
+        return checksum;
+    }
+
+    private int updateWithBytes(IncrementalChecksum checksum, BytesMessage msg) throws JMSException {
+        int length = 0;
+        int count;
+        while ((count = msg.readBytes(_buffer)) > 0) {
+            checksum.update(_buffer, 0, count);
+            length += count;
+        }
+        msg.reset();
+        return length;
+    }
+
+    private int updateWithText(IncrementalChecksum checksum, String text) {
+        CharBuffer in = CharBuffer.wrap(text);
+        _encoder.reset();
+        int length = 0;
+        boolean endOfInput = false;
+        while (true) {
+            _byteBuffer.clear();
+            CoderResult result = endOfInput ? _encoder.flush(_byteBuffer) : _encoder.encode(in, _byteBuffer, true);
+            int count = _byteBuffer.position();
+            if (count > 0) {
+                checksum.update(_buffer, 0, count);
+                length += count;
+            }
+            if (result.isUnderflow()) {
+                if (endOfInput) {
+                    return length;
+                }
+                endOfInput = true;
+            }
+        }
+    }
+}
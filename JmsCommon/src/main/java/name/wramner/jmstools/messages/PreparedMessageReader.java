@@ -0,0 +1,481 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Sequential reader for prepared messages. The source can be a single file, a directory tree or a zip or tar archive
+ * (optionally gzipped). Files are returned one at a time, so the size of the source is not limited by the heap.
+ * Directories are walked recursively in alphabetical order, one directory listing at a time; archives are read in
+ * archive order. A &quot;.payload&quot; file is paired with the &quot;.headers&quot; file with the same base name.
+ * In archives the headers entry should be stored next to the payload entry.
+ *
+ * @author Erik Wramner
+ */
+abstract class PreparedMessageReader implements Closeable {
+    private static final String PAYLOAD_SUFFIX = ".payload";
+    private static final String HEADERS_SUFFIX = ".headers";
+
+    /**
+     * Open a reader for a file, directory or archive.
+     *
+     * @param source The source.
+     * @return reader.
+     * @throws IOException on failure to open the source.
+     */
+    static PreparedMessageReader open(File source) throws IOException {
+        if (source.isDirectory()) {
+            return new DirectoryReader(source);
+        }
+        String name = source.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".zip")) {
+            return new ZipReader(new BufferedInputStream(new FileInputStream(source)));
+        }
+        if (name.endsWith(".tar")) {
+            return new TarReader(new BufferedInputStream(new FileInputStream(source)));
+        }
+        if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return new TarReader(new BufferedInputStream(new GZIPInputStream(new FileInputStream(source), 65536)));
+        }
+        return new DirectoryReader(source);
+    }
+
+    /**
+     * Read the next prepared message.
+     *
+     * @return message or null if there are no more messages.
+     * @throws IOException on read errors.
+     */
+    abstract PreparedMessageFile next() throws IOException;
+
+    /**
+     * Read headers in properties format.
+     *
+     * @param bytes The bytes.
+     * @return headers.
+     * @throws IOException on parse errors.
+     */
+    static Map<String, String> readHeaders(byte[] bytes) throws IOException {
+        return BaseMessageProvider.readHeaders(new ByteArrayInputStream(bytes));
+    }
+
+    private static boolean isPayload(String name) {
+        return name.endsWith(PAYLOAD_SUFFIX);
+    }
+
+    private static boolean isHeaders(String name) {
+        return name.endsWith(HEADERS_SUFFIX);
+    }
+
+    private static String baseName(String name) {
+        return name.substring(0, name.length() - (isPayload(name) ? PAYLOAD_SUFFIX : HEADERS_SUFFIX).length());
+    }
+
+    /**
+     * A prepared message read from the source.
+     */
+    static class PreparedMessageFile {
+        private final String _name;
+        private final byte[] _payload;
+        private final Map<String, String> _headers;
+
+        PreparedMessageFile(String name, byte[] payload, Map<String, String> headers) {
+            _name = name;
+            _payload = payload;
+            _headers = headers;
+        }
+
+        String getName() {
+            return _name;
+        }
+
+        byte[] getPayload() {
+            return _payload;
+        }
+
+        Map<String, String> getHeaders() {
+            return _headers;
+        }
+    }
+
+    /**
+     * Reader for a single file or a directory tree. Only one directory listing per level is kept in memory.
+     */
+    private static class DirectoryReader extends PreparedMessageReader {
+        private final Deque<Iterator<File>> _stack = new ArrayDeque<>();
+
+        DirectoryReader(File source) {
+            _stack.push(Collections.singletonList(source).iterator());
+        }
+
+        @Override
+        PreparedMessageFile next() throws IOException {
+            while (!_stack.isEmpty()) {
+                Iterator<File> it = _stack.peek();
+                if (!it.hasNext()) {
+                    _stack.pop();
+                    continue;
+                }
+                File f = it.next();
+                if (f.isDirectory()) {
+                    File[] files = f.listFiles();
+                    if (files == null) {
+                        throw new IOException("Failed to list " + f);
+                    }
+                    Arrays.sort(files);
+                    _stack.push(Arrays.asList(files).iterator());
+                } else if (f.isFile() && !isHeaders(f.getName())) {
+                    String name = f.getName();
+                    Map<String, String> headers = isPayload(name)
+                                    ? BaseMessageProvider.readHeaders(
+                                                    new File(f.getParentFile(), baseName(name) + HEADERS_SUFFIX))
+                                    : Collections.emptyMap();
+                    return new PreparedMessageFile(f.getPath(), Files.readAllBytes(f.toPath()), headers);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            _stack.clear();
+        }
+    }
+
+    /**
+     * Base class for archives, which can only be read sequentially. Headers entries seen before their payload entries
+     * are kept until the payload turns up and a payload entry is held back one entry in case the headers follow.
+     */
+    private static abstract class ArchiveReader extends PreparedMessageReader {
+        private final Map<String, Map<String, String>> _headersByBaseName = new HashMap<>();
+        private PreparedMessageFile _pendingPayload;
+        private boolean _endOfArchive;
+
+        /**
+         * Move to the next regular file entry.
+         *
+         * @return entry name or null at end of archive.
+         * @throws IOException on read errors.
+         */
+        protected abstract String nextEntry() throws IOException;
+
+        /**
+         * Read the contents of the current entry.
+         *
+         * @return contents.
+         * @throws IOException on read errors.
+         */
+        protected abstract byte[] readEntry() throws IOException;
+
+        @Override
+        PreparedMessageFile next() throws IOException {
+            while (!_endOfArchive) {
+                String name = nextEntry();
+                if (name == null) {
+                    _endOfArchive = true;
+                    break;
+                }
+                if (isHeaders(name)) {
+                    Map<String, String> headers = readHeaders(readEntry());
+                    String baseName = baseName(name);
+                    if (_pendingPayload != null && isPayload(_pendingPayload.getName())
+                                    && baseName(_pendingPayload.getName()).equals(baseName)) {
+                        PreparedMessageFile msg = new PreparedMessageFile(_pendingPayload.getName(),
+                                        _pendingPayload.getPayload(), headers);
+                        _pendingPayload = null;
+                        return msg;
+                    }
+                    _headersByBaseName.put(baseName, headers);
+                    continue;
+                }
+                PreparedMessageFile previous = _pendingPayload;
+                _pendingPayload = null;
+                byte[] payload = readEntry();
+                if (isPayload(name)) {
+                    Map<String, String> headers = _headersByBaseName.remove(baseName(name));
+                    if (headers != null) {
+                        return returnAfter(previous, new PreparedMessageFile(name, payload, headers));
+                    }
+                    _pendingPayload = new PreparedMessageFile(name, payload, Collections.emptyMap());
+                    if (previous != null) {
+                        return previous;
+                    }
+                } else {
+                    return returnAfter(previous, new PreparedMessageFile(name, payload, Collections.emptyMap()));
+                }
+            }
+            PreparedMessageFile last = _pendingPayload;
+            _pendingPayload = null;
+            return last;
+        }
+
+        private PreparedMessageFile returnAfter(PreparedMessageFile previous, PreparedMessageFile msg) {
+            if (previous == null) {
+                return msg;
+            }
+            _pendingPayload = msg;
+            return previous;
+        }
+    }
+
+    /**
+     * Reader for zip archives. The archive is read as a stream, the central directory is not used.
+     */
+    private static class ZipReader extends ArchiveReader {
+        private final ZipInputStream _zipInputStream;
+
+        ZipReader(InputStream is) {
+            _zipInputStream = new ZipInputStream(is);
+        }
+
+        @Override
+        protected String nextEntry() throws IOException {
+            ZipEntry entry;
+            while ((entry = _zipInputStream.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    return entry.getName();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected byte[] readEntry() throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = _zipInputStream.read(buffer)) != -1) {
+                bos.write(buffer, 0, n);
+            }
+            return bos.toByteArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            _zipInputStream.close();
+        }
+    }
+
+    /**
+     * Minimal reader for ustar, GNU and pax tar archives. Only regular files are returned; long GNU names and the path
+     * in pax extended headers are supported, other extensions (global pax headers, links) are skipped.
+     */
+    private static class TarReader extends ArchiveReader {
+        private static final int BLOCK_SIZE = 512;
+        private final InputStream _is;
+        private final byte[] _header = new byte[BLOCK_SIZE];
+        private long _entrySize;
+        private boolean _entryRead;
+
+        TarReader(InputStream is) {
+            _is = is;
+        }
+
+        @Override
+        protected String nextEntry() throws IOException {
+            if (!_entryRead) {
+                skipFully(padded(_entrySize));
+            }
+            String longName = null;
+            while (true) {
+                if (!readBlock(_header)) {
+                    return null;
+                }
+                _entrySize = parseOctal(_header, 124, 12);
+                _entryRead = false;
+                byte type = _header[156];
+                if (type == 'L') {
+                    longName = cString(readEntry(), 0, (int) _entrySize);
+                } else if (type == 'x') {
+                    String paxPath = parsePaxPath(readEntry());
+                    if (paxPath != null) {
+                        longName = paxPath;
+                    }
+                } else if (type == '0' || type == 0) {
+                    return longName != null ? longName : entryName();
+                } else {
+                    skipFully(padded(_entrySize));
+                    longName = null;
+                }
+            }
+        }
+
+        @Override
+        protected byte[] readEntry() throws IOException {
+            if (_entrySize > Integer.MAX_VALUE - BLOCK_SIZE) {
+                throw new IOException("Tar entry too large: " + _entrySize + " bytes");
+            }
+            byte[] data = new byte[(int) _entrySize];
+            readFully(data);
+            skipFully(padded(_entrySize) - _entrySize);
+            _entryRead = true;
+            return data;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _is.close();
+        }
+
+        private String entryName() {
+            String name = cString(_header, 0, 100);
+            if (cString(_header, 257, 5).equals("ustar")) {
+                String prefix = cString(_header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+            }
+            return name;
+        }
+
+        private boolean readBlock(byte[] block) throws IOException {
+            int offset = 0;
+            while (offset < block.length) {
+                int n = _is.read(block, offset, block.length - offset);
+                if (n == -1) {
+                    if (offset == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Truncated tar header");
+                }
+                offset += n;
+            }
+            for (byte b : block) {
+                if (b != 0) {
+                    return true;
+                }
+            }
+            // End of archive marker
+            return false;
+        }
+
+        private void readFully(byte[] data) throws IOException {
+            int offset = 0;
+            while (offset < data.length) {
+                int n = _is.read(data, offset, data.length - offset);
+                if (n == -1) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                offset += n;
+            }
+        }
+
+        private void skipFully(long bytes) throws IOException {
+            long remaining = bytes;
+            while (remaining > 0) {
+                long n = _is.skip(remaining);
+                if (n <= 0) {
+                    if (_is.read() == -1) {
+                        throw new EOFException("Truncated tar entry");
+                    }
+                    n = 1;
+                }
+                remaining -= n;
+            }
+        }
+
+        private static long padded(long size) {
+            return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+        }
+
+        private static long parseOctal(byte[] header, int offset, int length) throws IOException {
+            long value = 0;
+            for (int i = offset; i < offset + length; i++) {
+                byte b = header[i];
+                if (b == 0 || b == ' ') {
+                    if (value > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (b < '0' || b > '7') {
+                    throw new IOException("Invalid size in tar header");
+                }
+                value = (value << 3) + (b - '0');
+            }
+            return value;
+        }
+
+        /**
+         * Parse the path from pax extended header records of the form &quot;length key=value\n&quot;, where the length
+         * is the number of bytes in the whole record.
+         *
+         * @param data The extended header data.
+         * @return path or null if not present.
+         * @throws IOException if the header is malformed.
+         */
+        private static String parsePaxPath(byte[] data) throws IOException {
+            String path = null;
+            int offset = 0;
+            while (offset < data.length) {
+                int space = offset;
+                while (space < data.length && data[space] != ' ') {
+                    space++;
+                }
+                int length;
+                try {
+                    length = Integer.parseInt(new String(data, offset, space - offset, StandardCharsets.US_ASCII));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid pax header record length in tar archive");
+                }
+                int end = offset + length;
+                if (length <= space - offset + 1 || end > data.length || data[end - 1] != '\n') {
+                    throw new IOException("Invalid pax header record in tar archive");
+                }
+                String record = new String(data, space + 1, end - space - 2, StandardCharsets.UTF_8);
+                int equals = record.indexOf('=');
+                if (equals < 0) {
+                    throw new IOException("Invalid pax header record in tar archive: " + record);
+                }
+                if (record.substring(0, equals).equals("path")) {
+                    path = record.substring(equals + 1);
+                }
+                offset = end;
+            }
+            return path;
+        }
+
+        private static String cString(byte[] bytes, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && bytes[end] != 0) {
+                end++;
+            }
+            return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+        }
+    }
+}
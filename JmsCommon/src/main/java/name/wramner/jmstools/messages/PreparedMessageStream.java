@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import name.wramner.jmstools.messages.PreparedMessageReader.PreparedMessageFile;
+import name.wramner.jmstools.stopcontroller.StopController;
+
+/**
+ * Stream of prepared messages read by a background thread into a bounded buffer. Only the read-ahead window is kept
+ * in memory, so the source can be far larger than the heap. In ordered mode messages are returned in source order;
+ * otherwise a random message is picked from the window. When the source is exhausted it is read again from the start
+ * unless duplicates are forbidden, in which case the stream ends. Consumers waiting for the reader give up when the
+ * stop controller says so, and get the failure if the reader fails.
+ *
+ * @author Erik Wramner
+ *
+ * @param <T> The message data type.
+ */
+class PreparedMessageStream<T> {
+    private static final long TAKE_POLL_MILLIS = 100L;
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final File _source;
+    private final Function<byte[], T> _messageDataFactory;
+    private final boolean _ordered;
+    private final boolean _noDuplicates;
+    private final Random _random = new Random();
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _notEmpty = _lock.newCondition();
+    private final Condition _notFull = _lock.newCondition();
+    private final Object[] _buffer;
+    private int _head;
+    private int _count;
+    private boolean _started;
+    private boolean _endOfStream;
+    private Exception _failure;
+    private volatile StopController _stopController;
+
+    /**
+     * Constructor. The reader thread is started on the first call to {@link #take()}.
+     *
+     * @param source The file, directory tree or archive to read.
+     * @param messageDataFactory The factory for message data.
+     * @param ordered The flag to return messages in source order rather than randomly within the window.
+     * @param noDuplicates The flag to end the stream rather than reading the source again.
+     * @param readAheadMessages The maximum number of messages to buffer.
+     */
+    PreparedMessageStream(File source, Function<byte[], T> messageDataFactory, boolean ordered, boolean noDuplicates,
+                    int readAheadMessages) {
+        if (readAheadMessages < 1) {
+            throw new IllegalArgumentException("Read-ahead must be at least one message");
+        }
+        _source = source;
+        _messageDataFactory = messageDataFactory;
+        _ordered = ordered;
+        _noDuplicates = noDuplicates;
+        _buffer = new Object[readAheadMessages];
+    }
+
+    /**
+     * Set the stop controller that makes consumers stop waiting for the reader.
+     *
+     * @param stopController The stop controller.
+     */
+    void setStopController(StopController stopController) {
+        _stopController = stopController;
+    }
+
+    /**
+     * Take the next message, waiting for the reader if the buffer is empty.
+     *
+     * @return message or null if the stream has ended or the stop controller says stop while waiting.
+     * @throws UncheckedIOException if the source could not be read.
+     * @throws IllegalStateException if the reader failed with an unexpected exception.
+     */
+    PreparedMessage<T> take() {
+        while (true) {
+            _lock.lock();
+            try {
+                if (!_started) {
+                    startReader();
+                }
+                if (_count == 0 && !_endOfStream) {
+                    try {
+                        _notEmpty.await(TAKE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+                if (_count > 0) {
+                    return removeMessage();
+                }
+                if (_endOfStream) {
+                    if (_failure instanceof IOException) {
+                        throw new UncheckedIOException("Failed to read prepared messages from " + _source,
+                                        (IOException) _failure);
+                    }
+                    if (_failure != null) {
+                        throw new IllegalStateException("Failed to read prepared messages from " + _source, _failure);
+                    }
+                    return null;
+                }
+            } finally {
+                _lock.unlock();
+            }
+            // Check outside the lock, the stop controller may ask if the stream is exhausted
+            StopController stopController = _stopController;
+            if (stopController != null && !stopController.keepRunning()) {
+                return null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private PreparedMessage<T> removeMessage() {
+        if (!_ordered && _count > 1) {
+            int i = (_head + _random.nextInt(_count)) % _buffer.length;
+            Object picked = _buffer[i];
+            _buffer[i] = _buffer[_head];
+            _buffer[_head] = picked;
+        }
+        PreparedMessage<T> msg = (PreparedMessage<T>) _buffer[_head];
+        _buffer[_head] = null;
+        _head = (_head + 1) % _buffer.length;
+        _count--;
+        _notFull.signal();
+        return msg;
+    }
+
+    /**
+     * Check if all messages have been taken and the stream has ended. That only happens when duplicates are forbidden
+     * or when the source could not be read.
+     *
+     * @return true if exhausted.
+     */
+    boolean isExhausted() {
+        _lock.lock();
+        try {
+            return _endOfStream && _count == 0;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private void startReader() {
+        _started = true;
+        Thread t = new Thread(this::readMessages, "PreparedMessageReader");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void readMessages() {
+        try {
+            do {
+                int messagesInPass = 0;
+                try (PreparedMessageReader reader = PreparedMessageReader.open(_source)) {
+                    PreparedMessageFile file;
+                    while ((file = reader.next()) != null) {
+                        put(new PreparedMessage<>(_messageDataFactory.apply(file.getPayload()), file.getHeaders()));
+                        messagesInPass++;
+                    }
+                }
+                if (messagesInPass == 0) {
+                    throw new IOException("No prepared messages found");
+                }
+                _logger.debug("Read {} prepared messages from {}", messagesInPass, _source);
+            } while (!_noDuplicates);
+        } catch (IOException | RuntimeException e) {
+            _logger.error("Failed to read prepared messages from " + _source, e);
+            _failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            _lock.lock();
+            try {
+                _endOfStream = true;
+                _notEmpty.signalAll();
+            } finally {
+                _lock.unlock();
+            }
+        }
+    }
+
+    private void put(PreparedMessage<T> msg) throws InterruptedException {
+        _lock.lock();
+        try {
+            while (_count == _buffer.length) {
+                _notFull.await();
+            }
+            _buffer[(_head + _count) % _buffer.length] = msg;
+            _count++;
+            _notEmpty.signal();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Message data with prepared headers.
+     *
+     * @param <T> The message data type.
+     */
+    static class PreparedMessage<T> {
+        private final T _messageData;
+        private final Map<String, String> _headers;
+
+        PreparedMessage(T messageData, Map<String, String> headers) {
+            _messageData = messageData;
+            _headers = headers;
+        }
+
+        T getMessageData() {
+            return _messageData;
+        }
+
+        Map<String, String> getHeaders() {
+            return _headers;
+        }
+    }
+}
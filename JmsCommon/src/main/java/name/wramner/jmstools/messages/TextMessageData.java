@@ -23,18 +23,19 @@ import javax.jms.TextMessage;
  * Message data for JMS {@link TextMessage} messages.
  */
 public class TextMessageData extends ChecksummedMessageData {
-    private static final Charset TEXT_ENCODING = Charset.forName("UTF-8");
+    static final Charset TEXT_ENCODING = Charset.forName("UTF-8");
     private final String _data;
 
     /**
      * Constructor.
      * <p>
-     * Note that the checksum calculated by the super class uses the UTF-8 encoding.
+     * Note that the checksum calculated by the super class uses the UTF-8 encoding. The text is only encoded if the
+     * checksum is needed, the length is counted without encoding it.
      * 
      * @param data The message text.
      */
     public TextMessageData(String data) {
-        super(textToBytes(data));
+        super(utf8Length(data));
         _data = data;
     }
 
@@ -47,6 +48,14 @@ public class TextMessageData extends ChecksummedMessageData {
         return _data;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected byte[] getPayloadBytes() {
+        return textToBytes(_data);
+    }
+
     /**
      * Convert text to byte array.
      * 
@@ -56,4 +65,32 @@ public class TextMessageData extends ChecksummedMessageData {
     public static byte[] textToBytes(String data) {
         return data.getBytes(TEXT_ENCODING);
     }
+
+    /**
+     * Count the bytes in the UTF-8 encoding of a text without encoding it. Unpaired surrogates count as one byte, as
+     * they are replaced with a question mark when the text is encoded.
+     *
+     * @param data The text/data.
+     * @return number of bytes.
+     */
+    static int utf8Length(String data) {
+        int length = data.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                                && Character.isLowSurrogate(data.charAt(i + 1))) {
+                    // Four bytes for the pair
+                    bytes += 2;
+                    i++;
+                }
+            }
+        }
+        return bytes;
+    }
 }
\ No newline at end of file
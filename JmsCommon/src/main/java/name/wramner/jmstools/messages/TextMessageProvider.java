@@ -17,6 +17,7 @@ package name.wramner.jmstools.messages;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Map;
@@ -59,6 +60,37 @@ public class TextMessageProvider extends BaseMessageProvider<TextMessageData> {
         super(directory, encoding, null, ordered, noDuplicates);
     }
 
+    /**
+     * Constructor for prepared messages streamed from a directory tree or a zip or tar archive.
+     *
+     * @param source The message directory or archive.
+     * @param encoding The encoding for the files.
+     * @param commonHeaders The JMS headers common to all messages.
+     * @param ordered The flag to send messages in source order or in random order within the read-ahead window.
+     * @param noDuplicates The flag to stop rather than reading the source again.
+     * @param readAheadMessages The maximum number of messages to read ahead.
+     */
+    public TextMessageProvider(File source, String encoding, Map<String, String> commonHeaders, boolean ordered,
+                    boolean noDuplicates, int readAheadMessages) {
+        super(source, encoding, commonHeaders, ordered, noDuplicates, readAheadMessages);
+    }
+
+    /**
+     * Constructor for prepared messages in a memory-mapped corpus.
+     *
+     * @param corpus The corpus, packed as text.
+     * @param commonHeaders The JMS headers common to all messages.
+     * @param ordered The flag to send messages in alphabetical order or in random order.
+     * @param noDuplicates The flag to stop rather than returning the same message twice.
+     */
+    public TextMessageProvider(MappedMessageCorpus corpus, Map<String, String> commonHeaders, boolean ordered,
+                    boolean noDuplicates) {
+        super(corpus, commonHeaders, ordered, noDuplicates);
+        if (!corpus.isText()) {
+            throw new IllegalArgumentException("The message corpus has not been packed for text messages");
+        }
+    }
+
     /**
      * Constructor for random messages.
      *
@@ -102,4 +134,12 @@ public class TextMessageProvider extends BaseMessageProvider<TextMessageData> {
     protected Message createMessageWithPayload(Session session, TextMessageData messageData) throws JMSException {
         return session.createTextMessage(messageData.getData());
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Message createMessageWithPayload(Session session, ByteBuffer payload) throws JMSException {
+        return session.createTextMessage(TextMessageData.TEXT_ENCODING.decode(payload).toString());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import java.util.zip.Checksum;
+
+/**
+ * Pure Java implementation of the 64-bit xxHash non-cryptographic hash function with seed 0. The static method hashes
+ * a complete buffer, instances hash data incrementally and are not thread safe.
+ *
+ * @author Erik Wramner
+ */
+public final class XxHash64 implements Checksum {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    // PRIME1 + PRIME2, wrapping around
+    private static final long INITIAL_V1 = 0x60EA27EEADC0B5D6L;
+    private static final int STRIPE_LENGTH = 32;
+    private final byte[] _stripe = new byte[STRIPE_LENGTH];
+    private int _stripeLength;
+    private long _totalLength;
+    private long _v1;
+    private long _v2;
+    private long _v3;
+    private long _v4;
+
+    /**
+     * Constructor.
+     */
+    public XxHash64() {
+        reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(int b) {
+        _stripe[_stripeLength++] = (byte) b;
+        _totalLength++;
+        if (_stripeLength == STRIPE_LENGTH) {
+            processStripe(_stripe, 0);
+            _stripeLength = 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(byte[] data, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        _totalLength += length;
+        if (_stripeLength > 0) {
+            int count = Math.min(STRIPE_LENGTH - _stripeLength, length);
+            System.arraycopy(data, i, _stripe, _stripeLength, count);
+            _stripeLength += count;
+            i += count;
+            if (_stripeLength < STRIPE_LENGTH) {
+                return;
+            }
+            processStripe(_stripe, 0);
+            _stripeLength = 0;
+        }
+        while (end - i >= STRIPE_LENGTH) {
+            processStripe(data, i);
+            i += STRIPE_LENGTH;
+        }
+        _stripeLength = end - i;
+        System.arraycopy(data, i, _stripe, 0, _stripeLength);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getValue() {
+        long h = _totalLength >= STRIPE_LENGTH ? mergeAccumulators(_v1, _v2, _v3, _v4) : PRIME5;
+        return finish(h + _totalLength, _stripe, 0, _stripeLength);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        _v1 = INITIAL_V1;
+        _v2 = PRIME2;
+        _v3 = 0L;
+        _v4 = -PRIME1;
+        _stripeLength = 0;
+        _totalLength = 0L;
+    }
+
+    private void processStripe(byte[] data, int i) {
+        _v1 = round(_v1, getLong(data, i));
+        _v2 = round(_v2, getLong(data, i + 8));
+        _v3 = round(_v3, getLong(data, i + 16));
+        _v4 = round(_v4, getLong(data, i + 24));
+    }
+
+    /**
+     * Calculate the hash.
+     *
+     * @param data The data.
+     * @param offset The offset in the data.
+     * @param length The number of bytes.
+     * @return hash.
+     */
+    public static long calculate(byte[] data, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        long h;
+        if (length >= STRIPE_LENGTH) {
+            long v1 = INITIAL_V1;
+            long v2 = PRIME2;
+            long v3 = 0L;
+            long v4 = -PRIME1;
+            int limit = end - STRIPE_LENGTH;
+            do {
+                v1 = round(v1, getLong(data, i));
+                v2 = round(v2, getLong(data, i + 8));
+                v3 = round(v3, getLong(data, i + 16));
+                v4 = round(v4, getLong(data, i + 24));
+                i += STRIPE_LENGTH;
+            } while (i <= limit);
+            h = mergeAccumulators(v1, v2, v3, v4);
+        } else {
+            h = PRIME5;
+        }
+        return finish(h + length, data, i, end);
+    }
+
+    private static long mergeAccumulators(long v1, long v2, long v3, long v4) {
+        long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+        h = mergeRound(h, v1);
+        h = mergeRound(h, v2);
+        h = mergeRound(h, v3);
+        return mergeRound(h, v4);
+    }
+
+    private static long finish(long h, byte[] data, int i, int end) {
+        while (i + 8 <= end) {
+            h ^= round(0L, getLong(data, i));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+            i += 8;
+        }
+        if (i + 4 <= end) {
+            h ^= (getInt(data, i) & 0xffffffffL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        while (i < end) {
+            h ^= (data[i] & 0xff) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+            i++;
+        }
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0L, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static long getLong(byte[] data, int i) {
+        return (data[i] & 0xffL) | (data[i + 1] & 0xffL) << 8 | (data[i + 2] & 0xffL) << 16
+                        | (data[i + 3] & 0xffL) << 24 | (data[i + 4] & 0xffL) << 32 | (data[i + 5] & 0xffL) << 40
+                        | (data[i + 6] & 0xffL) << 48 | (data[i + 7] & 0xffL) << 56;
+    }
+
+    private static int getInt(byte[] data, int i) {
+        return (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16 | (data[i + 3] & 0xff) << 24;
+    }
+}
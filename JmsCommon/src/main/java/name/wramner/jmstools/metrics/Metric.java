@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * A named value that can be exported while a test is running.
+ *
+ * @author Erik Wramner
+ */
+public class Metric {
+    private final String _name;
+    private final String _help;
+    private final MetricType _type;
+    private final Supplier<? extends Number> _valueSupplier;
+
+    /**
+     * Constructor.
+     *
+     * @param name The name, following the Prometheus naming conventions.
+     * @param help The description.
+     * @param type The metric type.
+     * @param valueSupplier The supplier for the current value.
+     */
+    public Metric(String name, String help, MetricType type, Supplier<? extends Number> valueSupplier) {
+        _name = name;
+        _help = help;
+        _type = type;
+        _valueSupplier = valueSupplier;
+    }
+
+    /**
+     * Get the name.
+     *
+     * @return name.
+     */
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Get the description.
+     *
+     * @return help text.
+     */
+    public String getHelp() {
+        return _help;
+    }
+
+    /**
+     * Get the type.
+     *
+     * @return type.
+     */
+    public MetricType getType() {
+        return _type;
+    }
+
+    /**
+     * Get the current value.
+     *
+     * @return value.
+     */
+    public Number getValue() {
+        return _valueSupplier.get();
+    }
+}
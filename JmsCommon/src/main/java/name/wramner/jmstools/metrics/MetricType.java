@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.metrics;
+
+/**
+ * The supported metric types.
+ *
+ * @author Erik Wramner
+ */
+public enum MetricType {
+    /**
+     * A value that only increases, such as the number of messages.
+     */
+    COUNTER("counter"),
+    /**
+     * A value that can go up and down, such as the current sleep time.
+     */
+    GAUGE("gauge");
+
+    private final String _prometheusName;
+
+    private MetricType(String prometheusName) {
+        _prometheusName = prometheusName;
+    }
+
+    /**
+     * Get the type name in the Prometheus text format.
+     *
+     * @return type name.
+     */
+    public String getPrometheusName() {
+        return _prometheusName;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exports a {@link MetricsRegistry} while a test is running, over HTTP in the Prometheus text format and/or as a JMX
+ * MBean in the platform MBean server. The HTTP server uses the small server built into the JDK and serves the metrics
+ * on the path {@code /metrics}. Close the exporter to stop the server and unregister the MBean.
+ *
+ * @author Erik Wramner
+ */
+public class MetricsExporter implements AutoCloseable {
+    private static final String METRICS_PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final int HTTP_OK = 200;
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final MetricsRegistry _registry;
+    private final HttpServer _httpServer;
+    private final ObjectName _objectName;
+
+    /**
+     * Constructor. Starts the HTTP server and registers the MBean.
+     *
+     * @param registry The metrics registry.
+     * @param httpPort The port for the HTTP server or null for no HTTP server.
+     * @param mbeanName The name for the MBean or null for no MBean.
+     * @throws IOException if the HTTP server cannot be started.
+     * @throws JMException if the MBean cannot be registered.
+     */
+    public MetricsExporter(MetricsRegistry registry, Integer httpPort, String mbeanName)
+                    throws IOException, JMException {
+        _registry = registry;
+        if (httpPort != null) {
+            _httpServer = HttpServer.create(new InetSocketAddress(httpPort.intValue()), 0);
+            _httpServer.createContext(METRICS_PATH, this::handleMetricsRequest);
+            _httpServer.start();
+            _logger.info("Metrics available on http://localhost:{}{}", _httpServer.getAddress().getPort(),
+                            METRICS_PATH);
+        } else {
+            _httpServer = null;
+        }
+        if (mbeanName != null) {
+            _objectName = new ObjectName("name.wramner.jmstools:type=Metrics,name=" + mbeanName);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(registry), _objectName);
+            } catch (JMException e) {
+                stopHttpServer();
+                throw e;
+            }
+            _logger.info("Metrics available as MBean {}", _objectName);
+        } else {
+            _objectName = null;
+        }
+    }
+
+    /**
+     * Get the port used by the HTTP server, useful when the port was given as 0 (any free port).
+     *
+     * @return port or -1 if there is no HTTP server.
+     */
+    public int getHttpPort() {
+        return _httpServer != null ? _httpServer.getAddress().getPort() : -1;
+    }
+
+    /**
+     * Stop the HTTP server and unregister the MBean.
+     */
+    @Override
+    public void close() {
+        stopHttpServer();
+        if (_objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(_objectName);
+            } catch (JMException e) {
+                _logger.warn("Failed to unregister MBean {}", _objectName, e);
+            }
+        }
+    }
+
+    private void stopHttpServer() {
+        if (_httpServer != null) {
+            _httpServer.stop(0);
+        }
+    }
+
+    private void handleMetricsRequest(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder sb = new StringBuilder(4096);
+            _registry.writePrometheusText(sb);
+            byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
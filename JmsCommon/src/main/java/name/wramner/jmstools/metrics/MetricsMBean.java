@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+import org.HdrHistogram.Histogram;
+
+import name.wramner.jmstools.latency.LatencyType;
+
+/**
+ * Read-only MBean that exposes the metrics in a {@link MetricsRegistry} as JMX attributes. Counters and gauges keep
+ * their names. Latency percentiles for the last interval sampled by the registry are exposed in milliseconds with names
+ * such as {@code jmstools_latency_send_p99_ms}.
+ *
+ * @author Erik Wramner
+ */
+public class MetricsMBean implements DynamicMBean {
+    private static final double MILLIS_PER_SECOND = 1000.0;
+    private final MetricsRegistry _registry;
+
+    /**
+     * Constructor.
+     *
+     * @param registry The metrics registry.
+     */
+    public MetricsMBean(MetricsRegistry registry) {
+        _registry = registry;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<? extends Number> supplier = getAttributeSuppliers().get(attribute);
+        if (supplier == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return supplier.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Supplier<? extends Number>> suppliers = getAttributeSuppliers();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Supplier<? extends Number> supplier = suppliers.get(attribute);
+            if (supplier != null) {
+                list.add(new Attribute(attribute, supplier.get()));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Not supported, all attributes are read-only.
+     *
+     * @param attribute The attribute.
+     * @throws AttributeNotFoundException always.
+     */
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only attribute " + attribute.getName());
+    }
+
+    /**
+     * Not supported, all attributes are read-only.
+     *
+     * @param attributes The attributes.
+     * @return empty list.
+     */
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /**
+     * Not supported, there are no operations.
+     *
+     * @param actionName The operation name.
+     * @param params The parameters.
+     * @param signature The parameter types.
+     * @return nothing.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("No operations: " + actionName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Metric metric : _registry.getMetrics()) {
+            attributes.add(new MBeanAttributeInfo(metric.getName(), metric.getValue().getClass().getName(),
+                            metric.getHelp(), true, false, false));
+        }
+        for (String name : getLatencyAttributeSuppliers().keySet()) {
+            attributes.add(new MBeanAttributeInfo(name, Double.class.getName(),
+                            "Latency percentile in milliseconds since the previous sample", true, false,
+                            false));
+        }
+        return new MBeanInfo(getClass().getName(), "JmsTools metrics",
+                        attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+                        new MBeanOperationInfo[0], null);
+    }
+
+    private Map<String, Supplier<? extends Number>> getAttributeSuppliers() {
+        Map<String, Supplier<? extends Number>> suppliers = new LinkedHashMap<>();
+        for (Metric metric : _registry.getMetrics()) {
+            suppliers.put(metric.getName(), metric::getValue);
+        }
+        suppliers.putAll(getLatencyAttributeSuppliers());
+        return suppliers;
+    }
+
+    private Map<String, Supplier<? extends Number>> getLatencyAttributeSuppliers() {
+        Map<String, Supplier<? extends Number>> suppliers = new LinkedHashMap<>();
+        if (_registry.getLatencyStatistics() != null) {
+            for (LatencyType type : LatencyType.values()) {
+                for (double quantile : MetricsRegistry.LATENCY_QUANTILES) {
+                    String name = String.format(Locale.ROOT, "jmstools_latency_%s_p%s_ms",
+                                    type.getDisplayName().replace(' ', '_'),
+                                    BigDecimal.valueOf(quantile).movePointRight(2).stripTrailingZeros().toPlainString()
+                                                    .replace('.', '_'));
+                    suppliers.put(name, () -> Double.valueOf(getPercentileMillis(type, quantile)));
+                }
+            }
+        }
+        return suppliers;
+    }
+
+    private double getPercentileMillis(LatencyType type, double quantile) {
+        Histogram[] histograms = _registry.getIntervalHistograms();
+        if (histograms == null) {
+            return Double.NaN;
+        }
+        return MetricsRegistry.getPercentileSeconds(histograms[type.ordinal()], quantile) * MILLIS_PER_SECOND;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.metrics;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Histogram;
+
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.latency.LatencyStatistics;
+import name.wramner.jmstools.latency.LatencyStatistics.IntervalSampler;
+import name.wramner.jmstools.latency.LatencyType;
+
+/**
+ * The metrics for a running producer or consumer. Counters and gauges are registered when the workers are created and
+ * read when the metrics are exported, so exporting never slows the workers down. Latency percentiles are sampled by
+ * the registry itself when the metrics are read, at most once per second, so they cover the time since the previous
+ * sample regardless of the latency log interval and whether the latency log is enabled at all.
+ *
+ * @author Erik Wramner
+ */
+public class MetricsRegistry {
+    static final double[] LATENCY_QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String LATENCY_METRIC_NAME = "jmstools_latency_seconds";
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+    private static final long MIN_LATENCY_SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+    private final List<Metric> _metrics = new CopyOnWriteArrayList<>();
+    private LatencyStatistics _latencyStatistics;
+    private IntervalSampler _latencySampler;
+    private Histogram[] _intervalHistograms;
+    private long _lastLatencySampleNanos;
+
+    /**
+     * Register a counter.
+     *
+     * @param name The metric name.
+     * @param help The description.
+     * @param counter The counter.
+     */
+    public void addCounter(String name, String help, Counter counter) {
+        _metrics.add(new Metric(name, help, MetricType.COUNTER, counter::getCount));
+    }
+
+    /**
+     * Register a gauge.
+     *
+     * @param name The metric name.
+     * @param help The description.
+     * @param valueSupplier The supplier for the current value.
+     */
+    public void addGauge(String name, String help, Supplier<? extends Number> valueSupplier) {
+        _metrics.add(new Metric(name, help, MetricType.GAUGE, valueSupplier));
+    }
+
+    /**
+     * Register latency statistics.
+     *
+     * @param latencyStatistics The latency statistics or null if latencies are not recorded.
+     */
+    public synchronized void setLatencyStatistics(LatencyStatistics latencyStatistics) {
+        _latencyStatistics = latencyStatistics;
+        _latencySampler = latencyStatistics != null ? latencyStatistics.createIntervalSampler() : null;
+        _intervalHistograms = null;
+    }
+
+    /**
+     * Get the registered counters and gauges.
+     *
+     * @return unmodifiable list with metrics.
+     */
+    public List<Metric> getMetrics() {
+        return Collections.unmodifiableList(_metrics);
+    }
+
+    /**
+     * Get the latency statistics.
+     *
+     * @return latency statistics or null.
+     */
+    public synchronized LatencyStatistics getLatencyStatistics() {
+        return _latencyStatistics;
+    }
+
+    /**
+     * Get the latency histograms for the last interval sampled by the registry. A new interval is sampled if more than
+     * a second has passed since the previous one, otherwise the previous interval is returned so that several readers
+     * scraping at the same time see the same values. The histograms must not be modified.
+     *
+     * @return histograms with latencies in microseconds indexed by {@link LatencyType} ordinal or null.
+     */
+    public synchronized Histogram[] getIntervalHistograms() {
+        if (_latencySampler == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (_intervalHistograms == null || now - _lastLatencySampleNanos >= MIN_LATENCY_SAMPLE_INTERVAL_NANOS) {
+            _latencySampler.sampleInterval();
+            LatencyType[] types = LatencyType.values();
+            Histogram[] histograms = new Histogram[types.length];
+            for (int i = 0; i < types.length; i++) {
+                histograms[i] = _latencySampler.getIntervalHistogram(types[i]);
+            }
+            _intervalHistograms = histograms;
+            _lastLatencySampleNanos = now;
+        }
+        return _intervalHistograms;
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format.
+     *
+     * @param out The output.
+     * @throws IOException on write errors.
+     */
+    public void writePrometheusText(Appendable out) throws IOException {
+        for (Metric metric : _metrics) {
+            writeHeader(out, metric.getName(), metric.getHelp(), metric.getType().getPrometheusName());
+            out.append(metric.getName()).append(' ').append(formatValue(metric.getValue())).append('\n');
+        }
+        Histogram[] intervalHistograms = getIntervalHistograms();
+        if (intervalHistograms != null) {
+            LatencyStatistics latencyStatistics = getLatencyStatistics();
+            writeHeader(out, LATENCY_METRIC_NAME, "Latency percentiles since the previous sample", "summary");
+            for (LatencyType type : LatencyType.values()) {
+                Histogram interval = intervalHistograms[type.ordinal()];
+                Histogram total = latencyStatistics.getTotalHistogram(type);
+                String operation = type.getDisplayName().replace(' ', '_');
+                for (double quantile : LATENCY_QUANTILES) {
+                    out.append(LATENCY_METRIC_NAME).append("{operation=\"").append(operation)
+                                    .append("\",quantile=\"").append(String.valueOf(quantile)).append("\"} ")
+                                    .append(formatValue(getPercentileSeconds(interval, quantile))).append('\n');
+                }
+                out.append(LATENCY_METRIC_NAME).append("_count{operation=\"").append(operation).append("\"} ")
+                                .append(String.valueOf(total.getTotalCount())).append('\n');
+                out.append(LATENCY_METRIC_NAME).append("_sum{operation=\"").append(operation).append("\"} ")
+                                .append(formatValue(total.getMean() * total.getTotalCount() / MICROS_PER_SECOND))
+                                .append('\n');
+            }
+        }
+    }
+
+    /**
+     * Get a latency percentile from a histogram.
+     *
+     * @param histogram The histogram with values in microseconds.
+     * @param quantile The quantile, between 0 and 1.
+     * @return latency in seconds, NaN if the histogram is empty.
+     */
+    static double getPercentileSeconds(Histogram histogram, double quantile) {
+        if (histogram.getTotalCount() == 0L) {
+            return Double.NaN;
+        }
+        return histogram.getValueAtPercentile(quantile * 100.0) / MICROS_PER_SECOND;
+    }
+
+    private static void writeHeader(Appendable out, String name, String help, String type) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String formatValue(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = value.doubleValue();
+            if (Double.isNaN(d)) {
+                return "NaN";
+            }
+            if (Double.isInfinite(d)) {
+                return d > 0.0 ? "+Inf" : "-Inf";
+            }
+            return Double.toString(d);
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.rm;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+
+/**
+ * A pool with a fixed number of connections shared by the resource managers, so that many sessions can be multiplexed
+ * over few connections as in real applications. Connections are handed out in turn and created on first use. A
+ * connection is closed when its last user releases it and it is replaced when the provider reports it as broken.
+ * <p>
+ * Stopping a connection stops delivery to all its sessions, so delivery is reference counted: a shared connection is
+ * stopped while at least one of its users has asked for it to be stopped.
+ * <p>
+ * Locks are only held for the bookkeeping. Connections are created, started and stopped outside them, as that involves
+ * network calls and stopping waits for running message listeners, which may use the pool themselves.
+ *
+ * @author Erik Wramner
+ *
+ * @param <C> The connection type.
+ */
+public class ConnectionPool<C extends Connection> {
+    private final ConnectionCreator<C> _connectionCreator;
+    private final SharedConnection<C>[] _connections;
+    private final ReentrantLock _lock = new ReentrantLock();
+    private int _nextIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param connectionCreator The creator for new connections.
+     * @param size The number of connections.
+     */
+    @SuppressWarnings("unchecked")
+    public ConnectionPool(ConnectionCreator<C> connectionCreator, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The pool must have at least one connection");
+        }
+        _connectionCreator = connectionCreator;
+        _connections = new SharedConnection[size];
+    }
+
+    /**
+     * Create a lease on a dedicated connection that is not shared.
+     *
+     * @param connectionCreator The creator for the connection.
+     * @return lease.
+     * @throws JMSException on failure to create the connection.
+     */
+    static <C extends Connection> Lease<C> dedicated(ConnectionCreator<C> connectionCreator) throws JMSException {
+        SharedConnection<C> sharedConnection = new SharedConnection<>(connectionCreator.createConnection(), null);
+        sharedConnection._users++;
+        return new Lease<>(sharedConnection);
+    }
+
+    /**
+     * Lease the next connection in turn, creating it if necessary.
+     *
+     * @return lease.
+     * @throws JMSException on failure to create the connection.
+     */
+    Lease<C> acquire() throws JMSException {
+        int index;
+        _lock.lock();
+        try {
+            index = _nextIndex;
+            _nextIndex = (index + 1) % _connections.length;
+            SharedConnection<C> sharedConnection = _connections[index];
+            if (sharedConnection != null) {
+                sharedConnection._users++;
+                return new Lease<>(sharedConnection);
+            }
+        } finally {
+            _lock.unlock();
+        }
+
+        SharedConnection<C> createdConnection = new SharedConnection<>(_connectionCreator.createConnection(), this);
+        createdConnection._conn.setExceptionListener(e -> invalidate(createdConnection));
+        SharedConnection<C> sharedConnection;
+        _lock.lock();
+        try {
+            sharedConnection = _connections[index];
+            if (sharedConnection == null) {
+                sharedConnection = createdConnection;
+                _connections[index] = sharedConnection;
+            }
+            sharedConnection._users++;
+        } finally {
+            _lock.unlock();
+        }
+        if (sharedConnection != createdConnection) {
+            // Another thread created a connection for the slot at the same time, use that one
+            createdConnection._conn.close();
+        }
+        return new Lease<>(sharedConnection);
+    }
+
+    /**
+     * Get the number of connections that are open.
+     *
+     * @return connections.
+     */
+    int getOpenConnections() {
+        _lock.lock();
+        try {
+            int count = 0;
+            for (SharedConnection<C> sharedConnection : _connections) {
+                if (sharedConnection != null) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private boolean release(SharedConnection<C> sharedConnection) {
+        _lock.lock();
+        try {
+            if (--sharedConnection._users > 0) {
+                return false;
+            }
+            removeFromPool(sharedConnection);
+            return true;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private void invalidate(SharedConnection<C> sharedConnection) {
+        // Let new users get a new connection, the broken one is closed when the last user has given up on it
+        _lock.lock();
+        try {
+            removeFromPool(sharedConnection);
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private void removeFromPool(SharedConnection<C> sharedConnection) {
+        for (int i = 0; i < _connections.length; i++) {
+            if (_connections[i] == sharedConnection) {
+                _connections[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Creator for connections, typically a method reference to a connection factory.
+     *
+     * @param <C> The connection type.
+     */
+    @FunctionalInterface
+    public interface ConnectionCreator<C extends Connection> {
+        C createConnection() throws JMSException;
+    }
+
+    /**
+     * A connection with its users and the number of users that want delivery stopped. The users are counted under the
+     * pool lock. The stop requests are counted under the connection's own lock, but the connection is started and
+     * stopped outside it. Only one thread at a time does that. It checks the requests again when done, so the other
+     * threads leave the change to it rather than wait, as they may be listeners that the stop is waiting for.
+     */
+    private static class SharedConnection<C extends Connection> {
+        private final C _conn;
+        private final ConnectionPool<C> _pool;
+        private final ReentrantLock _deliveryLock = new ReentrantLock();
+        private int _users;
+        private int _stopRequests;
+        private boolean _deliveryStopped;
+        private boolean _startPending;
+        private boolean _deliveryChanging;
+
+        SharedConnection(C conn, ConnectionPool<C> pool) {
+            _conn = conn;
+            _pool = pool;
+        }
+
+        void stop() throws JMSException {
+            _deliveryLock.lock();
+            try {
+                _stopRequests++;
+            } finally {
+                _deliveryLock.unlock();
+            }
+            updateDelivery();
+        }
+
+        void start(boolean stoppedByCaller) throws JMSException {
+            _deliveryLock.lock();
+            try {
+                if (stoppedByCaller) {
+                    _stopRequests--;
+                }
+                if (_stopRequests == 0) {
+                    _startPending = true;
+                }
+            } finally {
+                _deliveryLock.unlock();
+            }
+            updateDelivery();
+        }
+
+        private void updateDelivery() throws JMSException {
+            _deliveryLock.lock();
+            try {
+                while (!_deliveryChanging) {
+                    boolean stop = _stopRequests > 0;
+                    if (stop ? _deliveryStopped : !_deliveryStopped && !_startPending) {
+                        return;
+                    }
+                    _deliveryChanging = true;
+                    _startPending = false;
+                    _deliveryLock.unlock();
+                    try {
+                        if (stop) {
+                            _conn.stop();
+                        } else {
+                            _conn.start();
+                        }
+                    } finally {
+                        _deliveryLock.lock();
+                        _deliveryChanging = false;
+                    }
+                    _deliveryStopped = stop;
+                }
+            } finally {
+                _deliveryLock.unlock();
+            }
+        }
+
+        boolean release() {
+            if (_pool == null) {
+                return true;
+            }
+            return _pool.release(this);
+        }
+    }
+
+    /**
+     * One user's hold on a connection. A lease is used by a single thread.
+     *
+     * @param <C> The connection type.
+     */
+    static class Lease<C extends Connection> implements AutoCloseable {
+        private final SharedConnection<C> _sharedConnection;
+        private boolean _stopped;
+        private boolean _closed;
+
+        private Lease(SharedConnection<C> sharedConnection) {
+            _sharedConnection = sharedConnection;
+        }
+
+        /**
+         * Get the connection.
+         *
+         * @return connection.
+         */
+        C getConnection() {
+            return _sharedConnection._conn;
+        }
+
+        /**
+         * Stop message delivery, unless already stopped by this lease.
+         *
+         * @throws JMSException on JMS errors.
+         */
+        void stopDelivery() throws JMSException {
+            if (!_stopped) {
+                _sharedConnection.stop();
+                _stopped = true;
+            }
+        }
+
+        /**
+         * Start or restart message delivery, unless another user of the connection has it stopped.
+         *
+         * @throws JMSException on JMS errors.
+         */
+        void startDelivery() throws JMSException {
+            boolean stopped = _stopped;
+            _stopped = false;
+            _sharedConnection.start(stopped);
+        }
+
+        /**
+         * Release the connection, closing it if this was the last user. Delivery stopped by this lease is restarted
+         * for the other users.
+         *
+         * @throws JMSException on JMS errors.
+         */
+        @Override
+        public void close() throws JMSException {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            if (_sharedConnection.release()) {
+                _sharedConnection._conn.close();
+            } else if (_stopped) {
+                _stopped = false;
+                _sharedConnection.start(true);
+            }
+        }
+    }
+}
@@ -30,9 +30,10 @@ import javax.jms.Session;
  */
 public class JmsResourceManager extends ResourceManager {
     private final ConnectionFactory _connFactory;
+    private final ConnectionPool<Connection> _connectionPool;
     private final boolean _transaction;
     private final boolean _nonPersistent;
-    private Connection _conn;
+    private ConnectionPool.Lease<Connection> _connectionLease;
     private Session _session;
 
     /**
@@ -46,8 +47,26 @@ public class JmsResourceManager extends ResourceManager {
      */
     public JmsResourceManager(ConnectionFactory connFactory, String queueName, boolean destinationTypeQueue,
                     boolean transaction, boolean nonPersistent) {
-        super(queueName, destinationTypeQueue);
+        this(connFactory, null, queueName, destinationTypeQueue, transaction, nonPersistent, 1);
+    }
+
+    /**
+     * Constructor for connections shared with other resource managers and several producers or consumers per session.
+     *
+     * @param connFactory The JMS connection factory.
+     * @param connectionPool The pool with shared connections or null for a dedicated connection.
+     * @param queueName The queue name.
+     * @param destinationTypeQueue The destination type flag.
+     * @param transaction The flag to use transactions.
+     * @param nonPersistent The flag to use non-persistent delivery.
+     * @param clientsPerSession The number of producers or consumers to use in turn.
+     */
+    public JmsResourceManager(ConnectionFactory connFactory, ConnectionPool<Connection> connectionPool,
+                    String queueName, boolean destinationTypeQueue, boolean transaction, boolean nonPersistent,
+                    int clientsPerSession) {
+        super(queueName, destinationTypeQueue, clientsPerSession);
         _connFactory = connFactory;
+        _connectionPool = connectionPool;
         _transaction = transaction;
         _nonPersistent = nonPersistent;
     }
@@ -72,7 +91,7 @@ public class JmsResourceManager extends ResourceManager {
     @Override
     protected MessageConsumer createMessageConsumer() throws JMSException {
         Session session = getSession();
-        _conn.start();
+        _connectionLease.startDelivery();
         MessageConsumer consumer = session
                         .createConsumer(getDestination(session, _destinationName, _destinationTypeQueue));
         return consumer;
@@ -84,11 +103,13 @@ public class JmsResourceManager extends ResourceManager {
     @Override
     public Session getSession() throws JMSException {
         if (_session == null) {
-            if (_conn == null) {
-                _conn = _connFactory.createConnection();
+            if (_connectionLease == null) {
+                _connectionLease = _connectionPool != null ? _connectionPool.acquire()
+                                : ConnectionPool.dedicated(_connFactory::createConnection);
             }
-            _session = _transaction ? _conn.createSession(true, Session.SESSION_TRANSACTED)
-                            : _conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            Connection conn = _connectionLease.getConnection();
+            _session = _transaction ? conn.createSession(true, Session.SESSION_TRANSACTED)
+                            : conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
         }
         return _session;
     }
@@ -121,6 +142,26 @@ public class JmsResourceManager extends ResourceManager {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stopDelivery() throws JMSException {
+        if (_connectionLease != null) {
+            _connectionLease.stopDelivery();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startDelivery() throws JMSException {
+        if (_connectionLease != null) {
+            _connectionLease.startDelivery();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -128,6 +169,6 @@ public class JmsResourceManager extends ResourceManager {
     public void close() {
         super.close();
         closeSafely(_session);
-        closeSafely(_conn);
+        closeSafely(_connectionLease);
     }
 }
@@ -15,6 +15,7 @@
  */
 package name.wramner.jmstools.rm;
 
+import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 
 /**
@@ -28,6 +29,8 @@ public class JmsResourceManagerFactory implements ResourceManagerFactory {
     private final boolean _destinationTypeQueue;
     private final boolean _transaction;
     private final boolean _nonPersistent;
+    private final ConnectionPool<Connection> _connectionPool;
+    private final int _clientsPerSession;
 
     /**
      * Constructor.
@@ -45,6 +48,33 @@ public class JmsResourceManagerFactory implements ResourceManagerFactory {
         _destinationTypeQueue = destinationTypeQueue;
         _transaction = transaction;
         _nonPersistent = nonPersistent;
+        _connectionPool = null;
+        _clientsPerSession = 1;
+    }
+
+    /**
+     * Constructor for resource managers that share connections and use several producers or consumers per session.
+     *
+     * @param connFactory The JMS connection factory.
+     * @param destinationName The destination name.
+     * @param destinationTypeQueue The flag selecting queue or topic.
+     * @param transaction The flag to use transactions.
+     * @param nonPersistent The flag to use non-persistent delivery.
+     * @param connections The number of shared connections or null for one connection per resource manager.
+     * @param clientsPerSession The number of producers or consumers per session.
+     */
+    public JmsResourceManagerFactory(ConnectionFactory connFactory, String destinationName,
+                    boolean destinationTypeQueue, boolean transaction, boolean nonPersistent, Integer connections,
+                    int clientsPerSession) {
+        _connFactory = connFactory;
+        _destinationName = destinationName;
+        _destinationTypeQueue = destinationTypeQueue;
+        _transaction = transaction;
+        _nonPersistent = nonPersistent;
+        _connectionPool = connections != null
+                        ? new ConnectionPool<>(connFactory::createConnection, connections.intValue())
+                        : null;
+        _clientsPerSession = clientsPerSession;
     }
 
     /**
@@ -52,7 +82,7 @@ public class JmsResourceManagerFactory implements ResourceManagerFactory {
      */
     @Override
     public ResourceManager createResourceManager() {
-        return new JmsResourceManager(_connFactory, _destinationName, _destinationTypeQueue, _transaction,
-                        _nonPersistent);
+        return new JmsResourceManager(_connFactory, _connectionPool, _destinationName, _destinationTypeQueue,
+                        _transaction, _nonPersistent, _clientsPerSession);
     }
 }
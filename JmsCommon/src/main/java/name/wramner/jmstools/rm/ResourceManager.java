@@ -18,6 +18,8 @@ package name.wramner.jmstools.rm;
 import java.io.Closeable;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -38,8 +40,10 @@ import javax.transaction.RollbackException;
  */
 public abstract class ResourceManager implements AutoCloseable {
     private static final Map<String, Destination> DESTINATION_MAP = new ConcurrentHashMap<>();
-    private MessageProducer _producer;
-    private MessageConsumer _consumer;
+    private final MessageProducer[] _producers;
+    private final MessageConsumer[] _consumers;
+    private int _nextProducerIndex;
+    private int _nextConsumerIndex;
     protected final String _destinationName;
     protected final boolean _destinationTypeQueue;
 
@@ -50,34 +54,81 @@ public abstract class ResourceManager implements AutoCloseable {
      * @param destinationTypeQueue The flag controlling queue/topic.
      */
     public ResourceManager(String destinationName, boolean destinationTypeQueue) {
+        this(destinationName, destinationTypeQueue, 1);
+    }
+
+    /**
+     * Constructor for several producers or consumers on the session.
+     *
+     * @param destinationName The queue name.
+     * @param destinationTypeQueue The flag controlling queue/topic.
+     * @param clientsPerSession The number of producers or consumers to use in turn.
+     */
+    public ResourceManager(String destinationName, boolean destinationTypeQueue, int clientsPerSession) {
         _destinationName = destinationName;
         _destinationTypeQueue = destinationTypeQueue;
+        _producers = new MessageProducer[clientsPerSession];
+        _consumers = new MessageConsumer[clientsPerSession];
     }
 
     /**
-     * Get message producer, create if necessary.
+     * Get message producer, create if necessary. With several producers per session they are returned in turn.
      *
      * @return producer.
      * @throws JMSException on errors.
      */
     public MessageProducer getMessageProducer() throws JMSException {
-        if (_producer == null) {
-            _producer = createMessageProducer();
+        int index = _nextProducerIndex;
+        _nextProducerIndex = (index + 1) % _producers.length;
+        if (_producers[index] == null) {
+            _producers[index] = createMessageProducer();
         }
-        return _producer;
+        return _producers[index];
     }
 
     /**
-     * Get message consumer, create if necessary. Also start connection.
+     * Get message consumer, create if necessary. Also start connection. With several consumers per session they are
+     * returned in turn.
      *
      * @return consumer.
      * @throws JMSException on errors.
      */
     public MessageConsumer getMessageConsumer() throws JMSException {
-        if (_consumer == null) {
-            _consumer = createMessageConsumer();
+        int index = _nextConsumerIndex;
+        _nextConsumerIndex = (index + 1) % _consumers.length;
+        if (_consumers[index] == null) {
+            _consumers[index] = createMessageConsumer();
         }
-        return _consumer;
+        return _consumers[index];
+    }
+
+    /**
+     * Get all message producers for the session, creating them if necessary.
+     *
+     * @return producers.
+     * @throws JMSException on errors.
+     */
+    public List<MessageProducer> getMessageProducers() throws JMSException {
+        List<MessageProducer> producers = new ArrayList<>(_producers.length);
+        for (int i = 0; i < _producers.length; i++) {
+            producers.add(getMessageProducer());
+        }
+        return producers;
+    }
+
+    /**
+     * Get all message consumers for the session, creating them if necessary. This is used for message listeners,
+     * which must be registered with every consumer.
+     *
+     * @return consumers.
+     * @throws JMSException on errors.
+     */
+    public List<MessageConsumer> getMessageConsumers() throws JMSException {
+        List<MessageConsumer> consumers = new ArrayList<>(_consumers.length);
+        for (int i = 0; i < _consumers.length; i++) {
+            consumers.add(getMessageConsumer());
+        }
+        return consumers;
     }
 
     /**
@@ -130,6 +181,21 @@ public abstract class ResourceManager implements AutoCloseable {
      */
     public abstract void rollback() throws JMSException;
 
+    /**
+     * Stop message delivery to consumers. This blocks until message listeners in progress have completed, after which
+     * the session may be used by the calling thread even if it has a message listener.
+     *
+     * @throws JMSException on JMS errors.
+     */
+    public abstract void stopDelivery() throws JMSException;
+
+    /**
+     * Start or restart message delivery to consumers.
+     *
+     * @throws JMSException on JMS errors.
+     */
+    public abstract void startDelivery() throws JMSException;
+
     /**
      * Close resources.
      *
@@ -137,8 +203,12 @@ public abstract class ResourceManager implements AutoCloseable {
      */
     @Override
     public void close() {
-        closeSafely(_consumer);
-        closeSafely(_producer);
+        for (MessageConsumer consumer : _consumers) {
+            closeSafely(consumer);
+        }
+        for (MessageProducer producer : _producers) {
+            closeSafely(producer);
+        }
     }
 
     /**
@@ -43,7 +43,8 @@ public class XAJmsResourceManager extends ResourceManager {
     private final Logger _logger = LoggerFactory.getLogger(getClass());
     private final UserTransactionManager _transactionManager;
     private final XAConnectionFactory _connFactory;
-    private XAConnection _conn;
+    private final ConnectionPool<XAConnection> _connectionPool;
+    private ConnectionPool.Lease<XAConnection> _connectionLease;
     private XASession _session;
 
     /**
@@ -56,9 +57,26 @@ public class XAJmsResourceManager extends ResourceManager {
      */
     public XAJmsResourceManager(UserTransactionManager transactionManager, XAConnectionFactory connFactory,
             String queueName, boolean destinationTypeQueue) {
-        super(queueName, destinationTypeQueue);
+        this(transactionManager, connFactory, null, queueName, destinationTypeQueue, 1);
+    }
+
+    /**
+     * Constructor for connections shared with other resource managers and several producers or consumers per session.
+     *
+     * @param transactionManager The transaction manager.
+     * @param connFactory The XA connection factory.
+     * @param connectionPool The pool with shared connections or null for a dedicated connection.
+     * @param queueName The queue name.
+     * @param destinationTypeQueue The destination type flag.
+     * @param clientsPerSession The number of producers or consumers to use in turn.
+     */
+    public XAJmsResourceManager(UserTransactionManager transactionManager, XAConnectionFactory connFactory,
+            ConnectionPool<XAConnection> connectionPool, String queueName, boolean destinationTypeQueue,
+            int clientsPerSession) {
+        super(queueName, destinationTypeQueue, clientsPerSession);
         _transactionManager = transactionManager;
         _connFactory = connFactory;
+        _connectionPool = connectionPool;
     }
 
     /**
@@ -76,7 +94,7 @@ public class XAJmsResourceManager extends ResourceManager {
     @Override
     protected MessageConsumer createMessageConsumer() throws JMSException {
         XASession session = getSession();
-        _conn.start();
+        _connectionLease.startDelivery();
         MessageConsumer consumer = session
             .createConsumer(getDestination(session, _destinationName, _destinationTypeQueue));
         return consumer;
@@ -88,10 +106,11 @@ public class XAJmsResourceManager extends ResourceManager {
     @Override
     public XASession getSession() throws JMSException {
         if (_session == null) {
-            if (_conn == null) {
-                _conn = _connFactory.createXAConnection();
+            if (_connectionLease == null) {
+                _connectionLease = _connectionPool != null ? _connectionPool.acquire()
+                        : ConnectionPool.dedicated(_connFactory::createXAConnection);
             }
-            _session = _conn.createXASession();
+            _session = _connectionLease.getConnection().createXASession();
         }
         return _session;
     }
@@ -148,6 +167,26 @@ public class XAJmsResourceManager extends ResourceManager {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stopDelivery() throws JMSException {
+        if (_connectionLease != null) {
+            _connectionLease.stopDelivery();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void startDelivery() throws JMSException {
+        if (_connectionLease != null) {
+            _connectionLease.startDelivery();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -167,6 +206,6 @@ public class XAJmsResourceManager extends ResourceManager {
             // Ignore
         }
         closeSafely(_session);
-        closeSafely(_conn);
+        closeSafely(_connectionLease);
     }
 }
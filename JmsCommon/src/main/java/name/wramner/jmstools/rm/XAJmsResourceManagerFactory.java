@@ -15,6 +15,7 @@
  */
 package name.wramner.jmstools.rm;
 
+import javax.jms.XAConnection;
 import javax.jms.XAConnectionFactory;
 
 import com.atomikos.icatch.jta.UserTransactionManager;
@@ -29,6 +30,8 @@ public class XAJmsResourceManagerFactory implements ResourceManagerFactory {
     private final XAConnectionFactory _connFactory;
     private final String _destinationName;
     private final boolean _destinationTypeQueue;
+    private final ConnectionPool<XAConnection> _connectionPool;
+    private final int _clientsPerSession;
 
     /**
      * Constructor.
@@ -44,6 +47,30 @@ public class XAJmsResourceManagerFactory implements ResourceManagerFactory {
         _connFactory = connFactory;
         _destinationName = destinationName;
         _destinationTypeQueue = destinationTypeQueue;
+        _connectionPool = null;
+        _clientsPerSession = 1;
+    }
+
+    /**
+     * Constructor for resource managers that share connections and use several producers or consumers per session.
+     *
+     * @param transactionManager The transaction manager.
+     * @param connFactory The XA connection factory.
+     * @param destinationName The destination name.
+     * @param destinationTypeQueue The flag selecting queue or topic.
+     * @param connections The number of shared connections or null for one connection per resource manager.
+     * @param clientsPerSession The number of producers or consumers per session.
+     */
+    public XAJmsResourceManagerFactory(UserTransactionManager transactionManager, XAConnectionFactory connFactory,
+            String destinationName, boolean destinationTypeQueue, Integer connections, int clientsPerSession) {
+        _transactionManager = transactionManager;
+        _connFactory = connFactory;
+        _destinationName = destinationName;
+        _destinationTypeQueue = destinationTypeQueue;
+        _connectionPool = connections != null
+                ? new ConnectionPool<>(connFactory::createXAConnection, connections.intValue())
+                : null;
+        _clientsPerSession = clientsPerSession;
     }
 
     /**
@@ -51,7 +78,8 @@ public class XAJmsResourceManagerFactory implements ResourceManagerFactory {
      */
     @Override
     public ResourceManager createResourceManager() {
-        return new XAJmsResourceManager(_transactionManager, _connFactory, _destinationName, _destinationTypeQueue);
+        return new XAJmsResourceManager(_transactionManager, _connFactory, _connectionPool, _destinationName,
+                _destinationTypeQueue, _clientsPerSession);
     }
 
 }
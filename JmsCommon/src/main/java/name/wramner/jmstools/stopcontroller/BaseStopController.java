@@ -15,7 +15,10 @@
  */
 package name.wramner.jmstools.stopcontroller;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,24 +26,37 @@ import org.slf4j.LoggerFactory;
 /**
  * Base class for stop controllers that handles the task of waking waiting threads up when the sub-class signals that it
  * is time to stop by returning false from {@link #shouldKeepRunning()}.
+ * <p>
+ * Waiting threads block on a {@link ReentrantLock} condition rather than an object monitor, so that workers running on
+ * virtual threads unmount from their carrier threads while they wait.
+ * <p>
+ * Once the sub-class has signalled that it is time to stop the answer is remembered, so that workers polling the stop
+ * controller do not keep reading shared counters or signalling waiting threads.
  *
  * @author Erik Wramner
  */
 public abstract class BaseStopController implements StopController {
     protected final Logger _logger = LoggerFactory.getLogger(getClass());
-    private final Object _monitor = new Object();
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _done = _lock.newCondition();
     private final AtomicBoolean _aborted = new AtomicBoolean(false);
+    private final AtomicBoolean _stopped = new AtomicBoolean(false);
 
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean keepRunning() {
+        if (_stopped.get()) {
+            return false;
+        }
         if (!_aborted.get() && shouldKeepRunning()) {
             return true;
         }
-        _logger.debug("Stop controller done, releasing waiting threads");
-        releaseWaitingThreads();
+        if (!_stopped.getAndSet(true)) {
+            _logger.debug("Stop controller done, releasing waiting threads");
+            releaseWaitingThreads();
+        }
         return false;
     }
 
@@ -50,16 +66,16 @@ public abstract class BaseStopController implements StopController {
     @Override
     public void waitForTimeoutOrDone(long timeToWaitMillis) {
         if (timeToWaitMillis > 0) {
-            long endTime = System.currentTimeMillis() + timeToWaitMillis;
-            synchronized (_monitor) {
-                try {
-                    while (timeToWaitMillis > 0L && keepRunning()) {
-                        _monitor.wait(timeToWaitMillis);
-                        timeToWaitMillis = endTime - System.currentTimeMillis();
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeToWaitMillis);
+            _lock.lock();
+            try {
+                while (remainingNanos > 0L && keepRunning()) {
+                    remainingNanos = _done.awaitNanos(remainingNanos);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                _lock.unlock();
             }
         }
     }
@@ -86,8 +102,11 @@ public abstract class BaseStopController implements StopController {
      * Release any threads that are waiting for the stop controller.
      */
     private void releaseWaitingThreads() {
-        synchronized (_monitor) {
-            _monitor.notifyAll();
+        _lock.lock();
+        try {
+            _done.signalAll();
+        } finally {
+            _lock.unlock();
         }
     }
 }
@@ -24,9 +24,9 @@ import name.wramner.jmstools.counter.Counter;
  */
 public class CountStopController extends BaseStopController {
     private final Counter _counter;
-    private final int _count;
+    private final long _count;
 
-    public CountStopController(int count, Counter counter) {
+    public CountStopController(long count, Counter counter) {
         _count = count;
         _counter = counter;
     }
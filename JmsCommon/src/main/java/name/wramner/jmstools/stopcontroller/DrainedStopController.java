@@ -16,6 +16,7 @@
 package name.wramner.jmstools.stopcontroller;
 
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import name.wramner.jmstools.counter.Counter;
 
@@ -39,8 +40,9 @@ public class DrainedStopController extends BaseStopController {
     private final Counter _timeoutCounter;
     private final long _millisToWait;
     private final AtomicLong _nextCheckTimeMillis;
-    private int _lastMessageCount;
-    private int _lastTimeoutCount;
+    private final ReentrantLock _lock = new ReentrantLock();
+    private long _lastMessageCount;
+    private long _lastTimeoutCount;
     private boolean _done;
 
     /**
@@ -66,7 +68,8 @@ public class DrainedStopController extends BaseStopController {
         if (now < _nextCheckTimeMillis.get()) {
             return true;
         }
-        synchronized (this) {
+        _lock.lock();
+        try {
             if (_done) {
                 // Another thread got here first and we are done
                 return false;
@@ -84,6 +87,8 @@ public class DrainedStopController extends BaseStopController {
             _lastMessageCount = _messageCounter.getCount();
             _lastTimeoutCount = _timeoutCounter.getCount();
             _nextCheckTimeMillis.set(now + _millisToWait);
+        } finally {
+            _lock.unlock();
         }
         return true;
     }
@@ -27,9 +27,9 @@ import name.wramner.jmstools.counter.Counter;
 public class DurationOrCountStopController extends BaseStopController {
     private final long _endTimeMillis;
     private final Counter _counter;
-    private final int _count;
+    private final long _count;
 
-    public DurationOrCountStopController(int count, Counter counter, int durationMinutes) {
+    public DurationOrCountStopController(long count, Counter counter, int durationMinutes) {
         _endTimeMillis = System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(durationMinutes, TimeUnit.MINUTES);
         _count = count;
         _counter = counter;
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.stopcontroller;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Stop controller that runs until a source of messages is exhausted, for example when streaming prepared messages
+ * that should be sent once each. The number of messages is not known up front, so a count cannot be used.
+ * 
+ * @author Erik Wramner
+ */
+public class ExhaustedStopController extends BaseStopController {
+    private final BooleanSupplier _exhausted;
+
+    /**
+     * Constructor.
+     * 
+     * @param exhausted The supplier that returns true when there are no more messages.
+     */
+    public ExhaustedStopController(BooleanSupplier exhausted) {
+        _exhausted = exhausted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean shouldKeepRunning() {
+        return !_exhausted.getAsBoolean();
+    }
+}
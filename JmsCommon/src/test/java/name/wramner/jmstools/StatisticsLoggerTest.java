@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import name.wramner.jmstools.counter.AtomicCounter;
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.latency.LatencyStatistics;
+import name.wramner.jmstools.latency.LatencyType;
+import name.wramner.jmstools.stopcontroller.StopController;
+
+/**
+ * Test the {@link StatisticsLogger}.
+ *
+ * @author Erik Wramner
+ */
+public class StatisticsLoggerTest {
+
+    @Test
+    public void testCsvFileHasOneRowPerInterval() throws IOException {
+        File file = File.createTempFile("statistics", ".csv");
+        try {
+            Counter messages = new AtomicCounter();
+            Counter bytes = new AtomicCounter();
+            messages.incrementCount(100);
+            bytes.incrementCount(2048);
+            Map<String, Counter> counters = new LinkedHashMap<>();
+            counters.put("messages", messages);
+            counters.put("bytes", bytes);
+            LatencyStatistics latencyStatistics = new LatencyStatistics();
+            latencyStatistics.createRecorder().recordLatency(LatencyType.SEND, TimeUnit.MILLISECONDS.toNanos(2L));
+
+            new StatisticsLogger(new SingleIntervalStopController(), 1, counters, latencyStatistics, file).run();
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            List<String> header = Arrays.asList(lines.get(0).split(",", -1));
+            String[] row = lines.get(1).split(",", -1);
+            assertEquals(header.size(), row.length);
+            assertEquals("timestamp", header.get(0));
+            OffsetDateTime.parse(row[0]);
+            assertEquals("100", row[header.indexOf("messages")]);
+            assertEquals("2048", row[header.indexOf("bytes")]);
+            assertTrue(Double.parseDouble(row[header.indexOf("messages_per_second")]) > 0.0);
+            assertEquals("1", row[header.indexOf("send_count")]);
+            assertEquals(2.0, Double.parseDouble(row[header.indexOf("send_p99_ms")]), 0.01);
+            assertEquals("0", row[header.indexOf("receive_count")]);
+            assertEquals("", row[header.indexOf("receive_p50_ms")]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLogEntryHasRates() {
+        Map<String, Counter> counters = new LinkedHashMap<>();
+        counters.put("messages", new AtomicCounter());
+        StatisticsLogger logger = new StatisticsLogger(new SingleIntervalStopController(), 1, counters, null, null);
+        assertEquals("messages=500 messages/s=250.000", logger.formatLogEntry(new long[] { 500L }, 2.0, null));
+    }
+
+    /**
+     * Stop controller that runs a single interval without waiting.
+     */
+    private static class SingleIntervalStopController implements StopController {
+        private boolean _running = true;
+
+        @Override
+        public boolean keepRunning() {
+            return _running;
+        }
+
+        @Override
+        public void waitForTimeoutOrDone(long timeToWaitMillis) {
+            _running = false;
+        }
+
+        @Override
+        public void abort() {
+            _running = false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.broker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the {@link EmbeddedBroker} life cycle in-process and in a sibling JVM with a fake broker.
+ *
+ * @author Erik Wramner
+ */
+public class EmbeddedBrokerTest {
+    private static final String STARTED_FILE = "started";
+    private static final String STOPPED_FILE = "stopped";
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testSettingsSurviveArguments() {
+        EmbeddedBrokerSettings settings = new EmbeddedBrokerSettings(EmbeddedBrokerMode.SIBLING_JVM, 12345,
+                        new File("data"), false, "MAPPED", Integer.valueOf(64), "a.jar");
+        EmbeddedBrokerSettings parsed = EmbeddedBrokerSettings.parse(settings.toArguments().toArray(new String[0]));
+        assertEquals(EmbeddedBrokerMode.SIBLING_JVM, parsed.getMode());
+        assertEquals(12345, parsed.getPort());
+        assertEquals(new File("data").getAbsoluteFile(), parsed.getDataDirectory());
+        assertFalse(parsed.isPersistent());
+        assertEquals("MAPPED", parsed.getJournalType());
+        assertEquals(Integer.valueOf(64), parsed.getPagingMegabytes());
+        assertEquals("a.jar", parsed.getClasspath());
+
+        EmbeddedBrokerSettings defaults = EmbeddedBrokerSettings
+                        .parse(new EmbeddedBrokerSettings(EmbeddedBrokerMode.IN_PROCESS, 1, null, true, null, null,
+                                        null).toArguments().toArray(new String[0]));
+        assertTrue(defaults.isPersistent());
+        assertNull(defaults.getDataDirectory());
+        assertNull(defaults.getJournalType());
+        assertNull(defaults.getPagingMegabytes());
+        assertNull(defaults.getClasspath());
+    }
+
+    @Test
+    public void testInProcessBrokerDeletesTemporaryDirectory() throws Exception {
+        FakeBroker broker = new FakeBroker(
+                        new EmbeddedBrokerSettings(EmbeddedBrokerMode.IN_PROCESS, 4711, null, true, null, null, null));
+        broker.start();
+        assertEquals("tcp://localhost:4711", broker.getBrokerUrl());
+        File dataDirectory = broker._dataDirectory;
+        assertTrue(new File(dataDirectory, STARTED_FILE).exists());
+        broker.close();
+        assertFalse(dataDirectory.exists());
+    }
+
+    @Test
+    public void testInProcessBrokerKeepsConfiguredDirectory() throws Exception {
+        File dataDirectory = _folder.newFolder();
+        FakeBroker broker = new FakeBroker(new EmbeddedBrokerSettings(EmbeddedBrokerMode.IN_PROCESS, 4711,
+                        dataDirectory, true, null, null, null));
+        broker.start();
+        broker.close();
+        assertTrue(new File(dataDirectory, STARTED_FILE).exists());
+        assertTrue(new File(dataDirectory, STOPPED_FILE).exists());
+    }
+
+    @Test
+    public void testSiblingJvmBrokerIsStartedAndStopped() throws Exception {
+        File dataDirectory = _folder.newFolder();
+        FakeBroker broker = new FakeBroker(new EmbeddedBrokerSettings(EmbeddedBrokerMode.SIBLING_JVM, 4711,
+                        dataDirectory, true, null, null, null));
+        broker.start();
+        assertTrue(new File(dataDirectory, STARTED_FILE).exists());
+        assertNull(broker._dataDirectory);
+        broker.close();
+        assertTrue(new File(dataDirectory, STOPPED_FILE).exists());
+    }
+
+    /**
+     * Broker that creates files in the data directory when started and stopped.
+     */
+    public static class FakeBroker extends EmbeddedBroker {
+        private File _dataDirectory;
+
+        public FakeBroker(EmbeddedBrokerSettings settings) {
+            super(settings);
+        }
+
+        public static void main(String[] args) throws Exception {
+            runUntilInputClosed(new FakeBroker(EmbeddedBrokerSettings.parse(args)));
+        }
+
+        @Override
+        protected void startBroker(ClassLoader classLoader, File dataDirectory) throws IOException {
+            _dataDirectory = dataDirectory;
+            Files.createFile(new File(dataDirectory, STARTED_FILE).toPath());
+        }
+
+        @Override
+        protected void stopBroker() throws IOException {
+            Files.createFile(new File(_dataDirectory, STOPPED_FILE).toPath());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.counter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import name.wramner.jmstools.stopcontroller.CountStopController;
+import name.wramner.jmstools.stopcontroller.StopController;
+
+/**
+ * Test the {@link StripedCounter}.
+ *
+ * @author Erik Wramner
+ */
+public class StripedCounterTest {
+
+    @Test
+    public void testConcurrentIncrementsAreCounted() throws InterruptedException {
+        Counter counter = new StripedCounter();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100_000; j++) {
+                    counter.incrementCount(1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(800_000L, counter.getCount());
+    }
+
+    @Test
+    public void testCountBeyondIntegerRange() {
+        Counter counter = new StripedCounter();
+        counter.incrementCount(Integer.MAX_VALUE);
+        counter.incrementCount(Integer.MAX_VALUE);
+        counter.incrementCount(2);
+        assertEquals(1L << 32, counter.getCount());
+    }
+
+    @Test
+    public void testCountStopController() {
+        Counter counter = new StripedCounter();
+        StopController stopController = new CountStopController(3L, counter);
+        counter.incrementCount(2);
+        assertTrue(stopController.keepRunning());
+        counter.incrementCount(1);
+        assertFalse(stopController.keepRunning());
+        assertFalse(stopController.keepRunning());
+    }
+}
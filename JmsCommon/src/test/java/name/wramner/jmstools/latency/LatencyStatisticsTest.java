@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.latency;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+/**
+ * Test the {@link LatencyStatistics}.
+ *
+ * @author Erik Wramner
+ */
+public class LatencyStatisticsTest {
+
+    @Test
+    public void testSampleIntervalMergesRecorders() {
+        LatencyStatistics statistics = new LatencyStatistics();
+        LatencyRecorder r1 = statistics.createRecorder();
+        LatencyRecorder r2 = statistics.createRecorder();
+        r1.recordLatency(LatencyType.SEND, TimeUnit.MILLISECONDS.toNanos(1L));
+        r2.recordLatency(LatencyType.SEND, TimeUnit.MILLISECONDS.toNanos(3L));
+        r2.recordLatency(LatencyType.COMMIT, TimeUnit.MILLISECONDS.toNanos(10L));
+
+        statistics.sampleInterval();
+        Histogram send = statistics.getIntervalHistogram(LatencyType.SEND);
+        assertEquals(2L, send.getTotalCount());
+        assertEquals(3000L, send.getMaxValue(), 3.0);
+        assertEquals(1L, statistics.getIntervalHistogram(LatencyType.COMMIT).getTotalCount());
+        assertEquals(0L, statistics.getIntervalHistogram(LatencyType.RECEIVE).getTotalCount());
+
+        r1.recordLatency(LatencyType.SEND, TimeUnit.MILLISECONDS.toNanos(2L));
+        statistics.sampleInterval();
+        assertEquals(1L, statistics.getIntervalHistogram(LatencyType.SEND).getTotalCount());
+        assertEquals(3L, statistics.getTotalHistogram(LatencyType.SEND).getTotalCount());
+    }
+
+    @Test
+    public void testIntervalSamplersAreIndependent() {
+        LatencyStatistics statistics = new LatencyStatistics();
+        LatencyStatistics.IntervalSampler sampler = statistics.createIntervalSampler();
+        LatencyRecorder recorder = statistics.createRecorder();
+        recorder.recordLatency(LatencyType.RECEIVE, TimeUnit.MILLISECONDS.toNanos(1L));
+        statistics.sampleInterval();
+        recorder.recordLatency(LatencyType.RECEIVE, TimeUnit.MILLISECONDS.toNanos(2L));
+        statistics.sampleInterval();
+        assertEquals(1L, statistics.getIntervalHistogram(LatencyType.RECEIVE).getTotalCount());
+
+        sampler.sampleInterval();
+        assertEquals(2L, sampler.getIntervalHistogram(LatencyType.RECEIVE).getTotalCount());
+        sampler.sampleInterval();
+        assertEquals(0L, sampler.getIntervalHistogram(LatencyType.RECEIVE).getTotalCount());
+        assertEquals(2L, statistics.getTotalHistogram(LatencyType.RECEIVE).getTotalCount());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messagelog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link TextMessageLogWriter} with the {@link MessageLogFlusher}.
+ *
+ * @author Erik Wramner
+ */
+public class MessageLogWriterTest {
+    private static final int ENTRIES = 10001;
+
+    @Test
+    public void testAsyncLogContainsAllEntriesWithState() throws IOException {
+        File file = File.createTempFile("jmstools", ".log");
+        try {
+            // Small buffer in order to force wrap-around and waiting
+            MessageLogFlusher flusher = new MessageLogFlusher(256);
+            try (MessageLogWriter writer = new TextMessageLogWriter(flusher.createOutput(file))) {
+                writer.writeHeader(new MessageLogColumn("ProducedTime", MessageLogColumnType.TIMESTAMP),
+                                new MessageLogColumn("ID", MessageLogColumnType.ID),
+                                new MessageLogColumn("Length", MessageLogColumnType.INT));
+                for (int i = 0; i < ENTRIES; i++) {
+                    writer.addTimestamp(-i);
+                    writer.addId("id-" + i);
+                    if (i % 2 == 0) {
+                        writer.addInt(i);
+                    } else {
+                        writer.addNull();
+                    }
+                    writer.endEntry();
+                    if (i % 3 == 0) {
+                        writer.writePendingEntries(i % 2 == 0 ? 'C' : 'R');
+                    }
+                }
+                assertTrue(writer.hasPendingEntries());
+                writer.writePendingEntries('?');
+            }
+
+            List<String> lines = Files.readAllLines(file.toPath(), Charset.defaultCharset());
+            assertEquals(ENTRIES + 1, lines.size());
+            assertEquals("State\tCommitTime\tProducedTime\tID\tLength", lines.get(0));
+            for (int i = 0; i < ENTRIES; i++) {
+                String[] fields = lines.get(i + 1).split("\t", -1);
+                assertEquals(5, fields.length);
+                // Entries are pending until the next multiple of three
+                int writtenAt = (i + 2) / 3 * 3;
+                String expectedState = writtenAt >= ENTRIES ? "?" : (writtenAt % 2 == 0 ? "C" : "R");
+                assertEquals(expectedState, fields[0]);
+                assertEquals(String.valueOf(-i), fields[2]);
+                assertEquals("id-" + i, fields[3]);
+                assertEquals(i % 2 == 0 ? String.valueOf(i) : "", fields[4]);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFlusherStopsWhenIdleAndRestartsForNewOutput() throws IOException, InterruptedException {
+        File file = File.createTempFile("jmstools", ".log");
+        try {
+            MessageLogFlusher flusher = new MessageLogFlusher(256);
+            assertFalse(flusher.isRunning());
+            for (int i = 0; i < 2; i++) {
+                try (MessageLogOutput output = flusher.createOutput(file)) {
+                    assertTrue(flusher.isRunning());
+                    output.write(new byte[] { 1, 2, 3 }, 0, 3);
+                }
+                waitUntilStopped(flusher);
+                assertEquals(3L, file.length());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFlusherFailureIsReportedOnClose() throws IOException, InterruptedException {
+        File file = File.createTempFile("jmstools", ".log");
+        try {
+            MessageLogFlusher flusher = new MessageLogFlusher(256);
+            // A read-only channel makes the flusher thread fail with an unchecked exception
+            RingBufferMessageLogOutput output = new RingBufferMessageLogOutput(
+                            FileChannel.open(file.toPath(), StandardOpenOption.READ), 256);
+            flusher.register(output);
+            output.write(new byte[] { 1, 2, 3 }, 0, 3);
+            try {
+                output.close();
+                fail("Expected failure");
+            } catch (IOException e) {
+                // Expected
+            }
+            waitUntilStopped(flusher);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void waitUntilStopped(MessageLogFlusher flusher) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (flusher.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertFalse(flusher.isRunning());
+    }
+
+    @Test
+    public void testWriteEntryLeavesOtherEntriesPending() throws IOException {
+        File file = File.createTempFile("jmstools", ".log");
+        try {
+            try (MessageLogWriter writer = new TextMessageLogWriter(new StreamMessageLogOutput(file))) {
+                writer.writeHeader(new MessageLogColumn("ID", MessageLogColumnType.ID));
+                writer.addId("first");
+                writer.endEntry();
+                writer.addId("failed");
+                writer.writeEntry('R');
+                writer.addId("second");
+                writer.endEntry();
+                writer.writePendingEntries('C');
+            }
+
+            List<String> lines = Files.readAllLines(file.toPath(), Charset.defaultCharset());
+            assertEquals(4, lines.size());
+            assertTrue(lines.get(1).startsWith("R\t") && lines.get(1).endsWith("\tfailed"));
+            assertTrue(lines.get(2).startsWith("C\t") && lines.get(2).endsWith("\tfirst"));
+            assertTrue(lines.get(3).startsWith("C\t") && lines.get(3).endsWith("\tsecond"));
+        } finally {
+            file.delete();
+        }
+    }
+}
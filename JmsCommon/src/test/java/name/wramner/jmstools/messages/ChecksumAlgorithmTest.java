@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link ChecksumAlgorithm} implementations with known test vectors.
+ *
+ * @author Erik Wramner
+ */
+public class ChecksumAlgorithmTest {
+
+    @Test
+    public void testMd5IsCompatibleWithOlderVersions() {
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", ChecksumAlgorithm.MD5.calculateText(bytes("abc"), 3));
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", ChecksummedMessageData.calculateChecksum(new byte[0]));
+    }
+
+    @Test
+    public void testOnlyNumericAlgorithmsHaveNumericChecksum() {
+        assertFalse(ChecksumAlgorithm.MD5.isNumeric());
+        assertNull(ChecksumAlgorithm.MD5.getNumericChecksumFunction());
+        assertTrue(ChecksumAlgorithm.CRC32C.isNumeric());
+        assertTrue(ChecksumAlgorithm.XXHASH64.isNumeric());
+    }
+
+    @Test
+    public void testCrc32c() {
+        byte[] data = bytes("123456789");
+        NumericChecksumFunction crc32c = ChecksumAlgorithm.CRC32C.getNumericChecksumFunction();
+        assertEquals(0xE3069283L, crc32c.calculate(data, 0, data.length));
+        assertEquals(0xE3069283L, Crc32c.calculatePortable(data, 0, data.length));
+    }
+
+    @Test
+    public void testPortableCrc32cMatchesDefault() {
+        byte[] data = new byte[1031];
+        new Random(17).nextBytes(data);
+        for (int length = 0; length < 40; length++) {
+            assertEquals(Crc32c.calculate(data, 3, length), Crc32c.calculatePortable(data, 3, length));
+        }
+        assertEquals(Crc32c.calculate(data, 0, data.length), Crc32c.calculatePortable(data, 0, data.length));
+    }
+
+    @Test
+    public void testXxHash64() {
+        NumericChecksumFunction xxHash64 = ChecksumAlgorithm.XXHASH64.getNumericChecksumFunction();
+        assertEquals(0xEF46DB3751D8E999L, xxHash64.calculate(new byte[0], 0, 0));
+        byte[] data = bytes("Nobody inspects the spammish repetition");
+        assertEquals(0xFBCEA83C8A378BF1L, xxHash64.calculate(data, 0, data.length));
+    }
+
+    @Test
+    public void testIncrementalChecksumMatchesOneShot() {
+        byte[] data = new byte[1000];
+        new Random(4711).nextBytes(data);
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            IncrementalChecksum checksum = algorithm.createIncrementalChecksum();
+            for (int chunkSize : new int[] { 1, 7, 31, 32, 33, 1000 }) {
+                checksum.reset();
+                for (int offset = 0; offset < data.length; offset += chunkSize) {
+                    checksum.update(data, offset, Math.min(chunkSize, data.length - offset));
+                }
+                assertEquals(algorithm + " with chunk size " + chunkSize, algorithm.calculateText(data, data.length),
+                    checksum.getText());
+            }
+        }
+    }
+
+    @Test
+    public void testTextLengthMatchesUtf8Encoding() {
+        for (String text : new String[] { "", "abc", "r\u00e4ksm\u00f6rg\u00e5s", "\u20ac100", "\ud83d\ude00!",
+                        "\ud83d", "x\ude00y", "\ud83d\ud83d\ude00" }) {
+            assertEquals(text, TextMessageData.textToBytes(text).length, new TextMessageData(text).getLength());
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link MappedMessageCorpus}.
+ *
+ * @author Erik Wramner
+ */
+public class MappedMessageCorpusTest {
+
+    @Test
+    public void testPackedCorpusHasPayloadsHeadersAndChecksums() throws IOException {
+        File directory = Files.createTempDirectory("jmstools").toFile();
+        File corpusFile = File.createTempFile("jmstools", ".corpus");
+        try {
+            byte[] first = new byte[10000];
+            new Random(42L).nextBytes(first);
+            Files.write(new File(directory, "a.payload").toPath(), first);
+            Files.write(new File(directory, "a.headers").toPath(), "Color=red\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(directory, "b.txt").toPath(), new byte[0]);
+            Files.write(new File(directory, "c.payload").toPath(), new byte[] { 1 });
+            Files.write(new File(directory, "c.headers").toPath(), "Color=red\n".getBytes(StandardCharsets.UTF_8));
+
+            MappedMessageCorpus corpus = MappedMessageCorpus.pack(directory, StandardCharsets.UTF_8, false,
+                            corpusFile);
+            assertEquals(3, corpus.size());
+            assertEquals(false, corpus.isText());
+
+            BytesMessageData expected = new BytesMessageData(first);
+            MappedMessageData data = corpus.getMessageData(0);
+            assertEquals(first.length, data.getLength());
+            assertArrayEquals(first, data.getPayloadBytes());
+            assertEquals(expected.getChecksum(), data.getChecksum());
+            for (ChecksumAlgorithm algorithm : new ChecksumAlgorithm[] { ChecksumAlgorithm.CRC32C,
+                            ChecksumAlgorithm.XXHASH64 }) {
+                assertEquals(expected.getChecksum(algorithm), data.getChecksum(algorithm));
+            }
+            assertEquals(Collections.singletonMap("Color", "red"), corpus.getHeaders(0));
+            assertEquals(0, corpus.getMessageData(1).getLength());
+            assertTrue(corpus.getHeaders(1).isEmpty());
+            assertSame(corpus.getHeaders(0), corpus.getHeaders(2));
+
+            MappedMessageCorpus reopened = MappedMessageCorpus.open(corpusFile);
+            assertArrayEquals(first, reopened.getMessageData(0).getPayloadBytes());
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+            corpusFile.delete();
+        }
+    }
+
+    @Test
+    public void testTextIsStoredAsUtf8() throws IOException {
+        File file = File.createTempFile("jmstools", ".txt");
+        File corpusFile = File.createTempFile("jmstools", ".corpus");
+        try {
+            String text = "Räksmörgås";
+            Charset latin1 = StandardCharsets.ISO_8859_1;
+            Files.write(file.toPath(), text.getBytes(latin1));
+
+            MappedMessageCorpus corpus = MappedMessageCorpus.pack(file, latin1, true, corpusFile);
+            assertTrue(corpus.isText());
+            MappedMessageData data = corpus.getMessageData(0);
+            TextMessageData expected = new TextMessageData(text);
+            assertEquals(expected.getLength(), data.getLength());
+            assertEquals(text, StandardCharsets.UTF_8.decode(data.getPayload()).toString());
+            assertEquals(expected.getChecksum(ChecksumAlgorithm.XXHASH64),
+                            data.getChecksum(ChecksumAlgorithm.XXHASH64));
+        } finally {
+            file.delete();
+            corpusFile.delete();
+        }
+    }
+}
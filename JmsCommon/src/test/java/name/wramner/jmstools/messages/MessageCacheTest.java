@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import org.junit.Test;
+
+/**
+ * Test message reuse and prepared properties in the {@link BaseMessageProvider}.
+ *
+ * @author Erik Wramner
+ */
+public class MessageCacheTest {
+    private final AtomicInteger _createdMessages = new AtomicInteger();
+
+    @Test
+    public void testCachedMessageIsReusedWithPropertiesReset() throws JMSException {
+        BytesMessageProvider provider = new BytesMessageProvider(100, 100, 1, null, 0,
+                        Collections.singletonMap("Color", "red"));
+        MessageCache cache = new MessageCache();
+        Session session = createSession();
+
+        Message first = provider.createMessageWithPayloadAndProperties(session, ChecksumAlgorithm.XXHASH64,
+                        length -> assertEquals(100, length), cache);
+        first.setStringProperty("Delay", "10");
+        Message second = provider.createMessageWithPayloadAndProperties(session, ChecksumAlgorithm.XXHASH64,
+                        length -> assertEquals(100, length), cache);
+        assertSame(first, second);
+        assertEquals(1, _createdMessages.get());
+        assertFalse(second.propertyExists("Delay"));
+        assertEquals("red", second.getStringProperty("Color"));
+        assertEquals("XXHASH64", second.getStringProperty(MessageProvider.CHECKSUM_ALGORITHM_PROPERTY_NAME));
+        assertEquals(Integer.valueOf(100), second.getObjectProperty(MessageProvider.LENGTH_PROPERTY_NAME));
+
+        Message third = provider.createMessageWithPayloadAndProperties(createSession(), ChecksumAlgorithm.XXHASH64,
+                        length -> {
+                        }, cache);
+        assertNotSame(first, third);
+        assertEquals(2, _createdMessages.get());
+    }
+
+    @Test
+    public void testMessagesAreNotReusedWithoutCache() throws JMSException {
+        BytesMessageProvider provider = new BytesMessageProvider(100, 100, 1, null, 0, null);
+        Session session = createSession();
+        Message first = provider.createMessageWithPayloadAndProperties(session, ChecksumAlgorithm.MD5);
+        Message second = provider.createMessageWithPayloadAndProperties(session, null);
+        assertNotSame(first, second);
+        assertEquals(first.getObjectProperty(MessageProvider.LENGTH_PROPERTY_NAME), Integer.valueOf(100));
+        assertFalse(second.propertyExists(MessageProvider.LENGTH_PROPERTY_NAME));
+    }
+
+    private Session createSession() {
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Session.class },
+                        (proxy, method, args) -> {
+                            if (method.getName().equals("createBytesMessage")) {
+                                _createdMessages.incrementAndGet();
+                                return createBytesMessage();
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        });
+    }
+
+    private BytesMessage createBytesMessage() {
+        Map<String, Object> properties = new HashMap<>();
+        return (BytesMessage) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { BytesMessage.class }, (proxy, method, args) -> {
+                            String name = method.getName();
+                            if (name.equals("writeBytes")) {
+                                return null;
+                            } else if (name.equals("clearProperties")) {
+                                properties.clear();
+                                return null;
+                            } else if (name.equals("propertyExists")) {
+                                return properties.containsKey(args[0]);
+                            } else if (name.startsWith("set") && name.endsWith("Property")) {
+                                properties.put((String) args[0], args[1]);
+                                return null;
+                            } else if (name.startsWith("get") && name.endsWith("Property")) {
+                                return properties.get(args[0]);
+                            }
+                            throw new UnsupportedOperationException(name);
+                        });
+    }
+}
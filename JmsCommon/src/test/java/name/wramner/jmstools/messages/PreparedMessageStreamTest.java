@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import name.wramner.jmstools.messages.PreparedMessageStream.PreparedMessage;
+import name.wramner.jmstools.stopcontroller.InstantStopController;
+
+/**
+ * Test the {@link PreparedMessageStream} and the {@link PreparedMessageReader}.
+ *
+ * @author Erik Wramner
+ */
+public class PreparedMessageStreamTest {
+
+    @Test
+    public void testOrderedDirectoryTreeIsStreamedOnce() throws IOException {
+        File directory = Files.createTempDirectory("jmstools").toFile();
+        try {
+            File subDirectory = new File(directory, "b");
+            subDirectory.mkdir();
+            write(new File(directory, "a.payload"), "first");
+            write(new File(directory, "a.headers"), "Color=red\n");
+            write(new File(subDirectory, "a.txt"), "second");
+            write(new File(directory, "c.txt"), "third");
+
+            PreparedMessageStream<String> stream = createStream(directory, true, true, 1);
+            assertFalse(stream.isExhausted());
+            PreparedMessage<String> msg = stream.take();
+            assertEquals("first", msg.getMessageData());
+            assertEquals(Collections.singletonMap("Color", "red"), msg.getHeaders());
+            assertEquals("second", stream.take().getMessageData());
+            assertEquals("third", stream.take().getMessageData());
+            assertNull(stream.take());
+            assertTrue(stream.isExhausted());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testZipArchiveWithHeadersAfterPayload() throws IOException {
+        File zipFile = File.createTempFile("jmstools", ".zip");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
+                addZipEntry(zos, "dir/", null);
+                addZipEntry(zos, "dir/1.payload", "one");
+                addZipEntry(zos, "dir/1.headers", "Size=small\n");
+                addZipEntry(zos, "dir/2.payload", "two");
+                addZipEntry(zos, "dir/3.txt", "three");
+            }
+            PreparedMessageStream<String> stream = createStream(zipFile, true, true, 2);
+            PreparedMessage<String> msg = stream.take();
+            assertEquals("one", msg.getMessageData());
+            assertEquals(Collections.singletonMap("Size", "small"), msg.getHeaders());
+            msg = stream.take();
+            assertEquals("two", msg.getMessageData());
+            assertTrue(msg.getHeaders().isEmpty());
+            assertEquals("three", stream.take().getMessageData());
+            assertNull(stream.take());
+        } finally {
+            zipFile.delete();
+        }
+    }
+
+    @Test
+    public void testTarArchiveWithHeadersBeforePayload() throws IOException {
+        File tarFile = File.createTempFile("jmstools", ".tar");
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            addTarEntry(bos, "x.headers", "Shape=round\n");
+            addTarEntry(bos, "x.payload", "payload spanning more than one block " + new String(new char[600]));
+            addTarEntry(bos, "y.txt", "");
+            bos.write(new byte[1024]);
+            Files.write(tarFile.toPath(), bos.toByteArray());
+
+            PreparedMessageStream<String> stream = createStream(tarFile, true, true, 10);
+            PreparedMessage<String> msg = stream.take();
+            assertTrue(msg.getMessageData().startsWith("payload spanning"));
+            assertEquals(Collections.singletonMap("Shape", "round"), msg.getHeaders());
+            assertEquals("", stream.take().getMessageData());
+            assertNull(stream.take());
+        } finally {
+            tarFile.delete();
+        }
+    }
+
+    @Test
+    public void testTarArchiveWithPaxPath() throws IOException {
+        File tarFile = File.createTempFile("jmstools", ".tar");
+        try {
+            String longName = "messages/" + new String(new char[120]).replace('\0', 'n') + ".payload";
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            addTarEntry(bos, "PaxHeaders/0", 'x', paxRecord("mtime", "1500000000.0") + paxRecord("path", longName));
+            addTarEntry(bos, "truncated.payload", '0', "with pax");
+            addTarEntry(bos, "PaxHeaders/1", 'x', paxRecord("path", "messages/y.headers"));
+            addTarEntry(bos, "y.headers", '0', "Kind=pax\n");
+            addTarEntry(bos, "messages/y.payload", '0', "second");
+            bos.write(new byte[1024]);
+            Files.write(tarFile.toPath(), bos.toByteArray());
+
+            try (PreparedMessageReader reader = PreparedMessageReader.open(tarFile)) {
+                PreparedMessageReader.PreparedMessageFile file = reader.next();
+                assertEquals(longName, file.getName());
+                assertEquals("with pax", new String(file.getPayload(), StandardCharsets.UTF_8));
+                file = reader.next();
+                assertEquals("messages/y.payload", file.getName());
+                assertEquals(Collections.singletonMap("Kind", "pax"), file.getHeaders());
+                assertNull(reader.next());
+            }
+        } finally {
+            tarFile.delete();
+        }
+    }
+
+    @Test
+    public void testReaderFailureIsThrownToConsumer() throws IOException {
+        File directory = Files.createTempDirectory("jmstools").toFile();
+        try {
+            write(new File(directory, "a.txt"), "a");
+            PreparedMessageStream<String> stream = new PreparedMessageStream<>(directory, bytes -> {
+                throw new IllegalArgumentException("Bad message");
+            }, true, true, 1);
+            try {
+                stream.take();
+                fail("Expected failure");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+            assertTrue(stream.isExhausted());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testWaitingConsumerStopsWithStopController() throws IOException {
+        File directory = Files.createTempDirectory("jmstools").toFile();
+        CountDownLatch readerBlocked = new CountDownLatch(1);
+        try {
+            write(new File(directory, "a.txt"), "a");
+            PreparedMessageStream<String> stream = new PreparedMessageStream<>(directory, bytes -> {
+                try {
+                    readerBlocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "a";
+            }, true, true, 1);
+            stream.setStopController(new InstantStopController());
+            assertNull(stream.take());
+        } finally {
+            readerBlocked.countDown();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testUnorderedStreamReadsSourceAgain() throws IOException {
+        File directory = Files.createTempDirectory("jmstools").toFile();
+        try {
+            write(new File(directory, "a.txt"), "a");
+            write(new File(directory, "b.txt"), "b");
+            write(new File(directory, "c.txt"), "c");
+
+            PreparedMessageStream<String> stream = createStream(directory, false, false, 2);
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < 30; i++) {
+                seen.add(stream.take().getMessageData());
+            }
+            assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), seen);
+            assertFalse(stream.isExhausted());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static PreparedMessageStream<String> createStream(File source, boolean ordered, boolean noDuplicates,
+                    int readAheadMessages) {
+        return new PreparedMessageStream<>(source, bytes -> new String(bytes, StandardCharsets.UTF_8), ordered,
+                        noDuplicates, readAheadMessages);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void addZipEntry(ZipOutputStream zos, String name, String content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        if (content != null) {
+            zos.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        zos.closeEntry();
+    }
+
+    private static void addTarEntry(ByteArrayOutputStream bos, String name, String content) throws IOException {
+        addTarEntry(bos, name, '0', content);
+    }
+
+    private static void addTarEntry(ByteArrayOutputStream bos, String name, char type, String content)
+                    throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        byte[] size = String.format("%011o", data.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 5);
+        bos.write(header);
+        bos.write(data);
+        bos.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static String paxRecord(String key, String value) {
+        String record = " " + key + "=" + value + "\n";
+        int length = record.getBytes(StandardCharsets.UTF_8).length;
+        // The length includes its own digits
+        int digits = String.valueOf(length).length();
+        if (String.valueOf(length + digits).length() > digits) {
+            digits++;
+        }
+        return (length + digits) + record;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
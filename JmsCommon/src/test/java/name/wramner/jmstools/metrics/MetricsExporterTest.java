@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.counter.StripedCounter;
+import name.wramner.jmstools.latency.LatencyStatistics;
+import name.wramner.jmstools.latency.LatencyType;
+
+/**
+ * Test the {@link MetricsRegistry} and the {@link MetricsExporter}.
+ *
+ * @author Erik Wramner
+ */
+public class MetricsExporterTest {
+
+    @Test
+    public void testPrometheusText() throws IOException {
+        MetricsRegistry registry = createRegistry(new StripedCounter(), new AtomicInteger(25));
+        LatencyStatistics latencyStatistics = new LatencyStatistics();
+        registry.setLatencyStatistics(latencyStatistics);
+        latencyStatistics.createRecorder().recordLatency(LatencyType.SEND, 2_000_000L);
+        StringBuilder sb = new StringBuilder();
+        registry.writePrometheusText(sb);
+        String text = sb.toString();
+        assertTrue(text.contains("# TYPE jmstools_messages_total counter\njmstools_messages_total 0\n"));
+        assertTrue(text.contains("# TYPE jmstools_sleep_time_ms gauge\njmstools_sleep_time_ms 25\n"));
+        assertTrue(text.contains("# TYPE jmstools_latency_seconds summary\n"));
+        assertTrue(text.contains("jmstools_latency_seconds{operation=\"send\",quantile=\"0.99\"} 0.002"));
+        assertTrue(text.contains("jmstools_latency_seconds{operation=\"commit\",quantile=\"0.5\"} NaN\n"));
+        assertTrue(text.contains("jmstools_latency_seconds_count{operation=\"send\"} 1\n"));
+    }
+
+    @Test
+    public void testHttpAndJmx() throws IOException, JMException {
+        Counter counter = new StripedCounter();
+        MetricsRegistry registry = createRegistry(counter, new AtomicInteger());
+        counter.incrementCount(42);
+        try (MetricsExporter exporter = new MetricsExporter(registry, Integer.valueOf(0), "MetricsExporterTest")) {
+            HttpURLConnection conn = (HttpURLConnection) new URL(
+                            "http://localhost:" + exporter.getHttpPort() + "/metrics").openConnection();
+            assertEquals(200, conn.getResponseCode());
+            assertTrue(conn.getContentType().startsWith("text/plain; version=0.0.4"));
+            assertTrue(readFully(conn.getInputStream()).contains("jmstools_messages_total 42\n"));
+
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("name.wramner.jmstools:type=Metrics,name=MetricsExporterTest");
+            assertEquals(Long.valueOf(42L), mbeanServer.getAttribute(objectName, "jmstools_messages_total"));
+            assertEquals(2, mbeanServer.getMBeanInfo(objectName).getAttributes().length);
+        }
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+                        .queryNames(new ObjectName("name.wramner.jmstools:type=Metrics,*"), null).isEmpty());
+    }
+
+    private static MetricsRegistry createRegistry(Counter counter, AtomicInteger sleepTimeMillis) {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.addCounter("jmstools_messages_total", "Messages", counter);
+        registry.addGauge("jmstools_sleep_time_ms", "Sleep time", sleepTimeMillis::get);
+        return registry;
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n = is.read(buffer); n != -1; n = is.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
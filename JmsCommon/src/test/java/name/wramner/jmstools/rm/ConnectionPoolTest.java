@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.rm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jms.Connection;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+
+import org.junit.Test;
+
+import name.wramner.jmstools.rm.ConnectionPool.Lease;
+
+/**
+ * Test the {@link ConnectionPool}.
+ *
+ * @author Erik Wramner
+ */
+public class ConnectionPoolTest {
+    private final List<RecordingConnection> _connections = new ArrayList<>();
+
+    @Test
+    public void testConnectionsAreSharedInTurnAndClosedByLastUser() throws JMSException {
+        ConnectionPool<Connection> pool = new ConnectionPool<>(this::createConnection, 2);
+        List<Lease<Connection>> leases = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            leases.add(pool.acquire());
+        }
+        assertEquals(2, _connections.size());
+        assertSame(leases.get(0).getConnection(), leases.get(2).getConnection());
+        assertSame(leases.get(1).getConnection(), leases.get(3).getConnection());
+        assertNotSame(leases.get(0).getConnection(), leases.get(1).getConnection());
+
+        leases.get(0).close();
+        assertEquals(0, _connections.get(0)._closeCalls);
+        leases.get(2).close();
+        assertEquals(1, _connections.get(0)._closeCalls);
+        assertEquals(1, pool.getOpenConnections());
+        leases.get(1).close();
+        leases.get(3).close();
+        assertEquals(1, _connections.get(1)._closeCalls);
+        assertEquals(0, pool.getOpenConnections());
+    }
+
+    @Test
+    public void testDeliveryIsStoppedWhileAnyUserWantsItStopped() throws JMSException {
+        ConnectionPool<Connection> pool = new ConnectionPool<>(this::createConnection, 1);
+        Lease<Connection> first = pool.acquire();
+        Lease<Connection> second = pool.acquire();
+        RecordingConnection conn = _connections.get(0);
+
+        first.startDelivery();
+        assertEquals(1, conn._startCalls);
+        first.stopDelivery();
+        second.stopDelivery();
+        first.stopDelivery();
+        assertEquals(1, conn._stopCalls);
+        first.startDelivery();
+        assertEquals(1, conn._startCalls);
+        second.startDelivery();
+        assertEquals(2, conn._startCalls);
+
+        second.stopDelivery();
+        second.close();
+        assertEquals(3, conn._startCalls);
+        assertEquals(0, conn._closeCalls);
+        first.close();
+        assertEquals(1, conn._closeCalls);
+    }
+
+    @Test
+    public void testPoolCanBeUsedWhileDeliveryIsStopping() throws Exception {
+        ConnectionPool<Connection> pool = new ConnectionPool<>(this::createConnection, 1);
+        Lease<Connection> first = pool.acquire();
+        first.startDelivery();
+        RecordingConnection conn = _connections.get(0);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        // Stopping waits for running listeners, let one of them use the pool and the connection meanwhile
+        conn._onStop = () -> {
+            Thread listener = new Thread(() -> {
+                try (Lease<Connection> lease = pool.acquire()) {
+                    lease.stopDelivery();
+                    lease.startDelivery();
+                } catch (JMSException e) {
+                    failure.set(e);
+                }
+            });
+            listener.start();
+            try {
+                listener.join(10000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertFalse("Listener blocked by stop", listener.isAlive());
+        };
+        first.stopDelivery();
+        assertEquals(null, failure.get());
+        assertEquals(1, conn._stopCalls);
+        first.startDelivery();
+        assertEquals(2, conn._startCalls);
+        first.close();
+        assertEquals(1, conn._closeCalls);
+    }
+
+    @Test
+    public void testBrokenConnectionIsReplaced() throws JMSException {
+        ConnectionPool<Connection> pool = new ConnectionPool<>(this::createConnection, 1);
+        Lease<Connection> first = pool.acquire();
+        _connections.get(0)._exceptionListener.onException(new JMSException("Connection lost"));
+        Lease<Connection> second = pool.acquire();
+        assertEquals(2, _connections.size());
+        assertNotSame(first.getConnection(), second.getConnection());
+        first.close();
+        assertEquals(1, _connections.get(0)._closeCalls);
+        assertEquals(1, pool.getOpenConnections());
+        second.close();
+    }
+
+    @Test
+    public void testDedicatedConnectionIsClosedWithLease() throws JMSException {
+        Lease<Connection> lease = ConnectionPool.dedicated(this::createConnection);
+        lease.stopDelivery();
+        lease.close();
+        lease.close();
+        RecordingConnection conn = _connections.get(0);
+        assertEquals(1, conn._stopCalls);
+        assertEquals(0, conn._startCalls);
+        assertEquals(1, conn._closeCalls);
+    }
+
+    private Connection createConnection() {
+        RecordingConnection recorder = new RecordingConnection();
+        _connections.add(recorder);
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                        (proxy, method, args) -> {
+                            switch (method.getName()) {
+                            case "start":
+                                recorder._startCalls++;
+                                return null;
+                            case "stop":
+                                recorder._stopCalls++;
+                                if (recorder._onStop != null) {
+                                    recorder._onStop.run();
+                                }
+                                return null;
+                            case "close":
+                                recorder._closeCalls++;
+                                return null;
+                            case "setExceptionListener":
+                                recorder._exceptionListener = (ExceptionListener) args[0];
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                            }
+                        });
+    }
+
+    private static class RecordingConnection {
+        private int _startCalls;
+        private int _stopCalls;
+        private int _closeCalls;
+        private ExceptionListener _exceptionListener;
+        private Runnable _onStop;
+    }
+}
@@ -21,6 +21,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import javax.jms.BytesMessage;
 import javax.jms.JMSException;
@@ -36,9 +37,13 @@ import javax.transaction.RollbackException;
 
 import name.wramner.jmstools.JmsClientWorker;
 import name.wramner.jmstools.counter.Counter;
-import name.wramner.jmstools.messages.BytesMessageData;
-import name.wramner.jmstools.messages.ChecksummedMessageData;
+import name.wramner.jmstools.latency.LatencyType;
+import name.wramner.jmstools.messagelog.MessageLogColumn;
+import name.wramner.jmstools.messagelog.MessageLogColumnType;
+import name.wramner.jmstools.messagelog.MessageLogWriter;
+import name.wramner.jmstools.messages.ChecksumAlgorithm;
 import name.wramner.jmstools.messages.MessageProvider;
+import name.wramner.jmstools.messages.PayloadChecksumVerifier;
 import name.wramner.jmstools.messages.TextMessageData;
 import name.wramner.jmstools.rm.ResourceManager;
 import name.wramner.jmstools.rm.ResourceManagerFactory;
@@ -46,7 +51,7 @@ import name.wramner.jmstools.stopcontroller.StopController;
 
 /**
  * A dequeue worker reads and discards messages. It logs messages read and read misses (receive timeouts). It can be
- * configured to rollback a percentage of messages in order to test transaction semantics. It can also verify MD5
+ * configured to rollback a percentage of messages in order to test transaction semantics. It can also verify payload
  * checksums for messages in order to verify that they have been transferred without alterations. Unique message
  * identities can be logged to file in order to verify that there are no lost or duplicate messages or ghost messages
  * (submitted but then rolled back by a producer).
@@ -54,12 +59,14 @@ import name.wramner.jmstools.stopcontroller.StopController;
  * @author Erik Wramner
  */
 public class DequeueWorker<T extends JmsConsumerConfiguration> extends JmsClientWorker<T> {
-    private final Counter _receiveTimeoutCounter;
-    private final int _receiveTimeoutMillis;
+    protected final Counter _receiveTimeoutCounter;
+    protected final int _receiveTimeoutMillis;
     private final int _pollingDelayMillis;
-    private final boolean _verifyChecksum;
+    private final PayloadChecksumVerifier _checksumVerifier;
     private final boolean _shouldCommitOnReceiveTimeout;
     private final File _messageFileDirectory;
+    protected final int _messagesPerBatch;
+    protected final long _maxBatchWaitNanos;
 
     /**
      * Constructor.
@@ -77,9 +84,11 @@ public class DequeueWorker<T extends JmsConsumerConfiguration> extends JmsClient
         _receiveTimeoutCounter = receiveTimeoutCounter;
         _receiveTimeoutMillis = config.getReceiveTimeoutMillis();
         _pollingDelayMillis = config.getPollingDelayMillis();
-        _verifyChecksum = config.shouldVerifyChecksum();
+        _checksumVerifier = config.shouldVerifyChecksum() ? new PayloadChecksumVerifier() : null;
         _shouldCommitOnReceiveTimeout = config.shouldCommitOnReceiveTimeout();
         _messageFileDirectory = config.getMessageFileDirectory();
+        _messagesPerBatch = Math.max(1, config.getMessagesPerBatch());
+        _maxBatchWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxBatchWaitMillis());
     }
 
     /**
@@ -94,18 +103,44 @@ public class DequeueWorker<T extends JmsConsumerConfiguration> extends JmsClient
     @Override
     protected void processMessages(ResourceManager resourceManager)
             throws JMSException, RollbackException, HeuristicMixedException, HeuristicRollbackException {
-        MessageConsumer consumer = resourceManager.getMessageConsumer();
+        // Create the consumers and start the connection before the first transaction
+        resourceManager.getMessageConsumers();
 
         boolean hasTransaction = false;
-        while (_stopController.keepRunning()) {
+        int messagesInBatch = 0;
+        long batchDeadlineNanos = 0L;
+        while (keepRunning()) {
             if (!hasTransaction) {
                 resourceManager.startTransaction();
                 hasTransaction = true;
             }
 
-            Message msg = _receiveTimeoutMillis > 0 ? consumer.receive(_receiveTimeoutMillis)
+            int receiveTimeoutMillis = _receiveTimeoutMillis;
+            if (messagesInBatch > 0 && receiveTimeoutMillis > 0) {
+                long remainingNanos = batchDeadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0L) {
+                    commitOrRollback(resourceManager, messagesInBatch);
+                    messagesInBatch = 0;
+                    hasTransaction = false;
+                    continue;
+                }
+                receiveTimeoutMillis = (int) Math.min(receiveTimeoutMillis,
+                    Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remainingNanos)));
+            }
+
+            // With several consumers per session they take turns
+            MessageConsumer consumer = resourceManager.getMessageConsumer();
+            long startNanos = getLatencyStartTime();
+            Message msg = receiveTimeoutMillis > 0 ? consumer.receive(receiveTimeoutMillis)
                     : consumer.receiveNoWait();
             if (msg == null) {
+                if (messagesInBatch > 0) {
+                    // Out of time or out of messages, commit the partial batch
+                    commitOrRollback(resourceManager, messagesInBatch);
+                    messagesInBatch = 0;
+                    hasTransaction = false;
+                    continue;
+                }
                 _receiveTimeoutCounter.incrementCount(1);
                 if (_shouldCommitOnReceiveTimeout) {
                     resourceManager.commit();
@@ -118,42 +153,76 @@ public class DequeueWorker<T extends JmsConsumerConfiguration> extends JmsClient
                 continue;
             }
 
-            String jmsId = msg.getJMSMessageID();
-            String applicationId = msg.getStringProperty(MessageProvider.UNIQUE_MESSAGE_ID_PROPERTY_NAME);
-            Integer length = null;
-
-            if (_verifyChecksum) {
-                String md5 = msg.getStringProperty(MessageProvider.CHECKSUM_PROPERTY_NAME);
-                if (md5 == null) {
-                    _logger.error("Message with JMS id {} has no checksum property!", jmsId);
-                }
-                else if (msg instanceof TextMessage) {
-                    TextMessageData md = new TextMessageData(((TextMessage) msg).getText());
-                    length = md.getLength();
-                    verifyChecksum(md, jmsId, applicationId, md5);
-                }
-                else if (msg instanceof BytesMessage) {
-                    BytesMessage bytesMessage = (BytesMessage) msg;
-                    byte[] payload = new byte[(int) bytesMessage.getBodyLength()];
-                    bytesMessage.readBytes(payload);
-                    BytesMessageData md = new BytesMessageData(payload);
-                    length = md.getLength();
-                    verifyChecksum(md, jmsId, applicationId, md5);
-                }
-                else {
-                    _logger.error("Message {} neither BytesMessage nor TextMessage!", jmsId);
-                }
+            recordLatency(LatencyType.RECEIVE, startNanos);
+            processMessage(msg);
+            if (++messagesInBatch == 1) {
+                batchDeadlineNanos = System.nanoTime() + _maxBatchWaitNanos;
             }
+            if (messagesInBatch >= _messagesPerBatch) {
+                commitOrRollback(resourceManager, messagesInBatch);
+                messagesInBatch = 0;
+                hasTransaction = false;
+            }
+        }
+        if (messagesInBatch > 0) {
+            commitOrRollback(resourceManager, messagesInBatch);
+        }
+    }
+
+    /**
+     * Process a received message: verify the checksum, log it and save it to file as configured.
+     *
+     * @param msg The message.
+     * @throws JMSException on JMS errors.
+     */
+    protected void processMessage(Message msg) throws JMSException {
+        String jmsId = msg.getJMSMessageID();
+        String applicationId = msg.getStringProperty(MessageProvider.UNIQUE_MESSAGE_ID_PROPERTY_NAME);
+        Integer length = null;
 
-            if (messageLogEnabled()) {
-                logMessage(msg, jmsId, applicationId, length);
+        if (_checksumVerifier != null) {
+            ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.forMessage(msg);
+            if (checksumAlgorithm == null) {
+                _logger.error("Message with JMS id {} has no checksum property!", jmsId);
             }
-            if (_messageFileDirectory != null) {
-                saveMessage(msg);
+            else if (msg instanceof TextMessage || msg instanceof BytesMessage) {
+                verifyChecksum(msg, checksumAlgorithm, jmsId, applicationId);
+                length = _checksumVerifier.getLength();
             }
-            commitOrRollback(resourceManager, 1);
-            hasTransaction = false;
+            else {
+                _logger.error("Message {} neither BytesMessage nor TextMessage!", jmsId);
+            }
+        }
+
+        addPendingBytes(length != null ? length.intValue() : getPayloadLength(msg));
+        if (messageLogEnabled()) {
+            logMessage(msg, jmsId, applicationId, length);
+        }
+        if (_messageFileDirectory != null) {
+            saveMessage(msg);
+        }
+    }
+
+    /**
+     * Get the payload length for statistics without reading the body. Use the length property set by the producer if
+     * present, otherwise the body length for bytes messages and the number of characters for text messages.
+     *
+     * @param msg The message.
+     * @return length, 0 if unknown.
+     * @throws JMSException on JMS errors.
+     */
+    private long getPayloadLength(Message msg) throws JMSException {
+        if (msg.propertyExists(MessageProvider.LENGTH_PROPERTY_NAME)) {
+            return msg.getIntProperty(MessageProvider.LENGTH_PROPERTY_NAME);
+        }
+        if (msg instanceof BytesMessage) {
+            return ((BytesMessage) msg).getBodyLength();
         }
+        if (msg instanceof TextMessage) {
+            String text = ((TextMessage) msg).getText();
+            return text != null ? text.length() : 0L;
+        }
+        return 0L;
     }
 
     private void saveMessage(Message msg) throws JMSException {
@@ -236,8 +305,16 @@ public class DequeueWorker<T extends JmsConsumerConfiguration> extends JmsClient
         if (length == null) {
             length = computeMessageLength(msg, length);
         }
-        logMessage(String.valueOf(System.currentTimeMillis()), jmsId, applicationId,
-            length != null ? length.toString() : null);
+        MessageLogWriter messageLogWriter = getMessageLogWriter();
+        messageLogWriter.addTimestamp(System.currentTimeMillis());
+        messageLogWriter.addString(jmsId);
+        messageLogWriter.addId(applicationId);
+        if (length != null) {
+            messageLogWriter.addInt(length.intValue());
+        } else {
+            messageLogWriter.addNull();
+        }
+        messageLogWriter.endEntry();
     }
 
     private Integer computeMessageLength(Message msg, Integer length) throws JMSException {
@@ -250,15 +327,28 @@ public class DequeueWorker<T extends JmsConsumerConfiguration> extends JmsClient
         return length;
     }
 
-    private void verifyChecksum(ChecksummedMessageData md, String jmsId, String applicationId, String expectedMd5) {
-        if (!md.getChecksum().equals(expectedMd5)) {
-            _logger.error("Wrong checksum {} for message with JMS id {} and id {}, expected {}", md.getChecksum(),
-                jmsId, applicationId, expectedMd5);
+    private void verifyChecksum(Message msg, ChecksumAlgorithm checksumAlgorithm, String jmsId, String applicationId)
+            throws JMSException {
+        if (!_checksumVerifier.verify(msg, checksumAlgorithm)) {
+            _logger.error("Wrong {} checksum {} for message with JMS id {} and id {}, expected {}",
+                checksumAlgorithm, _checksumVerifier.getCalculatedChecksum(), jmsId, applicationId,
+                checksumAlgorithm.getExpectedChecksum(msg));
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void openResources(ResourceManager resourceManager) throws JMSException {
+        resourceManager.getMessageConsumers();
+    }
+
     @Override
-    protected String[] getMessageLogHeaders() {
-        return new String[] { "ConsumedTime", "JMSID", "ID", "Length" };
+    protected MessageLogColumn[] getMessageLogColumns() {
+        return new MessageLogColumn[] { new MessageLogColumn("ConsumedTime", MessageLogColumnType.TIMESTAMP),
+                        new MessageLogColumn("JMSID", MessageLogColumnType.STRING),
+                        new MessageLogColumn("ID", MessageLogColumnType.ID),
+                        new MessageLogColumn("Length", MessageLogColumnType.INT) };
     }
 }
@@ -18,6 +18,7 @@ package name.wramner.jmstools.consumer;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -26,8 +27,9 @@ import javax.jms.JMSException;
 import com.atomikos.icatch.jta.UserTransactionManager;
 
 import name.wramner.jmstools.JmsClient;
-import name.wramner.jmstools.StatisticsLogger;
+import name.wramner.jmstools.WorkerThreadFactory;
 import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.latency.LatencyLogger;
 import name.wramner.jmstools.rm.JmsResourceManagerFactory;
 import name.wramner.jmstools.rm.ResourceManagerFactory;
 import name.wramner.jmstools.rm.XAJmsResourceManagerFactory;
@@ -46,6 +48,13 @@ public abstract class JmsConsumer<T extends JmsConsumerConfiguration> extends Jm
 
     @Override
     protected boolean isConfigurationValid(T config) {
+        if (!super.isConfigurationValid(config)) {
+            return false;
+        }
+        if (config.isMessageListenerEnabled() && config.getReceiveTimeoutMillis() == 0) {
+            System.out.println("Please specify a receive timeout (idle time) for message listeners!");
+            return false;
+        }
         if (config.getReceiveTimeoutMillis() == 0 && config.getPollingDelayMillis() == 0) {
             System.out.println("Please specify a receive timeout or a polling delay!");
             return false;
@@ -61,14 +70,25 @@ public abstract class JmsConsumer<T extends JmsConsumerConfiguration> extends Jm
         ResourceManagerFactory resourceManagerFactory = config.useXa()
                         ? new XAJmsResourceManagerFactory(new UserTransactionManager(),
                                         config.createXAConnectionFactory(), config.getDestinationName(),
-                                        config.isDestinationTypeQueue())
+                                        config.isDestinationTypeQueue(), config.getConnections(),
+                                        config.getClientsPerSession())
                         : new JmsResourceManagerFactory(config.createConnectionFactory(), config.getDestinationName(),
-                                        config.isDestinationTypeQueue(), !config.isNonTransactional(), false);
+                                        config.isDestinationTypeQueue(), !config.isNonTransactional(), false,
+                                        config.getConnections(), config.getClientsPerSession());
         List<Thread> threads = createThreads(resourceManagerFactory, messageCounter, receiveTimeoutCounter,
                         stopController, config);
+        registerMetrics(config, messageCounter);
+        if (config.getMetricsRegistry() != null) {
+            config.getMetricsRegistry().addCounter("jmstools_receive_timeouts_total",
+                            "Receive attempts that timed out without a message", receiveTimeoutCounter);
+        }
         if (config.isStatisticsEnabled()) {
-            threads.add(new Thread(new StatisticsLogger(stopController, messageCounter, receiveTimeoutCounter),
-                            "StatisticsLogger"));
+            threads.add(createStatisticsLoggerThread(config, stopController, messageCounter,
+                            Collections.singletonMap("receive_timeouts", receiveTimeoutCounter)));
+        }
+        if (config.isLatencyLoggingEnabled()) {
+            threads.add(new Thread(new LatencyLogger(stopController, config.getLatencyStatistics(),
+                            config.getLatencyIntervalSeconds()), "LatencyLogger"));
         }
         return threads;
     }
@@ -77,17 +97,17 @@ public abstract class JmsConsumer<T extends JmsConsumerConfiguration> extends Jm
                     Counter receiveTimeoutCounter, StopController stopController, T config) {
         String currentTimeString = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
         File logDirectory = config.getLogDirectory();
+        WorkerThreadFactory threadFactory = config.createWorkerThreadFactory();
         List<Thread> threads = new ArrayList<>();
         for (int i = 0; i < config.getThreads(); i++) {
-            threads.add(new Thread(
-                            new DequeueWorker<T>(resourceManagerFactory, messageCounter, receiveTimeoutCounter,
-                                            stopController,
-                                            logDirectory != null ? new File(logDirectory,
-                                                            LOG_FILE_BASE_NAME + (i + 1) + "_" + currentTimeString
-                                                                            + ".log")
-                                                            : null,
-                                            config),
-                            "DequeueWorker-" + (i + 1)));
+            File logFile = logDirectory != null ? new File(logDirectory, LOG_FILE_BASE_NAME + (i + 1) + "_"
+                            + currentTimeString + config.getMessageLogFormat().getFileSuffix()) : null;
+            DequeueWorker<T> worker = config.isMessageListenerEnabled()
+                            ? new MessageListenerDequeueWorker<T>(resourceManagerFactory, messageCounter,
+                                            receiveTimeoutCounter, stopController, logFile, config)
+                            : new DequeueWorker<T>(resourceManagerFactory, messageCounter, receiveTimeoutCounter,
+                                            stopController, logFile, config);
+            threads.add(threadFactory.createThread(worker, "DequeueWorker-" + (i + 1)));
         }
         return threads;
     }
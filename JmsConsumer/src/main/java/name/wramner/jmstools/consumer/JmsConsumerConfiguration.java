@@ -59,6 +59,19 @@ public abstract class JmsConsumerConfiguration extends JmsClientConfiguration {
     @Option(name = "-dir", aliases = "--message-file-directory", usage = "Save consumed messages to directory")
     private File _messageFileDirectory;
 
+    @Option(name = "-listener", aliases = "--message-listener", usage = "Consume with asynchronous message listeners"
+            + " instead of polling, the receive timeout is used as idle time", forbids = { "-xa", "-delay",
+                    "-connections" })
+    private boolean _messageListenerEnabled;
+
+    @Option(name = "-batchsize", aliases = "--messages-per-batch", usage = "Number of messages to receive per"
+            + " batch/commit")
+    private int _messagesPerBatch = 1;
+
+    @Option(name = "-batchwait", aliases = "--max-batch-wait-ms", usage = "Maximum time in milliseconds to wait for"
+            + " a partial batch to fill up before committing it", depends = { "-batchsize" })
+    private int _maxBatchWaitMillis = 1_000;
+
     public boolean shouldCommitOnReceiveTimeout() {
         return _shouldCommitOnReceiveTimeout;
     }
@@ -75,6 +88,18 @@ public abstract class JmsConsumerConfiguration extends JmsClientConfiguration {
         return _pollingDelayMillis;
     }
 
+    public boolean isMessageListenerEnabled() {
+        return _messageListenerEnabled;
+    }
+
+    public int getMessagesPerBatch() {
+        return _messagesPerBatch;
+    }
+
+    public int getMaxBatchWaitMillis() {
+        return _maxBatchWaitMillis;
+    }
+
     public Counter createReceiveTimeoutCounter() {
         return new AtomicCounter();
     }
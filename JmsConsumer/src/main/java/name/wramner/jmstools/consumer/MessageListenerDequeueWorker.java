@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.consumer;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.RollbackException;
+
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.rm.ResourceManager;
+import name.wramner.jmstools.rm.ResourceManagerFactory;
+import name.wramner.jmstools.stopcontroller.StopController;
+
+/**
+ * A dequeue worker that registers a {@link MessageListener} on its session instead of polling with receive. The JMS
+ * provider pushes messages to the listener, typically from a prefetch buffer, so there is no round-trip per message.
+ * <p>
+ * The messages are processed on the provider's delivery thread, which also commits full batches. The worker thread
+ * only supervises: it detects idle periods (no messages for the receive timeout) and counts them as receive timeouts
+ * so that the drained stop controller works as usual, commits partial batches when the queue runs dry or when the
+ * maximum batch wait time has passed and stops the delivery when the stop controller is done. The session is not used
+ * by the worker thread while messages are delivered, the delivery is stopped first as required by JMS. That stops the
+ * whole connection, so workers with message listeners can't share connections.
+ *
+ * @author Erik Wramner
+ * @param <T> The configuration class.
+ */
+public class MessageListenerDequeueWorker<T extends JmsConsumerConfiguration> extends DequeueWorker<T>
+        implements MessageListener {
+    private static final long MAX_CHECK_INTERVAL_MILLIS = 250L;
+    private final long _idleNanos;
+    private final long _checkIntervalMillis;
+    private final ReentrantLock _batchLock = new ReentrantLock();
+    private volatile long _lastMessageNanos;
+    private ResourceManager _resourceManager;
+    private int _messagesInBatch;
+    private long _batchDeadlineNanos;
+    private Exception _failure;
+
+    /**
+     * Constructor.
+     *
+     * @param resourceManagerFactory The resource manager factory.
+     * @param messageCounter The message counter for dequeued messages.
+     * @param receiveTimeoutCounter The counter for idle periods.
+     * @param stopController The stop controller.
+     * @param logFile The log file for received messages or null.
+     * @param config The configuration for other options.
+     */
+    public MessageListenerDequeueWorker(ResourceManagerFactory resourceManagerFactory, Counter messageCounter,
+            Counter receiveTimeoutCounter, StopController stopController, File logFile, T config) {
+        super(resourceManagerFactory, messageCounter, receiveTimeoutCounter, stopController, logFile, config);
+        _idleNanos = TimeUnit.MILLISECONDS.toNanos(_receiveTimeoutMillis);
+        long checkIntervalMillis = Math.min(MAX_CHECK_INTERVAL_MILLIS, _receiveTimeoutMillis);
+        if (_messagesPerBatch > 1) {
+            checkIntervalMillis = Math.min(checkIntervalMillis, TimeUnit.NANOSECONDS.toMillis(_maxBatchWaitNanos));
+        }
+        _checkIntervalMillis = Math.max(1L, checkIntervalMillis);
+    }
+
+    /**
+     * Register a message listener and supervise it until the stop controller is satisfied or until an error occurs.
+     *
+     * @param resourceManager The resource manager for transaction control.
+     * @throws JMSException on JMS errors.
+     * @throws RollbackException when the XA resource has been rolled back.
+     * @throws HeuristicRollbackException when the XA resource has been rolled back heuristically.
+     * @throws HeuristicMixedException when the XA resource has been rolled back OR committed.
+     */
+    @Override
+    protected void processMessages(ResourceManager resourceManager)
+            throws JMSException, RollbackException, HeuristicMixedException, HeuristicRollbackException {
+        _batchLock.lock();
+        try {
+            _resourceManager = resourceManager;
+            _messagesInBatch = 0;
+            _failure = null;
+        } finally {
+            _batchLock.unlock();
+        }
+        _lastMessageNanos = System.nanoTime();
+        List<MessageConsumer> consumers = resourceManager.getMessageConsumers();
+        for (MessageConsumer consumer : consumers) {
+            consumer.setMessageListener(this);
+        }
+        try {
+            while (keepRunning()) {
+                _stopController.waitForTimeoutOrDone(_checkIntervalMillis);
+                throwIfFailed();
+                long now = System.nanoTime();
+                boolean idle = now - _lastMessageNanos >= _idleNanos;
+                if (idle) {
+                    _receiveTimeoutCounter.incrementCount(1);
+                    _lastMessageNanos = now;
+                }
+                if (shouldCommitPartialBatch(idle, now)) {
+                    resourceManager.stopDelivery();
+                    commitBatch();
+                    resourceManager.startDelivery();
+                }
+            }
+        } finally {
+            resourceManager.stopDelivery();
+            for (MessageConsumer consumer : consumers) {
+                consumer.setMessageListener(null);
+            }
+        }
+        throwIfFailed();
+        commitBatch();
+    }
+
+    /**
+     * Process a message pushed by the JMS provider. Errors are saved and reported by the worker thread, as a message
+     * listener can't throw checked exceptions. Messages delivered after an error are ignored and rolled back when the
+     * session is closed.
+     *
+     * @param msg The message.
+     */
+    @Override
+    public void onMessage(Message msg) {
+        _lastMessageNanos = System.nanoTime();
+        _batchLock.lock();
+        try {
+            if (_failure == null) {
+                processMessage(msg);
+                if (++_messagesInBatch == 1) {
+                    _batchDeadlineNanos = System.nanoTime() + _maxBatchWaitNanos;
+                }
+                if (_messagesInBatch >= _messagesPerBatch) {
+                    commitBatch();
+                }
+            }
+        } catch (JMSException | RollbackException | HeuristicMixedException | HeuristicRollbackException
+                | RuntimeException e) {
+            _failure = e;
+        } finally {
+            _batchLock.unlock();
+        }
+    }
+
+    private boolean shouldCommitPartialBatch(boolean idle, long now) {
+        _batchLock.lock();
+        try {
+            return _messagesInBatch > 0 && (idle || now - _batchDeadlineNanos >= 0L);
+        } finally {
+            _batchLock.unlock();
+        }
+    }
+
+    private void commitBatch()
+            throws JMSException, RollbackException, HeuristicMixedException, HeuristicRollbackException {
+        _batchLock.lock();
+        try {
+            if (_messagesInBatch > 0) {
+                int messagesInBatch = _messagesInBatch;
+                _messagesInBatch = 0;
+                commitOrRollback(_resourceManager, messagesInBatch);
+            }
+        } finally {
+            _batchLock.unlock();
+        }
+    }
+
+    private void throwIfFailed()
+            throws JMSException, RollbackException, HeuristicMixedException, HeuristicRollbackException {
+        Exception failure;
+        _batchLock.lock();
+        try {
+            failure = _failure;
+        } finally {
+            _batchLock.unlock();
+        }
+        if (failure instanceof JMSException) {
+            throw (JMSException) failure;
+        } else if (failure instanceof RollbackException) {
+            throw (RollbackException) failure;
+        } else if (failure instanceof HeuristicMixedException) {
+            throw (HeuristicMixedException) failure;
+        } else if (failure instanceof HeuristicRollbackException) {
+            throw (HeuristicRollbackException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+    }
+}
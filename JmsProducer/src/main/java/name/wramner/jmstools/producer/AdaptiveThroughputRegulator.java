@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.stopcontroller.StopController;
+
+/**
+ * This class samples the overall throughput several times per second and adjusts the rate of a shared
+ * {@link TokenBucket} so that the number of messages counted follows the target throughput and profile. The token
+ * bucket paces the workers, the regulator compensates for messages that are sent but not counted (rollbacks) and for
+ * periods when the workers cannot keep up.
+ * <p>
+ * The regulator keeps track of the number of messages that should have been counted so far. The difference between
+ * that and the actual count is added to the target rate and spread over a short catch-up time. The difference is
+ * limited in both directions so that a long stall does not lead to a flood of messages afterwards.
+ *
+ * @author Erik Wramner
+ */
+public class AdaptiveThroughputRegulator implements Runnable {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final double CATCH_UP_SECONDS = 1.0;
+    private static final double MAX_SURPLUS_FACTOR = 0.5;
+    private static final double MAX_DEFICIT_FACTOR = 1.0;
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final StopController _stopController;
+    private final Counter _counter;
+    private final TokenBucket _tokenBucket;
+    private final double _messagesPerSecond;
+    private final ThroughputProfile _profile;
+    private final double _periodSeconds;
+    private final double _lowFactor;
+    private final int _sampleIntervalMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param stopController The stop controller.
+     * @param counter The message counter.
+     * @param tokenBucket The token bucket shared with the workers.
+     * @param messagesPerSecond The target throughput.
+     * @param profile The throughput profile.
+     * @param periodSeconds The profile period in seconds.
+     * @param lowFactor The low level for the profile as a fraction of the target.
+     * @param sampleIntervalMillis The time between samples in milliseconds.
+     */
+    public AdaptiveThroughputRegulator(StopController stopController, Counter counter, TokenBucket tokenBucket,
+                    double messagesPerSecond, ThroughputProfile profile, double periodSeconds, double lowFactor,
+                    int sampleIntervalMillis) {
+        _stopController = stopController;
+        _counter = counter;
+        _tokenBucket = tokenBucket;
+        _messagesPerSecond = messagesPerSecond;
+        _profile = profile;
+        _periodSeconds = periodSeconds;
+        _lowFactor = lowFactor;
+        _sampleIntervalMillis = sampleIntervalMillis;
+    }
+
+    /**
+     * Compare the count with the expected count for every sample and adjust the rate of the token bucket.
+     */
+    @Override
+    public void run() {
+        _logger.debug("Adaptive throughput regulator started, goal is {} messages per second with profile {}",
+                        _messagesPerSecond, _profile);
+        try {
+            long startNanos = System.nanoTime();
+            long previousNanos = startNanos;
+            long startCount = _counter.getCount();
+            double expectedCount = 0.0;
+            _stopController.waitForTimeoutOrDone(_sampleIntervalMillis);
+
+            while (_stopController.keepRunning()) {
+                long nowNanos = System.nanoTime();
+                double previousSeconds = (previousNanos - startNanos) / NANOS_PER_SECOND;
+                double elapsedSeconds = (nowNanos - startNanos) / NANOS_PER_SECOND;
+                previousNanos = nowNanos;
+                expectedCount += getTargetRate((previousSeconds + elapsedSeconds) / 2.0)
+                                * (elapsedSeconds - previousSeconds);
+
+                double targetRate = getTargetRate(elapsedSeconds);
+                double deficit = expectedCount - (_counter.getCount() - startCount);
+                double maxDeficit = targetRate * CATCH_UP_SECONDS * MAX_DEFICIT_FACTOR;
+                double maxSurplus = targetRate * CATCH_UP_SECONDS * MAX_SURPLUS_FACTOR;
+                if (deficit > maxDeficit) {
+                    expectedCount -= deficit - maxDeficit;
+                    deficit = maxDeficit;
+                } else if (deficit < -maxSurplus) {
+                    expectedCount += -maxSurplus - deficit;
+                    deficit = -maxSurplus;
+                }
+                double rate = targetRate + deficit / CATCH_UP_SECONDS;
+                _tokenBucket.setRate(rate);
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug("Target rate {}, deficit {}, new rate {} messages per second", targetRate, deficit,
+                                    rate);
+                }
+                _stopController.waitForTimeoutOrDone(_sampleIntervalMillis);
+            }
+        } finally {
+            _logger.debug("Adaptive throughput regulator stopped");
+        }
+    }
+
+    /**
+     * Get the target rate at a given time according to the profile.
+     *
+     * @param elapsedSeconds The time since start.
+     * @return messages per second.
+     */
+    double getTargetRate(double elapsedSeconds) {
+        return _messagesPerSecond * _profile.getFactor(elapsedSeconds, _periodSeconds, _lowFactor);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.CompletionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+
+import name.wramner.jmstools.stopcontroller.StopController;
+
+/**
+ * A window of asynchronous sends using JMS 2.0 completion listeners. Up to a fixed number of sends may be in flight at
+ * the same time; when the window is full the sending thread waits for the oldest completions. The completion listener
+ * callbacks run on provider threads, but they only queue the outcome. All outcomes are handled by the sending thread in
+ * {@link #send(MessageProducer, Message, long, int)} and {@link #drain()}, so the callback does not need to be thread
+ * safe. The completion time is taken on the provider thread, so latencies don't depend on when the sending thread gets
+ * around to handling the outcome.
+ * <p>
+ * A provider may never call the completion listener, for example if the connection to the broker is lost. The sending
+ * thread therefore waits at most the send timeout for a completion, and less once the stop controller is done. When
+ * the time has passed it gives up with an exception and the caller should {@link #abandon()} the window, which reports
+ * the sends in flight as in doubt.
+ * <p>
+ * The per-send state is kept in a fixed set of reusable slots, so no objects are allocated per message.
+ *
+ * @author Erik Wramner
+ */
+class AsyncSendWindow {
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+    private static final long MAX_WAIT_AFTER_STOP_MILLIS = 5000L;
+    private final long _sendTimeoutMillis;
+    private final StopController _stopController;
+    private final Callback _callback;
+    private final ArrayDeque<PendingSend> _freeSlots;
+    private final BlockingQueue<PendingSend> _completedSlots;
+    private final PendingSend[] _slots;
+    private int _successfulSends;
+
+    /**
+     * Callback for the outcome of asynchronous sends. All methods are called on the sending thread.
+     */
+    interface Callback {
+
+        /**
+         * The message has been sent.
+         *
+         * @param message The message.
+         * @param startNanos The start time for latency measurements.
+         * @param completionNanos The time the provider reported the send as completed, from {@link System#nanoTime()}.
+         * @param delaySeconds The delivery delay in seconds.
+         * @throws JMSException on JMS errors.
+         */
+        void sendCompleted(Message message, long startNanos, long completionNanos, int delaySeconds)
+                        throws JMSException;
+
+        /**
+         * The message could not be sent.
+         *
+         * @param message The message.
+         * @param delaySeconds The delivery delay in seconds.
+         * @param exception The exception reported by the provider.
+         * @throws JMSException on JMS errors.
+         */
+        void sendFailed(Message message, int delaySeconds, Exception exception) throws JMSException;
+
+        /**
+         * The outcome for the message is unknown as the window has been abandoned.
+         *
+         * @param message The message.
+         * @param delaySeconds The delivery delay in seconds.
+         * @throws JMSException on JMS errors.
+         */
+        void sendInDoubt(Message message, int delaySeconds) throws JMSException;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param size The maximum number of sends in flight.
+     * @param sendTimeoutMillis The maximum time to wait for a send to complete.
+     * @param stopController The stop controller.
+     * @param callback The callback for completed sends.
+     */
+    AsyncSendWindow(int size, long sendTimeoutMillis, StopController stopController, Callback callback) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The async send window must be at least 1");
+        }
+        _sendTimeoutMillis = sendTimeoutMillis;
+        _stopController = stopController;
+        _callback = callback;
+        _freeSlots = new ArrayDeque<>(size);
+        _completedSlots = new ArrayBlockingQueue<>(size);
+        _slots = new PendingSend[size];
+        for (int i = 0; i < size; i++) {
+            _slots[i] = new PendingSend();
+            _freeSlots.add(_slots[i]);
+        }
+    }
+
+    /**
+     * Send a message asynchronously, waiting for earlier sends to complete first if the window is full.
+     *
+     * @param producer The message producer.
+     * @param message The message.
+     * @param startNanos The start time for latency measurements.
+     * @param delaySeconds The delivery delay in seconds, for the callback.
+     * @throws JMSException on JMS errors or if earlier sends time out.
+     * @throws IllegalStateException if the JMS provider does not support asynchronous sends.
+     */
+    void send(MessageProducer producer, Message message, long startNanos, int delaySeconds) throws JMSException {
+        processCompletedSends(false);
+        if (_freeSlots.isEmpty()) {
+            processCompletedSends(true);
+        }
+        PendingSend slot = _freeSlots.poll();
+        slot.prepare(message, startNanos, delaySeconds);
+        try {
+            producer.send(message, slot);
+        } catch (AbstractMethodError | UnsupportedOperationException e) {
+            slot.clear();
+            _freeSlots.add(slot);
+            throw new IllegalStateException("The JMS provider does not support asynchronous send (JMS 2.0)", e);
+        } catch (JMSException | RuntimeException e) {
+            slot.clear();
+            _freeSlots.add(slot);
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for all sends in flight to complete.
+     *
+     * @return the number of successful sends since the last drain.
+     * @throws JMSException on JMS errors or if the sends time out.
+     */
+    int drain() throws JMSException {
+        while (_freeSlots.size() < _slots.length) {
+            processCompletedSends(true);
+        }
+        int successfulSends = _successfulSends;
+        _successfulSends = 0;
+        return successfulSends;
+    }
+
+    /**
+     * Give up on the sends in flight, typically because the session has failed. Sends that have completed are handled
+     * as usual, the rest are reported as in doubt. The window must not be used after this.
+     *
+     * @throws JMSException on JMS errors.
+     */
+    void abandon() throws JMSException {
+        processCompletedSends(false);
+        for (PendingSend slot : _slots) {
+            if (slot._inFlight) {
+                _callback.sendInDoubt(slot._message, slot._delaySeconds);
+                slot.clear();
+            }
+        }
+    }
+
+    private void processCompletedSends(boolean waitForFirst) throws JMSException {
+        PendingSend slot = waitForFirst ? takeCompletedSend() : _completedSlots.poll();
+        while (slot != null) {
+            try {
+                if (slot._exception == null) {
+                    _successfulSends++;
+                    _callback.sendCompleted(slot._message, slot._startNanos, slot._completionNanos,
+                                    slot._delaySeconds);
+                } else {
+                    _callback.sendFailed(slot._message, slot._delaySeconds, slot._exception);
+                }
+            } finally {
+                slot.clear();
+                _freeSlots.add(slot);
+            }
+            slot = _completedSlots.poll();
+        }
+    }
+
+    private PendingSend takeCompletedSend() throws JMSException {
+        long startMillis = System.currentTimeMillis();
+        long deadlineMillis = startMillis + _sendTimeoutMillis;
+        boolean stopped = false;
+        try {
+            for (long remainingMillis = _sendTimeoutMillis; remainingMillis > 0L; remainingMillis = deadlineMillis
+                            - System.currentTimeMillis()) {
+                PendingSend slot = _completedSlots.poll(Math.min(remainingMillis, POLL_INTERVAL_MILLIS),
+                                TimeUnit.MILLISECONDS);
+                if (slot != null) {
+                    return slot;
+                }
+                if (!stopped && !_stopController.keepRunning()) {
+                    // The sends normally complete soon, but do not keep a finished test waiting for long
+                    stopped = true;
+                    deadlineMillis = Math.min(deadlineMillis, System.currentTimeMillis() + MAX_WAIT_AFTER_STOP_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for asynchronous sends to complete");
+        }
+        throw new JMSException("Timed out after " + (System.currentTimeMillis() - startMillis)
+                        + " ms waiting for asynchronous sends to complete");
+    }
+
+    /**
+     * State for a send in flight. The fields are written by the sending thread before the send and read by the same
+     * thread after the slot has passed through the completed queue, which makes the provider thread's writes of the
+     * completion time and exception visible.
+     */
+    private final class PendingSend implements CompletionListener {
+        private boolean _inFlight;
+        private Message _message;
+        private long _startNanos;
+        private long _completionNanos;
+        private int _delaySeconds;
+        private Exception _exception;
+
+        void prepare(Message message, long startNanos, int delaySeconds) {
+            _inFlight = true;
+            _message = message;
+            _startNanos = startNanos;
+            _delaySeconds = delaySeconds;
+            _exception = null;
+        }
+
+        void clear() {
+            _inFlight = false;
+            _message = null;
+            _exception = null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCompletion(Message message) {
+            _completionNanos = System.nanoTime();
+            _completedSlots.add(this);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onException(Message message, Exception exception) {
+            _completionNanos = System.nanoTime();
+            _exception = exception;
+            _completedSlots.add(this);
+        }
+    }
+}
@@ -16,8 +16,12 @@
 package name.wramner.jmstools.producer;
 
 import java.io.File;
-import java.util.UUID;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
@@ -28,6 +32,12 @@ import javax.transaction.RollbackException;
 
 import name.wramner.jmstools.JmsClientWorker;
 import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.latency.LatencyType;
+import name.wramner.jmstools.messagelog.MessageLogColumn;
+import name.wramner.jmstools.messagelog.MessageLogColumnType;
+import name.wramner.jmstools.messagelog.MessageLogWriter;
+import name.wramner.jmstools.messages.ChecksumAlgorithm;
+import name.wramner.jmstools.messages.MessageCache;
 import name.wramner.jmstools.messages.MessageProvider;
 import name.wramner.jmstools.rm.ResourceManager;
 import name.wramner.jmstools.rm.ResourceManagerFactory;
@@ -43,14 +53,23 @@ import name.wramner.jmstools.stopcontroller.StopController;
  * @param <T> The configuration class.
  */
 public class EnqueueWorker<T extends JmsProducerConfiguration> extends JmsClientWorker<T> {
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
     private final MessageProvider _messageProvider;
     private final int _messagesPerBatch;
     private final AtomicInteger _sleepTimeMillisAfterBatch;
     private final boolean _idAndChecksumEnabled;
+    private final MessageIdGenerator _messageIdGenerator;
+    private final ChecksumAlgorithm _checksumAlgorithm;
     private final double _delayedDeliveryProbability;
     private final int _delayedDeliverySeconds;
     private final DelayedDeliveryAdapter _delayedDeliveryAdapter;
     private final Long _timeToLiveMillis;
+    private final Integer _asyncSendWindowSize;
+    private final long _asyncSendTimeoutMillis;
+    private final SendSchedule _sendSchedule;
+    private final TokenBucket _tokenBucket;
+    private final IntConsumer _payloadLengthListener = this::addPendingBytes;
+    private final MessageCache _messageCache;
 
     /**
      * Constructor.
@@ -69,7 +88,14 @@ public class EnqueueWorker<T extends JmsProducerConfiguration> extends JmsClient
         _messagesPerBatch = config.getMessagesPerBatch();
         _sleepTimeMillisAfterBatch = config.getSleepTimeMillisAfterBatch();
         _idAndChecksumEnabled = config.isIdAndChecksumEnabled();
+        _messageIdGenerator = _idAndChecksumEnabled ? config.getMessageIdType().createGenerator() : null;
+        _checksumAlgorithm = _idAndChecksumEnabled ? config.getChecksumAlgorithm() : null;
         _timeToLiveMillis = config.getTimeToLiveMillis();
+        _asyncSendWindowSize = config.getAsyncSendWindow();
+        _asyncSendTimeoutMillis = TimeUnit.SECONDS.toMillis(config.getAsyncSendTimeoutSeconds());
+        _sendSchedule = config.createSendSchedule(_random);
+        _tokenBucket = config.getTokenBucket();
+        _messageCache = config.isMessageReuseEnabled() ? new MessageCache() : null;
         if (config.getDelayedDeliveryPercentage() != null) {
             _delayedDeliveryAdapter = config.createDelayedDeliveryAdapter();
             _delayedDeliveryProbability = config.getDelayedDeliveryPercentage().doubleValue() / 100.0;
@@ -94,13 +120,37 @@ public class EnqueueWorker<T extends JmsProducerConfiguration> extends JmsClient
     @Override
     protected void processMessages(ResourceManager resourceManager)
             throws RollbackException, JMSException, HeuristicMixedException, HeuristicRollbackException {
-        while (_stopController.keepRunning()) {
+        AsyncSendWindow asyncSendWindow = createAsyncSendWindow();
+        try {
+            processMessages(resourceManager, asyncSendWindow);
+        } catch (JMSException | RuntimeException e) {
+            if (asyncSendWindow != null) {
+                asyncSendWindow.abandon();
+            }
+            throw e;
+        }
+    }
+
+    private void processMessages(ResourceManager resourceManager, AsyncSendWindow asyncSendWindow)
+            throws RollbackException, JMSException, HeuristicMixedException, HeuristicRollbackException {
+        while (keepRunning()) {
             resourceManager.startTransaction();
 
             int numberOfMessages = 0;
             for (int i = 0; i < _messagesPerBatch; i++) {
+                if (_tokenBucket != null && !waitUntil(_tokenBucket.reserve())) {
+                    break;
+                }
+                long intendedSendTimeNanos = 0L;
+                if (_sendSchedule != null) {
+                    intendedSendTimeNanos = _sendSchedule.nextSendTimeNanos();
+                    if (!waitUntil(intendedSendTimeNanos)) {
+                        break;
+                    }
+                }
+
                 Message message = _messageProvider.createMessageWithPayloadAndProperties(resourceManager.getSession(),
-                    _idAndChecksumEnabled);
+                    _checksumAlgorithm, _payloadLengthListener, _messageCache);
                 if (message == null) {
                     // Handle race condition between threads when sending prepared messages once
                     break;
@@ -108,7 +158,7 @@ public class EnqueueWorker<T extends JmsProducerConfiguration> extends JmsClient
 
                 if (_idAndChecksumEnabled) {
                     message.setStringProperty(MessageProvider.UNIQUE_MESSAGE_ID_PROPERTY_NAME,
-                        UUID.randomUUID().toString());
+                        _messageIdGenerator.nextId());
                 }
 
                 int delay = 0;
@@ -121,7 +171,17 @@ public class EnqueueWorker<T extends JmsProducerConfiguration> extends JmsClient
                 if (_timeToLiveMillis != null) {
                     messageProducer.setTimeToLive(_timeToLiveMillis.longValue());
                 }
+                long startNanos = getLatencyStartTime();
+                if (startNanos != 0L && intendedSendTimeNanos != 0L) {
+                    // Measure from the intended time, not from when the previous send let us proceed
+                    startNanos = intendedSendTimeNanos;
+                }
+                if (asyncSendWindow != null) {
+                    asyncSendWindow.send(messageProducer, message, startNanos, delay);
+                    continue;
+                }
                 messageProducer.send(message);
+                recordLatency(LatencyType.SEND, startNanos);
                 numberOfMessages++;
 
                 if (messageLogEnabled()) {
@@ -129,6 +189,9 @@ public class EnqueueWorker<T extends JmsProducerConfiguration> extends JmsClient
                 }
             }
 
+            if (asyncSendWindow != null) {
+                numberOfMessages = asyncSendWindow.drain();
+            }
             commitOrRollback(resourceManager, numberOfMessages);
             int sleepMillis = _sleepTimeMillisAfterBatch.get();
             if (sleepMillis > 0) {
@@ -137,19 +200,122 @@ public class EnqueueWorker<T extends JmsProducerConfiguration> extends JmsClient
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void openResources(ResourceManager resourceManager) throws JMSException {
+        resourceManager.getMessageProducers();
+    }
+
     @Override
-    protected String[] getMessageLogHeaders() {
-        return new String[] { "ProducedTime", "ID", "Length", "DelaySeconds", "JMSID" };
+    protected MessageLogColumn[] getMessageLogColumns() {
+        return new MessageLogColumn[] { new MessageLogColumn("ProducedTime", MessageLogColumnType.TIMESTAMP),
+                        new MessageLogColumn("ID", MessageLogColumnType.ID),
+                        new MessageLogColumn("Length", MessageLogColumnType.INT),
+                        new MessageLogColumn("DelaySeconds", MessageLogColumnType.INT),
+                        new MessageLogColumn("JMSID", MessageLogColumnType.STRING) };
+    }
+
+    private AsyncSendWindow createAsyncSendWindow() {
+        if (_asyncSendWindowSize == null) {
+            return null;
+        }
+        try {
+            return new AsyncSendWindow(_asyncSendWindowSize.intValue(), _asyncSendTimeoutMillis, _stopController,
+                            new AsyncSendCallback());
+        } catch (LinkageError e) {
+            throw new IllegalStateException("Asynchronous send requires the JMS 2.0 API", e);
+        }
     }
 
     private void logMessage(Message message, int delay) throws JMSException {
-        logMessage(String.valueOf(System.currentTimeMillis()),
-            message.getStringProperty(MessageProvider.UNIQUE_MESSAGE_ID_PROPERTY_NAME),
-            message.getStringProperty(MessageProvider.LENGTH_PROPERTY_NAME), String.valueOf(delay),
-            message.getJMSMessageID());
+        addMessageLogFields(message, delay);
+        getMessageLogWriter().endEntry();
+    }
+
+    private void logMessage(Message message, int delay, char state) throws JMSException {
+        addMessageLogFields(message, delay);
+        try {
+            getMessageLogWriter().writeEntry(state);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addMessageLogFields(Message message, int delay) throws JMSException {
+        MessageLogWriter messageLogWriter = getMessageLogWriter();
+        messageLogWriter.addTimestamp(System.currentTimeMillis());
+        messageLogWriter.addId(message.getStringProperty(MessageProvider.UNIQUE_MESSAGE_ID_PROPERTY_NAME));
+        if (message.propertyExists(MessageProvider.LENGTH_PROPERTY_NAME)) {
+            messageLogWriter.addInt(message.getIntProperty(MessageProvider.LENGTH_PROPERTY_NAME));
+        } else {
+            messageLogWriter.addNull();
+        }
+        messageLogWriter.addInt(delay);
+        messageLogWriter.addString(message.getJMSMessageID());
+    }
+
+    /**
+     * Park until the intended send time for the next message. Return at once if the worker is behind schedule, the
+     * message should be sent immediately in order to catch up.
+     *
+     * @param deadlineNanos The intended send time.
+     * @return true if it is time to send, false if the stop controller is done.
+     */
+    private boolean waitUntil(long deadlineNanos) {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        while (remainingNanos > 0L) {
+            if (!_stopController.keepRunning()) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(remainingNanos, MAX_PARK_NANOS));
+            remainingNanos = deadlineNanos - System.nanoTime();
+        }
+        return true;
     }
 
     private boolean shouldDelayDelivery() {
         return _delayedDeliveryAdapter != null && _random.nextDouble() < _delayedDeliveryProbability;
     }
+
+    /**
+     * Handles the outcome of asynchronous sends on the worker thread. Successful sends are logged as pending and
+     * committed with the batch, failed sends are logged as rolled back at once.
+     */
+    private class AsyncSendCallback implements AsyncSendWindow.Callback {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void sendCompleted(Message message, long startNanos, long completionNanos, int delaySeconds)
+                        throws JMSException {
+            recordLatency(LatencyType.SEND, startNanos, completionNanos);
+            if (messageLogEnabled()) {
+                logMessage(message, delaySeconds);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void sendFailed(Message message, int delaySeconds, Exception exception) throws JMSException {
+            _logger.error("Asynchronous send failed!", exception);
+            if (messageLogEnabled()) {
+                logMessage(message, delaySeconds, 'R');
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void sendInDoubt(Message message, int delaySeconds) throws JMSException {
+            if (messageLogEnabled()) {
+                logMessage(message, delaySeconds, '?');
+            }
+        }
+    }
 }
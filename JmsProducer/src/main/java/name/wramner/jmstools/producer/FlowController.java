@@ -25,4 +25,11 @@ public interface FlowController {
      * Sleep for a while if above the configured limit.
      */
     void sleepIfAboveLimit();
+
+    /**
+     * Check if the producers are currently paused because the limit has been exceeded.
+     *
+     * @return true if paused.
+     */
+    boolean isPaused();
 }
\ No newline at end of file
@@ -44,7 +44,7 @@ public class FlowControllingCounter implements Counter {
      * @param count The count to add to the counter.
      */
     @Override
-    public void incrementCount(int count) {
+    public void incrementCount(long count) {
         _counter.incrementCount(count);
         _flowController.sleepIfAboveLimit();
     }
@@ -53,7 +53,16 @@ public class FlowControllingCounter implements Counter {
      * {@inheritDoc}
      */
     @Override
-    public int getCount() {
+    public long getCount() {
         return _counter.getCount();
     }
+
+    /**
+     * Check if the flow controller is currently holding the producers back.
+     *
+     * @return true if paused.
+     */
+    public boolean isPaused() {
+        return _flowController.isPaused();
+    }
 }
\ No newline at end of file
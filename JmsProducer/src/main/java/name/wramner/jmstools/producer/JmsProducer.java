@@ -20,17 +20,21 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jms.JMSException;
 
 import com.atomikos.icatch.jta.UserTransactionManager;
 
 import name.wramner.jmstools.JmsClient;
-import name.wramner.jmstools.StatisticsLogger;
+import name.wramner.jmstools.WorkerThreadFactory;
 import name.wramner.jmstools.counter.Counter;
+import name.wramner.jmstools.latency.LatencyLogger;
 import name.wramner.jmstools.messages.MessageProvider;
+import name.wramner.jmstools.metrics.MetricsRegistry;
 import name.wramner.jmstools.rm.JmsResourceManagerFactory;
 import name.wramner.jmstools.rm.ResourceManagerFactory;
 import name.wramner.jmstools.rm.XAJmsResourceManagerFactory;
@@ -47,6 +51,45 @@ public abstract class JmsProducer<T extends JmsProducerConfiguration> extends Jm
 
     private static final String LOG_FILE_BASE_NAME = "enqueued_messages_";
 
+    @Override
+    protected boolean isConfigurationValid(T config) {
+        if (!super.isConfigurationValid(config)) {
+            return false;
+        }
+        if (config.isOrderedDeliveryEnabled() && !config.hasPreparedMessages()) {
+            System.out.println("Please specify a message file directory or a message corpus for ordered delivery!");
+            return false;
+        }
+        if (config.getReadAheadMessages() < 1) {
+            System.out.println("Please specify at least one message to read ahead!");
+            return false;
+        }
+        if (config.getMessagesPerSecond() != null && config.getMessagesPerSecond().doubleValue() <= 0.0) {
+            System.out.println("Please specify a positive send rate!");
+            return false;
+        }
+        if (config.getAsyncSendWindow() != null && config.getAsyncSendTimeoutSeconds() < 1) {
+            System.out.println("Please specify an asynchronous send timeout of at least one second!");
+            return false;
+        }
+        if (config.getTargetTpm() != null) {
+            if (config.getTargetTpm().intValue() <= 0) {
+                System.out.println("Please specify a positive target for messages per minute!");
+                return false;
+            }
+            if (config.getThroughputSampleIntervalMillis() < 100 || config.getThroughputSampleIntervalMillis() > 1000) {
+                System.out.println("Please specify a throughput sample interval between 100 and 1000 ms!");
+                return false;
+            }
+            if (config.getProfilePeriodSeconds() <= 0 || config.getProfileLowPercentage() <= 0.0
+                            || config.getProfileLowPercentage() > 100.0) {
+                System.out.println("Please specify a positive profile period and a low level above 0 and up to 100%!");
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     protected List<Thread> createThreadsWithWorkers(T config) throws JMSException {
         MessageProvider messageProvider;
@@ -56,37 +99,68 @@ public abstract class JmsProducer<T extends JmsProducerConfiguration> extends Jm
             throw new UncheckedIOException("Failed to initialize message provider", e);
         }
         Counter counter = config.createMessageCounter();
-        StopController stopController = config.createStopController(counter);
+        StopController stopController = config.createStopController(counter, messageProvider);
+        messageProvider.setStopController(stopController);
         ResourceManagerFactory resourceManagerFactory = config.useXa()
                         ? new XAJmsResourceManagerFactory(new UserTransactionManager(),
                                         config.createXAConnectionFactory(), config.getDestinationName(),
-                                        config.isDestinationTypeQueue())
+                                        config.isDestinationTypeQueue(), config.getConnections(),
+                                        config.getClientsPerSession())
                         : new JmsResourceManagerFactory(config.createConnectionFactory(), config.getDestinationName(),
                                         config.isDestinationTypeQueue(), !config.isNonTransactional(),
-                                        config.isNonPersistentDeliveryRequested());
+                                        config.isNonPersistentDeliveryRequested(), config.getConnections(),
+                                        config.getClientsPerSession());
         List<Thread> threads = createThreads(resourceManagerFactory, counter, stopController, messageProvider, config);
+        registerMetrics(config, counter);
         if (config.isStatisticsEnabled()) {
-            threads.add(new Thread(new StatisticsLogger(stopController, counter), "StatisticsLogger"));
+            threads.add(createStatisticsLoggerThread(config, stopController, counter, Collections.emptyMap()));
+        }
+        if (config.isLatencyLoggingEnabled()) {
+            threads.add(new Thread(new LatencyLogger(stopController, config.getLatencyStatistics(),
+                            config.getLatencyIntervalSeconds()), "LatencyLogger"));
         }
         if (config.getTargetTpm() != null) {
-            threads.add(new Thread(new ConstantThroughputRegulator(stopController, config.getTargetTpm(),
-                            config.getSleepTimeMillisAfterBatch(), counter, config.getThreads(),
-                            config.getMessagesPerBatch())));
+            threads.add(new Thread(config.createThroughputRegulator(stopController, counter),
+                            "AdaptiveThroughputRegulator"));
         }
         return threads;
     }
 
+    @Override
+    protected void registerMetrics(T config, Counter messageCounter) {
+        super.registerMetrics(config, messageCounter);
+        MetricsRegistry metricsRegistry = config.getMetricsRegistry();
+        if (metricsRegistry == null) {
+            return;
+        }
+        AtomicInteger sleepTimeMillis = config.getSleepTimeMillisAfterBatch();
+        metricsRegistry.addGauge("jmstools_sleep_time_ms", "Sleep time in milliseconds between batches",
+                        sleepTimeMillis::get);
+        TokenBucket tokenBucket = config.getTokenBucket();
+        if (tokenBucket != null) {
+            metricsRegistry.addGauge("jmstools_throughput_rate", "Current send rate in messages per second set by"
+                            + " the throughput regulator", tokenBucket::getRate);
+        }
+        if (messageCounter instanceof FlowControllingCounter) {
+            FlowControllingCounter flowControllingCounter = (FlowControllingCounter) messageCounter;
+            metricsRegistry.addGauge("jmstools_flow_control_paused", "1 if flow control has paused the producers",
+                            () -> flowControllingCounter.isPaused() ? 1 : 0);
+        }
+    }
+
     private List<Thread> createThreads(ResourceManagerFactory resourceManagerFactory, Counter counter,
                     StopController stopController, MessageProvider messageProvider, T config) {
         String currentTimeString = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
         File logDirectory = config.getLogDirectory();
+        WorkerThreadFactory threadFactory = config.createWorkerThreadFactory();
         List<Thread> threads = new ArrayList<>();
         for (int i = 0; i < config.getThreads(); i++) {
-            threads.add(new Thread(
+            threads.add(threadFactory.createThread(
                             new EnqueueWorker<T>(resourceManagerFactory, counter, stopController, messageProvider,
                                             logDirectory != null ? new File(logDirectory,
                                                             LOG_FILE_BASE_NAME + (i + 1) + "_" + currentTimeString
-                                                                            + ".log")
+                                                                            + config.getMessageLogFormat()
+                                                                                            .getFileSuffix())
                                                             : null,
                                             config),
                             "EnqueueWorker-" + (i + 1)));
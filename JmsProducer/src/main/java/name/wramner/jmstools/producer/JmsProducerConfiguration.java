@@ -17,10 +17,14 @@ package name.wramner.jmstools.producer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.kohsuke.args4j.Option;
@@ -29,12 +33,15 @@ import org.kohsuke.args4j.spi.StringArrayOptionHandler;
 import name.wramner.jmstools.JmsClientConfiguration;
 import name.wramner.jmstools.counter.Counter;
 import name.wramner.jmstools.messages.BytesMessageProvider;
+import name.wramner.jmstools.messages.ChecksumAlgorithm;
+import name.wramner.jmstools.messages.MappedMessageCorpus;
 import name.wramner.jmstools.messages.MessageProvider;
 import name.wramner.jmstools.messages.ObjectMessageProvider;
 import name.wramner.jmstools.messages.TextMessageProvider;
 import name.wramner.jmstools.stopcontroller.CountStopController;
 import name.wramner.jmstools.stopcontroller.DurationOrCountStopController;
 import name.wramner.jmstools.stopcontroller.DurationStopController;
+import name.wramner.jmstools.stopcontroller.ExhaustedStopController;
 import name.wramner.jmstools.stopcontroller.RunForeverStopController;
 import name.wramner.jmstools.stopcontroller.StopController;
 
@@ -44,13 +51,18 @@ import name.wramner.jmstools.stopcontroller.StopController;
  * @author Erik Wramner
  */
 public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
-    private static final int ONE_MINUTE_MS = 60_000;
-    private static final int AVERAGE_PROCESSING_TIME_MS = 1;
+    private static final double SECONDS_PER_MINUTE = 60.0;
+    private static final int DEFAULT_THROUGHPUT_SAMPLE_INTERVAL_MS = 250;
+    private static final int DEFAULT_PROFILE_PERIOD_SECONDS = 60;
+    private static final double DEFAULT_PROFILE_LOW_PERCENTAGE = 50.0;
     private static final String DEFAULT_FILE_ENCODING = "UTF-8";
     private static final int DEFAULT_NUMBER_OF_MESSAGES = 100;
     private static final int DEFAULT_MIN_SIZE = 1024;
     private static final int DEFAULT_MAX_SIZE = 8192;
     private static final String DEFAULT_OUTLIER_SIZE = "16M";
+    private static final int DEFAULT_RAMP_STEPS = 10;
+    private static final int DEFAULT_RAMP_STEP_SECONDS = 60;
+    private static final int DEFAULT_READ_AHEAD_MESSAGES = 1000;
 
     private static enum MessageType {
         TEXT, BYTES, OBJECT
@@ -70,8 +82,24 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
                     "-min", "-max", "-n", "-outliers", "-outliersize", "-d" })
     protected File _messageFileDirectory;
 
-    @Option(name = "-ordered", aliases = "--ordered-delivery", usage = "Send messages in order (works best with one thread)", depends = {
-                    "-dir" })
+    @Option(name = "-corpus", aliases = "--message-corpus-file", usage = "Memory-mapped message corpus, packed from the"
+                    + " -dir files if specified, keeps the payloads off the heap", forbids = { "-min", "-max", "-n",
+                                    "-outliers", "-outliersize", "-d" })
+    protected File _corpusFile;
+
+    private MappedMessageCorpus _messageCorpus;
+
+    @Option(name = "-stream", aliases = "--stream-prepared-messages", usage = "Stream the -dir messages with a"
+                    + " background reader instead of loading them all, -dir may be a directory tree or a zip, tar or"
+                    + " tar.gz archive", depends = { "-dir" }, forbids = { "-corpus" })
+    protected boolean _streamPreparedMessages;
+
+    @Option(name = "-readahead", aliases = "--read-ahead-messages", usage = "Number of messages to read ahead when"
+                    + " streaming, unordered messages are picked randomly among them", depends = { "-stream" })
+    protected int _readAheadMessages = DEFAULT_READ_AHEAD_MESSAGES;
+
+    @Option(name = "-ordered", aliases = "--ordered-delivery", usage = "Send messages in order (works best with one"
+                    + " thread), requires -dir or -corpus")
     protected boolean _ordered = false;
 
     @Option(name = "-enc", aliases = "--message-file-encoding", usage = "Character encoding for message files,"
@@ -81,17 +109,74 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
     @Option(name = "-id", aliases = "--id-and-checksum", usage = "Set unique id, length and checksum properties for integrity check")
     protected boolean _idAndChecksumEnabled;
 
+    @Option(name = "-idtype", aliases = "--id-type", usage = "Unique id type, UUID (random) or SEQUENTIAL (fast)", depends = {
+                    "-id" })
+    protected MessageIdType _messageIdType = MessageIdType.UUID;
+
+    @Option(name = "-checksum", aliases = "--checksum-algorithm", usage = "Checksum algorithm, MD5, CRC32C or XXHASH64", depends = {
+                    "-id" })
+    protected ChecksumAlgorithm _checksumAlgorithm = ChecksumAlgorithm.MD5;
+
     @Option(name = "-batchsize", aliases = "--messages-per-batch", usage = "Number of messages to send per batch/commit")
     protected int _messagesPerBatch = 1;
 
-    @Option(name = "-sleep", aliases = "--sleep-time-ms", usage = "Sleep time in milliseconds between batches")
+    @Option(name = "-async", aliases = "--async-send-window", usage = "Send asynchronously with up to this many messages"
+                    + " in flight per thread (requires JMS 2.0)")
+    protected Integer _asyncSendWindow;
+
+    @Option(name = "-asynctimeout", aliases = "--async-send-timeout-seconds", usage = "Seconds to wait for an"
+                    + " asynchronous send to complete before the sends in flight are treated as in doubt", depends = {
+                                    "-async" })
+    protected int _asyncSendTimeoutSeconds = 60;
+
+    @Option(name = "-reuse", aliases = "--reuse-messages", usage = "Reuse sent messages with the same payload, clearing"
+                    + " and setting the properties only, in order to save CPU and allocations", forbids = { "-async" })
+    protected boolean _messageReuseEnabled;
+
+    @Option(name = "-sleep", aliases = "--sleep-time-ms", usage = "Sleep time in milliseconds between batches", forbids = {
+                    "-rate", "-tpm" })
     private Integer _initialSleepTimeMillisAfterBatch;
 
     private AtomicInteger _sleepTimeMillisAfterBatch;
 
-    @Option(name = "-tpm", aliases = "--messages-per-minute", usage = "Target for number of transactions/messages per minute")
+    @Option(name = "-tpm", aliases = "--messages-per-minute", usage = "Target for number of transactions/messages per minute", forbids = {
+                    "-rate", "-sleep" })
     private Integer _targetTpm;
 
+    @Option(name = "-tpmint", aliases = "--throughput-sample-ms", usage = "Time in milliseconds between throughput"
+                    + " samples, 100-1000", depends = { "-tpm" })
+    protected int _throughputSampleIntervalMillis = DEFAULT_THROUGHPUT_SAMPLE_INTERVAL_MS;
+
+    @Option(name = "-profile", aliases = "--throughput-profile", usage = "Throughput profile, CONSTANT, RAMP or SQUARE", depends = {
+                    "-tpm" })
+    protected ThroughputProfile _throughputProfile = ThroughputProfile.CONSTANT;
+
+    @Option(name = "-period", aliases = "--profile-period-seconds", usage = "Ramp time or square wave period in seconds", depends = {
+                    "-profile" })
+    protected int _profilePeriodSeconds = DEFAULT_PROFILE_PERIOD_SECONDS;
+
+    @Option(name = "-lowpct", aliases = "--profile-low-percentage", usage = "Ramp start or square wave low level as"
+                    + " percentage of the target", depends = { "-profile" })
+    protected double _profileLowPercentage = DEFAULT_PROFILE_LOW_PERCENTAGE;
+
+    private TokenBucket _tokenBucket;
+
+    @Option(name = "-rate", aliases = "--messages-per-second", usage = "Open-loop send rate in messages per second"
+                    + " for all threads, decimals supported", forbids = { "-sleep", "-tpm" })
+    protected Double _messagesPerSecond;
+
+    @Option(name = "-schedule", aliases = "--rate-schedule", usage = "Send rate schedule, CONSTANT, POISSON or STEP", depends = {
+                    "-rate" })
+    protected RateScheduleType _rateScheduleType = RateScheduleType.CONSTANT;
+
+    @Option(name = "-steps", aliases = "--ramp-steps", usage = "Number of steps up to the full rate for the STEP schedule", depends = {
+                    "-rate" })
+    protected int _rampSteps = DEFAULT_RAMP_STEPS;
+
+    @Option(name = "-stepsec", aliases = "--ramp-step-seconds", usage = "Duration in seconds for each step in the STEP schedule", depends = {
+                    "-rate" })
+    protected int _rampStepSeconds = DEFAULT_RAMP_STEP_SECONDS;
+
     @Option(name = "-type", aliases = "--message-type", usage = "JMS message type")
     private JmsProducerConfiguration.MessageType _messageType;
 
@@ -209,6 +294,86 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
         return _targetTpm;
     }
 
+    /**
+     * Get the time between throughput samples for the throughput regulator.
+     *
+     * @return sample interval in milliseconds.
+     */
+    public int getThroughputSampleIntervalMillis() {
+        return _throughputSampleIntervalMillis;
+    }
+
+    /**
+     * Get the profile period in seconds.
+     *
+     * @return ramp time or square wave period.
+     */
+    public int getProfilePeriodSeconds() {
+        return _profilePeriodSeconds;
+    }
+
+    /**
+     * Get the low level for the throughput profile.
+     *
+     * @return percentage of target throughput.
+     */
+    public double getProfileLowPercentage() {
+        return _profileLowPercentage;
+    }
+
+    /**
+     * Get the token bucket that paces the workers when a target throughput has been configured. All workers share the
+     * same instance.
+     *
+     * @return token bucket or null.
+     */
+    public synchronized TokenBucket getTokenBucket() {
+        if (_tokenBucket == null && _targetTpm != null) {
+            _tokenBucket = new TokenBucket(_targetTpm.intValue() / SECONDS_PER_MINUTE
+                            * _throughputProfile.getFactor(0.0, _profilePeriodSeconds, _profileLowPercentage / 100.0));
+        }
+        return _tokenBucket;
+    }
+
+    /**
+     * Create a regulator that adjusts the token bucket in order to reach the target throughput.
+     *
+     * @param stopController The stop controller.
+     * @param counter The message counter.
+     * @return regulator or null if no target throughput has been configured.
+     */
+    public AdaptiveThroughputRegulator createThroughputRegulator(StopController stopController, Counter counter) {
+        if (_targetTpm == null) {
+            return null;
+        }
+        return new AdaptiveThroughputRegulator(stopController, counter, getTokenBucket(),
+                        _targetTpm.intValue() / SECONDS_PER_MINUTE, _throughputProfile, _profilePeriodSeconds,
+                        _profileLowPercentage / 100.0, _throughputSampleIntervalMillis);
+    }
+
+    /**
+     * Get the open-loop send rate in messages per second for all threads or null if not configured.
+     *
+     * @return desired number of messages per second.
+     */
+    public Double getMessagesPerSecond() {
+        return _messagesPerSecond;
+    }
+
+    /**
+     * Create a send schedule for one worker thread. The total rate is divided evenly between the threads.
+     *
+     * @param random The random number generator for the worker thread.
+     * @return schedule or null if no send rate has been configured.
+     */
+    public SendSchedule createSendSchedule(Random random) {
+        if (_messagesPerSecond == null) {
+            return null;
+        }
+        return new SendSchedule(_rateScheduleType, _messagesPerSecond.doubleValue() / getThreads(), _rampSteps,
+                        TimeUnit.SECONDS.toNanos(_rampStepSeconds), random);
+    }
+
     /**
      * Get the outlier size in bytes. An outlier is a message much larger than the normal message size.
      *
@@ -236,21 +401,8 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
      */
     public synchronized AtomicInteger getSleepTimeMillisAfterBatch() {
         if (_sleepTimeMillisAfterBatch == null) {
-            int initialSleepMillis;
-            if (_initialSleepTimeMillisAfterBatch == null) {
-                if (_targetTpm != null && _targetTpm.intValue() > 0) {
-                    int messagesPerMinute = _targetTpm.intValue();
-                    initialSleepMillis = Math.max(
-                                    (getThreads() * ONE_MINUTE_MS - (messagesPerMinute * AVERAGE_PROCESSING_TIME_MS))
-                                                    / messagesPerMinute,
-                                    0) * getMessagesPerBatch();
-                } else {
-                    initialSleepMillis = 0;
-                }
-            } else {
-                initialSleepMillis = _initialSleepTimeMillisAfterBatch.intValue();
-            }
-            _sleepTimeMillisAfterBatch = new AtomicInteger(initialSleepMillis);
+            _sleepTimeMillisAfterBatch = new AtomicInteger(
+                            _initialSleepTimeMillisAfterBatch != null ? _initialSleepTimeMillisAfterBatch.intValue() : 0);
         }
         return _sleepTimeMillisAfterBatch;
     }
@@ -282,6 +434,51 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
         return _idAndChecksumEnabled;
     }
 
+    /**
+     * Get the type of unique id to set on messages when id and checksum is enabled.
+     *
+     * @return id type.
+     */
+    public MessageIdType getMessageIdType() {
+        return _messageIdType;
+    }
+
+    /**
+     * Get the algorithm for the payload checksum set when id and checksum is enabled.
+     *
+     * @return checksum algorithm.
+     */
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return _checksumAlgorithm;
+    }
+
+    /**
+     * Check if sent messages should be reused for later sends with the same payload.
+     *
+     * @return true to reuse messages.
+     */
+    public boolean isMessageReuseEnabled() {
+        return _messageReuseEnabled;
+    }
+
+    /**
+     * Get the maximum number of asynchronous sends in flight per thread.
+     *
+     * @return window size or null for synchronous sends.
+     */
+    public Integer getAsyncSendWindow() {
+        return _asyncSendWindow;
+    }
+
+    /**
+     * Get the maximum time to wait for an asynchronous send to complete.
+     *
+     * @return timeout in seconds.
+     */
+    public int getAsyncSendTimeoutSeconds() {
+        return _asyncSendTimeoutSeconds;
+    }
+
     /**
      * Get the number of messages to send per commit.
      *
@@ -295,9 +492,10 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
      * Create a stop controller based on the configuration options.
      *
      * @param counter The message counter.
+     * @param messageProvider The message provider.
      * @return stop controller.
      */
-    public StopController createStopController(Counter counter) {
+    public StopController createStopController(Counter counter, MessageProvider messageProvider) {
         if (_durationMinutes != null && _stopAfterMessages != null) {
             return new DurationOrCountStopController(_stopAfterMessages.intValue(), counter,
                             _durationMinutes.intValue());
@@ -305,7 +503,10 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
             return new DurationStopController(_durationMinutes.intValue());
         } else if (_stopAfterMessages != null) {
             return new CountStopController(_stopAfterMessages.intValue(), counter);
-        } else if (_messageFileDirectory != null && _ordered) {
+        } else if (_streamPreparedMessages && _ordered) {
+            // The number of messages is unknown, run until all have been sent once
+            return new ExhaustedStopController(messageProvider::isExhausted);
+        } else if (hasPreparedMessages() && _ordered) {
             return new CountStopController(countPreparedFiles(), counter);
         } else {
             return new RunForeverStopController();
@@ -322,6 +523,39 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
         if (_data != null) {
             return new TextMessageProvider(_data, getHeaderMap(), _durationMinutes == null
                             && (_stopAfterMessages == null || _stopAfterMessages.intValue() == 1));
+        } else if (_corpusFile != null) {
+            MappedMessageCorpus corpus = getMessageCorpus();
+            boolean noDuplicates = _ordered && _durationMinutes == null
+                            && (_stopAfterMessages == null || _stopAfterMessages.intValue() == corpus.size());
+            MessageType messageType = _messageType != null ? _messageType
+                            : (corpus.isText() ? MessageType.TEXT : MessageType.BYTES);
+            switch (messageType) {
+            case TEXT:
+                return new TextMessageProvider(corpus, getHeaderMap(), _ordered, noDuplicates);
+            case BYTES:
+                return new BytesMessageProvider(corpus, getHeaderMap(), _ordered, noDuplicates);
+            case OBJECT:
+                return new ObjectMessageProvider(corpus, getObjectMessageAdapter(), getHeaderMap(), _ordered,
+                                noDuplicates);
+            default:
+                throw new IllegalStateException("Message type " + _messageType + " not handled!");
+            }
+        } else if (_streamPreparedMessages) {
+            boolean noDuplicates = _ordered && _durationMinutes == null && _stopAfterMessages == null;
+            String encoding = _messageFileEncoding != null ? _messageFileEncoding : DEFAULT_FILE_ENCODING;
+            switch (getMessageType()) {
+            case TEXT:
+                return new TextMessageProvider(_messageFileDirectory, encoding, getHeaderMap(), _ordered, noDuplicates,
+                                _readAheadMessages);
+            case BYTES:
+                return new BytesMessageProvider(_messageFileDirectory, encoding, getHeaderMap(), _ordered,
+                                noDuplicates, _readAheadMessages);
+            case OBJECT:
+                return new ObjectMessageProvider(_messageFileDirectory, getObjectMessageAdapter(), getHeaderMap(),
+                                _ordered, noDuplicates, _readAheadMessages);
+            default:
+                throw new IllegalStateException("Message type " + _messageType + " not handled!");
+            }
         } else if (_messageFileDirectory != null) {
             boolean noDuplicates = _ordered && _durationMinutes == null
                             && (_stopAfterMessages == null || _stopAfterMessages.intValue() == countPreparedFiles());
@@ -373,7 +607,61 @@ public abstract class JmsProducerConfiguration extends JmsClientConfiguration {
         }
     }
 
+    /**
+     * Check if messages should be sent in order.
+     *
+     * @return true for ordered delivery.
+     */
+    public boolean isOrderedDeliveryEnabled() {
+        return _ordered;
+    }
+
+    /**
+     * Get the number of prepared messages to read ahead when streaming.
+     *
+     * @return read-ahead in messages.
+     */
+    public int getReadAheadMessages() {
+        return _readAheadMessages;
+    }
+
+    /**
+     * Check if prepared messages have been specified, as files or as a message corpus.
+     *
+     * @return true if prepared messages are used.
+     */
+    public boolean hasPreparedMessages() {
+        return _messageFileDirectory != null || _corpusFile != null;
+    }
+
+    /**
+     * Get the memory-mapped message corpus. If a message file directory has been specified the corpus is packed from
+     * the files first, otherwise an existing corpus is opened. The same instance is returned for all calls.
+     *
+     * @return corpus or null if not configured.
+     * @throws IOException on failure to pack or open the corpus.
+     */
+    public synchronized MappedMessageCorpus getMessageCorpus() throws IOException {
+        if (_messageCorpus == null && _corpusFile != null) {
+            if (_messageFileDirectory != null) {
+                String encoding = _messageFileEncoding != null ? _messageFileEncoding : DEFAULT_FILE_ENCODING;
+                _messageCorpus = MappedMessageCorpus.pack(_messageFileDirectory, Charset.forName(encoding),
+                                getMessageType() == MessageType.TEXT, _corpusFile);
+            } else {
+                _messageCorpus = MappedMessageCorpus.open(_corpusFile);
+            }
+        }
+        return _messageCorpus;
+    }
+
     private int countPreparedFiles() {
+        if (_corpusFile != null) {
+            try {
+                return getMessageCorpus().size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         int numberOfFiles = 0;
         if (_messageFileDirectory != null) {
             if (_messageFileDirectory.isDirectory()) {
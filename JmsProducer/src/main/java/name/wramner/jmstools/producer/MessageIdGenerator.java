@@ -0,0 +1,32 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+/**
+ * Generator for the unique application ids set on messages when id and checksum is enabled. Every worker thread has
+ * its own generator, so implementations need not be thread safe.
+ *
+ * @author Erik Wramner
+ */
+public interface MessageIdGenerator {
+
+    /**
+     * Get the next id.
+     *
+     * @return unique id.
+     */
+    String nextId();
+}
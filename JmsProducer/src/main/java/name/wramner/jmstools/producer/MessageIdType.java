@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+/**
+ * The supported message id types.
+ *
+ * @author Erik Wramner
+ */
+public enum MessageIdType {
+    /**
+     * Random UUID, unique everywhere but relatively expensive to generate.
+     */
+    UUID {
+        @Override
+        public MessageIdGenerator createGenerator() {
+            return () -> java.util.UUID.randomUUID().toString();
+        }
+    },
+    /**
+     * Random per-process prefix combined with a per-thread counter, very cheap to generate.
+     */
+    SEQUENTIAL {
+        @Override
+        public MessageIdGenerator createGenerator() {
+            return new SequentialMessageIdGenerator();
+        }
+    };
+
+    /**
+     * Create a generator for a worker thread.
+     *
+     * @return generator.
+     */
+    public abstract MessageIdGenerator createGenerator();
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import java.util.Random;
+
+/**
+ * The supported send rate schedules for open-loop load generation.
+ *
+ * @author Erik Wramner
+ */
+public enum RateScheduleType {
+    /**
+     * Evenly spaced messages at the target rate.
+     */
+    CONSTANT {
+        @Override
+        double nextIntervalNanos(double meanIntervalNanos, Random random) {
+            return meanIntervalNanos;
+        }
+    },
+    /**
+     * Exponentially distributed intervals (Poisson arrivals) with the target rate as mean.
+     */
+    POISSON {
+        @Override
+        double nextIntervalNanos(double meanIntervalNanos, Random random) {
+            return -Math.log(1.0 - random.nextDouble()) * meanIntervalNanos;
+        }
+    },
+    /**
+     * Evenly spaced messages with a rate that increases in equal steps up to the target rate.
+     */
+    STEP {
+        @Override
+        double nextIntervalNanos(double meanIntervalNanos, Random random) {
+            return meanIntervalNanos;
+        }
+    };
+
+    /**
+     * Compute the time until the next message should be sent.
+     *
+     * @param meanIntervalNanos The mean interval for the current rate.
+     * @param random The random number generator for the worker thread.
+     * @return interval in nanoseconds.
+     */
+    abstract double nextIntervalNanos(double meanIntervalNanos, Random random);
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import java.util.Random;
+
+/**
+ * A send schedule computes the intended send time for every message sent by a worker thread. The times are computed
+ * from a fixed starting point regardless of how long the sends actually take, so a worker that falls behind sends
+ * immediately in order to catch up rather than silently lowering the rate. This is what makes the load open-loop and
+ * means that latencies measured from the intended send time include any time spent waiting in line.
+ * <p>
+ * Instances are not thread safe, every worker thread needs its own schedule.
+ *
+ * @author Erik Wramner
+ */
+public class SendSchedule {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private final RateScheduleType _type;
+    private final double _meanIntervalNanos;
+    private final int _rampSteps;
+    private final long _rampStepNanos;
+    private final Random _random;
+    private long _startNanos;
+    private double _offsetNanos = -1.0;
+
+    /**
+     * Constructor.
+     *
+     * @param type The schedule type.
+     * @param messagesPerSecond The target rate for this schedule.
+     * @param rampSteps The number of steps for {@link RateScheduleType#STEP}.
+     * @param rampStepNanos The duration of each step for {@link RateScheduleType#STEP}.
+     * @param random The random number generator for the worker thread.
+     */
+    public SendSchedule(RateScheduleType type, double messagesPerSecond, int rampSteps, long rampStepNanos,
+                    Random random) {
+        if (messagesPerSecond <= 0.0) {
+            throw new IllegalArgumentException("The rate must be positive");
+        }
+        _type = type;
+        _meanIntervalNanos = NANOS_PER_SECOND / messagesPerSecond;
+        _rampSteps = Math.max(rampSteps, 1);
+        _rampStepNanos = Math.max(rampStepNanos, 1L);
+        _random = random;
+    }
+
+    /**
+     * Get the intended send time for the next message. The schedule starts on the first call with a random phase in
+     * order to avoid having all threads send at the same moment.
+     *
+     * @return intended send time in {@link System#nanoTime()} units.
+     */
+    public long nextSendTimeNanos() {
+        if (_offsetNanos < 0.0) {
+            _startNanos = System.nanoTime();
+            _offsetNanos = _random.nextDouble() * getCurrentMeanIntervalNanos(0.0);
+        } else {
+            _offsetNanos += _type.nextIntervalNanos(getCurrentMeanIntervalNanos(_offsetNanos), _random);
+        }
+        return _startNanos + (long) _offsetNanos;
+    }
+
+    private double getCurrentMeanIntervalNanos(double offsetNanos) {
+        if (_type != RateScheduleType.STEP) {
+            return _meanIntervalNanos;
+        }
+        long step = Math.min((long) (offsetNanos / _rampStepNanos) + 1L, _rampSteps);
+        return _meanIntervalNanos * _rampSteps / step;
+    }
+}
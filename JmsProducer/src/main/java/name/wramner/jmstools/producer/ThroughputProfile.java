@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+/**
+ * The supported throughput profiles for the throughput regulator. A profile scales the target throughput over time.
+ *
+ * @author Erik Wramner
+ */
+public enum ThroughputProfile {
+    /**
+     * The full target throughput all the time.
+     */
+    CONSTANT {
+        @Override
+        public double getFactor(double elapsedSeconds, double periodSeconds, double lowFactor) {
+            return 1.0;
+        }
+    },
+    /**
+     * Increase linearly from the low level to the full target during the first period, then stay there.
+     */
+    RAMP {
+        @Override
+        public double getFactor(double elapsedSeconds, double periodSeconds, double lowFactor) {
+            return lowFactor + (1.0 - lowFactor) * Math.min(elapsedSeconds / periodSeconds, 1.0);
+        }
+    },
+    /**
+     * Alternate between the full target and the low level, spending half of each period at each level.
+     */
+    SQUARE {
+        @Override
+        public double getFactor(double elapsedSeconds, double periodSeconds, double lowFactor) {
+            return (long) (2.0 * elapsedSeconds / periodSeconds) % 2L == 0L ? 1.0 : lowFactor;
+        }
+    };
+
+    /**
+     * Get the fraction of the target throughput to aim for at a given time.
+     *
+     * @param elapsedSeconds The time since the test started.
+     * @param periodSeconds The profile period.
+     * @param lowFactor The low level as a fraction of the target.
+     * @return factor to multiply the target throughput with.
+     */
+    public abstract double getFactor(double elapsedSeconds, double periodSeconds, double lowFactor);
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket shared by all worker threads that hands out send permits at a configurable rate. Each permit is a
+ * point in time in {@link System#nanoTime()} units when the caller may send. The bucket holds at most a few
+ * milliseconds of unused permits, so threads that have been idle can catch up on a short hiccup but cannot burst far
+ * above the rate. The class is lock-free and thread safe.
+ *
+ * @author Erik Wramner
+ */
+public class TokenBucket {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private static final long MAX_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+    private final AtomicLong _nextPermitNanos = new AtomicLong(System.nanoTime());
+    private volatile long _intervalNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param permitsPerSecond The initial rate.
+     */
+    public TokenBucket(double permitsPerSecond) {
+        _intervalNanos = toIntervalNanos(permitsPerSecond);
+    }
+
+    /**
+     * Reserve the next permit.
+     *
+     * @return the time when the permit may be used, possibly in the past.
+     */
+    public long reserve() {
+        long intervalNanos = _intervalNanos;
+        long earliestPermitNanos = System.nanoTime() - MAX_BURST_NANOS;
+        long previousPermitNanos;
+        long permitNanos;
+        do {
+            previousPermitNanos = _nextPermitNanos.get();
+            permitNanos = Math.max(previousPermitNanos, earliestPermitNanos);
+        } while (!_nextPermitNanos.compareAndSet(previousPermitNanos, permitNanos + intervalNanos));
+        return permitNanos;
+    }
+
+    /**
+     * Change the rate. When the rate increases permits already reserved at the old rate are brought forward so that
+     * the new rate applies at once.
+     *
+     * @param permitsPerSecond The new rate.
+     */
+    public void setRate(double permitsPerSecond) {
+        long intervalNanos = toIntervalNanos(permitsPerSecond);
+        long previousIntervalNanos = _intervalNanos;
+        _intervalNanos = intervalNanos;
+        if (intervalNanos < previousIntervalNanos) {
+            long latestPermitNanos = System.nanoTime() + intervalNanos;
+            _nextPermitNanos.accumulateAndGet(latestPermitNanos, Math::min);
+        }
+    }
+
+    /**
+     * Get the current rate.
+     *
+     * @return permits per second.
+     */
+    public double getRate() {
+        return NANOS_PER_SECOND / _intervalNanos;
+    }
+
+    private static long toIntervalNanos(double permitsPerSecond) {
+        if (!(permitsPerSecond > 0.0)) {
+            throw new IllegalArgumentException("The rate must be positive");
+        }
+        return Math.max(Math.round(NANOS_PER_SECOND / permitsPerSecond), 1L);
+    }
+}
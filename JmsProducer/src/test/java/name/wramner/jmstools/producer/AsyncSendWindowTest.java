@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.CompletionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+
+import org.junit.Test;
+
+import name.wramner.jmstools.stopcontroller.RunForeverStopController;
+
+/**
+ * Test the {@link AsyncSendWindow}.
+ *
+ * @author Erik Wramner
+ */
+public class AsyncSendWindowTest {
+    private static final int WINDOW_SIZE = 4;
+
+    @Test
+    public void testCompletionsAreHandledOnSendingThreadWithinWindow() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger sends = new AtomicInteger();
+        MessageProducer producer = (MessageProducer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { MessageProducer.class }, (proxy, method, args) -> {
+                            Message message = (Message) args[0];
+                            CompletionListener listener = (CompletionListener) args[1];
+                            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                            boolean fail = sends.incrementAndGet() % 5 == 0;
+                            executor.execute(() -> {
+                                inFlight.decrementAndGet();
+                                if (fail) {
+                                    listener.onException(message, new JMSException("Failed"));
+                                } else {
+                                    listener.onCompletion(message);
+                                }
+                            });
+                            return null;
+                        });
+        RecordingCallback callback = new RecordingCallback(Thread.currentThread());
+        AsyncSendWindow window = new AsyncSendWindow(WINDOW_SIZE, 10000L, new RunForeverStopController(), callback);
+        for (int i = 0; i < 100; i++) {
+            window.send(producer, null, 0L, 0);
+        }
+        assertEquals(80, window.drain());
+        assertEquals(80, callback._completed);
+        assertEquals(20, callback._failed);
+        assertEquals(0, callback._inDoubt);
+        assertTrue(maxInFlight.get() <= WINDOW_SIZE);
+        assertEquals(0, window.drain());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSendsInFlightAreInDoubtAfterTimeout() throws Exception {
+        // A provider that never calls the completion listener
+        MessageProducer producer = (MessageProducer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { MessageProducer.class }, (proxy, method, args) -> null);
+        RecordingCallback callback = new RecordingCallback(Thread.currentThread());
+        AsyncSendWindow window = new AsyncSendWindow(WINDOW_SIZE, 200L, new RunForeverStopController(), callback);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            window.send(producer, null, 0L, 0);
+        }
+        try {
+            window.send(producer, null, 0L, 0);
+            fail("Expected timeout");
+        } catch (JMSException e) {
+            window.abandon();
+        }
+        assertEquals(0, callback._completed);
+        assertEquals(WINDOW_SIZE, callback._inDoubt);
+    }
+
+    @Test
+    public void testCompletionTimeIsTakenByProvider() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MessageProducer producer = (MessageProducer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] { MessageProducer.class }, (proxy, method, args) -> {
+                            CompletionListener listener = (CompletionListener) args[1];
+                            executor.execute(() -> listener.onCompletion((Message) args[0]));
+                            return null;
+                        });
+        RecordingCallback callback = new RecordingCallback(Thread.currentThread());
+        AsyncSendWindow window = new AsyncSendWindow(WINDOW_SIZE, 10000L, new RunForeverStopController(), callback);
+        long startNanos = System.nanoTime();
+        window.send(producer, null, startNanos, 0);
+        // The sending thread is busy elsewhere long after the send has completed
+        Thread.sleep(500L);
+        assertEquals(1, window.drain());
+        assertTrue(callback._lastCompletionNanos >= startNanos);
+        assertTrue(callback._lastCompletionNanos - startNanos < TimeUnit.MILLISECONDS.toNanos(400L));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static class RecordingCallback implements AsyncSendWindow.Callback {
+        private final Thread _sendingThread;
+        private int _completed;
+        private int _failed;
+        private int _inDoubt;
+        private long _lastCompletionNanos;
+
+        RecordingCallback(Thread sendingThread) {
+            _sendingThread = sendingThread;
+        }
+
+        @Override
+        public void sendCompleted(Message message, long startNanos, long completionNanos, int delaySeconds) {
+            assertEquals(_sendingThread, Thread.currentThread());
+            _completed++;
+            _lastCompletionNanos = completionNanos;
+        }
+
+        @Override
+        public void sendFailed(Message message, int delaySeconds, Exception exception) {
+            assertEquals(_sendingThread, Thread.currentThread());
+            _failed++;
+        }
+
+        @Override
+        public void sendInDoubt(Message message, int delaySeconds) {
+            assertEquals(_sendingThread, Thread.currentThread());
+            _inDoubt++;
+        }
+    }
+}
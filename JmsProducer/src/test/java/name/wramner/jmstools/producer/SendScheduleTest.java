@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link SendSchedule}.
+ *
+ * @author Erik Wramner
+ */
+public class SendScheduleTest {
+    private static final long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    @Test
+    public void testConstantScheduleIsEvenlySpaced() {
+        SendSchedule schedule = new SendSchedule(RateScheduleType.CONSTANT, 1000.0, 1, ONE_SECOND_NANOS,
+                        new Random(1L));
+        long first = schedule.nextSendTimeNanos();
+        long previous = first;
+        for (int i = 0; i < 1000; i++) {
+            long next = schedule.nextSendTimeNanos();
+            assertEquals(1_000_000L, next - previous, 1L);
+            previous = next;
+        }
+        assertEquals(ONE_SECOND_NANOS, previous - first, 1L);
+    }
+
+    @Test
+    public void testScheduleDoesNotDependOnWhenTimesAreRequested() throws InterruptedException {
+        SendSchedule schedule = new SendSchedule(RateScheduleType.CONSTANT, 1_000_000.0, 1, ONE_SECOND_NANOS,
+                        new Random(1L));
+        long first = schedule.nextSendTimeNanos();
+        Thread.sleep(10L);
+        assertEquals(1000L, schedule.nextSendTimeNanos() - first, 1L);
+    }
+
+    @Test
+    public void testPoissonScheduleHasTargetMeanRate() {
+        SendSchedule schedule = new SendSchedule(RateScheduleType.POISSON, 1000.0, 1, ONE_SECOND_NANOS,
+                        new Random(42L));
+        long first = schedule.nextSendTimeNanos();
+        long previous = first;
+        boolean varying = false;
+        for (int i = 0; i < 100_000; i++) {
+            long next = schedule.nextSendTimeNanos();
+            assertTrue(next >= previous);
+            varying |= Math.abs(next - previous - 1_000_000L) > 100_000L;
+            previous = next;
+        }
+        assertTrue(varying);
+        assertEquals(100.0, (double) (previous - first) / ONE_SECOND_NANOS, 2.0);
+    }
+
+    @Test
+    public void testStepScheduleRampsUpToTargetRate() {
+        SendSchedule schedule = new SendSchedule(RateScheduleType.STEP, 1000.0, 4, ONE_SECOND_NANOS, new Random(1L));
+        long first = schedule.nextSendTimeNanos();
+        int[] messagesPerStep = new int[6];
+        for (long next = first; next - first < 6 * ONE_SECOND_NANOS; next = schedule.nextSendTimeNanos()) {
+            messagesPerStep[(int) ((next - first) / ONE_SECOND_NANOS)]++;
+        }
+        assertEquals(250, messagesPerStep[0], 1);
+        assertEquals(500, messagesPerStep[1], 1);
+        assertEquals(750, messagesPerStep[2], 1);
+        assertEquals(1000, messagesPerStep[3], 1);
+        assertEquals(1000, messagesPerStep[5], 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive() {
+        new SendSchedule(RateScheduleType.CONSTANT, 0.0, 1, ONE_SECOND_NANOS, new Random());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link SequentialMessageIdGenerator}.
+ *
+ * @author Erik Wramner
+ */
+public class SequentialMessageIdGeneratorTest {
+
+    @Test
+    public void testIdsAreCanonicalUuidsWithPrefixLaneAndCounter() {
+        SequentialMessageIdGenerator generator = new SequentialMessageIdGenerator(0x0123456789abcdefL, 0xbeef);
+        assertEquals("01234567-89ab-cdef-beef-000000000000", generator.nextId());
+        String id = generator.nextId();
+        assertEquals("01234567-89ab-cdef-beef-000000000001", id);
+        UUID uuid = UUID.fromString(id);
+        assertEquals(0x0123456789abcdefL, uuid.getMostSignificantBits());
+        assertEquals(0xbeef000000000001L, uuid.getLeastSignificantBits());
+    }
+
+    @Test
+    public void testIdsAreIncreasingWithinAndUniqueAcrossGenerators() {
+        SequentialMessageIdGenerator g1 = new SequentialMessageIdGenerator();
+        SequentialMessageIdGenerator g2 = new SequentialMessageIdGenerator();
+        String last = g1.nextId();
+        for (int i = 0; i < 1000; i++) {
+            String id = g1.nextId();
+            assertTrue(id.compareTo(last) > 0);
+            assertNotEquals(id, g2.nextId());
+            last = id;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link ThroughputProfile}.
+ *
+ * @author Erik Wramner
+ */
+public class ThroughputProfileTest {
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void testConstant() {
+        assertEquals(1.0, ThroughputProfile.CONSTANT.getFactor(0.0, 60.0, 0.5), DELTA);
+        assertEquals(1.0, ThroughputProfile.CONSTANT.getFactor(100.0, 60.0, 0.5), DELTA);
+    }
+
+    @Test
+    public void testRamp() {
+        assertEquals(0.5, ThroughputProfile.RAMP.getFactor(0.0, 60.0, 0.5), DELTA);
+        assertEquals(0.75, ThroughputProfile.RAMP.getFactor(30.0, 60.0, 0.5), DELTA);
+        assertEquals(1.0, ThroughputProfile.RAMP.getFactor(60.0, 60.0, 0.5), DELTA);
+        assertEquals(1.0, ThroughputProfile.RAMP.getFactor(600.0, 60.0, 0.5), DELTA);
+    }
+
+    @Test
+    public void testSquare() {
+        assertEquals(1.0, ThroughputProfile.SQUARE.getFactor(0.0, 60.0, 0.25), DELTA);
+        assertEquals(1.0, ThroughputProfile.SQUARE.getFactor(29.9, 60.0, 0.25), DELTA);
+        assertEquals(0.25, ThroughputProfile.SQUARE.getFactor(30.0, 60.0, 0.25), DELTA);
+        assertEquals(0.25, ThroughputProfile.SQUARE.getFactor(59.9, 60.0, 0.25), DELTA);
+        assertEquals(1.0, ThroughputProfile.SQUARE.getFactor(60.0, 60.0, 0.25), DELTA);
+    }
+}
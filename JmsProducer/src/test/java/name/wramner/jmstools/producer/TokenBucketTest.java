@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link TokenBucket}.
+ *
+ * @author Erik Wramner
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void testPermitsAreSpacedByRate() {
+        TokenBucket tokenBucket = new TokenBucket(1000.0);
+        long previous = tokenBucket.reserve();
+        for (int i = 0; i < 100; i++) {
+            long permit = tokenBucket.reserve();
+            assertEquals(1_000_000L, permit - previous);
+            previous = permit;
+        }
+        assertTrue(previous > System.nanoTime());
+    }
+
+    @Test
+    public void testUnusedPermitsAreLimited() throws InterruptedException {
+        TokenBucket tokenBucket = new TokenBucket(1000.0);
+        Thread.sleep(100L);
+        long now = System.nanoTime();
+        int immediatePermits = 0;
+        while (tokenBucket.reserve() <= now) {
+            immediatePermits++;
+        }
+        assertTrue(immediatePermits >= 1 && immediatePermits <= 11);
+    }
+
+    @Test
+    public void testHigherRateAppliesAtOnce() {
+        TokenBucket tokenBucket = new TokenBucket(0.01);
+        tokenBucket.reserve();
+        tokenBucket.reserve();
+        tokenBucket.setRate(1000.0);
+        assertEquals(1000.0, tokenBucket.getRate(), 0.001);
+        assertTrue(tokenBucket.reserve() - System.nanoTime() <= 1_000_000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive() {
+        new TokenBucket(0.0);
+    }
+}
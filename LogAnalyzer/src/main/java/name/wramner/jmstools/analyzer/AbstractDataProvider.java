@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.time.Minute;
+import org.jfree.data.time.Second;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+
+/**
+ * Base class for data providers with the charts and the values that can be derived from other values.
+ */
+public abstract class AbstractDataProvider implements DataProvider {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getBase64BytesPerMinuteImage() {
+        TimeSeries timeSeriesConsumed = new TimeSeries("Consumed");
+        TimeSeries timeSeriesProduced = new TimeSeries("Produced");
+        TimeSeries timeSeriesTotal = new TimeSeries("Total");
+        for (PeriodMetrics m : getMessagesPerMinute()) {
+            Minute minute = new Minute(m.getPeriodStart());
+            timeSeriesConsumed.add(minute, m.getConsumedBytes() / 1024);
+            timeSeriesProduced.add(minute, m.getProducedBytes() / 1024);
+            timeSeriesTotal.add(minute, m.getTotalBytes() / 1024);
+        }
+        TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection(timeSeriesConsumed);
+        timeSeriesCollection.addSeries(timeSeriesProduced);
+        timeSeriesCollection.addSeries(timeSeriesTotal);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            JFreeChart chart = ChartFactory.createTimeSeriesChart("Kilobytes per minute", "Time", "Bytes (k)",
+                            timeSeriesCollection);
+            chart.getPlot().setBackgroundPaint(Color.WHITE);
+            ChartUtilities.writeChartAsPNG(bos, chart, 1024, 500);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getBase64EncodedFlightTimeMetricsImage() {
+        TimeSeries timeSeries50p = new TimeSeries("Median");
+        TimeSeries timeSeries95p = new TimeSeries("95 percentile");
+        TimeSeries timeSeriesMax = new TimeSeries("Max");
+        for (FlightTimeMetrics m : getFlightTimeMetrics()) {
+            Minute minute = new Minute(m.getPeriod());
+            timeSeries50p.add(minute, m.getMedian());
+            timeSeries95p.add(minute, m.getPercentile95());
+            timeSeriesMax.add(minute, m.getMax());
+        }
+        TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection(timeSeries50p);
+        timeSeriesCollection.addSeries(timeSeries95p);
+        timeSeriesCollection.addSeries(timeSeriesMax);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            JFreeChart chart = ChartFactory.createTimeSeriesChart("Flight time", "Time", "ms", timeSeriesCollection);
+            chart.getPlot().setBackgroundPaint(Color.WHITE);
+            ChartUtilities.writeChartAsPNG(bos, chart, 1024, 500);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getBase64MessagesPerMinuteImage() {
+        TimeSeries timeSeriesConsumed = new TimeSeries("Consumed");
+        TimeSeries timeSeriesProduced = new TimeSeries("Produced");
+        TimeSeries timeSeriesTotal = new TimeSeries("Total");
+        for (PeriodMetrics m : getMessagesPerMinute()) {
+            Minute minute = new Minute(m.getPeriodStart());
+            timeSeriesConsumed.add(minute, m.getConsumed());
+            timeSeriesProduced.add(minute, m.getProduced());
+            timeSeriesTotal.add(minute, m.getConsumed() + m.getProduced());
+        }
+        TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection(timeSeriesConsumed);
+        timeSeriesCollection.addSeries(timeSeriesProduced);
+        timeSeriesCollection.addSeries(timeSeriesTotal);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            JFreeChart chart = ChartFactory.createTimeSeriesChart("Messages per minute", "Time", "Messages",
+                            timeSeriesCollection);
+            chart.getPlot().setBackgroundPaint(Color.WHITE);
+            ChartUtilities.writeChartAsPNG(bos, chart, 1024, 500);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getBase64MessagesPerSecondImage() {
+        TimeSeries timeSeriesConsumed = new TimeSeries("Consumed");
+        TimeSeries timeSeriesProduced = new TimeSeries("Produced");
+        TimeSeries timeSeriesTotal = new TimeSeries("Total");
+        for (PeriodMetrics m : getMessagesPerSecond()) {
+            Second second = new Second(m.getPeriodStart());
+            timeSeriesConsumed.add(second, m.getConsumed());
+            timeSeriesProduced.add(second, m.getProduced());
+            timeSeriesTotal.add(second, m.getConsumed() + m.getProduced());
+        }
+        TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection(timeSeriesConsumed);
+        timeSeriesCollection.addSeries(timeSeriesProduced);
+        timeSeriesCollection.addSeries(timeSeriesTotal);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            JFreeChart chart = ChartFactory.createTimeSeriesChart("Messages per second (TPS)", "Time", "Messages",
+                            timeSeriesCollection);
+            chart.getPlot().setBackgroundPaint(Color.WHITE);
+            ChartUtilities.writeChartAsPNG(bos, chart, 1024, 500);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCommittedConsumedCount() {
+        return getConsumedMessageCount() - getRolledBackConsumedCount() - getInDoubtConsumedCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCommittedProducedCount() {
+        return getProducedMessageCount() - getRolledBackProducedCount() - getInDoubtProducedCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getConsumedDurationSeconds() {
+        return getFirstConsumedTime() != null && getLastConsumedTime() != null
+                        ? (int) ((getLastConsumedTime().getTime() - getFirstConsumedTime().getTime() + 999L) / 1000L)
+                        : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getDelayedMessagePercentage() {
+        return getProducedMessageCount() > 0 ? (100.0 * getDelayedMessageCount()) / getProducedMessageCount() : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getProducedDurationSeconds() {
+        return getFirstProducedTime() != null && getLastProducedTime() != null
+                        ? (int) ((getLastProducedTime().getTime() - getFirstProducedTime().getTime() + 999L) / 1000L)
+                        : 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTestDurationMinutes() {
+        return (getTestDurationSeconds() + 59) / 60;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTestDurationSeconds() {
+        return (int) ((getEndTime().getTime() - getStartTime().getTime() + 999L) / 1000L);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTotalMessageCount() {
+        return getConsumedMessageCount() + getProducedMessageCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isFlightTimeDataAvailable() {
+        return getProducedMessageCount() > 0 && getConsumedMessageCount() > 0 && isCorrectnessTest();
+    }
+}
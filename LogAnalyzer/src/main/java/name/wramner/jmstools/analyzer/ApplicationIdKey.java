@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Numeric 128-bit key for an application id. Ids in the canonical lower case UUID layout, used both for random and for
+ * sequential ids from the producer, are parsed directly into two longs. Other ids are hashed with MD5. The instance is
+ * reused for many ids and is not thread safe.
+ *
+ * @author Erik Wramner
+ */
+public class ApplicationIdKey {
+    private static final int UUID_LENGTH = 36;
+
+    private final MessageDigest _digest;
+    private long _high;
+    private long _low;
+
+    /**
+     * Constructor.
+     */
+    public ApplicationIdKey() {
+        try {
+            _digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported", e);
+        }
+    }
+
+    /**
+     * Compute the key for an id.
+     *
+     * @param applicationId The id.
+     */
+    public void set(String applicationId) {
+        if (!parseUuid(applicationId)) {
+            byte[] md5 = _digest.digest(applicationId.getBytes(StandardCharsets.UTF_8));
+            _high = toLong(md5, 0);
+            _low = toLong(md5, 8);
+        }
+    }
+
+    /**
+     * Get the high 64 bits of the key for the last id.
+     *
+     * @return high bits.
+     */
+    public long getHigh() {
+        return _high;
+    }
+
+    /**
+     * Get the low 64 bits of the key for the last id.
+     *
+     * @return low bits.
+     */
+    public long getLow() {
+        return _low;
+    }
+
+    private boolean parseUuid(String s) {
+        if (s.length() != UUID_LENGTH) {
+            return false;
+        }
+        long high = 0L;
+        long low = 0L;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = s.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+                continue;
+            }
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return false;
+            }
+            if (i < 19) {
+                high = (high << 4) | digit;
+            } else {
+                low = (low << 4) | digit;
+            }
+        }
+        _high = high;
+        _low = low;
+        return true;
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+}
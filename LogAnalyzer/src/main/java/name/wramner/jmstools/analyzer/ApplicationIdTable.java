@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+/**
+ * Open addressing hash table keyed on application ids, used to reconcile produced and consumed messages without a
+ * database. Ids are stored as 128-bit {@link ApplicationIdKey} keys in primitive arrays. Each entry has a set of flags
+ * and the time the message was produced, about 25 bytes per id in total. The table is not thread safe.
+ *
+ * @author Erik Wramner
+ */
+public class ApplicationIdTable {
+    /** The message has been produced, regardless of outcome. */
+    public static final int PRODUCED = 0x02;
+    /** The message has been produced and committed. */
+    public static final int PRODUCED_COMMITTED = 0x04;
+    /** The message has been produced and rolled back. */
+    public static final int PRODUCED_ROLLED_BACK = 0x08;
+    /** The message has been consumed and committed or is in doubt. */
+    public static final int CONSUMED_COMMITTED_OR_IN_DOUBT = 0x10;
+    /** The message has been consumed and committed at least once. */
+    public static final int CONSUMED_COMMITTED = 0x20;
+    /** The message has been consumed and committed more than once. */
+    public static final int CONSUMED_COMMITTED_AGAIN = 0x40;
+
+    private static final int USED = 0x01;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final ApplicationIdKey _key = new ApplicationIdKey();
+    private long[] _keyHigh;
+    private long[] _keyLow;
+    private long[] _producedTimes;
+    private byte[] _flags;
+    private int _size;
+
+    /**
+     * Constructor.
+     */
+    public ApplicationIdTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Find the slot for an id, adding it if it is missing.
+     *
+     * @param applicationId The id.
+     * @return slot.
+     */
+    public int findOrAdd(String applicationId) {
+        _key.set(applicationId);
+        long high = _key.getHigh();
+        long low = _key.getLow();
+        int slot = findSlot(high, low);
+        if ((_flags[slot] & USED) == 0) {
+            if (_size + 1 > _flags.length - (_flags.length >>> 2)) {
+                resize();
+                slot = findSlot(high, low);
+            }
+            _keyHigh[slot] = high;
+            _keyLow[slot] = low;
+            _flags[slot] = USED;
+            _size++;
+        }
+        return slot;
+    }
+
+    /**
+     * Find the slot for an id.
+     *
+     * @param applicationId The id.
+     * @return slot or -1 if not found.
+     */
+    public int find(String applicationId) {
+        _key.set(applicationId);
+        int slot = findSlot(_key.getHigh(), _key.getLow());
+        return (_flags[slot] & USED) != 0 ? slot : -1;
+    }
+
+    /**
+     * Get the flags for a slot.
+     *
+     * @param slot The slot.
+     * @return flags.
+     */
+    public int getFlags(int slot) {
+        return _flags[slot];
+    }
+
+    /**
+     * Add flags to a slot.
+     *
+     * @param slot The slot.
+     * @param flags The flags to add.
+     */
+    public void addFlags(int slot, int flags) {
+        _flags[slot] = (byte) (_flags[slot] | flags);
+    }
+
+    /**
+     * Get the time the message in a slot was produced.
+     *
+     * @param slot The slot.
+     * @return produced time in milliseconds since the epoch, 0 if not produced.
+     */
+    public long getProducedTime(int slot) {
+        return _producedTimes[slot];
+    }
+
+    /**
+     * Set the time the message in a slot was produced.
+     *
+     * @param slot The slot.
+     * @param producedTime The produced time in milliseconds since the epoch.
+     */
+    public void setProducedTime(int slot, long producedTime) {
+        _producedTimes[slot] = producedTime;
+    }
+
+    /**
+     * Count the ids that have all the specified flags set and none of the excluded flags.
+     *
+     * @param requiredFlags The required flags.
+     * @param excludedFlags The excluded flags.
+     * @return count.
+     */
+    public int count(int requiredFlags, int excludedFlags) {
+        int count = 0;
+        for (byte b : _flags) {
+            if ((b & USED) != 0 && (b & requiredFlags) == requiredFlags && (b & excludedFlags) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of ids in the table.
+     *
+     * @return number of ids.
+     */
+    public int size() {
+        return _size;
+    }
+
+    private int findSlot(long high, long low) {
+        int mask = _flags.length - 1;
+        int slot = hash(high, low) & mask;
+        while ((_flags[slot] & USED) != 0 && (_keyHigh[slot] != high || _keyLow[slot] != low)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] keyHigh = _keyHigh;
+        long[] keyLow = _keyLow;
+        long[] producedTimes = _producedTimes;
+        byte[] flags = _flags;
+        allocate(flags.length << 1);
+        for (int i = 0; i < flags.length; i++) {
+            if ((flags[i] & USED) != 0) {
+                int slot = findSlot(keyHigh[i], keyLow[i]);
+                _keyHigh[slot] = keyHigh[i];
+                _keyLow[slot] = keyLow[i];
+                _producedTimes[slot] = producedTimes[i];
+                _flags[slot] = flags[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        _keyHigh = new long[capacity];
+        _keyLow = new long[capacity];
+        _producedTimes = new long[capacity];
+        _flags = new byte[capacity];
+    }
+
+    private static int hash(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L + low;
+        h ^= h >>> 33;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        return (int) h;
+    }
+}
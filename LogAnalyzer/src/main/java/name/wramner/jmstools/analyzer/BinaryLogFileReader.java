@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import name.wramner.jmstools.messagelog.BinaryMessageLogWriter;
+import name.wramner.jmstools.messagelog.MessageLogColumnType;
+
+/**
+ * Reader for binary logs written by the BinaryMessageLogWriter in JmsCommon. The file is memory-mapped in large
+ * windows, so reading is limited by the disk rather than by parsing. See the writer for the format. Empty files and
+ * files with a header only are empty logs. An incomplete header or entry at the end, left by a client that was killed,
+ * is ignored.
+ */
+public class BinaryLogFileReader implements LogFileReader {
+    private static final long WINDOW_SIZE = 256L * 1024L * 1024L;
+    // A record has at most a few strings of 64K each, remap when less remains in the window
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+    private final byte[] _stringBuffer = new byte[BinaryMessageLogWriter.NULL_STRING_LENGTH];
+
+    @Override
+    public boolean read(File file, LogEntryHandler handler) throws IOException, SQLException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize == 0L) {
+                // Created but nothing written yet
+                return true;
+            }
+            long windowStart = 0L;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(WINDOW_SIZE, fileSize));
+            MessageLogColumnType[] types;
+            LogColumn[] columns;
+            try {
+                if (buffer.getInt() != BinaryMessageLogWriter.MAGIC_NUMBER) {
+                    throw new IOException("Not a binary JmsTools log: " + file);
+                }
+                short version = buffer.getShort();
+                if (version != BinaryMessageLogWriter.FORMAT_VERSION) {
+                    throw new IOException("Unsupported binary log version " + version + " in " + file);
+                }
+                int columnCount = buffer.getShort();
+                types = new MessageLogColumnType[columnCount];
+                columns = new LogColumn[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    byte code = buffer.get();
+                    types[i] = MessageLogColumnType.forCode(code);
+                    if (types[i] == null) {
+                        throw new IOException("Unknown column type " + code + " in " + file);
+                    }
+                    columns[i] = LogColumn.forHeaderName(readString(buffer));
+                }
+            } catch (BufferUnderflowException e) {
+                // The client was killed while writing the header, there are no entries
+                return false;
+            }
+
+            LogEntry entry = new LogEntry();
+            while (true) {
+                long position = windowStart + buffer.position();
+                if (position >= fileSize) {
+                    return true;
+                }
+                if (buffer.remaining() < MAX_RECORD_SIZE && windowStart + buffer.limit() < fileSize) {
+                    windowStart = position;
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                                    Math.min(WINDOW_SIZE, fileSize - windowStart));
+                }
+                try {
+                    readEntry(buffer, types, columns, entry);
+                } catch (BufferUnderflowException e) {
+                    return false;
+                }
+                handler.handle(entry);
+            }
+        }
+    }
+
+    private void readEntry(MappedByteBuffer buffer, MessageLogColumnType[] types, LogColumn[] columns,
+                    LogEntry entry) {
+        entry.clear();
+        entry.setState((char) buffer.get());
+        entry.setCommitTime(buffer.getLong());
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+            case TIMESTAMP:
+                long time = buffer.getLong();
+                if (columns[i] == LogColumn.EVENT_TIME) {
+                    entry.setEventTime(time);
+                }
+                break;
+            case INT:
+                int value = buffer.getInt();
+                if (value != Integer.MIN_VALUE) {
+                    if (columns[i] == LogColumn.PAYLOAD_SIZE) {
+                        entry.setPayloadSize(Integer.valueOf(value));
+                    } else if (columns[i] == LogColumn.DELAY_SECONDS) {
+                        entry.setDelaySeconds(value);
+                    }
+                }
+                break;
+            case ID:
+                setString(entry, columns[i], readId(buffer));
+                break;
+            case STRING:
+                setString(entry, columns[i], readString(buffer));
+                break;
+            default:
+                throw new IllegalStateException("Unhandled column type " + types[i]);
+            }
+        }
+    }
+
+    private static void setString(LogEntry entry, LogColumn column, String value) {
+        if (column == LogColumn.APPLICATION_ID) {
+            entry.setApplicationId(value);
+        } else if (column == LogColumn.JMS_ID) {
+            entry.setJmsId(value);
+        }
+    }
+
+    private String readId(MappedByteBuffer buffer) {
+        byte kind = buffer.get();
+        if (kind == BinaryMessageLogWriter.ID_KIND_NULL) {
+            return null;
+        } else if (kind == BinaryMessageLogWriter.ID_KIND_128_BIT) {
+            long high = buffer.getLong();
+            long low = buffer.getLong();
+            return new UUID(high, low).toString();
+        } else {
+            return readString(buffer);
+        }
+    }
+
+    private String readString(MappedByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == BinaryMessageLogWriter.NULL_STRING_LENGTH) {
+            return null;
+        }
+        buffer.get(_stringBuffer, 0, length);
+        return new String(_stringBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
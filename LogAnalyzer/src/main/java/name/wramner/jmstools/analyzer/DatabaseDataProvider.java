@@ -0,0 +1,503 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+
+/**
+ * Data provider that runs SQL queries against the database with the imported log files.
+ */
+public class DatabaseDataProvider extends AbstractDataProvider {
+    private final Connection _conn;
+    private List<FlightTimeMetrics> _flightTimeMetrics;
+    private final Map<String, Object> _cache = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param conn The database connection.
+     */
+    public DatabaseDataProvider(Connection conn) {
+        _conn = conn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAlienMessageCount() {
+        return findSimpleCount("alien_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getAlienMessages() {
+        return findConsumedMessages("select jms_id, application_id, payload_size, consumed_time"
+                        + " from alien_messages order by jms_id");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAverageConsumedMessageSize() {
+        return findWithLongResult("select avg(payload_size) from consumed_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAverageProducedMessageSize() {
+        return findWithLongResult("select avg(payload_size) from produced_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCommittedConsumedBytes() {
+        return findWithLongResult("select sum(payload_size) from consumed_messages where outcome = 'C'");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCommittedProducedBytes() {
+        return findWithLongResult("select sum(payload_size) from produced_messages where outcome = 'C'");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getConsumedMessageCount() {
+        return findSimpleCount("consumed_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDelayedMessageCount() {
+        return findWithIntResult("select count(*) from produced_messages where delay_seconds > 0");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDuplicateMessageCount() {
+        return findSimpleCount("duplicate_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getDuplicateMessages() {
+        return findConsumedMessages("select jms_id, application_id, payload_size, consumed_time"
+                        + " from consumed_messages c"
+                        + " where exists (select * from duplicate_messages d"
+                        + " where d.app_key_hi = c.app_key_hi and d.app_key_lo = c.app_key_lo)"
+                        + " order by application_id, jms_id");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getEndTime() {
+        return findWithTimestampResult("select max(ts) from (" //
+                        + "select max(produced_time) ts from produced_messages" //
+                        + " union all " //
+                        + "select max(consumed_time) ts from consumed_messages)");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getFirstConsumedTime() {
+        return findWithTimestampResult("select min(consumed_time) ts from consumed_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getFirstProducedTime() {
+        return findWithTimestampResult("select min(produced_time) ts from produced_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FlightTimeMetrics> getFlightTimeMetrics() {
+        if (_flightTimeMetrics != null) {
+            return _flightTimeMetrics;
+        }
+        List<FlightTimeMetrics> list = new ArrayList<>();
+        try (Statement stat = _conn.createStatement();
+             ResultSet rs = stat.executeQuery("select trunc(produced_time, 'mi'), flight_time_millis"
+                             + " from message_flight_time order by 1")) {
+            if (rs.next()) {
+                Timestamp lastTime = rs.getTimestamp(1);
+                MutableIntList flightTimes = IntLists.mutable.empty();
+                do {
+                    Timestamp time = rs.getTimestamp(1);
+                    int flightTimeMillis = rs.getInt(2);
+                    if (!time.equals(lastTime)) {
+                        list.add(computeFlightTimeMetrics(lastTime, flightTimes));
+                        flightTimes.clear();
+                        lastTime = time;
+                    }
+                    flightTimes.add(flightTimeMillis);
+                } while (rs.next());
+                if (!flightTimes.isEmpty()) {
+                    list.add(computeFlightTimeMetrics(lastTime, flightTimes));
+                }
+            }
+            return (_flightTimeMetrics = list);
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getGhostMessageCount() {
+        return findSimpleCount("ghost_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getGhostMessages() {
+        return findConsumedMessages("select jms_id, application_id, payload_size, consumed_time"
+                        + " from ghost_messages order by jms_id");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInDoubtConsumedCount() {
+        return findWithIntResult("select count(*) from consumed_messages where outcome = '?'");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getInDoubtConsumedMessages() {
+        return findConsumedMessages("select jms_id, application_id, payload_size, consumed_time"
+                        + " from consumed_messages c where outcome = '?' order by consumed_time, jms_id");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInDoubtProducedCount() {
+        return findWithIntResult("select count(*) from produced_messages where outcome = '?'");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProducedMessage> getInDoubtProducedMessages() {
+        return findProducedMessages("select jms_id, application_id, payload_size, produced_time, delay_seconds"
+                        + " from produced_messages where outcome = '?' order by produced_time, jms_id");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getLastConsumedTime() {
+        return findWithTimestampResult("select max(consumed_time) ts from consumed_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getLastProducedTime() {
+        return findWithTimestampResult("select max(produced_time) ts from produced_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLostMessageCount() {
+        return findSimpleCount("lost_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProducedMessage> getLostMessages() {
+        return findProducedMessages("select jms_id, application_id, payload_size, produced_time, delay_seconds"
+                        + " from lost_messages order by jms_id");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxConsumedMessageSize() {
+        return findWithLongResult("select max(payload_size) from consumed_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxProducedMessageSize() {
+        return findWithLongResult("select max(payload_size) from produced_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PeriodMetrics> getMessagesPerMinute() {
+        // This may be called multiple times but intentionally NOT cached as it takes too much memory
+        return getMessagesPerInterval(TimeUnit.MINUTES);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PeriodMetrics> getMessagesPerSecond() {
+        // This may be called multiple times but intentionally NOT cached as it takes too much memory
+        return getMessagesPerInterval(TimeUnit.SECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMinConsumedMessageSize() {
+        return findWithLongResult("select min(payload_size) from consumed_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMinProducedMessageSize() {
+        return findWithLongResult("select min(payload_size) from produced_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getProducedMessageCount() {
+        return findSimpleCount("produced_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getRolledBackConsumedCount() {
+        return findWithIntResult("select count(*) from consumed_messages where outcome = 'R'");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getRolledBackProducedCount() {
+        return findWithIntResult("select count(*) from produced_messages where outcome = 'R'");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getStartTime() {
+        return findWithTimestampResult("select min(ts) from (" //
+                        + "select min(produced_time) ts from produced_messages" //
+                        + " union all " //
+                        + "select min(consumed_time) ts from consumed_messages)");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getUndeadMessageCount() {
+        return findSimpleCount("undead_messages");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getUndeadMessages() {
+        return findConsumedMessages("select jms_id, application_id, payload_size, consumed_time"
+                        + " from undead_messages order by jms_id");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCorrectnessTest() {
+        return getProducedMessageCount() > 0 && getConsumedMessageCount() > 0 && findExistsWithCache(
+                        "select application_id from produced_messages where application_id is not null");
+    }
+
+    private FlightTimeMetrics computeFlightTimeMetrics(Timestamp time, MutableIntList flightTimes) {
+        flightTimes.sortThis();
+        int numberOfMeasurements = flightTimes.size();
+        int medianIndex = (numberOfMeasurements * 50 / 100);
+        int percentile95Index = (numberOfMeasurements * 95 / 100);
+        return new FlightTimeMetrics(time, flightTimes.size(), flightTimes.get(0),
+                        flightTimes.get(flightTimes.size() - 1), flightTimes.get(medianIndex),
+                        flightTimes.get(percentile95Index));
+    }
+
+    private List<ConsumedMessage> findConsumedMessages(String sql) {
+        try (Statement stat = _conn.createStatement(); ResultSet rs = stat.executeQuery(sql)) {
+            List<ConsumedMessage> list = new ArrayList<>();
+            while (rs.next()) {
+                list.add(new ConsumedMessage(rs.getString("jms_id"), rs.getString("application_id"),
+                                rs.getInt("payload_size"), rs.getTimestamp("consumed_time")));
+            }
+            return list;
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    private boolean findExistsWithCache(String sql) {
+        Boolean b = (Boolean) _cache.get(sql);
+        if (b == null) {
+            try (Statement stat = _conn.createStatement(); ResultSet rs = stat.executeQuery(sql)) {
+                b = Boolean.valueOf(rs.next());
+                _cache.put(sql, b);
+            } catch (SQLException e) {
+                throw new UncheckedSqlException(e);
+            }
+        }
+        return b.booleanValue();
+    }
+
+    private List<ProducedMessage> findProducedMessages(String sql) {
+        try (Statement stat = _conn.createStatement(); ResultSet rs = stat.executeQuery(sql)) {
+            List<ProducedMessage> list = new ArrayList<>();
+            while (rs.next()) {
+                list.add(new ProducedMessage(rs.getString("jms_id"), rs.getString("application_id"),
+                                (Integer) rs.getObject("payload_size"), rs.getTimestamp("produced_time"),
+                                rs.getInt("delay_seconds")));
+            }
+            return list;
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    private int findSimpleCount(String table) {
+        return findWithIntResult("select count(*) from " + table);
+    }
+
+    private <T> T findWithCachedScalarResult(String sql, Class<T> cls) {
+        Object cachedValue = _cache.get(sql);
+        if (cachedValue == null) {
+            try (Statement stat = _conn.createStatement(); ResultSet rs = stat.executeQuery(sql)) {
+                if (rs.next()) {
+                    cachedValue = rs.getObject(1);
+                }
+                _cache.put(sql, cachedValue);
+            } catch (SQLException e) {
+                throw new UncheckedSqlException(e);
+            }
+        }
+        return cachedValue != null ? cls.cast(cachedValue) : null;
+    }
+
+    private int findWithIntResult(String sql) {
+        Number n = findWithCachedScalarResult(sql, Number.class);
+        return n != null ? n.intValue() : 0;
+    }
+
+    private long findWithLongResult(String sql) {
+        Number n = findWithCachedScalarResult(sql, Number.class);
+        return n != null ? n.longValue() : 0L;
+    }
+
+    private Timestamp findWithTimestampResult(String sql) {
+        return findWithCachedScalarResult(sql, Timestamp.class);
+    }
+
+    private List<PeriodMetrics> getMessagesPerInterval(TimeUnit timeUnit) {
+        String view = translateTimeUnitToMessagesPerIntervalViewName(timeUnit);
+        try (Statement stat = _conn.createStatement();
+             ResultSet rs = stat.executeQuery("select time_period, produced_count, consumed_count,"
+                             + " produced_bytes, consumed_bytes, produced_max_size, consumed_max_size,"
+                             + " produced_median_size, consumed_median_size from " + view + " order by time_period")) {
+            List<PeriodMetrics> list = new ArrayList<>();
+            while (rs.next()) {
+                list.add(new PeriodMetrics(rs.getTimestamp("time_period"), rs.getInt("produced_count"),
+                                rs.getInt("consumed_count"), rs.getLong("produced_bytes"), rs.getLong("consumed_bytes"),
+                                rs.getInt("produced_max_size"), rs.getInt("consumed_max_size"),
+                                rs.getInt("produced_median_size"), rs.getInt("consumed_median_size")));
+            }
+            return list;
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    private String translateTimeUnitToMessagesPerIntervalViewName(TimeUnit timeUnit) {
+        switch (timeUnit) {
+        case MINUTES:
+            return "messages_per_minute";
+        case SECONDS:
+            return "messages_per_second";
+        default:
+            throw new IllegalArgumentException("Time unit " + timeUnit.name() + " not supported");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Data provider that reconciles produced and consumed messages in memory while streaming through the log files once,
+ * without a database. The application ids are kept in a compact {@link ApplicationIdTable} and all counts, periods and
+ * flight times are aggregated on the fly. The lists with individual messages (lost, ghost, duplicate and so on) are
+ * normally short or empty, so they are computed on demand by reading the files again.
+ * <p>
+ * The results are the same as for the {@link DatabaseDataProvider}, so the reports work unchanged, but the memory
+ * footprint is a small fraction of the database. Files with produced messages are always read before files with
+ * consumed messages.
+ */
+public class InMemoryDataProvider extends AbstractDataProvider {
+    private static final Comparator<Message> JMS_ID_ORDER = Comparator.comparing(Message::getJmsId);
+
+    private final List<File> _producedFiles = new ArrayList<>();
+    private final List<File> _consumedFiles = new ArrayList<>();
+    private final ApplicationIdTable _applicationIds = new ApplicationIdTable();
+    private final MessageStatistics _produced = new MessageStatistics();
+    private final MessageStatistics _consumed = new MessageStatistics();
+    private final NavigableMap<Long, ValueHistogram> _flightTimesPerMinute = new TreeMap<>();
+    private boolean _producedApplicationIdFound;
+    private int _alienMessageCount;
+    private int _ghostMessageCount;
+    private int _undeadMessageCount;
+    private int _lostMessageCount;
+    private int _duplicateMessageCount;
+    private int _truncatedFiles;
+    private List<FlightTimeMetrics> _flightTimeMetrics;
+    private List<ConsumedMessage> _alienMessages;
+    private List<ConsumedMessage> _duplicateMessages;
+    private List<ConsumedMessage> _ghostMessages;
+    private List<ConsumedMessage> _undeadMessages;
+    private List<ConsumedMessage> _inDoubtConsumedMessages;
+    private List<ProducedMessage> _inDoubtProducedMessages;
+    private List<ProducedMessage> _lostMessages;
+
+    /**
+     * Constructor. Nothing is read until {@link #load()} is called.
+     *
+     * @param files The producer and consumer log files.
+     * @throws IOException if a file is not a producer or consumer log.
+     */
+    public InMemoryDataProvider(List<File> files) throws IOException {
+        for (File file : files) {
+            if (file.getName().startsWith("enqueued_")) {
+                _producedFiles.add(file);
+            } else if (file.getName().startsWith("dequeued_")) {
+                _consumedFiles.add(file);
+            } else {
+                throw new IOException("Unknown file type " + file.getName() + "!");
+            }
+        }
+    }
+
+    /**
+     * Read all the files and compute the statistics.
+     *
+     * @return number of rows read.
+     * @throws IOException on read errors.
+     * @throws SQLException never, declared by the reader.
+     */
+    public long load() throws IOException, SQLException {
+        for (File file : _producedFiles) {
+            if (!LogFileReader.forFile(file).read(file, this::addProducedEntry)) {
+                _truncatedFiles++;
+            }
+        }
+        for (File file : _consumedFiles) {
+            if (!LogFileReader.forFile(file).read(file, this::addConsumedEntry)) {
+                _truncatedFiles++;
+            }
+        }
+        _lostMessageCount = _applicationIds.count(ApplicationIdTable.PRODUCED_COMMITTED,
+                        ApplicationIdTable.CONSUMED_COMMITTED_OR_IN_DOUBT);
+        _duplicateMessageCount = _applicationIds.count(ApplicationIdTable.CONSUMED_COMMITTED_AGAIN, 0);
+        _flightTimeMetrics = computeFlightTimeMetrics();
+        _flightTimesPerMinute.clear();
+        return _produced._count + _consumed._count;
+    }
+
+    private void addProducedEntry(LogEntry entry) {
+        _produced.add(entry);
+        if (entry.getDelaySeconds() > 0) {
+            _produced._delayedCount++;
+        }
+        String applicationId = entry.getApplicationId();
+        if (applicationId != null) {
+            _producedApplicationIdFound = true;
+            int slot = _applicationIds.findOrAdd(applicationId);
+            int flags = ApplicationIdTable.PRODUCED;
+            if (entry.getState() == 'C') {
+                flags |= ApplicationIdTable.PRODUCED_COMMITTED;
+                _applicationIds.setProducedTime(slot, entry.getEventTime());
+            } else if (entry.getState() == 'R') {
+                flags |= ApplicationIdTable.PRODUCED_ROLLED_BACK;
+            }
+            _applicationIds.addFlags(slot, flags);
+        }
+    }
+
+    private void addConsumedEntry(LogEntry entry) {
+        _consumed.add(entry);
+        String applicationId = entry.getApplicationId();
+        if (applicationId == null) {
+            _alienMessageCount++;
+            return;
+        }
+        int slot = _applicationIds.findOrAdd(applicationId);
+        int flags = _applicationIds.getFlags(slot);
+        if ((flags & ApplicationIdTable.PRODUCED) == 0) {
+            _undeadMessageCount++;
+        }
+        if ((flags & ApplicationIdTable.PRODUCED_ROLLED_BACK) != 0) {
+            _ghostMessageCount++;
+        }
+        if (entry.getState() == 'C') {
+            _applicationIds.addFlags(slot,
+                            ApplicationIdTable.CONSUMED_COMMITTED_OR_IN_DOUBT
+                                            | ((flags & ApplicationIdTable.CONSUMED_COMMITTED) != 0
+                                                            ? ApplicationIdTable.CONSUMED_COMMITTED_AGAIN
+                                                            : ApplicationIdTable.CONSUMED_COMMITTED));
+            if ((flags & ApplicationIdTable.PRODUCED_COMMITTED) != 0) {
+                long producedTime = _applicationIds.getProducedTime(slot);
+                _flightTimesPerMinute
+                                .computeIfAbsent(truncate(producedTime, TimeUnit.MINUTES), k -> new ValueHistogram())
+                                .add((int) (entry.getEventTime() - producedTime));
+            }
+        } else if (entry.getState() == '?') {
+            _applicationIds.addFlags(slot, ApplicationIdTable.CONSUMED_COMMITTED_OR_IN_DOUBT);
+        }
+    }
+
+    private List<FlightTimeMetrics> computeFlightTimeMetrics() {
+        List<FlightTimeMetrics> list = new ArrayList<>(_flightTimesPerMinute.size());
+        for (Map.Entry<Long, ValueHistogram> e : _flightTimesPerMinute.entrySet()) {
+            ValueHistogram h = e.getValue();
+            long count = h.getCount();
+            list.add(new FlightTimeMetrics(new Timestamp(e.getKey().longValue()), (int) count, h.getMin(), h.getMax(),
+                            h.getValueAt(count * 50 / 100), h.getValueAt(count * 95 / 100)));
+        }
+        return list;
+    }
+
+    /**
+     * Get the number of files that ended with an incomplete entry, which was ignored.
+     *
+     * @return number of truncated files.
+     */
+    public int getTruncatedFiles() {
+        return _truncatedFiles;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAlienMessageCount() {
+        return _alienMessageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getAlienMessages() {
+        if (_alienMessages == null) {
+            _alienMessages = findConsumedMessages(entry -> entry.getApplicationId() == null, JMS_ID_ORDER);
+        }
+        return _alienMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAverageConsumedMessageSize() {
+        return _consumed.getAverageSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAverageProducedMessageSize() {
+        return _produced.getAverageSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCommittedConsumedBytes() {
+        return _consumed._committedBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCommittedProducedBytes() {
+        return _produced._committedBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getConsumedMessageCount() {
+        return (int) _consumed._count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDelayedMessageCount() {
+        return _produced._delayedCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDuplicateMessageCount() {
+        return _duplicateMessageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getDuplicateMessages() {
+        if (_duplicateMessages == null) {
+            _duplicateMessages = findConsumedMessages(
+                            entry -> hasFlags(entry, ApplicationIdTable.CONSUMED_COMMITTED_AGAIN),
+                            Comparator.comparing(Message::getApplicationId).thenComparing(JMS_ID_ORDER));
+        }
+        return _duplicateMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getEndTime() {
+        return toTimestamp(Math.max(_produced._lastTime, _consumed._lastTime));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getFirstConsumedTime() {
+        return toTimestamp(_consumed._firstTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getFirstProducedTime() {
+        return toTimestamp(_produced._firstTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<FlightTimeMetrics> getFlightTimeMetrics() {
+        return _flightTimeMetrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getGhostMessageCount() {
+        return _ghostMessageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getGhostMessages() {
+        if (_ghostMessages == null) {
+            _ghostMessages = findConsumedMessages(entry -> hasFlags(entry, ApplicationIdTable.PRODUCED_ROLLED_BACK),
+                            JMS_ID_ORDER);
+        }
+        return _ghostMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInDoubtConsumedCount() {
+        return _consumed._inDoubtCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getInDoubtConsumedMessages() {
+        if (_inDoubtConsumedMessages == null) {
+            _inDoubtConsumedMessages = findConsumedMessages(entry -> entry.getState() == '?',
+                            Comparator.comparing(ConsumedMessage::getConsumedTimestamp).thenComparing(JMS_ID_ORDER));
+        }
+        return _inDoubtConsumedMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInDoubtProducedCount() {
+        return _produced._inDoubtCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProducedMessage> getInDoubtProducedMessages() {
+        if (_inDoubtProducedMessages == null) {
+            _inDoubtProducedMessages = findProducedMessages(entry -> entry.getState() == '?',
+                            Comparator.comparing(ProducedMessage::getPublishedTimestamp).thenComparing(JMS_ID_ORDER));
+        }
+        return _inDoubtProducedMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getLastConsumedTime() {
+        return toTimestamp(_consumed._lastTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getLastProducedTime() {
+        return toTimestamp(_produced._lastTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLostMessageCount() {
+        return _lostMessageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProducedMessage> getLostMessages() {
+        if (_lostMessages == null) {
+            _lostMessages = findProducedMessages(entry -> entry.getState() == 'C' && entry.getApplicationId() != null
+                            && !hasFlags(entry, ApplicationIdTable.CONSUMED_COMMITTED_OR_IN_DOUBT), JMS_ID_ORDER);
+        }
+        return _lostMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxConsumedMessageSize() {
+        return _consumed.getMaxSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxProducedMessageSize() {
+        return _produced.getMaxSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PeriodMetrics> getMessagesPerMinute() {
+        return getMessagesPerInterval(_produced._perMinute, _consumed._perMinute);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PeriodMetrics> getMessagesPerSecond() {
+        return getMessagesPerInterval(_produced._perSecond, _consumed._perSecond);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMinConsumedMessageSize() {
+        return _consumed.getMinSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMinProducedMessageSize() {
+        return _produced.getMinSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getProducedMessageCount() {
+        return (int) _produced._count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getRolledBackConsumedCount() {
+        return _consumed._rolledBackCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getRolledBackProducedCount() {
+        return _produced._rolledBackCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Timestamp getStartTime() {
+        return toTimestamp(Math.min(_produced._firstTime, _consumed._firstTime));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getUndeadMessageCount() {
+        return _undeadMessageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ConsumedMessage> getUndeadMessages() {
+        if (_undeadMessages == null) {
+            _undeadMessages = findConsumedMessages(
+                            entry -> entry.getApplicationId() != null && !hasFlags(entry, ApplicationIdTable.PRODUCED),
+                            JMS_ID_ORDER);
+        }
+        return _undeadMessages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCorrectnessTest() {
+        return getProducedMessageCount() > 0 && getConsumedMessageCount() > 0 && _producedApplicationIdFound;
+    }
+
+    private boolean hasFlags(LogEntry entry, int flags) {
+        int slot = entry.getApplicationId() != null ? _applicationIds.find(entry.getApplicationId()) : -1;
+        return slot >= 0 && (_applicationIds.getFlags(slot) & flags) == flags;
+    }
+
+    private List<ConsumedMessage> findConsumedMessages(Predicate<LogEntry> filter,
+                    Comparator<? super ConsumedMessage> order) {
+        List<ConsumedMessage> list = new ArrayList<>();
+        readFiles(_consumedFiles, entry -> {
+            if (filter.test(entry)) {
+                Integer payloadSize = entry.getPayloadSize();
+                list.add(new ConsumedMessage(entry.getJmsId(), entry.getApplicationId(),
+                                payloadSize != null ? payloadSize : Integer.valueOf(0),
+                                new Timestamp(entry.getEventTime())));
+            }
+        });
+        list.sort(order);
+        return list;
+    }
+
+    private List<ProducedMessage> findProducedMessages(Predicate<LogEntry> filter,
+                    Comparator<? super ProducedMessage> order) {
+        List<ProducedMessage> list = new ArrayList<>();
+        readFiles(_producedFiles, entry -> {
+            if (filter.test(entry)) {
+                list.add(new ProducedMessage(entry.getJmsId(), entry.getApplicationId(), entry.getPayloadSize(),
+                                new Timestamp(entry.getEventTime()), entry.getDelaySeconds()));
+            }
+        });
+        list.sort(order);
+        return list;
+    }
+
+    private void readFiles(List<File> files, LogEntryHandler handler) {
+        try {
+            for (File file : files) {
+                LogFileReader.forFile(file).read(file, handler);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    private static List<PeriodMetrics> getMessagesPerInterval(Map<Long, PeriodStatistics> produced,
+                    Map<Long, PeriodStatistics> consumed) {
+        TreeSet<Long> periods = new TreeSet<>(produced.keySet());
+        periods.addAll(consumed.keySet());
+        List<PeriodMetrics> list = new ArrayList<>(periods.size());
+        PeriodStatistics empty = new PeriodStatistics();
+        for (Long period : periods) {
+            PeriodStatistics p = produced.getOrDefault(period, empty);
+            PeriodStatistics c = consumed.getOrDefault(period, empty);
+            list.add(new PeriodMetrics(new Timestamp(period.longValue()), p._count, c._count, p._sizes.getSum(),
+                            c._sizes.getSum(), p._sizes.getMax(), c._sizes.getMax(), p._sizes.getMedian(),
+                            c._sizes.getMedian()));
+        }
+        return list;
+    }
+
+    private static long truncate(long time, TimeUnit timeUnit) {
+        long unitMillis = timeUnit.toMillis(1L);
+        return time - Math.floorMod(time, unitMillis);
+    }
+
+    private static Timestamp toTimestamp(long time) {
+        return time != Long.MAX_VALUE && time != Long.MIN_VALUE ? new Timestamp(time) : null;
+    }
+
+    /**
+     * Totals for produced or consumed messages.
+     */
+    private static class MessageStatistics {
+        private final Map<Long, PeriodStatistics> _perSecond = new TreeMap<>();
+        private final Map<Long, PeriodStatistics> _perMinute = new TreeMap<>();
+        private long _count;
+        private int _rolledBackCount;
+        private int _inDoubtCount;
+        private int _delayedCount;
+        private long _sizeCount;
+        private long _sizeSum;
+        private int _minSize = Integer.MAX_VALUE;
+        private int _maxSize = Integer.MIN_VALUE;
+        private long _committedBytes;
+        private long _firstTime = Long.MAX_VALUE;
+        private long _lastTime = Long.MIN_VALUE;
+
+        void add(LogEntry entry) {
+            _count++;
+            long eventTime = entry.getEventTime();
+            _firstTime = Math.min(_firstTime, eventTime);
+            _lastTime = Math.max(_lastTime, eventTime);
+            Integer payloadSize = entry.getPayloadSize();
+            if (payloadSize != null) {
+                int size = payloadSize.intValue();
+                _sizeCount++;
+                _sizeSum += size;
+                _minSize = Math.min(_minSize, size);
+                _maxSize = Math.max(_maxSize, size);
+            }
+            switch (entry.getState()) {
+            case 'C':
+                if (payloadSize != null) {
+                    _committedBytes += payloadSize.intValue();
+                }
+                _perSecond.computeIfAbsent(truncate(entry.getCommitTime(), TimeUnit.SECONDS),
+                                k -> new PeriodStatistics()).add(payloadSize);
+                _perMinute.computeIfAbsent(truncate(entry.getCommitTime(), TimeUnit.MINUTES),
+                                k -> new PeriodStatistics()).add(payloadSize);
+                break;
+            case 'R':
+                _rolledBackCount++;
+                break;
+            default:
+                _inDoubtCount++;
+                break;
+            }
+        }
+
+        long getAverageSize() {
+            return _sizeCount > 0 ? _sizeSum / _sizeCount : 0L;
+        }
+
+        long getMinSize() {
+            return _sizeCount > 0 ? _minSize : 0L;
+        }
+
+        long getMaxSize() {
+            return _sizeCount > 0 ? _maxSize : 0L;
+        }
+    }
+
+    /**
+     * Committed messages in a second or minute.
+     */
+    private static class PeriodStatistics {
+        private final ValueHistogram _sizes = new ValueHistogram();
+        private int _count;
+
+        void add(Integer payloadSize) {
+            _count++;
+            if (payloadSize != null) {
+                _sizes.add(payloadSize.intValue());
+            }
+        }
+    }
+}
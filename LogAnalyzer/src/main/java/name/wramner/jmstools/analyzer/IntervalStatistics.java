@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Statistics for one interval from a statistics file written by a producer or consumer, with counts and rates for the
+ * interval and optionally latency percentiles.
+ */
+public class IntervalStatistics {
+    private final Date _timestamp;
+    private final Map<String, Double> _values;
+
+    /**
+     * Constructor.
+     *
+     * @param timestamp The time when the interval ended.
+     * @param values The values by column name, missing values are absent.
+     */
+    public IntervalStatistics(Date timestamp, Map<String, Double> values) {
+        _timestamp = timestamp;
+        _values = values;
+    }
+
+    public Date getTimestamp() {
+        return _timestamp;
+    }
+
+    /**
+     * Get the value for a column.
+     *
+     * @param column The column name, for example messages_per_second.
+     * @return value or null if missing.
+     */
+    public Double getValue(String column) {
+        return _values.get(column);
+    }
+}
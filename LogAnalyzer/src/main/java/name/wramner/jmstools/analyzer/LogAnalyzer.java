@@ -15,9 +15,7 @@
  */
 package name.wramner.jmstools.analyzer;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -26,10 +24,7 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -47,7 +42,8 @@ import org.thymeleaf.templateresolver.FileTemplateResolver;
 
 /**
  * Import log files from producers and consumers into a database for analysis, either with a generated HTML report or
- * interactively from a SQL command prompt.
+ * interactively from a SQL command prompt. Statistics files from producers and consumers are charted in a separate
+ * report.
  *
  * @author Erik Wramner
  */
@@ -72,18 +68,29 @@ public class LogAnalyzer {
         printVersion();
         Configuration config = new Configuration();
         if (parseCommandLine(args, config)) {
+            List<File> statisticsFiles = findStatisticsFiles(config.getRemainingArguments());
+            if (!statisticsFiles.isEmpty()) {
+                generateStatisticsReport(config, statisticsFiles);
+                if (findLogFiles(config.getRemainingArguments()).isEmpty()) {
+                    return;
+                }
+            }
+            if (config.isInMemory()) {
+                runInMemory(config);
+                return;
+            }
             Connection conn = null;
             try {
                 Class.forName("org.hsqldb.jdbc.JDBCDriver");
                 conn = DriverManager.getConnection(config.getJdbcUrl(), config.getJdbcUser(), config.getJdbcPassword());
                 createSchema(conn);
                 System.out.println("Importing files...");
-                importLogFiles(conn, config.getRemainingArguments());
+                importLogFiles(conn, config);
                 if (config.isInteractive()) {
                     openCommandPrompt(conn);
                 } else {
                     System.out.println("Generating Thymeleaf report...");
-                    generateThymeleafReport(config, conn);
+                    generateThymeleafReport(config, new DatabaseDataProvider(conn));
                     System.out.println("Done!");
                 }
             } catch (Exception e) {
@@ -94,14 +101,36 @@ public class LogAnalyzer {
         }
     }
 
+    /**
+     * Reconcile the log files in memory without a database and generate a report.
+     *
+     * @param config The configuration.
+     */
+    private void runInMemory(Configuration config) {
+        try {
+            System.out.println("Reading files...");
+            List<File> files = findLogFiles(config.getRemainingArguments());
+            long startTime = System.nanoTime();
+            InMemoryDataProvider dataProvider = new InMemoryDataProvider(files);
+            long rows = dataProvider.load();
+            printThroughput("Read", rows, files.size(), startTime);
+            printTruncatedFiles(dataProvider.getTruncatedFiles());
+            System.out.println("Generating Thymeleaf report...");
+            generateThymeleafReport(config, dataProvider);
+            System.out.println("Done!");
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
+        }
+    }
+
     /**
      * Generate report using the Thymeleaf template engine.
      *
      * @param config The configuration.
-     * @param conn The database connection.
-     * @throws IOException on read or write errors. @ on database errors.
+     * @param dataProvider The data provider for the report.
+     * @throws IOException on read or write errors.
      */
-    private void generateThymeleafReport(Configuration config, Connection conn) throws IOException, SQLException {
+    private void generateThymeleafReport(Configuration config, DataProvider dataProvider) throws IOException {
         TemplateEngine engine = new TemplateEngine();
         File templateFile = config.getTemplateFile();
         AbstractConfigurableTemplateResolver resolver = templateFile != null ? new FileTemplateResolver()
@@ -109,7 +138,6 @@ public class LogAnalyzer {
         resolver.setTemplateMode("HTML");
         engine.setTemplateResolver(resolver);
         Context context = new Context();
-        DataProvider dataProvider = new DataProvider(conn);
         context.setVariable("dataProvider", dataProvider);
         try (Writer writer = Files.newBufferedWriter(config.getReportFile().toPath(), Charset.forName("UTF-8"))) {
             engine.process(templateFile != null ? templateFile.getPath()
@@ -119,6 +147,38 @@ public class LogAnalyzer {
         }
     }
 
+    /**
+     * Read statistics files and generate a report with charts.
+     *
+     * @param config The configuration.
+     * @param files The statistics files.
+     */
+    private void generateStatisticsReport(Configuration config, List<File> files) {
+        try {
+            System.out.println("Reading statistics files...");
+            List<StatisticsFile> statisticsFiles = new ArrayList<>();
+            for (File file : files) {
+                StatisticsFile statisticsFile = StatisticsFile.read(file);
+                if (!statisticsFile.isEmpty()) {
+                    statisticsFiles.add(statisticsFile);
+                }
+            }
+            System.out.println("Generating statistics report...");
+            TemplateEngine engine = new TemplateEngine();
+            ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+            resolver.setTemplateMode("HTML");
+            engine.setTemplateResolver(resolver);
+            Context context = new Context();
+            context.setVariable("statistics", new StatisticsReport(statisticsFiles));
+            try (Writer writer = Files.newBufferedWriter(config.getStatisticsReportFile().toPath(),
+                            Charset.forName("UTF-8"))) {
+                engine.process("statistics_report.html", context, writer);
+            }
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
+        }
+    }
+
     private void closeSafely(Connection conn) {
         if (conn != null) {
             try {
@@ -128,17 +188,69 @@ public class LogAnalyzer {
         }
     }
 
-    private void importLogFiles(Connection conn, List<String> fileAndDirectoryPaths) throws IOException, SQLException {
+    private void importLogFiles(Connection conn, Configuration config) throws IOException, SQLException {
+        List<File> files = findLogFiles(config.getRemainingArguments());
+        long startTime = System.nanoTime();
+        LogFileImporter importer = new LogFileImporter(conn, config.getBatchSize(), config.getImportThreads());
+        long rows = importer.importFiles(files);
+        printThroughput("Imported", rows, files.size(), startTime);
+        printTruncatedFiles(importer.getTruncatedFiles());
+    }
+
+    private List<File> findLogFiles(List<String> fileAndDirectoryPaths) {
+        List<File> files = new ArrayList<>();
         for (String fileOrDirectoryPath : fileAndDirectoryPaths) {
             File fileOrDirectory = new File(fileOrDirectoryPath);
             if (fileOrDirectory.isDirectory()) {
-                importFilesInDirectory(conn, fileOrDirectory);
+                for (File file : fileOrDirectory.listFiles(new FilenameFilter() {
+                    @Override
+                    public boolean accept(File dir, String name) {
+                        return LogFileImporter.isLogFile(name);
+                    }
+                })) {
+                    files.add(file);
+                }
             } else if (fileOrDirectory.isFile()) {
-                importFile(conn, fileOrDirectory);
+                if (!StatisticsFile.isStatisticsFile(fileOrDirectory.getName())) {
+                    files.add(fileOrDirectory);
+                }
             } else {
                 System.err.println("Unexpected argument '" + fileOrDirectoryPath + "' - not a file or directory!");
             }
         }
+        return files;
+    }
+
+    private List<File> findStatisticsFiles(List<String> fileAndDirectoryPaths) {
+        List<File> files = new ArrayList<>();
+        for (String fileOrDirectoryPath : fileAndDirectoryPaths) {
+            File fileOrDirectory = new File(fileOrDirectoryPath);
+            if (fileOrDirectory.isDirectory()) {
+                for (File file : fileOrDirectory.listFiles(new FilenameFilter() {
+                    @Override
+                    public boolean accept(File dir, String name) {
+                        return StatisticsFile.isStatisticsFile(name);
+                    }
+                })) {
+                    files.add(file);
+                }
+            } else if (fileOrDirectory.isFile() && StatisticsFile.isStatisticsFile(fileOrDirectory.getName())) {
+                files.add(fileOrDirectory);
+            }
+        }
+        return files;
+    }
+
+    private void printThroughput(String action, long rows, int files, long startTime) {
+        double seconds = Math.max(System.nanoTime() - startTime, 1L) / 1_000_000_000.0;
+        System.out.println(String.format("%s %d rows from %d files in %.1f seconds (%.0f rows/s)", action, rows, files,
+                        seconds, rows / seconds));
+    }
+
+    private void printTruncatedFiles(int truncatedFiles) {
+        if (truncatedFiles > 0) {
+            System.out.println("Ignored incomplete entries at the end of " + truncatedFiles + " files");
+        }
     }
 
     /**
@@ -189,98 +301,6 @@ public class LogAnalyzer {
         System.out.println(getClass().getSimpleName() + " " + (version != null ? version : "(unknown version)"));
     }
 
-    private void importFilesInDirectory(Connection conn, File directory) throws IOException, SQLException {
-        for (File file : directory.listFiles(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String name) {
-                return name.endsWith(".log") && (name.startsWith("enqueued_") || name.startsWith("dequeued_"));
-            }
-        })) {
-            importFile(conn, file);
-        }
-    }
-
-    private void importFile(Connection conn, File file) throws IOException, SQLException {
-        if (file.getName().startsWith("enqueued_")) {
-            importEnqueuedFile(conn, file);
-        } else if (file.getName().startsWith("dequeued_")) {
-            importDequeuedFile(conn, file);
-        } else {
-            throw new IOException("Unknown file type " + file.getName() + "!");
-        }
-    }
-
-    private void importEnqueuedFile(Connection conn, File file) throws IOException, SQLException {
-        try (PreparedStatement stat = conn.prepareStatement("insert into produced_messages"
-                        + " (outcome, outcome_time, produced_time, application_id, payload_size"
-                        + ", delay_seconds, jms_id)" + " values (?, ?, ?, ?, ?, ?, ?)");
-             BufferedReader reader = new BufferedReader(
-                             new InputStreamReader(new FileInputStream(file), Charset.defaultCharset()))) {
-            // Skip header line
-            reader.readLine();
-            // Insert lines
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                String[] fields = line.split("\t");
-                int pos = 1;
-                int field = 0;
-                stat.setString(pos++, fields[field++]);
-                stat.setTimestamp(pos++, new Timestamp(Long.parseLong(fields[field++])));
-                stat.setTimestamp(pos++, new Timestamp(Long.parseLong(fields[field++])));
-                String applicationId = fields[field++];
-                if (applicationId != null && applicationId.length() > 0) {
-                    stat.setString(pos++, applicationId);
-                } else {
-                    stat.setNull(pos++, Types.VARCHAR);
-                }
-                String payloadSizeString = fields[field++];
-                if (payloadSizeString != null && payloadSizeString.length() > 0) {
-                    stat.setInt(pos++, Integer.parseInt(payloadSizeString));
-                } else {
-                    stat.setNull(pos++, Types.INTEGER);
-                }
-                stat.setInt(pos++, Integer.parseInt(fields[field++]));
-                stat.setString(pos++, fields[field++]);
-                stat.executeUpdate();
-            }
-            conn.commit();
-        }
-    }
-
-    private void importDequeuedFile(Connection conn, File file) throws IOException, SQLException {
-        try (PreparedStatement stat = conn.prepareStatement("insert into consumed_messages"
-                        + " (outcome, outcome_time, consumed_time, jms_id, application_id, payload_size)"
-                        + " values (?, ?, ?, ?, ?, ?)");
-             BufferedReader reader = new BufferedReader(
-                             new InputStreamReader(new FileInputStream(file), Charset.defaultCharset()))) {
-            // Skip header line
-            reader.readLine();
-            // Insert lines
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                String[] fields = line.split("\t");
-                int pos = 1;
-                int field = 0;
-                stat.setString(pos++, fields[field++]);
-                stat.setTimestamp(pos++, new Timestamp(Long.parseLong(fields[field++])));
-                stat.setTimestamp(pos++, new Timestamp(Long.parseLong(fields[field++])));
-                stat.setString(pos++, fields[field++]);
-                String applicationId = fields[field++];
-                if (applicationId != null && applicationId.length() > 0) {
-                    stat.setString(pos++, applicationId);
-                } else {
-                    stat.setNull(pos++, Types.VARCHAR);
-                }
-                String payloadSizeString = fields[field++];
-                if (payloadSizeString != null && payloadSizeString.length() > 0) {
-                    stat.setInt(pos++, Integer.parseInt(payloadSizeString));
-                } else {
-                    stat.setNull(pos++, Types.INTEGER);
-                }
-                stat.executeUpdate();
-            }
-            conn.commit();
-        }
-    }
-
     private void openCommandPrompt(Connection conn) throws IOException, SqlToolError, SQLException {
         SqlFile sqlFile = new SqlFile(null, true);
         sqlFile.setConnection(conn);
@@ -304,6 +324,8 @@ public class LogAnalyzer {
         private static final String DEFAULT_JDBC_USER = "sa";
         private static final String DEFAULT_JDBC_PASSWORD = "";
         private static final String DEFAULT_REPORT_FILE = "report.html";
+        private static final String DEFAULT_STATISTICS_REPORT_FILE = "statistics_report.html";
+        private static final int DEFAULT_BATCH_SIZE = 1000;
 
         @Option(name = "-?", aliases = { "--help", "--options" }, usage = "Print help text with options")
         private boolean _help;
@@ -311,6 +333,10 @@ public class LogAnalyzer {
         @Option(name = "-i", aliases = "--interactive", usage = "Open a SQL prompt for custom queries")
         private boolean _interactive;
 
+        @Option(name = "-m", aliases = "--in-memory", usage = "Reconcile messages in memory without a database",
+                        forbids = { "-i", "-url", "-user", "-pw", "-batchsize", "-threads" })
+        private boolean _inMemory;
+
         @Option(name = "-url", aliases = "--jdbc-url", usage = "JDBC URL for HSQLDB database")
         private String _jdbcUrl = DEFAULT_JDBC_URL;
 
@@ -323,9 +349,20 @@ public class LogAnalyzer {
         @Option(name = "-o", aliases = { "--output-file" }, usage = "Path and file name for report")
         private File _reportFile = new File(DEFAULT_REPORT_FILE);
 
+        @Option(name = "-so", aliases = {
+                        "--statistics-output-file" }, usage = "Path and file name for report with statistics files")
+        private File _statisticsReportFile = new File(DEFAULT_STATISTICS_REPORT_FILE);
+
         @Option(name = "-t", aliases = { "--template-file" }, usage = "Optional Thymeleaf template file")
         private File _templateFile;
 
+        @Option(name = "-batchsize", aliases = { "--jdbc-batch-size" }, usage = "Number of rows per JDBC batch insert")
+        private int _batchSize = DEFAULT_BATCH_SIZE;
+
+        @Option(name = "-threads", aliases = {
+                        "--import-threads" }, usage = "Number of threads parsing log files, 1 for sequential import")
+        private int _importThreads = 1;
+
         @Argument
         private List<String> _args = new ArrayList<String>();
 
@@ -341,6 +378,10 @@ public class LogAnalyzer {
             return _interactive;
         }
 
+        public boolean isInMemory() {
+            return _inMemory;
+        }
+
         public String getJdbcUrl() {
             return _jdbcUrl;
         }
@@ -360,5 +401,17 @@ public class LogAnalyzer {
         public File getReportFile() {
             return _reportFile;
         }
+
+        public File getStatisticsReportFile() {
+            return _statisticsReportFile;
+        }
+
+        public int getBatchSize() {
+            return _batchSize;
+        }
+
+        public int getImportThreads() {
+            return _importThreads;
+        }
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+/**
+ * The columns in the log files, identified by the names in the file headers.
+ */
+public enum LogColumn {
+    STATE, COMMIT_TIME, EVENT_TIME, JMS_ID, APPLICATION_ID, PAYLOAD_SIZE, DELAY_SECONDS, UNKNOWN;
+
+    /**
+     * Find the column for a header name.
+     *
+     * @param name The name in the log file header.
+     * @return column, UNKNOWN if not recognized.
+     */
+    public static LogColumn forHeaderName(String name) {
+        switch (name) {
+        case "State":
+            return STATE;
+        case "CommitTime":
+            return COMMIT_TIME;
+        case "ProducedTime":
+        case "ConsumedTime":
+            return EVENT_TIME;
+        case "JMSID":
+            return JMS_ID;
+        case "ID":
+            return APPLICATION_ID;
+        case "Length":
+            return PAYLOAD_SIZE;
+        case "DelaySeconds":
+            return DELAY_SECONDS;
+        default:
+            return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+/**
+ * An entry in a producer or consumer log file. The entry is reused by the readers, so the values must be copied by the
+ * handler if they are needed after it returns.
+ */
+public class LogEntry {
+    private char _state;
+    private long _commitTime;
+    private long _eventTime;
+    private String _jmsId;
+    private String _applicationId;
+    private Integer _payloadSize;
+    private int _delaySeconds;
+
+    /**
+     * Clear the optional values before reading a new entry.
+     */
+    public void clear() {
+        _jmsId = null;
+        _applicationId = null;
+        _payloadSize = null;
+        _delaySeconds = 0;
+    }
+
+    /**
+     * Create a copy of this entry that can be kept after the reader has moved on.
+     *
+     * @return new entry with the same values.
+     */
+    public LogEntry copy() {
+        LogEntry entry = new LogEntry();
+        entry._state = _state;
+        entry._commitTime = _commitTime;
+        entry._eventTime = _eventTime;
+        entry._jmsId = _jmsId;
+        entry._applicationId = _applicationId;
+        entry._payloadSize = _payloadSize;
+        entry._delaySeconds = _delaySeconds;
+        return entry;
+    }
+
+    /**
+     * Get the state, C for committed, R for rolled back and ? for in doubt.
+     *
+     * @return state.
+     */
+    public char getState() {
+        return _state;
+    }
+
+    public void setState(char state) {
+        _state = state;
+    }
+
+    public long getCommitTime() {
+        return _commitTime;
+    }
+
+    public void setCommitTime(long commitTime) {
+        _commitTime = commitTime;
+    }
+
+    /**
+     * Get the time when the message was produced or consumed.
+     *
+     * @return time in milliseconds since the epoch.
+     */
+    public long getEventTime() {
+        return _eventTime;
+    }
+
+    public void setEventTime(long eventTime) {
+        _eventTime = eventTime;
+    }
+
+    public String getJmsId() {
+        return _jmsId;
+    }
+
+    public void setJmsId(String jmsId) {
+        _jmsId = jmsId;
+    }
+
+    public String getApplicationId() {
+        return _applicationId;
+    }
+
+    public void setApplicationId(String applicationId) {
+        _applicationId = applicationId;
+    }
+
+    public Integer getPayloadSize() {
+        return _payloadSize;
+    }
+
+    public void setPayloadSize(Integer payloadSize) {
+        _payloadSize = payloadSize;
+    }
+
+    public int getDelaySeconds() {
+        return _delaySeconds;
+    }
+
+    public void setDelaySeconds(int delaySeconds) {
+        _delaySeconds = delaySeconds;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Import producer and consumer log files into the database using JDBC batches. Files can be imported one at a time
+ * or in parallel. In parallel mode the files are parsed on a fork-join pool and the parsed rows are passed through a
+ * bounded queue to the calling thread, which is the only thread that uses the database connection.
+ *
+ * @author Erik Wramner
+ */
+public class LogFileImporter {
+    private static final int QUEUED_BATCHES_PER_THREAD = 4;
+
+    private final ApplicationIdKey _key = new ApplicationIdKey();
+    private final Connection _conn;
+    private final int _batchSize;
+    private final int _threads;
+    private int _truncatedFiles;
+
+    /**
+     * Constructor.
+     *
+     * @param conn The database connection.
+     * @param batchSize The number of rows per JDBC batch.
+     * @param threads The number of threads parsing files, 1 to import one file at a time.
+     */
+    public LogFileImporter(Connection conn, int batchSize, int threads) {
+        _conn = conn;
+        _batchSize = Math.max(1, batchSize);
+        _threads = Math.max(1, threads);
+    }
+
+    /**
+     * Check if a file name belongs to a log file that can be imported.
+     *
+     * @param name The file name.
+     * @return true if the file should be imported.
+     */
+    public static boolean isLogFile(String name) {
+        return (name.endsWith(LogFileReader.TEXT_LOG_SUFFIX) || name.endsWith(LogFileReader.BINARY_LOG_SUFFIX))
+                        && Table.forFileName(name) != null;
+    }
+
+    /**
+     * Get the number of imported files that ended with an incomplete entry, which was ignored.
+     *
+     * @return number of truncated files.
+     */
+    public int getTruncatedFiles() {
+        return _truncatedFiles;
+    }
+
+    /**
+     * Import files.
+     *
+     * @param files The files to import.
+     * @return number of imported rows.
+     * @throws IOException on read errors or unknown files.
+     * @throws SQLException on database errors.
+     */
+    public long importFiles(List<File> files) throws IOException, SQLException {
+        for (File file : files) {
+            if (Table.forFileName(file.getName()) == null) {
+                throw new IOException("Unknown file type " + file.getName() + "!");
+            }
+        }
+        long rows = _threads > 1 && files.size() > 1 ? importInParallel(files) : importSequentially(files);
+        _conn.commit();
+        return rows;
+    }
+
+    private long importSequentially(List<File> files) throws IOException, SQLException {
+        Map<Table, PreparedStatement> statements = prepareStatements();
+        try {
+            long rows = 0L;
+            for (File file : files) {
+                Table table = Table.forFileName(file.getName());
+                BatchInsertHandler handler = new BatchInsertHandler(statements.get(table), table);
+                if (!LogFileReader.forFile(file).read(file, handler)) {
+                    _truncatedFiles++;
+                }
+                rows += handler.flush();
+            }
+            return rows;
+        } finally {
+            closeStatements(statements);
+        }
+    }
+
+    private long importInParallel(List<File> files) throws IOException, SQLException {
+        BlockingQueue<ParsedBatch> queue = new ArrayBlockingQueue<>(_threads * QUEUED_BATCHES_PER_THREAD);
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        Map<Table, PreparedStatement> statements = prepareStatements();
+        try {
+            for (File file : files) {
+                pool.execute(() -> parseFile(file, queue));
+            }
+            long rows = 0L;
+            int remainingFiles = files.size();
+            while (remainingFiles > 0) {
+                ParsedBatch batch = queue.take();
+                if (batch._failure != null) {
+                    throw importFailure(batch._file, batch._failure);
+                }
+                if (batch._size > 0) {
+                    PreparedStatement stat = statements.get(batch._table);
+                    for (int i = 0; i < batch._size; i++) {
+                        batch._table.bind(stat, batch._entries[i], _key);
+                        stat.addBatch();
+                    }
+                    stat.executeBatch();
+                    rows += batch._size;
+                }
+                if (batch._lastInFile) {
+                    remainingFiles--;
+                    if (batch._truncated) {
+                        _truncatedFiles++;
+                    }
+                }
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing files", e);
+        } finally {
+            pool.shutdownNow();
+            closeStatements(statements);
+        }
+    }
+
+    private void parseFile(File file, BlockingQueue<ParsedBatch> queue) {
+        Table table = Table.forFileName(file.getName());
+        try {
+            ParsedBatch[] current = { new ParsedBatch(file, table, _batchSize) };
+            boolean complete = LogFileReader.forFile(file).read(file, entry -> {
+                ParsedBatch batch = current[0];
+                batch._entries[batch._size++] = entry.copy();
+                if (batch._size == _batchSize) {
+                    put(queue, batch);
+                    current[0] = new ParsedBatch(file, table, _batchSize);
+                }
+            });
+            current[0]._lastInFile = true;
+            current[0]._truncated = !complete;
+            put(queue, current[0]);
+        } catch (InterruptedRuntimeException e) {
+            // Import aborted, the queue is no longer read
+        } catch (Throwable e) {
+            // Report errors too, otherwise the importer would wait forever for the end of the file
+            ParsedBatch failed = new ParsedBatch(file, table, 0);
+            failed._failure = e;
+            try {
+                put(queue, failed);
+            } catch (InterruptedRuntimeException ignored) {
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<ParsedBatch> queue, ParsedBatch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedRuntimeException();
+        }
+    }
+
+    private static IOException importFailure(File file, Throwable failure) throws SQLException {
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new IOException("Failed to import " + file.getName(), failure);
+    }
+
+    private Map<Table, PreparedStatement> prepareStatements() throws SQLException {
+        Map<Table, PreparedStatement> statements = new EnumMap<>(Table.class);
+        try {
+            for (Table table : Table.values()) {
+                statements.put(table, _conn.prepareStatement(table.getInsertSql()));
+            }
+        } catch (SQLException e) {
+            closeStatements(statements);
+            throw e;
+        }
+        return statements;
+    }
+
+    private static void closeStatements(Map<Table, PreparedStatement> statements) {
+        for (PreparedStatement stat : statements.values()) {
+            try {
+                stat.close();
+            } catch (SQLException e) {
+            }
+        }
+    }
+
+    private static void setStringOrNull(PreparedStatement stat, int pos, String value) throws SQLException {
+        if (value != null && value.length() > 0) {
+            stat.setString(pos, value);
+        } else {
+            stat.setNull(pos, Types.VARCHAR);
+        }
+    }
+
+    private static void setIntOrNull(PreparedStatement stat, int pos, Integer value) throws SQLException {
+        if (value != null) {
+            stat.setInt(pos, value.intValue());
+        } else {
+            stat.setNull(pos, Types.INTEGER);
+        }
+    }
+
+    private static void setKeyOrNull(PreparedStatement stat, int pos, String applicationId, ApplicationIdKey key)
+                    throws SQLException {
+        if (applicationId != null && applicationId.length() > 0) {
+            key.set(applicationId);
+            stat.setLong(pos, key.getHigh());
+            stat.setLong(pos + 1, key.getLow());
+        } else {
+            stat.setNull(pos, Types.BIGINT);
+            stat.setNull(pos + 1, Types.BIGINT);
+        }
+    }
+
+    /**
+     * The target tables, selected by the file name prefix.
+     */
+    private enum Table {
+        PRODUCED_MESSAGES("enqueued_",
+                        "insert into produced_messages (outcome, outcome_time, produced_time, application_id,"
+                                        + " payload_size, delay_seconds, jms_id, app_key_hi, app_key_lo)"
+                                        + " values (?, ?, ?, ?, ?, ?, ?, ?, ?)") {
+            @Override
+            void bind(PreparedStatement stat, LogEntry entry, ApplicationIdKey key) throws SQLException {
+                int pos = 1;
+                stat.setString(pos++, String.valueOf(entry.getState()));
+                stat.setTimestamp(pos++, new Timestamp(entry.getCommitTime()));
+                stat.setTimestamp(pos++, new Timestamp(entry.getEventTime()));
+                setStringOrNull(stat, pos++, entry.getApplicationId());
+                setIntOrNull(stat, pos++, entry.getPayloadSize());
+                stat.setInt(pos++, entry.getDelaySeconds());
+                stat.setString(pos++, entry.getJmsId());
+                setKeyOrNull(stat, pos, entry.getApplicationId(), key);
+            }
+        },
+        CONSUMED_MESSAGES("dequeued_",
+                        "insert into consumed_messages (outcome, outcome_time, consumed_time, jms_id, application_id,"
+                                        + " payload_size, app_key_hi, app_key_lo) values (?, ?, ?, ?, ?, ?, ?, ?)") {
+            @Override
+            void bind(PreparedStatement stat, LogEntry entry, ApplicationIdKey key) throws SQLException {
+                int pos = 1;
+                stat.setString(pos++, String.valueOf(entry.getState()));
+                stat.setTimestamp(pos++, new Timestamp(entry.getCommitTime()));
+                stat.setTimestamp(pos++, new Timestamp(entry.getEventTime()));
+                stat.setString(pos++, entry.getJmsId());
+                setStringOrNull(stat, pos++, entry.getApplicationId());
+                setIntOrNull(stat, pos++, entry.getPayloadSize());
+                setKeyOrNull(stat, pos, entry.getApplicationId(), key);
+            }
+        };
+
+        private final String _fileNamePrefix;
+        private final String _insertSql;
+
+        private Table(String fileNamePrefix, String insertSql) {
+            _fileNamePrefix = fileNamePrefix;
+            _insertSql = insertSql;
+        }
+
+        String getInsertSql() {
+            return _insertSql;
+        }
+
+        abstract void bind(PreparedStatement stat, LogEntry entry, ApplicationIdKey key) throws SQLException;
+
+        static Table forFileName(String name) {
+            for (Table table : values()) {
+                if (name.startsWith(table._fileNamePrefix)) {
+                    return table;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Handler that binds entries to an insert statement and executes it in batches.
+     */
+    private class BatchInsertHandler implements LogEntryHandler {
+        private final PreparedStatement _stat;
+        private final Table _table;
+        private int _pendingRows;
+        private long _rows;
+
+        BatchInsertHandler(PreparedStatement stat, Table table) {
+            _stat = stat;
+            _table = table;
+        }
+
+        @Override
+        public void handle(LogEntry entry) throws SQLException {
+            _table.bind(_stat, entry, _key);
+            _stat.addBatch();
+            if (++_pendingRows == _batchSize) {
+                executeBatch();
+            }
+        }
+
+        long flush() throws SQLException {
+            executeBatch();
+            return _rows;
+        }
+
+        private void executeBatch() throws SQLException {
+            if (_pendingRows > 0) {
+                _stat.executeBatch();
+                _rows += _pendingRows;
+                _pendingRows = 0;
+            }
+        }
+    }
+
+    /**
+     * Rows parsed from a file, waiting to be inserted.
+     */
+    private static class ParsedBatch {
+        private final File _file;
+        private final Table _table;
+        private final LogEntry[] _entries;
+        private int _size;
+        private boolean _lastInFile;
+        private boolean _truncated;
+        private Throwable _failure;
+
+        ParsedBatch(File file, Table table, int capacity) {
+            _file = file;
+            _table = table;
+            _entries = new LogEntry[capacity];
+        }
+    }
+
+    /**
+     * Thrown by parser threads when the import has been aborted.
+     */
+    private static class InterruptedRuntimeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
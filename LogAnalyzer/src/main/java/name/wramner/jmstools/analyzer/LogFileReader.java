@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Reader for producer and consumer log files.
+ */
+public interface LogFileReader {
+    /** Suffix for text log files. */
+    String TEXT_LOG_SUFFIX = ".log";
+    /** Suffix for binary log files. */
+    String BINARY_LOG_SUFFIX = ".bin";
+
+    /**
+     * Read all entries in a file.
+     *
+     * @param file The file.
+     * @param handler The handler for the entries.
+     * @return true if the whole file was read, false if an incomplete entry at the end was ignored.
+     * @throws IOException on read errors.
+     * @throws SQLException on database errors in the handler.
+     */
+    boolean read(File file, LogEntryHandler handler) throws IOException, SQLException;
+
+    /**
+     * Create a reader for a file based on the file name suffix.
+     *
+     * @param file The file.
+     * @return binary reader for binary logs, text reader otherwise.
+     */
+    static LogFileReader forFile(File file) {
+        return file.getName().endsWith(BINARY_LOG_SUFFIX) ? new BinaryLogFileReader() : new TextLogFileReader();
+    }
+}
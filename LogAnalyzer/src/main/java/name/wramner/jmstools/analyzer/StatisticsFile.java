@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A statistics file written by a producer or consumer with the -stats option. The file is a CSV file with a header
+ * and one row per interval. The first two columns are the timestamp and the interval length, the rest are numeric.
+ */
+public class StatisticsFile {
+    private static final String FILE_PREFIX = "statistics_";
+    private static final String FILE_SUFFIX = ".csv";
+    private static final String TIMESTAMP_COLUMN = "timestamp";
+    private static final String INTERVAL_SECONDS_COLUMN = "interval_seconds";
+    private final String _name;
+    private final List<String> _columns;
+    private final List<IntervalStatistics> _intervals;
+
+    /**
+     * Constructor.
+     *
+     * @param name The file name.
+     * @param columns The column names.
+     * @param intervals The intervals in file order.
+     */
+    public StatisticsFile(String name, List<String> columns, List<IntervalStatistics> intervals) {
+        _name = name;
+        _columns = columns;
+        _intervals = intervals;
+    }
+
+    /**
+     * Check if a file name matches the statistics files written by producers and consumers.
+     *
+     * @param name The file name.
+     * @return true if statistics file.
+     */
+    public static boolean isStatisticsFile(String name) {
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+    }
+
+    /**
+     * Read a statistics file.
+     *
+     * @param file The file.
+     * @return statistics.
+     * @throws IOException on read errors or if the file is not a statistics file.
+     */
+    public static StatisticsFile read(File file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith(TIMESTAMP_COLUMN + ",")) {
+                throw new IOException("File " + file + " is not a statistics file");
+            }
+            String[] columns = header.split(",", -1);
+            List<IntervalStatistics> intervals = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length != columns.length) {
+                    // Probably the last line of a file that is still being written
+                    continue;
+                }
+                Map<String, Double> values = new HashMap<>();
+                for (int i = 1; i < fields.length; i++) {
+                    if (!fields[i].isEmpty()) {
+                        values.put(columns[i], Double.valueOf(fields[i]));
+                    }
+                }
+                intervals.add(new IntervalStatistics(Date.from(OffsetDateTime.parse(fields[0]).toInstant()), values));
+            }
+            List<String> columnList = new ArrayList<>();
+            Collections.addAll(columnList, columns);
+            return new StatisticsFile(file.getName(), columnList, intervals);
+        }
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public List<IntervalStatistics> getIntervals() {
+        return _intervals;
+    }
+
+    public boolean isEmpty() {
+        return _intervals.isEmpty();
+    }
+
+    /**
+     * Check if the file has a column.
+     *
+     * @param column The column name.
+     * @return true if present.
+     */
+    public boolean hasColumn(String column) {
+        return _columns.contains(column);
+    }
+
+    public Date getStartTime() {
+        return _intervals.isEmpty() ? null : _intervals.get(0).getTimestamp();
+    }
+
+    public Date getEndTime() {
+        return _intervals.isEmpty() ? null : _intervals.get(_intervals.size() - 1).getTimestamp();
+    }
+
+    /**
+     * Get the sum of a counter column over all intervals.
+     *
+     * @param column The column name, for example messages.
+     * @return total.
+     */
+    public long getTotal(String column) {
+        double total = 0.0;
+        for (IntervalStatistics interval : _intervals) {
+            Double value = interval.getValue(column);
+            if (value != null) {
+                total += value.doubleValue();
+            }
+        }
+        return Math.round(total);
+    }
+
+    /**
+     * Get the average rate per second for a counter column over all intervals.
+     *
+     * @param column The column name, for example messages.
+     * @return average rate.
+     */
+    public double getAverageRate(String column) {
+        double seconds = 0.0;
+        for (IntervalStatistics interval : _intervals) {
+            Double value = interval.getValue(INTERVAL_SECONDS_COLUMN);
+            if (value != null) {
+                seconds += value.doubleValue();
+            }
+        }
+        return seconds > 0.0 ? getTotal(column) / seconds : 0.0;
+    }
+
+    /**
+     * Get the highest rate per second for a counter column in any interval.
+     *
+     * @param column The column name, for example messages.
+     * @return peak rate.
+     */
+    public double getPeakRate(String column) {
+        double peak = 0.0;
+        for (IntervalStatistics interval : _intervals) {
+            Double value = interval.getValue(column + "_per_second");
+            if (value != null) {
+                peak = Math.max(peak, value.doubleValue());
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.List;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.jfree.data.time.FixedMillisecond;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+
+/**
+ * Report with charts for the statistics files written by producers and consumers. The statistics are logged at fixed
+ * intervals while the test is running, so unlike the message logs they include commits, rollbacks and latencies and
+ * they are available even if messages are not logged.
+ */
+public class StatisticsReport {
+    private static final String[] LATENCY_TYPES = { "send", "receive", "commit", "connect" };
+    private static final String[] LATENCY_PERCENTILES = { "p50", "p99", "p999" };
+    private final List<StatisticsFile> _files;
+
+    /**
+     * Constructor.
+     *
+     * @param files The statistics files.
+     */
+    public StatisticsReport(List<StatisticsFile> files) {
+        _files = files;
+    }
+
+    public List<StatisticsFile> getFiles() {
+        return _files;
+    }
+
+    /**
+     * Get a chart with messages per second for each file.
+     *
+     * @return image as base64-encoded data URI.
+     */
+    public String getBase64MessagesPerSecondImage() {
+        return createChart("Messages per second", "Messages", createRateSeries("messages", ""));
+    }
+
+    /**
+     * Get a chart with kilobytes per second for each file.
+     *
+     * @return image as base64-encoded data URI.
+     */
+    public String getBase64KilobytesPerSecondImage() {
+        TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection();
+        for (StatisticsFile file : _files) {
+            TimeSeries timeSeries = new TimeSeries(file.getName());
+            for (IntervalStatistics interval : file.getIntervals()) {
+                Double value = interval.getValue("bytes_per_second");
+                if (value != null) {
+                    timeSeries.addOrUpdate(new FixedMillisecond(interval.getTimestamp()), value.doubleValue() / 1024);
+                }
+            }
+            timeSeriesCollection.addSeries(timeSeries);
+        }
+        return createChart("Kilobytes per second", "Bytes (k)", timeSeriesCollection);
+    }
+
+    /**
+     * Get a chart with commits and rollbacks per second for each file.
+     *
+     * @return image as base64-encoded data URI.
+     */
+    public String getBase64CommitsAndRollbacksPerSecondImage() {
+        TimeSeriesCollection timeSeriesCollection = createRateSeries("commits", " commits");
+        for (Object timeSeries : createRateSeries("rollbacks", " rollbacks").getSeries()) {
+            timeSeriesCollection.addSeries((TimeSeries) timeSeries);
+        }
+        return createChart("Transactions per second", "Transactions", timeSeriesCollection);
+    }
+
+    /**
+     * Check if any file has connection churn statistics.
+     *
+     * @return true if connections were counted.
+     */
+    public boolean isConnectionChurnAvailable() {
+        for (StatisticsFile file : _files) {
+            if (file.hasColumn("connections")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a chart with connections per second for each file with connection churn statistics.
+     *
+     * @return image as base64-encoded data URI.
+     */
+    public String getBase64ConnectionsPerSecondImage() {
+        return createChart("Connections per second", "Connections", createRateSeries("connections", ""));
+    }
+
+    /**
+     * Check if any file has latencies.
+     *
+     * @return true if latencies were recorded.
+     */
+    public boolean isLatencyAvailable() {
+        for (StatisticsFile file : _files) {
+            for (String type : LATENCY_TYPES) {
+                if (file.getTotal(type + "_count") > 0L) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a chart with latency percentiles for each file and operation with recorded latencies.
+     *
+     * @return image as base64-encoded data URI.
+     */
+    public String getBase64LatencyImage() {
+        TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection();
+        for (StatisticsFile file : _files) {
+            for (String type : LATENCY_TYPES) {
+                if (file.getTotal(type + "_count") == 0L) {
+                    continue;
+                }
+                for (String percentile : LATENCY_PERCENTILES) {
+                    String column = type + "_" + percentile + "_ms";
+                    TimeSeries timeSeries = new TimeSeries(file.getName() + " " + type + " " + percentile);
+                    for (IntervalStatistics interval : file.getIntervals()) {
+                        Double value = interval.getValue(column);
+                        if (value != null) {
+                            timeSeries.addOrUpdate(new FixedMillisecond(interval.getTimestamp()), value);
+                        }
+                    }
+                    timeSeriesCollection.addSeries(timeSeries);
+                }
+            }
+        }
+        return createChart("Latency", "ms", timeSeriesCollection);
+    }
+
+    private TimeSeriesCollection createRateSeries(String column, String seriesSuffix) {
+        TimeSeriesCollection timeSeriesCollection = new TimeSeriesCollection();
+        for (StatisticsFile file : _files) {
+            TimeSeries timeSeries = new TimeSeries(file.getName() + seriesSuffix);
+            for (IntervalStatistics interval : file.getIntervals()) {
+                Double value = interval.getValue(column + "_per_second");
+                if (value != null) {
+                    timeSeries.addOrUpdate(new FixedMillisecond(interval.getTimestamp()), value);
+                }
+            }
+            timeSeriesCollection.addSeries(timeSeries);
+        }
+        return timeSeriesCollection;
+    }
+
+    private static String createChart(String title, String valueAxisLabel, TimeSeriesCollection timeSeriesCollection) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            JFreeChart chart = ChartFactory.createTimeSeriesChart(title, "Time", valueAxisLabel, timeSeriesCollection);
+            chart.getPlot().setBackgroundPaint(Color.WHITE);
+            ChartUtilities.writeChartAsPNG(bos, chart, 1024, 500);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+
+/**
+ * Reader for tab-separated text logs. The columns are identified by the header line.
+ */
+public class TextLogFileReader implements LogFileReader {
+    private static final char SEPARATOR = '\t';
+
+    @Override
+    public boolean read(File file, LogEntryHandler handler) throws IOException, SQLException {
+        try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(file), Charset.defaultCharset()))) {
+            String header = reader.readLine();
+            if (header == null) {
+                return true;
+            }
+            LogColumn[] columns = parseHeader(header);
+            LogEntry entry = new LogEntry();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                parseLine(line, columns, entry);
+                handler.handle(entry);
+            }
+        }
+        return true;
+    }
+
+    private static LogColumn[] parseHeader(String header) {
+        String[] names = header.split("\t");
+        LogColumn[] columns = new LogColumn[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = LogColumn.forHeaderName(names[i]);
+        }
+        return columns;
+    }
+
+    private static void parseLine(String line, LogColumn[] columns, LogEntry entry) {
+        entry.clear();
+        int start = 0;
+        for (int i = 0; i < columns.length && start <= line.length(); i++) {
+            int end = line.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = line.length();
+            }
+            if (end > start) {
+                setField(entry, columns[i], line.substring(start, end));
+            }
+            start = end + 1;
+        }
+    }
+
+    private static void setField(LogEntry entry, LogColumn column, String value) {
+        switch (column) {
+        case STATE:
+            entry.setState(value.charAt(0));
+            break;
+        case COMMIT_TIME:
+            entry.setCommitTime(Long.parseLong(value));
+            break;
+        case EVENT_TIME:
+            entry.setEventTime(Long.parseLong(value));
+            break;
+        case JMS_ID:
+            entry.setJmsId(value);
+            break;
+        case APPLICATION_ID:
+            entry.setApplicationId(value);
+            break;
+        case PAYLOAD_SIZE:
+            entry.setPayloadSize(Integer.valueOf(value));
+            break;
+        case DELAY_SECONDS:
+            entry.setDelaySeconds(Integer.parseInt(value));
+            break;
+        default:
+            break;
+        }
+    }
+}
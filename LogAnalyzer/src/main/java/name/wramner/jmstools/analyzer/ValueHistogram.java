@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+/**
+ * Exact histogram for int values such as payload sizes and flight times. Each distinct value is stored once with a
+ * count, so percentiles can be computed exactly without keeping all the values.
+ */
+public class ValueHistogram {
+    private final IntIntHashMap _counts = new IntIntHashMap();
+    private long _count;
+    private long _sum;
+    private int _min = Integer.MAX_VALUE;
+    private int _max = Integer.MIN_VALUE;
+
+    /**
+     * Add a value.
+     *
+     * @param value The value.
+     */
+    public void add(int value) {
+        _counts.addToValue(value, 1);
+        _count++;
+        _sum += value;
+        if (value < _min) {
+            _min = value;
+        }
+        if (value > _max) {
+            _max = value;
+        }
+    }
+
+    public long getCount() {
+        return _count;
+    }
+
+    public long getSum() {
+        return _sum;
+    }
+
+    /**
+     * Get the smallest value.
+     *
+     * @return min value or 0 if empty.
+     */
+    public int getMin() {
+        return _count > 0 ? _min : 0;
+    }
+
+    /**
+     * Get the largest value.
+     *
+     * @return max value or 0 if empty.
+     */
+    public int getMax() {
+        return _count > 0 ? _max : 0;
+    }
+
+    /**
+     * Get the median, the mean of the two middle values if the number of values is even.
+     *
+     * @return median or 0 if empty.
+     */
+    public int getMedian() {
+        if (_count == 0) {
+            return 0;
+        }
+        int[] sortedValues = _counts.keySet().toSortedArray();
+        if ((_count & 1L) == 1L) {
+            return getValueAt(sortedValues, _count / 2);
+        }
+        return (int) (((long) getValueAt(sortedValues, _count / 2 - 1) + getValueAt(sortedValues, _count / 2)) / 2L);
+    }
+
+    /**
+     * Get the value at the specified index in the sorted list of values.
+     *
+     * @param index The index.
+     * @return value or 0 if empty.
+     */
+    public int getValueAt(long index) {
+        return _count > 0 ? getValueAt(_counts.keySet().toSortedArray(), index) : 0;
+    }
+
+    private int getValueAt(int[] sortedValues, long index) {
+        long position = 0;
+        for (int value : sortedValues) {
+            position += _counts.get(value);
+            if (position > index) {
+                return value;
+            }
+        }
+        return _max;
+    }
+}
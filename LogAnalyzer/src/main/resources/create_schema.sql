@@ -4,12 +4,14 @@ create table if not exists consumed_messages (
   outcome_time   timestamp not null,
   consumed_time  timestamp not null,
   application_id varchar(256) null,
-  payload_size   integer null
+  payload_size   integer null,
+  app_key_hi     bigint null,
+  app_key_lo     bigint null
 );
 
 alter table consumed_messages add constraint cm_chk_outcome check (outcome in ('C', 'R', '?'));
 
-create index if not exists ix_cm_app_id on consumed_messages (application_id);
+create index if not exists ix_cm_app_key on consumed_messages (app_key_hi, app_key_lo);
 create index if not exists ix_cm_outcome_time on consumed_messages (outcome_time);
 create index if not exists ix_cm_consumed_time on consumed_messages (consumed_time);
 
@@ -21,24 +23,26 @@ create table if not exists produced_messages (
   outcome_time   timestamp not null,
   payload_size   integer null,
   delay_seconds  integer not null,
+  app_key_hi     bigint null,
+  app_key_lo     bigint null,
   constraint pk_produced_messages primary key (jms_id)
 );
 
 alter table produced_messages add constraint pm_chk_outcome check (outcome in ('C', 'R', '?'));
 
-create index if not exists ix_pm_app_id on produced_messages (application_id);
+create index if not exists ix_pm_app_key on produced_messages (app_key_hi, app_key_lo);
 create index if not exists ix_pm_outcome_time on produced_messages (outcome_time);
 create index if not exists ix_pm_produced_time on produced_messages (produced_time);
 
 create view if not exists ghost_messages as
   select cm.* from consumed_messages cm
-    join produced_messages pm on pm.application_id = cm.application_id
+    join produced_messages pm on pm.app_key_hi = cm.app_key_hi and pm.app_key_lo = cm.app_key_lo
     where pm.outcome = 'R';
 
 create view if not exists undead_messages as
   select * from consumed_messages cm
     where not exists (select * from produced_messages pm
-      where pm.application_id = cm.application_id)
+      where pm.app_key_hi = cm.app_key_hi and pm.app_key_lo = cm.app_key_lo)
       and cm.application_id is not null;
 
 create view if not exists alien_messages as
@@ -50,14 +54,15 @@ create view if not exists lost_messages as
     where pm.outcome = 'C'
       and pm.application_id is not null
       and not exists (select * from consumed_messages cm
-      where cm.application_id = pm.application_id
+      where cm.app_key_hi = pm.app_key_hi and cm.app_key_lo = pm.app_key_lo
         and cm.outcome in ('C', '?'));
 
 create view if not exists duplicate_messages as
-  select count(*) duplicates, application_id from consumed_messages
+  select count(*) duplicates, min(application_id) application_id, app_key_hi, app_key_lo
+    from consumed_messages
     where outcome = 'C'
     and application_id is not null
-    group by application_id
+    group by app_key_hi, app_key_lo
     having count(*) > 1;
 
 create view if not exists consumed_per_minute as
@@ -134,7 +139,7 @@ create view if not exists message_flight_time as
   select p.application_id, p.produced_time, c.consumed_time,
          datediff('millisecond', p.produced_time, c.consumed_time) flight_time_millis
   from produced_messages p
-  join consumed_messages c on c.application_id = p.application_id
+  join consumed_messages c on c.app_key_hi = p.app_key_hi and c.app_key_lo = p.app_key_lo
    and p.application_id is not null
   where p.outcome = 'C'
     and c.outcome = 'C';
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import name.wramner.jmstools.messagelog.MessageLogColumn;
+import name.wramner.jmstools.messagelog.MessageLogColumnType;
+import name.wramner.jmstools.messagelog.MessageLogFormat;
+import name.wramner.jmstools.messagelog.MessageLogWriter;
+import name.wramner.jmstools.messagelog.StreamMessageLogOutput;
+
+/**
+ * Test the {@link BinaryLogFileReader} with logs written by the binary message log writer.
+ *
+ * @author Erik Wramner
+ */
+public class BinaryLogFileReaderTest {
+    private static final String UUID_ID = "0b7f7a4e-2c7d-4b53-9a4e-3f9d1e2a5c61";
+    private static final String STRING_ID = "order-4711";
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testAllColumnTypesAreReadBack() throws IOException, SQLException {
+        File file = writeLog(true);
+        List<LogEntry> entries = new ArrayList<>();
+        assertTrue(new BinaryLogFileReader().read(file, entry -> entries.add(entry.copy())));
+        assertEquals(3, entries.size());
+
+        LogEntry entry = entries.get(0);
+        assertEquals('C', entry.getState());
+        assertTrue(entry.getCommitTime() > 0L);
+        assertEquals(1000L, entry.getEventTime());
+        assertEquals(UUID_ID, entry.getApplicationId());
+        assertEquals(Integer.valueOf(1024), entry.getPayloadSize());
+        assertEquals(5, entry.getDelaySeconds());
+        assertEquals("ID:1", entry.getJmsId());
+
+        entry = entries.get(1);
+        assertEquals('C', entry.getState());
+        assertEquals(2000L, entry.getEventTime());
+        assertEquals(STRING_ID, entry.getApplicationId());
+        assertNull(entry.getPayloadSize());
+        assertEquals(0, entry.getDelaySeconds());
+        assertEquals("ID:2", entry.getJmsId());
+
+        entry = entries.get(2);
+        assertEquals('R', entry.getState());
+        assertEquals(3000L, entry.getEventTime());
+        assertNull(entry.getApplicationId());
+        assertNull(entry.getJmsId());
+    }
+
+    @Test
+    public void testTruncatedLastEntryIsIgnored() throws IOException, SQLException {
+        File file = writeLog(true);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3L);
+        }
+        List<LogEntry> entries = new ArrayList<>();
+        assertFalse(new BinaryLogFileReader().read(file, entry -> entries.add(entry.copy())));
+        assertEquals(2, entries.size());
+        assertEquals("ID:2", entries.get(1).getJmsId());
+    }
+
+    @Test
+    public void testEmptyFileIsEmptyLog() throws IOException, SQLException {
+        File file = _folder.newFile("enqueued_messages_empty.bin");
+        assertTrue(new BinaryLogFileReader().read(file, entry -> {
+            throw new AssertionError("Unexpected entry");
+        }));
+    }
+
+    @Test
+    public void testFileWithHeaderOnlyIsEmptyLog() throws IOException, SQLException {
+        File file = writeLog(false);
+        assertTrue(new BinaryLogFileReader().read(file, entry -> {
+            throw new AssertionError("Unexpected entry");
+        }));
+    }
+
+    @Test
+    public void testTooLongStringLeavesNoBytesBehind() throws IOException, SQLException {
+        char[] chars = new char[70000];
+        Arrays.fill(chars, 'x');
+        String tooLong = new String(chars);
+        File file = _folder.newFile();
+        try (MessageLogWriter writer = MessageLogFormat.BINARY.createWriter(new StreamMessageLogOutput(file))) {
+            writer.writeHeader(new MessageLogColumn("ProducedTime", MessageLogColumnType.TIMESTAMP),
+                            new MessageLogColumn("ID", MessageLogColumnType.ID),
+                            new MessageLogColumn("Length", MessageLogColumnType.INT),
+                            new MessageLogColumn("DelaySeconds", MessageLogColumnType.INT),
+                            new MessageLogColumn("JMSID", MessageLogColumnType.STRING));
+            writer.addTimestamp(1000L);
+            try {
+                writer.addId(tooLong);
+                fail("Expected exception for too long id");
+            } catch (IllegalArgumentException e) {
+            }
+            writer.addId(STRING_ID);
+            writer.addInt(1024);
+            writer.addInt(5);
+            try {
+                writer.addString(tooLong);
+                fail("Expected exception for too long string");
+            } catch (IllegalArgumentException e) {
+            }
+            writer.addString("ID:1");
+            writer.endEntry();
+            writer.writePendingEntries('C');
+        }
+        List<LogEntry> entries = new ArrayList<>();
+        assertTrue(new BinaryLogFileReader().read(file, entry -> entries.add(entry.copy())));
+        assertEquals(1, entries.size());
+        assertEquals(STRING_ID, entries.get(0).getApplicationId());
+        assertEquals(Integer.valueOf(1024), entries.get(0).getPayloadSize());
+        assertEquals("ID:1", entries.get(0).getJmsId());
+    }
+
+    @Test
+    public void testTruncatedHeaderIsIgnored() throws IOException, SQLException {
+        File file = writeLog(false);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3L);
+        }
+        assertFalse(new BinaryLogFileReader().read(file, entry -> {
+            throw new AssertionError("Unexpected entry");
+        }));
+    }
+
+    private File writeLog(boolean withEntries) throws IOException {
+        File file = _folder.newFile();
+        try (MessageLogWriter writer = MessageLogFormat.BINARY.createWriter(new StreamMessageLogOutput(file))) {
+            writer.writeHeader(new MessageLogColumn("ProducedTime", MessageLogColumnType.TIMESTAMP),
+                            new MessageLogColumn("ID", MessageLogColumnType.ID),
+                            new MessageLogColumn("Length", MessageLogColumnType.INT),
+                            new MessageLogColumn("DelaySeconds", MessageLogColumnType.INT),
+                            new MessageLogColumn("JMSID", MessageLogColumnType.STRING));
+            if (withEntries) {
+                writer.addTimestamp(1000L);
+                writer.addId(UUID_ID);
+                writer.addInt(1024);
+                writer.addInt(5);
+                writer.addString("ID:1");
+                writer.endEntry();
+                writer.addTimestamp(2000L);
+                writer.addId(STRING_ID);
+                writer.addNull();
+                writer.addInt(0);
+                writer.addString("ID:2");
+                writer.endEntry();
+                writer.writePendingEntries('C');
+                writer.addTimestamp(3000L);
+                writer.addId(null);
+                writer.addNull();
+                writer.addInt(0);
+                writer.addString(null);
+                writer.endEntry();
+                writer.writePendingEntries('R');
+            }
+        }
+        return file;
+    }
+}
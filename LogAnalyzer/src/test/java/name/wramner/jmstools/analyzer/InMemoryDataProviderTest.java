@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.analyzer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import name.wramner.jmstools.messagelog.MessageLogColumn;
+import name.wramner.jmstools.messagelog.MessageLogColumnType;
+import name.wramner.jmstools.messagelog.MessageLogFormat;
+import name.wramner.jmstools.messagelog.MessageLogWriter;
+import name.wramner.jmstools.messagelog.StreamMessageLogOutput;
+
+/**
+ * Test the reconciliation of produced and consumed messages in the {@link InMemoryDataProvider}.
+ *
+ * @author Erik Wramner
+ */
+public class InMemoryDataProviderTest {
+    // Enough ids to make the application id table grow
+    private static final int DELIVERED_MESSAGES = 60000;
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testLostDuplicateGhostUndeadAndAlienMessagesAreCounted() throws IOException, SQLException {
+        String[] delivered = new String[DELIVERED_MESSAGES];
+        for (int i = 0; i < delivered.length; i++) {
+            delivered[i] = UUID.randomUUID().toString();
+        }
+        String lost = UUID.randomUUID().toString();
+        String lostWithStringId = "lost-4711";
+        String duplicate = UUID.randomUUID().toString();
+        String inDoubt = UUID.randomUUID().toString();
+        String ghost = UUID.randomUUID().toString();
+        String undead = UUID.randomUUID().toString();
+
+        File producedFile = _folder.newFile("enqueued_messages_1.log");
+        try (MessageLogWriter writer = createProducerLog(producedFile)) {
+            for (String id : delivered) {
+                logProduced(writer, id);
+            }
+            logProduced(writer, lost);
+            logProduced(writer, lostWithStringId);
+            logProduced(writer, duplicate);
+            logProduced(writer, inDoubt);
+            writer.writePendingEntries('C');
+            logProduced(writer, ghost);
+            writer.writePendingEntries('R');
+        }
+
+        File consumedFile = _folder.newFile("dequeued_messages_1.log");
+        try (MessageLogWriter writer = createConsumerLog(consumedFile)) {
+            for (String id : delivered) {
+                logConsumed(writer, id);
+            }
+            logConsumed(writer, duplicate);
+            logConsumed(writer, duplicate);
+            logConsumed(writer, ghost);
+            logConsumed(writer, undead);
+            logConsumed(writer, null);
+            writer.writePendingEntries('C');
+            logConsumed(writer, inDoubt);
+            writer.writePendingEntries('?');
+        }
+
+        InMemoryDataProvider dataProvider = new InMemoryDataProvider(Arrays.asList(producedFile, consumedFile));
+        assertEquals(DELIVERED_MESSAGES + 5 + DELIVERED_MESSAGES + 6, dataProvider.load());
+        assertEquals(0, dataProvider.getTruncatedFiles());
+        assertEquals(DELIVERED_MESSAGES + 5, dataProvider.getProducedMessageCount());
+        assertEquals(DELIVERED_MESSAGES + 6, dataProvider.getConsumedMessageCount());
+        assertEquals(2, dataProvider.getLostMessageCount());
+        assertEquals(2, dataProvider.getLostMessages().size());
+        assertEquals(1, dataProvider.getDuplicateMessageCount());
+        assertEquals(1, dataProvider.getGhostMessageCount());
+        assertEquals(ghost, dataProvider.getGhostMessages().get(0).getApplicationId());
+        assertEquals(1, dataProvider.getUndeadMessageCount());
+        assertEquals(undead, dataProvider.getUndeadMessages().get(0).getApplicationId());
+        assertEquals(1, dataProvider.getAlienMessageCount());
+        assertEquals(1, dataProvider.getInDoubtConsumedCount());
+    }
+
+    private static MessageLogWriter createProducerLog(File file) throws IOException {
+        MessageLogWriter writer = MessageLogFormat.TEXT.createWriter(new StreamMessageLogOutput(file));
+        writer.writeHeader(new MessageLogColumn("ProducedTime", MessageLogColumnType.TIMESTAMP),
+                        new MessageLogColumn("ID", MessageLogColumnType.ID),
+                        new MessageLogColumn("Length", MessageLogColumnType.INT),
+                        new MessageLogColumn("DelaySeconds", MessageLogColumnType.INT),
+                        new MessageLogColumn("JMSID", MessageLogColumnType.STRING));
+        return writer;
+    }
+
+    private static MessageLogWriter createConsumerLog(File file) throws IOException {
+        MessageLogWriter writer = MessageLogFormat.TEXT.createWriter(new StreamMessageLogOutput(file));
+        writer.writeHeader(new MessageLogColumn("ConsumedTime", MessageLogColumnType.TIMESTAMP),
+                        new MessageLogColumn("JMSID", MessageLogColumnType.STRING),
+                        new MessageLogColumn("ID", MessageLogColumnType.ID),
+                        new MessageLogColumn("Length", MessageLogColumnType.INT));
+        return writer;
+    }
+
+    private static void logProduced(MessageLogWriter writer, String id) {
+        writer.addTimestamp(System.currentTimeMillis());
+        writer.addId(id);
+        writer.addInt(100);
+        writer.addInt(0);
+        writer.addString("ID:" + id);
+        writer.endEntry();
+    }
+
+    private static void logConsumed(MessageLogWriter writer, String id) {
+        writer.addTimestamp(System.currentTimeMillis());
+        writer.addString("ID:" + id);
+        writer.addId(id);
+        writer.addInt(100);
+        writer.endEntry();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.jms.JMSException;
+
+/**
+ * In-memory broker for the loopback JMS provider. It holds the destinations for all connections created by the same
+ * connection factory and injects the configured latencies for sends, receives and commits. The broker lives in the
+ * client JVM, so a producer and a consumer in separate processes do not share messages. Instead the producer measures
+ * how fast JmsTools can send when the broker costs (almost) nothing and the consumer measures how fast it can receive
+ * messages preloaded into the destination.
+ * <p>
+ * Topics are supported but behave like queues, each message is delivered to one consumer.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackBroker {
+    private final ConcurrentMap<String, LoopbackDestination> _queues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LoopbackDestination> _topics = new ConcurrentHashMap<>();
+    private final AtomicLong _messageIdSequence = new AtomicLong();
+    private final int _maxDepth;
+    private final long _sendLatencyNanos;
+    private final long _receiveLatencyNanos;
+    private final long _commitLatencyNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param maxDepth The maximum number of messages per destination, the oldest messages are dropped beyond that.
+     * @param sendLatencyMicros The latency to inject for every send in microseconds.
+     * @param receiveLatencyMicros The latency to inject for every received message in microseconds.
+     * @param commitLatencyMicros The latency to inject for every commit or rollback in microseconds.
+     */
+    public LoopbackBroker(int maxDepth, int sendLatencyMicros, int receiveLatencyMicros, int commitLatencyMicros) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("The maximum depth must be at least 1");
+        }
+        _maxDepth = maxDepth;
+        _sendLatencyNanos = TimeUnit.MICROSECONDS.toNanos(sendLatencyMicros);
+        _receiveLatencyNanos = TimeUnit.MICROSECONDS.toNanos(receiveLatencyMicros);
+        _commitLatencyNanos = TimeUnit.MICROSECONDS.toNanos(commitLatencyMicros);
+    }
+
+    /**
+     * Get a queue, creating it on demand.
+     *
+     * @param name The queue name.
+     * @return queue.
+     */
+    public LoopbackDestination getQueue(String name) {
+        return _queues.computeIfAbsent(name, n -> new LoopbackDestination(n, true, _maxDepth));
+    }
+
+    /**
+     * Get a topic, creating it on demand.
+     *
+     * @param name The topic name.
+     * @return topic.
+     */
+    public LoopbackDestination getTopic(String name) {
+        return _topics.computeIfAbsent(name, n -> new LoopbackDestination(n, false, _maxDepth));
+    }
+
+    /**
+     * Fill a destination with text messages, typically for a consumer test.
+     *
+     * @param destination The destination.
+     * @param count The number of messages.
+     * @param size The number of characters in each message.
+     * @throws JMSException on errors.
+     */
+    public void preload(LoopbackDestination destination, int count, int size) throws JMSException {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        String text = sb.toString();
+        for (int i = 0; i < count; i++) {
+            LoopbackTextMessage msg = new LoopbackTextMessage();
+            msg.setText(text);
+            msg.setJMSMessageID(nextMessageId());
+            msg.setJMSTimestamp(System.currentTimeMillis());
+            msg.setJMSDestination(destination);
+            destination.add(msg);
+        }
+    }
+
+    /**
+     * Get the maximum number of messages per destination.
+     *
+     * @return maximum depth.
+     */
+    public int getMaxDepth() {
+        return _maxDepth;
+    }
+
+    /**
+     * Create a new unique message id.
+     *
+     * @return message id.
+     */
+    String nextMessageId() {
+        return "ID:loopback-" + _messageIdSequence.incrementAndGet();
+    }
+
+    /**
+     * Pause for the send latency.
+     */
+    void pauseForSend() {
+        pause(_sendLatencyNanos);
+    }
+
+    /**
+     * Pause for the receive latency.
+     */
+    void pauseForReceive() {
+        pause(_receiveLatencyNanos);
+    }
+
+    /**
+     * Pause for the commit latency.
+     */
+    void pauseForCommit() {
+        pause(_commitLatencyNanos);
+    }
+
+    /**
+     * Create an exception for a JMS feature that the loopback provider does not support.
+     *
+     * @param feature The feature.
+     * @return exception to throw.
+     */
+    static JMSException unsupported(String feature) {
+        return new JMSException(feature + " is not supported by the loopback provider");
+    }
+
+    private static void pause(long nanos) {
+        if (nanos > 0L) {
+            long deadline = System.nanoTime() + nanos;
+            for (long remaining = nanos; remaining > 0L; remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+}
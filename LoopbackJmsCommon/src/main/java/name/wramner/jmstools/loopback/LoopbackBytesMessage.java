@@ -0,0 +1,383 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageEOFException;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageNotReadableException;
+import javax.jms.MessageNotWriteableException;
+
+/**
+ * Bytes message for the loopback provider. A new message is write-only until it is reset or sent, received messages
+ * are read-only until the body is cleared.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackBytesMessage extends LoopbackMessage implements BytesMessage {
+    private ByteArrayOutputStream _out;
+    private DataOutputStream _dataOut;
+    private byte[] _body;
+    private DataInputStream _dataIn;
+
+    /**
+     * Constructor for a new, empty and writable message.
+     */
+    public LoopbackBytesMessage() {
+        clearBody();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    LoopbackMessage copy() {
+        LoopbackBytesMessage msg = copyHeadersAndPropertiesTo(new LoopbackBytesMessage());
+        msg.setBodyForReading(_body != null ? _body : _out.toByteArray());
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBodyLength() throws JMSException {
+        if (_dataIn == null) {
+            throw new MessageNotReadableException("The message is write-only");
+        }
+        return _body.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean readBoolean() throws JMSException {
+        return read(DataInputStream::readBoolean).booleanValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte readByte() throws JMSException {
+        return read(DataInputStream::readByte).byteValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int readUnsignedByte() throws JMSException {
+        return read(DataInputStream::readUnsignedByte).intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short readShort() throws JMSException {
+        return read(DataInputStream::readShort).shortValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int readUnsignedShort() throws JMSException {
+        return read(DataInputStream::readUnsignedShort).intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public char readChar() throws JMSException {
+        return read(DataInputStream::readChar).charValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int readInt() throws JMSException {
+        return read(DataInputStream::readInt).intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long readLong() throws JMSException {
+        return read(DataInputStream::readLong).longValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public float readFloat() throws JMSException {
+        return read(DataInputStream::readFloat).floatValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double readDouble() throws JMSException {
+        return read(DataInputStream::readDouble).doubleValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String readUTF() throws JMSException {
+        return read(in -> in.readUTF());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int readBytes(byte[] value) throws JMSException {
+        return readBytes(value, value.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int readBytes(byte[] value, int length) throws JMSException {
+        return read(in -> Integer.valueOf(in.read(value, 0, length))).intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeBoolean(boolean value) throws JMSException {
+        write(out -> out.writeBoolean(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeByte(byte value) throws JMSException {
+        write(out -> out.writeByte(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeShort(short value) throws JMSException {
+        write(out -> out.writeShort(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeChar(char value) throws JMSException {
+        write(out -> out.writeChar(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeInt(int value) throws JMSException {
+        write(out -> out.writeInt(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeLong(long value) throws JMSException {
+        write(out -> out.writeLong(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeFloat(float value) throws JMSException {
+        write(out -> out.writeFloat(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDouble(double value) throws JMSException {
+        write(out -> out.writeDouble(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeUTF(String value) throws JMSException {
+        write(out -> out.writeUTF(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeBytes(byte[] value) throws JMSException {
+        write(out -> out.write(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeBytes(byte[] value, int offset, int length) throws JMSException {
+        write(out -> out.write(value, offset, length));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeObject(Object value) throws JMSException {
+        if (value instanceof Boolean) {
+            writeBoolean(((Boolean) value).booleanValue());
+        } else if (value instanceof Byte) {
+            writeByte(((Byte) value).byteValue());
+        } else if (value instanceof Short) {
+            writeShort(((Short) value).shortValue());
+        } else if (value instanceof Character) {
+            writeChar(((Character) value).charValue());
+        } else if (value instanceof Integer) {
+            writeInt(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            writeLong(((Long) value).longValue());
+        } else if (value instanceof Float) {
+            writeFloat(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof String) {
+            writeUTF((String) value);
+        } else if (value instanceof byte[]) {
+            writeBytes((byte[]) value);
+        } else {
+            throw new MessageFormatException(
+                            "Unsupported type " + (value != null ? value.getClass().getName() : "null"));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        setBodyForReading(_body != null ? _body : _out.toByteArray());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void clearBody() {
+        _body = null;
+        _dataIn = null;
+        _out = new ByteArrayOutputStream();
+        _dataOut = new DataOutputStream(_out);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T getBody(Class<T> c) throws JMSException {
+        if (_body == null || _body.length == 0) {
+            return null;
+        }
+        if (!c.isAssignableFrom(byte[].class)) {
+            throw new MessageFormatException("Bytes message body cannot be returned as " + c.getName());
+        }
+        return c.cast(_body.clone());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isBodyAssignableTo(Class c) {
+        return _body == null || _body.length == 0 || c.isAssignableFrom(byte[].class);
+    }
+
+    private void setBodyForReading(byte[] body) {
+        _body = body;
+        _dataIn = new DataInputStream(new ByteArrayInputStream(body));
+        _out = null;
+        _dataOut = null;
+    }
+
+    private <T> T read(Reader<T> reader) throws JMSException {
+        if (_dataIn == null) {
+            throw new MessageNotReadableException("The message is write-only");
+        }
+        try {
+            return reader.read(_dataIn);
+        } catch (EOFException e) {
+            throw new MessageEOFException("End of message reached");
+        } catch (IOException e) {
+            throw createJMSException(e);
+        }
+    }
+
+    private void write(Writer writer) throws JMSException {
+        if (_dataOut == null) {
+            throw new MessageNotWriteableException("The message is read-only");
+        }
+        try {
+            writer.write(_dataOut);
+        } catch (IOException e) {
+            throw createJMSException(e);
+        }
+    }
+
+    private static JMSException createJMSException(IOException cause) {
+        JMSException e = new JMSException(cause.getMessage());
+        e.setLinkedException(cause);
+        return e;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.ConnectionConsumer;
+import javax.jms.ConnectionMetaData;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.IllegalStateException;
+import javax.jms.JMSException;
+import javax.jms.ServerSessionPool;
+import javax.jms.Session;
+import javax.jms.Topic;
+import javax.jms.XAConnection;
+import javax.jms.XASession;
+
+/**
+ * Connection to the loopback broker. Consumers receive messages only while the connection is started.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackConnection implements XAConnection {
+    private final List<LoopbackSession> _sessions = new CopyOnWriteArrayList<>();
+    private final LoopbackBroker _broker;
+    private String _clientId;
+    private ExceptionListener _exceptionListener;
+    private boolean _started;
+    private volatile boolean _closed;
+
+    /**
+     * Constructor.
+     *
+     * @param broker The broker.
+     */
+    LoopbackConnection(LoopbackBroker broker) {
+        _broker = broker;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session createSession(boolean transacted, int acknowledgeMode) throws JMSException {
+        return createSession(transacted ? Session.SESSION_TRANSACTED : acknowledgeMode);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session createSession(int sessionMode) throws JMSException {
+        return addSession(new LoopbackSession(this, sessionMode == Session.SESSION_TRANSACTED, false, sessionMode));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session createSession() throws JMSException {
+        return createSession(Session.AUTO_ACKNOWLEDGE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XASession createXASession() throws JMSException {
+        return addSession(new LoopbackSession(this, false, true, Session.SESSION_TRANSACTED));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getClientID() {
+        return _clientId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setClientID(String clientId) {
+        _clientId = clientId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionMetaData getMetaData() {
+        return new LoopbackConnectionMetaData();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ExceptionListener getExceptionListener() {
+        return _exceptionListener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setExceptionListener(ExceptionListener listener) {
+        _exceptionListener = listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void start() throws JMSException {
+        checkNotClosed();
+        _started = true;
+        notifyAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void stop() throws JMSException {
+        checkNotClosed();
+        _started = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            _closed = true;
+            _started = false;
+            notifyAll();
+        }
+        _sessions.forEach(LoopbackSession::close);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionConsumer createConnectionConsumer(Destination destination, String messageSelector,
+                    ServerSessionPool sessionPool, int maxMessages) throws JMSException {
+        throw LoopbackBroker.unsupported("Connection consumer");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionConsumer createSharedConnectionConsumer(Topic topic, String subscriptionName,
+                    String messageSelector, ServerSessionPool sessionPool, int maxMessages) throws JMSException {
+        throw LoopbackBroker.unsupported("Connection consumer");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionConsumer createDurableConnectionConsumer(Topic topic, String subscriptionName,
+                    String messageSelector, ServerSessionPool sessionPool, int maxMessages) throws JMSException {
+        throw LoopbackBroker.unsupported("Connection consumer");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionConsumer createSharedDurableConnectionConsumer(Topic topic, String subscriptionName,
+                    String messageSelector, ServerSessionPool sessionPool, int maxMessages) throws JMSException {
+        throw LoopbackBroker.unsupported("Connection consumer");
+    }
+
+    /**
+     * Get the broker.
+     *
+     * @return broker.
+     */
+    LoopbackBroker getBroker() {
+        return _broker;
+    }
+
+    /**
+     * Wait for the connection to be started.
+     *
+     * @param timeoutMillis The maximum time to wait or a negative value not to wait at all.
+     * @return true if started, false if not started within the timeout or closed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    synchronized boolean awaitStarted(long timeoutMillis) throws InterruptedException {
+        if (!_started && !_closed && timeoutMillis > 0L) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            long remainingMillis = timeoutMillis;
+            while (!_started && !_closed && remainingMillis > 0L) {
+                wait(remainingMillis);
+                remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+        }
+        return _started;
+    }
+
+    /**
+     * Remove a closed session.
+     *
+     * @param session The session.
+     */
+    void sessionClosed(LoopbackSession session) {
+        _sessions.remove(session);
+    }
+
+    private LoopbackSession addSession(LoopbackSession session) throws JMSException {
+        checkNotClosed();
+        _sessions.add(session);
+        return session;
+    }
+
+    private void checkNotClosed() throws IllegalStateException {
+        if (_closed) {
+            throw new IllegalStateException("The connection is closed");
+        }
+    }
+
+    /**
+     * Meta data for the loopback provider.
+     */
+    private static class LoopbackConnectionMetaData implements ConnectionMetaData {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getJMSVersion() {
+            return "2.0";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getJMSMajorVersion() {
+            return 2;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getJMSMinorVersion() {
+            return 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getJMSProviderName() {
+            return "JmsTools loopback";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getProviderVersion() {
+            return "1.0";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getProviderMajorVersion() {
+            return 1;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getProviderMinorVersion() {
+            return 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Enumeration<String> getJMSXPropertyNames() {
+            return Collections.emptyEnumeration();
+        }
+    }
+}
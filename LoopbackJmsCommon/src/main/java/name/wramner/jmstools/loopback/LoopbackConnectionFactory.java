@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.JMSRuntimeException;
+import javax.jms.XAConnection;
+import javax.jms.XAConnectionFactory;
+import javax.jms.XAJMSContext;
+
+/**
+ * Connection factory for the loopback provider, a minimal in-memory JMS provider with queues, local and XA
+ * transactions and configurable latency. It is intended for measuring the overhead in JmsTools itself, as the provider
+ * does very little. All connections from the same factory share the same broker. The simplified JMS 2.0 API with
+ * {@link JMSContext} is not supported.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackConnectionFactory implements ConnectionFactory, XAConnectionFactory {
+    private final LoopbackBroker _broker;
+
+    /**
+     * Constructor.
+     *
+     * @param broker The broker.
+     */
+    public LoopbackConnectionFactory(LoopbackBroker broker) {
+        _broker = broker;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection createConnection() {
+        return new LoopbackConnection(_broker);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection createConnection(String userName, String password) {
+        return createConnection();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XAConnection createXAConnection() {
+        return new LoopbackConnection(_broker);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XAConnection createXAConnection(String userName, String password) {
+        return createXAConnection();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JMSContext createContext() {
+        throw unsupportedContext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JMSContext createContext(String userName, String password) {
+        throw unsupportedContext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JMSContext createContext(String userName, String password, int sessionMode) {
+        throw unsupportedContext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JMSContext createContext(int sessionMode) {
+        throw unsupportedContext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XAJMSContext createXAContext() {
+        throw unsupportedContext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XAJMSContext createXAContext(String userName, String password) {
+        throw unsupportedContext();
+    }
+
+    private static JMSRuntimeException unsupportedContext() {
+        return new JMSRuntimeException("JMSContext is not supported by the loopback provider");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jms.Queue;
+import javax.jms.Topic;
+
+/**
+ * Queue or topic in the loopback broker. Messages are kept in memory in FIFO order. When the destination is full the
+ * oldest message is dropped, as the producer often runs without a consumer. Messages that are rolled back are
+ * returned to the head of the destination.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackDestination implements Queue, Topic {
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _notEmpty = _lock.newCondition();
+    private final Deque<LoopbackMessage> _messages = new ArrayDeque<>();
+    private final String _name;
+    private final boolean _queue;
+    private final int _maxDepth;
+    private long _droppedMessages;
+
+    /**
+     * Constructor.
+     *
+     * @param name The destination name.
+     * @param queue The queue flag, false for a topic.
+     * @param maxDepth The maximum number of messages.
+     */
+    LoopbackDestination(String name, boolean queue, int maxDepth) {
+        _name = name;
+        _queue = queue;
+        _maxDepth = maxDepth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getQueueName() {
+        return _name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getTopicName() {
+        return _name;
+    }
+
+    /**
+     * Get the number of messages in the destination.
+     *
+     * @return depth.
+     */
+    public int getDepth() {
+        _lock.lock();
+        try {
+            return _messages.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of messages dropped because the destination was full.
+     *
+     * @return dropped messages.
+     */
+    public long getDroppedMessages() {
+        _lock.lock();
+        try {
+            return _droppedMessages;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Add a message at the tail, dropping the oldest message if the destination is full.
+     *
+     * @param msg The message.
+     */
+    void add(LoopbackMessage msg) {
+        _lock.lock();
+        try {
+            addLast(msg);
+            _notEmpty.signal();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Add messages at the tail in order, dropping the oldest messages if the destination is full.
+     *
+     * @param messages The messages.
+     */
+    void addAll(List<LoopbackMessage> messages) {
+        _lock.lock();
+        try {
+            messages.forEach(this::addLast);
+            _notEmpty.signalAll();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Return messages that have been rolled back to the head, keeping their order.
+     *
+     * @param messages The messages.
+     */
+    void returnAll(List<LoopbackMessage> messages) {
+        _lock.lock();
+        try {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                _messages.addFirst(messages.get(i));
+            }
+            _notEmpty.signalAll();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the message at the head, waiting for one if the destination is empty.
+     *
+     * @param timeoutMillis The maximum time to wait, 0 to wait forever or a negative value not to wait at all.
+     * @return message or null if there was none within the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    LoopbackMessage poll(long timeoutMillis) throws InterruptedException {
+        _lock.lock();
+        try {
+            if (timeoutMillis == 0L) {
+                while (_messages.isEmpty()) {
+                    _notEmpty.await();
+                }
+            } else if (timeoutMillis > 0L) {
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                while (_messages.isEmpty() && remainingNanos > 0L) {
+                    remainingNanos = _notEmpty.awaitNanos(remainingNanos);
+                }
+            }
+            return _messages.pollFirst();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return (_queue ? "queue://" : "topic://") + _name;
+    }
+
+    private void addLast(LoopbackMessage msg) {
+        if (_messages.size() >= _maxDepth) {
+            _messages.pollFirst();
+            _droppedMessages++;
+        }
+        _messages.addLast(msg);
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+
+/**
+ * Message without a body for the loopback provider and base class for the other message types. Properties are kept in
+ * a map and converted as required by the JMS specification. Messages are copied when they are sent, so the sender can
+ * reuse them freely.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackMessage implements Message {
+    private Map<String, Object> _properties = new HashMap<>();
+    private String _messageId;
+    private long _timestamp;
+    private String _correlationId;
+    private Destination _replyTo;
+    private Destination _destination;
+    private int _deliveryMode = DeliveryMode.PERSISTENT;
+    private boolean _redelivered;
+    private String _type;
+    private long _expiration;
+    private long _deliveryTime;
+    private int _priority = Message.DEFAULT_PRIORITY;
+
+    /**
+     * Create a copy of the message with headers, properties and body.
+     *
+     * @return copy.
+     * @throws JMSException on failure to copy the body.
+     */
+    LoopbackMessage copy() throws JMSException {
+        return copyHeadersAndPropertiesTo(new LoopbackMessage());
+    }
+
+    /**
+     * Copy headers and properties to another message.
+     *
+     * @param <T> The message type.
+     * @param target The target message.
+     * @return the target message.
+     */
+    <T extends LoopbackMessage> T copyHeadersAndPropertiesTo(T target) {
+        LoopbackMessage msg = target;
+        msg._properties = new HashMap<>(_properties);
+        msg._messageId = _messageId;
+        msg._timestamp = _timestamp;
+        msg._correlationId = _correlationId;
+        msg._replyTo = _replyTo;
+        msg._destination = _destination;
+        msg._deliveryMode = _deliveryMode;
+        msg._redelivered = _redelivered;
+        msg._type = _type;
+        msg._expiration = _expiration;
+        msg._deliveryTime = _deliveryTime;
+        msg._priority = _priority;
+        return target;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getJMSMessageID() {
+        return _messageId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSMessageID(String id) {
+        _messageId = id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getJMSTimestamp() {
+        return _timestamp;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSTimestamp(long timestamp) {
+        _timestamp = timestamp;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] getJMSCorrelationIDAsBytes() {
+        return _correlationId != null ? _correlationId.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSCorrelationIDAsBytes(byte[] correlationId) {
+        _correlationId = correlationId != null ? new String(correlationId, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSCorrelationID(String correlationId) {
+        _correlationId = correlationId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getJMSCorrelationID() {
+        return _correlationId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Destination getJMSReplyTo() {
+        return _replyTo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSReplyTo(Destination replyTo) {
+        _replyTo = replyTo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Destination getJMSDestination() {
+        return _destination;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSDestination(Destination destination) {
+        _destination = destination;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getJMSDeliveryMode() {
+        return _deliveryMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSDeliveryMode(int deliveryMode) {
+        _deliveryMode = deliveryMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getJMSRedelivered() {
+        return _redelivered;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSRedelivered(boolean redelivered) {
+        _redelivered = redelivered;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getJMSType() {
+        return _type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSType(String type) {
+        _type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getJMSExpiration() {
+        return _expiration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSExpiration(long expiration) {
+        _expiration = expiration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getJMSDeliveryTime() {
+        return _deliveryTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSDeliveryTime(long deliveryTime) {
+        _deliveryTime = deliveryTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getJMSPriority() {
+        return _priority;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setJMSPriority(int priority) {
+        _priority = priority;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearProperties() {
+        _properties.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean propertyExists(String name) {
+        return _properties.containsKey(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getBooleanProperty(String name) throws JMSException {
+        Object value = _properties.get(name);
+        if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue();
+        }
+        return Boolean.valueOf(getStringForConversion(name, value)).booleanValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte getByteProperty(String name) throws JMSException {
+        Object value = _properties.get(name);
+        if (value instanceof Byte) {
+            return ((Byte) value).byteValue();
+        }
+        return Byte.valueOf(getStringForConversion(name, value)).byteValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public short getShortProperty(String name) throws JMSException {
+        Object value = _properties.get(name);
+        if (value instanceof Short || value instanceof Byte) {
+            return ((Number) value).shortValue();
+        }
+        return Short.valueOf(getStringForConversion(name, value)).shortValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIntProperty(String name) throws JMSException {
+        Object value = _properties.get(name);
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        }
+        return Integer.valueOf(getStringForConversion(name, value)).intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLongProperty(String name) throws JMSException {
+        Object value = _properties.get(name);
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return Long.valueOf(getStringForConversion(name, value)).longValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public float getFloatProperty(String name) throws JMSException {
+        Object value = _properties.get(name);
+        if (value instanceof Float) {
+            return ((Float) value).floatValue();
+        }
+        return Float.valueOf(getStringForConversion(name, value)).floatValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getDoubleProperty(String name) throws JMSException {
+        Object value = _properties.get(name);
+        if (value instanceof Double || value instanceof Float) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.valueOf(getStringForConversion(name, value)).doubleValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getStringProperty(String name) {
+        Object value = _properties.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getObjectProperty(String name) {
+        return _properties.get(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Enumeration<String> getPropertyNames() {
+        return Collections.enumeration(_properties.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBooleanProperty(String name, boolean value) {
+        setProperty(name, Boolean.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setByteProperty(String name, byte value) {
+        setProperty(name, Byte.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setShortProperty(String name, short value) {
+        setProperty(name, Short.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setIntProperty(String name, int value) {
+        setProperty(name, Integer.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setLongProperty(String name, long value) {
+        setProperty(name, Long.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFloatProperty(String name, float value) {
+        setProperty(name, Float.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDoubleProperty(String name, double value) {
+        setProperty(name, Double.valueOf(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setStringProperty(String name, String value) {
+        setProperty(name, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setObjectProperty(String name, Object value) throws JMSException {
+        if (value != null && !(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+            throw new MessageFormatException("Unsupported property type " + value.getClass().getName());
+        }
+        setProperty(name, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void acknowledge() {
+        // Messages are acknowledged when received or committed
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearBody() throws JMSException {
+        // No body
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T getBody(Class<T> c) throws JMSException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isBodyAssignableTo(Class c) {
+        return true;
+    }
+
+    private void setProperty(String name, Object value) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Property names must not be empty");
+        }
+        _properties.put(name, value);
+    }
+
+    private static String getStringForConversion(String name, Object value) throws MessageFormatException {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        throw new MessageFormatException(
+                        "Property " + name + " cannot be converted from " + value.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import javax.jms.IllegalStateException;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Message consumer for the loopback provider. Messages are received synchronously or delivered to a message listener
+ * by a dispatcher thread while the connection is started.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackMessageConsumer implements MessageConsumer {
+    private static final long POLL_INTERVAL_MILLIS = 100L;
+    private final Logger _logger = LoggerFactory.getLogger(getClass());
+    private final LoopbackSession _session;
+    private final LoopbackDestination _destination;
+    private volatile MessageListener _listener;
+    private volatile boolean _closed;
+
+    /**
+     * Constructor.
+     *
+     * @param session The session.
+     * @param destination The destination.
+     */
+    LoopbackMessageConsumer(LoopbackSession session, LoopbackDestination destination) {
+        _session = session;
+        _destination = destination;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getMessageSelector() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageListener getMessageListener() {
+        return _listener;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMessageListener(MessageListener listener) throws JMSException {
+        checkNotClosed();
+        MessageListener previousListener = _listener;
+        _listener = listener;
+        if (listener != null && previousListener == null) {
+            Thread t = new Thread(this::dispatchMessages, "LoopbackDispatcher-" + _destination);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Message receive() throws JMSException {
+        Message msg = null;
+        while (msg == null && !_closed) {
+            msg = receive(POLL_INTERVAL_MILLIS);
+        }
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Message receive(long timeout) throws JMSException {
+        if (timeout == 0L) {
+            return receive();
+        }
+        return receiveMessage(timeout);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Message receiveNoWait() throws JMSException {
+        return receiveMessage(-1L);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (!_closed) {
+            _closed = true;
+            _listener = null;
+            _session.consumerClosed(this);
+        }
+    }
+
+    private Message receiveMessage(long timeoutMillis) throws JMSException {
+        checkNotClosed();
+        if (_listener != null) {
+            throw new IllegalStateException("The consumer has a message listener");
+        }
+        return takeMessage(timeoutMillis);
+    }
+
+    private LoopbackMessage takeMessage(long timeoutMillis) {
+        try {
+            if (!_session.getConnection().awaitStarted(timeoutMillis)) {
+                return null;
+            }
+            LoopbackMessage msg = _destination.poll(timeoutMillis);
+            if (msg != null) {
+                _session.getConnection().getBroker().pauseForReceive();
+                _session.delivered(msg);
+            }
+            return msg;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void dispatchMessages() {
+        MessageListener listener;
+        while ((listener = _listener) != null) {
+            LoopbackMessage msg = takeMessage(POLL_INTERVAL_MILLIS);
+            if (msg != null) {
+                try {
+                    listener.onMessage(msg);
+                } catch (RuntimeException e) {
+                    _logger.warn("Message listener failed, message will be redelivered", e);
+                    _session.redeliver(msg);
+                }
+            }
+        }
+    }
+
+    private void checkNotClosed() throws JMSException {
+        _session.checkNotClosed();
+        if (_closed) {
+            throw new IllegalStateException("The consumer is closed");
+        }
+    }
+}
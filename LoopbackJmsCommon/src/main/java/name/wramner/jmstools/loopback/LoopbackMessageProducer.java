@@ -0,0 +1,260 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import javax.jms.CompletionListener;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.IllegalStateException;
+import javax.jms.InvalidDestinationException;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageProducer;
+
+/**
+ * Message producer for the loopback provider. Messages are copied when sent, after the headers have been set on the
+ * original message. Asynchronous sends complete before the send method returns and call the completion listener in
+ * the sending thread.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackMessageProducer implements MessageProducer {
+    private final LoopbackSession _session;
+    private final LoopbackDestination _destination;
+    private boolean _disableMessageId;
+    private boolean _disableMessageTimestamp;
+    private int _deliveryMode = DeliveryMode.PERSISTENT;
+    private int _priority = Message.DEFAULT_PRIORITY;
+    private long _timeToLive = Message.DEFAULT_TIME_TO_LIVE;
+    private long _deliveryDelay = Message.DEFAULT_DELIVERY_DELAY;
+    private volatile boolean _closed;
+
+    /**
+     * Constructor.
+     *
+     * @param session The session.
+     * @param destination The destination or null to specify it for each send.
+     */
+    LoopbackMessageProducer(LoopbackSession session, LoopbackDestination destination) {
+        _session = session;
+        _destination = destination;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDisableMessageID(boolean value) {
+        _disableMessageId = value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getDisableMessageID() {
+        return _disableMessageId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDisableMessageTimestamp(boolean value) {
+        _disableMessageTimestamp = value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getDisableMessageTimestamp() {
+        return _disableMessageTimestamp;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDeliveryMode(int deliveryMode) {
+        _deliveryMode = deliveryMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDeliveryMode() {
+        return _deliveryMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPriority(int priority) {
+        _priority = priority;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPriority() {
+        return _priority;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setTimeToLive(long timeToLive) {
+        _timeToLive = timeToLive;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeToLive() {
+        return _timeToLive;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDeliveryDelay(long deliveryDelay) {
+        _deliveryDelay = deliveryDelay;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDeliveryDelay() {
+        return _deliveryDelay;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Destination getDestination() {
+        return _destination;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        _closed = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Message message) throws JMSException {
+        send(_destination, message, _deliveryMode, _priority, _timeToLive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Message message, int deliveryMode, int priority, long timeToLive) throws JMSException {
+        send(_destination, message, deliveryMode, priority, timeToLive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Destination destination, Message message) throws JMSException {
+        send(destination, message, _deliveryMode, _priority, _timeToLive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive)
+                    throws JMSException {
+        if (_closed) {
+            throw new IllegalStateException("The producer is closed");
+        }
+        if (!(destination instanceof LoopbackDestination)) {
+            throw new InvalidDestinationException("Not a loopback destination: " + destination);
+        }
+        if (!(message instanceof LoopbackMessage)) {
+            throw new MessageFormatException("Only messages created by loopback sessions can be sent");
+        }
+        long now = System.currentTimeMillis();
+        message.setJMSDestination(destination);
+        message.setJMSDeliveryMode(deliveryMode);
+        message.setJMSPriority(priority);
+        message.setJMSExpiration(timeToLive > 0L ? now + timeToLive : 0L);
+        message.setJMSDeliveryTime(now + _deliveryDelay);
+        message.setJMSTimestamp(_disableMessageTimestamp ? 0L : now);
+        message.setJMSMessageID(_disableMessageId ? null : _session.getConnection().getBroker().nextMessageId());
+        _session.getConnection().getBroker().pauseForSend();
+        _session.send(((LoopbackMessage) message).copy());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Message message, CompletionListener completionListener) throws JMSException {
+        send(_destination, message, _deliveryMode, _priority, _timeToLive, completionListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Message message, int deliveryMode, int priority, long timeToLive,
+                    CompletionListener completionListener) throws JMSException {
+        send(_destination, message, deliveryMode, priority, timeToLive, completionListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Destination destination, Message message, CompletionListener completionListener)
+                    throws JMSException {
+        send(destination, message, _deliveryMode, _priority, _timeToLive, completionListener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send(Destination destination, Message message, int deliveryMode, int priority, long timeToLive,
+                    CompletionListener completionListener) throws JMSException {
+        try {
+            send(destination, message, deliveryMode, priority, timeToLive);
+        } catch (JMSException e) {
+            completionListener.onException(message, e);
+            return;
+        }
+        completionListener.onCompletion(message);
+    }
+}
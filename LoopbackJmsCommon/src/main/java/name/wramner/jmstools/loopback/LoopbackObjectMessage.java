@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import javax.jms.JMSException;
+import javax.jms.MessageFormatException;
+import javax.jms.ObjectMessage;
+
+/**
+ * Object message for the loopback provider. The object is serialized when the message is sent and deserialized when
+ * the receiver asks for it, like a real provider would do.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackObjectMessage extends LoopbackMessage implements ObjectMessage {
+    private Serializable _object;
+    private byte[] _serializedObject;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    LoopbackMessage copy() throws JMSException {
+        LoopbackObjectMessage msg = copyHeadersAndPropertiesTo(new LoopbackObjectMessage());
+        msg._serializedObject = _object != null ? serialize(_object) : _serializedObject;
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setObject(Serializable object) {
+        _object = object;
+        _serializedObject = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable getObject() throws JMSException {
+        if (_object == null && _serializedObject != null) {
+            _object = deserialize(_serializedObject);
+        }
+        return _object;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearBody() {
+        _object = null;
+        _serializedObject = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T getBody(Class<T> c) throws JMSException {
+        Serializable object = getObject();
+        if (object != null && !c.isInstance(object)) {
+            throw new MessageFormatException("Object message body cannot be returned as " + c.getName());
+        }
+        return c.cast(object);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isBodyAssignableTo(Class c) {
+        try {
+            Serializable object = getObject();
+            return object == null || c.isInstance(object);
+        } catch (JMSException e) {
+            return false;
+        }
+    }
+
+    private static byte[] serialize(Serializable object) throws JMSException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(object);
+        } catch (IOException e) {
+            throw createJMSException("Failed to serialize object", e);
+        }
+        return bos.toByteArray();
+    }
+
+    private static Serializable deserialize(byte[] data) throws JMSException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (Serializable) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw createJMSException("Failed to deserialize object", e);
+        }
+    }
+
+    private static JMSException createJMSException(String message, Exception cause) {
+        JMSException e = new MessageFormatException(message + ": " + cause.getMessage());
+        e.setLinkedException(cause);
+        return e;
+    }
+}
@@ -0,0 +1,627 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.IllegalStateException;
+import javax.jms.InvalidDestinationException;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.jms.TopicSubscriber;
+import javax.jms.TransactionInProgressException;
+import javax.jms.XASession;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+/**
+ * Session for the loopback provider. Transacted and XA sessions keep sent messages until commit and return received
+ * messages to their destinations on rollback. Other sessions send and acknowledge immediately. The XA resource maps
+ * the two-phase protocol onto a local transaction, which is enough to measure the overhead in the transaction manager
+ * and the client, but it does not survive a crash.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackSession implements XASession {
+    private final List<LoopbackMessage> _pendingMessages = new ArrayList<>();
+    private final List<LoopbackMessage> _deliveredMessages = new ArrayList<>();
+    private final List<LoopbackMessageConsumer> _consumers = new CopyOnWriteArrayList<>();
+    private final LoopbackConnection _connection;
+    private final boolean _transacted;
+    private final boolean _xa;
+    private final int _acknowledgeMode;
+    private final XAResource _xaResource = new SessionXAResource();
+    private volatile boolean _closed;
+
+    /**
+     * Constructor.
+     *
+     * @param connection The connection.
+     * @param transacted The flag for a local transaction.
+     * @param xa The flag for an XA session.
+     * @param acknowledgeMode The acknowledge mode.
+     */
+    LoopbackSession(LoopbackConnection connection, boolean transacted, boolean xa, int acknowledgeMode) {
+        _connection = connection;
+        _transacted = transacted;
+        _xa = xa;
+        _acknowledgeMode = acknowledgeMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BytesMessage createBytesMessage() {
+        return new LoopbackBytesMessage();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MapMessage createMapMessage() throws JMSException {
+        throw LoopbackBroker.unsupported("MapMessage");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Message createMessage() {
+        return new LoopbackMessage();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ObjectMessage createObjectMessage() {
+        return new LoopbackObjectMessage();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ObjectMessage createObjectMessage(Serializable object) {
+        LoopbackObjectMessage msg = new LoopbackObjectMessage();
+        msg.setObject(object);
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamMessage createStreamMessage() throws JMSException {
+        throw LoopbackBroker.unsupported("StreamMessage");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TextMessage createTextMessage() {
+        return new LoopbackTextMessage();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TextMessage createTextMessage(String text) {
+        LoopbackTextMessage msg = new LoopbackTextMessage();
+        msg.setText(text);
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getTransacted() {
+        return _transacted || _xa;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAcknowledgeMode() {
+        return _acknowledgeMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commit() throws JMSException {
+        checkLocalTransaction();
+        commitTransaction();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rollback() throws JMSException {
+        checkLocalTransaction();
+        rollbackTransaction();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (!_closed) {
+            _closed = true;
+            _consumers.forEach(LoopbackMessageConsumer::close);
+            rollbackTransaction();
+            _connection.sessionClosed(this);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recover() throws JMSException {
+        if (getTransacted()) {
+            throw new IllegalStateException("Recover is not allowed for transacted sessions");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageListener getMessageListener() throws JMSException {
+        throw LoopbackBroker.unsupported("Session message listener");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMessageListener(MessageListener listener) throws JMSException {
+        throw LoopbackBroker.unsupported("Session message listener");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        // No session message listener
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageProducer createProducer(Destination destination) throws JMSException {
+        checkNotClosed();
+        return new LoopbackMessageProducer(this, destination != null ? toLoopbackDestination(destination) : null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createConsumer(Destination destination) throws JMSException {
+        return createConsumer(destination, null, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createConsumer(Destination destination, String messageSelector) throws JMSException {
+        return createConsumer(destination, messageSelector, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createConsumer(Destination destination, String messageSelector, boolean noLocal)
+                    throws JMSException {
+        checkNotClosed();
+        if (messageSelector != null && !messageSelector.isEmpty()) {
+            throw LoopbackBroker.unsupported("Message selector");
+        }
+        LoopbackMessageConsumer consumer = new LoopbackMessageConsumer(this, toLoopbackDestination(destination));
+        _consumers.add(consumer);
+        return consumer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createSharedConsumer(Topic topic, String sharedSubscriptionName) throws JMSException {
+        throw LoopbackBroker.unsupported("Shared subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createSharedConsumer(Topic topic, String sharedSubscriptionName, String messageSelector)
+                    throws JMSException {
+        throw LoopbackBroker.unsupported("Shared subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Queue createQueue(String queueName) throws JMSException {
+        checkNotClosed();
+        return _connection.getBroker().getQueue(queueName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Topic createTopic(String topicName) throws JMSException {
+        checkNotClosed();
+        return _connection.getBroker().getTopic(topicName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TopicSubscriber createDurableSubscriber(Topic topic, String name) throws JMSException {
+        throw LoopbackBroker.unsupported("Durable subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TopicSubscriber createDurableSubscriber(Topic topic, String name, String messageSelector, boolean noLocal)
+                    throws JMSException {
+        throw LoopbackBroker.unsupported("Durable subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createDurableConsumer(Topic topic, String name) throws JMSException {
+        throw LoopbackBroker.unsupported("Durable subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createDurableConsumer(Topic topic, String name, String messageSelector, boolean noLocal)
+                    throws JMSException {
+        throw LoopbackBroker.unsupported("Durable subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createSharedDurableConsumer(Topic topic, String name) throws JMSException {
+        throw LoopbackBroker.unsupported("Durable subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MessageConsumer createSharedDurableConsumer(Topic topic, String name, String messageSelector)
+                    throws JMSException {
+        throw LoopbackBroker.unsupported("Durable subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QueueBrowser createBrowser(Queue queue) throws JMSException {
+        throw LoopbackBroker.unsupported("Queue browser");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QueueBrowser createBrowser(Queue queue, String messageSelector) throws JMSException {
+        throw LoopbackBroker.unsupported("Queue browser");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TemporaryQueue createTemporaryQueue() throws JMSException {
+        throw LoopbackBroker.unsupported("Temporary queue");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TemporaryTopic createTemporaryTopic() throws JMSException {
+        throw LoopbackBroker.unsupported("Temporary topic");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unsubscribe(String name) throws JMSException {
+        throw LoopbackBroker.unsupported("Durable subscription");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Session getSession() {
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public XAResource getXAResource() {
+        return _xaResource;
+    }
+
+    /**
+     * Get the connection.
+     *
+     * @return connection.
+     */
+    LoopbackConnection getConnection() {
+        return _connection;
+    }
+
+    /**
+     * Send a message, at once or on commit in a transaction.
+     *
+     * @param msg The message, a private copy with the destination set.
+     * @throws JMSException if the session is closed.
+     */
+    void send(LoopbackMessage msg) throws JMSException {
+        checkNotClosed();
+        if (getTransacted()) {
+            _pendingMessages.add(msg);
+        } else {
+            ((LoopbackDestination) msg.getJMSDestination()).add(msg);
+        }
+    }
+
+    /**
+     * Register a message delivered to a consumer, so that it can be returned on rollback.
+     *
+     * @param msg The message.
+     */
+    void delivered(LoopbackMessage msg) {
+        if (getTransacted()) {
+            _deliveredMessages.add(msg);
+        }
+    }
+
+    /**
+     * Return a message that could not be delivered by a message listener in a session without transactions.
+     *
+     * @param msg The message.
+     */
+    void redeliver(LoopbackMessage msg) {
+        if (!getTransacted()) {
+            msg.setJMSRedelivered(true);
+            ((LoopbackDestination) msg.getJMSDestination()).returnAll(Collections.singletonList(msg));
+        }
+    }
+
+    /**
+     * Remove a closed consumer.
+     *
+     * @param consumer The consumer.
+     */
+    void consumerClosed(LoopbackMessageConsumer consumer) {
+        _consumers.remove(consumer);
+    }
+
+    /**
+     * Check that the session is open.
+     *
+     * @throws IllegalStateException if closed.
+     */
+    void checkNotClosed() throws IllegalStateException {
+        if (_closed) {
+            throw new IllegalStateException("The session is closed");
+        }
+    }
+
+    private void commitTransaction() {
+        getBroker().pauseForCommit();
+        forEachDestination(_pendingMessages, LoopbackDestination::addAll);
+        _pendingMessages.clear();
+        _deliveredMessages.clear();
+    }
+
+    private void rollbackTransaction() {
+        if (!_pendingMessages.isEmpty() || !_deliveredMessages.isEmpty()) {
+            getBroker().pauseForCommit();
+            _deliveredMessages.forEach(msg -> msg.setJMSRedelivered(true));
+            forEachDestination(_deliveredMessages, LoopbackDestination::returnAll);
+            _pendingMessages.clear();
+            _deliveredMessages.clear();
+        }
+    }
+
+    private LoopbackBroker getBroker() {
+        return _connection.getBroker();
+    }
+
+    private void checkLocalTransaction() throws JMSException {
+        checkNotClosed();
+        if (_xa) {
+            throw new TransactionInProgressException("XA sessions are committed with the XA resource");
+        }
+        if (!_transacted) {
+            throw new IllegalStateException("The session is not transacted");
+        }
+    }
+
+    private static LoopbackDestination toLoopbackDestination(Destination destination)
+                    throws InvalidDestinationException {
+        if (destination instanceof LoopbackDestination) {
+            return (LoopbackDestination) destination;
+        }
+        throw new InvalidDestinationException("Not a loopback destination: " + destination);
+    }
+
+    /**
+     * Pass runs of messages with the same destination to an action, keeping the order within each destination.
+     */
+    private static void forEachDestination(List<LoopbackMessage> messages, DestinationAction action) {
+        int start = 0;
+        for (int i = 1; i <= messages.size(); i++) {
+            if (i == messages.size()
+                            || messages.get(i).getJMSDestination() != messages.get(start).getJMSDestination()) {
+                action.apply((LoopbackDestination) messages.get(start).getJMSDestination(),
+                                messages.subList(start, i));
+                start = i;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface DestinationAction {
+        void apply(LoopbackDestination destination, List<LoopbackMessage> messages);
+    }
+
+    /**
+     * XA resource that commits or rolls back the session transaction.
+     */
+    private class SessionXAResource implements XAResource {
+        private int _transactionTimeoutSeconds;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start(Xid xid, int flags) {
+            // The session is always in a transaction
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void end(Xid xid, int flags) {
+            // The session is always in a transaction
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int prepare(Xid xid) {
+            return _pendingMessages.isEmpty() && _deliveredMessages.isEmpty() ? XA_RDONLY : XA_OK;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit(Xid xid, boolean onePhase) {
+            commitTransaction();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void rollback(Xid xid) {
+            rollbackTransaction();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void forget(Xid xid) {
+            // Nothing to forget, transactions are never heuristic
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Xid[] recover(int flag) {
+            return new Xid[0];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isSameRM(XAResource xares) {
+            return xares == this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getTransactionTimeout() {
+            return _transactionTimeoutSeconds;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean setTransactionTimeout(int seconds) {
+            _transactionTimeoutSeconds = seconds;
+            return true;
+        }
+    }
+}
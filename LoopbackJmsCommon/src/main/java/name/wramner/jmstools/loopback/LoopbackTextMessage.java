@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import javax.jms.JMSException;
+import javax.jms.MessageFormatException;
+import javax.jms.TextMessage;
+
+/**
+ * Text message for the loopback provider.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackTextMessage extends LoopbackMessage implements TextMessage {
+    private String _text;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    LoopbackMessage copy() {
+        LoopbackTextMessage msg = copyHeadersAndPropertiesTo(new LoopbackTextMessage());
+        msg._text = _text;
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setText(String text) {
+        _text = text;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getText() {
+        return _text;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearBody() {
+        _text = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> T getBody(Class<T> c) throws JMSException {
+        if (_text != null && !c.isAssignableFrom(String.class)) {
+            throw new MessageFormatException("Text message body cannot be returned as " + c.getName());
+        }
+        return c.cast(_text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean isBodyAssignableTo(Class c) {
+        return _text == null || c.isAssignableFrom(String.class);
+    }
+}
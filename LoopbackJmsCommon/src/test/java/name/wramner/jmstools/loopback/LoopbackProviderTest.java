@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.loopback;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.jms.XAConnection;
+import javax.jms.XASession;
+import javax.transaction.xa.XAResource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the loopback JMS provider.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackProviderTest {
+    private static final String QUEUE_NAME = "test";
+    private final LoopbackBroker _broker = new LoopbackBroker(3, 0, 0, 0);
+    private final LoopbackConnectionFactory _connectionFactory = new LoopbackConnectionFactory(_broker);
+    private Connection _connection;
+
+    @Before
+    public void setUp() throws JMSException {
+        _connection = _connectionFactory.createConnection();
+        _connection.start();
+    }
+
+    @After
+    public void tearDown() throws JMSException {
+        _connection.close();
+    }
+
+    @Test
+    public void testTransactedSendIsVisibleAfterCommit() throws JMSException {
+        Session session = _connection.createSession(true, Session.SESSION_TRANSACTED);
+        Queue queue = session.createQueue(QUEUE_NAME);
+        MessageProducer producer = session.createProducer(queue);
+        TextMessage msg = session.createTextMessage("hello");
+        msg.setStringProperty("name", "value");
+        producer.send(msg);
+        assertNotNull(msg.getJMSMessageID());
+        assertEquals(0, _broker.getQueue(QUEUE_NAME).getDepth());
+        session.commit();
+        assertEquals(1, _broker.getQueue(QUEUE_NAME).getDepth());
+
+        msg.setText("changed after send");
+        TextMessage received = (TextMessage) session.createConsumer(queue).receiveNoWait();
+        assertEquals("hello", received.getText());
+        assertEquals("value", received.getStringProperty("name"));
+        assertEquals(msg.getJMSMessageID(), received.getJMSMessageID());
+    }
+
+    @Test
+    public void testRollbackReturnsMessagesInOrder() throws JMSException {
+        Session session = _connection.createSession(true, Session.SESSION_TRANSACTED);
+        Queue queue = session.createQueue(QUEUE_NAME);
+        MessageProducer producer = session.createProducer(queue);
+        producer.send(session.createTextMessage("1"));
+        producer.send(session.createTextMessage("2"));
+        session.commit();
+
+        MessageConsumer consumer = session.createConsumer(queue);
+        assertEquals("1", ((TextMessage) consumer.receive(100L)).getText());
+        assertEquals("2", ((TextMessage) consumer.receive(100L)).getText());
+        assertNull(consumer.receiveNoWait());
+        session.rollback();
+
+        Message redelivered = consumer.receiveNoWait();
+        assertTrue(redelivered.getJMSRedelivered());
+        assertEquals("1", ((TextMessage) redelivered).getText());
+        assertEquals("2", ((TextMessage) consumer.receiveNoWait()).getText());
+        session.commit();
+        assertEquals(0, _broker.getQueue(QUEUE_NAME).getDepth());
+    }
+
+    @Test
+    public void testOldestMessagesAreDroppedWhenFull() throws JMSException {
+        Session session = _connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(QUEUE_NAME);
+        MessageProducer producer = session.createProducer(queue);
+        for (int i = 0; i < 5; i++) {
+            producer.send(session.createTextMessage(String.valueOf(i)));
+        }
+        assertEquals(3, _broker.getQueue(QUEUE_NAME).getDepth());
+        assertEquals(2L, _broker.getQueue(QUEUE_NAME).getDroppedMessages());
+        assertEquals("2", ((TextMessage) session.createConsumer(queue).receiveNoWait()).getText());
+    }
+
+    @Test
+    public void testBytesMessageIsReadableWhenReceived() throws JMSException {
+        Session session = _connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(QUEUE_NAME);
+        byte[] data = "payload".getBytes(StandardCharsets.UTF_8);
+        BytesMessage msg = session.createBytesMessage();
+        msg.writeBytes(data);
+        session.createProducer(queue).send(msg);
+
+        BytesMessage received = (BytesMessage) session.createConsumer(queue).receiveNoWait();
+        byte[] receivedData = new byte[(int) received.getBodyLength()];
+        assertEquals(data.length, received.readBytes(receivedData));
+        assertArrayEquals(data, receivedData);
+        assertEquals(-1, received.readBytes(receivedData));
+    }
+
+    @Test
+    public void testXaCommitAndRollback() throws Exception {
+        XAConnection connection = _connectionFactory.createXAConnection();
+        try {
+            connection.start();
+            XASession session = connection.createXASession();
+            XAResource xaResource = session.getXAResource();
+            Queue queue = session.createQueue(QUEUE_NAME);
+            session.createProducer(queue).send(session.createTextMessage("xa"));
+            assertEquals(XAResource.XA_OK, xaResource.prepare(null));
+            xaResource.commit(null, false);
+            assertEquals(1, _broker.getQueue(QUEUE_NAME).getDepth());
+
+            MessageConsumer consumer = session.createConsumer(queue);
+            assertNotNull(consumer.receiveNoWait());
+            xaResource.rollback(null);
+            assertEquals(1, _broker.getQueue(QUEUE_NAME).getDepth());
+            assertEquals(XAResource.XA_RDONLY, xaResource.prepare(null));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testNoMessagesWhileConnectionIsStopped() throws JMSException {
+        _broker.preload(_broker.getQueue(QUEUE_NAME), 1, 10);
+        Session session = _connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE_NAME));
+        _connection.stop();
+        assertNull(consumer.receive(10L));
+        _connection.start();
+        TextMessage msg = (TextMessage) consumer.receive(10L);
+        assertEquals("abcdefghij", msg.getText());
+        assertFalse(msg.getJMSRedelivered());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.consumer;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.XAConnectionFactory;
+
+import org.kohsuke.args4j.Option;
+
+import name.wramner.jmstools.consumer.LoopbackJmsConsumer.LoopbackConsumerConfiguration;
+import name.wramner.jmstools.loopback.LoopbackBroker;
+import name.wramner.jmstools.loopback.LoopbackConnectionFactory;
+
+/**
+ * Command line JMS message consumer for the in-memory loopback provider. It measures the overhead in the consumer
+ * itself, as the provider does very little. The messages are preloaded into the destination when the test starts.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackJmsConsumer extends JmsConsumer<LoopbackConsumerConfiguration> {
+
+    /**
+     * Program entry point.
+     *
+     * @param args Command line.
+     * @see LoopbackConsumerConfiguration
+     */
+    public static void main(String[] args) {
+        new LoopbackJmsConsumer().run(args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected LoopbackConsumerConfiguration createConfiguration() {
+        return new LoopbackConsumerConfiguration();
+    }
+
+    /**
+     * Loopback consumer configuration. It extends the basic JMS consumer configuration with settings for the
+     * in-memory broker, such as the number of messages to preload and the latency to inject.
+     *
+     * @author Erik Wramner
+     */
+    public static class LoopbackConsumerConfiguration extends JmsConsumerConfiguration {
+        private static final int DEFAULT_MAX_DEPTH = 100000;
+        private static final int DEFAULT_PRELOAD_MESSAGE_SIZE = 1024;
+
+        @Option(name = "-depth", aliases = { "--max-queue-depth" }, usage = "Maximum number of messages in the"
+                        + " in-memory queue, the oldest messages are dropped beyond that")
+        private int _maxDepth = DEFAULT_MAX_DEPTH;
+
+        @Option(name = "-preload", aliases = { "--preload-messages" }, usage = "Number of text messages to put in"
+                        + " the in-memory queue before the test starts")
+        private int _preloadMessages;
+
+        @Option(name = "-preloadsize", aliases = { "--preload-message-size" }, usage = "Number of characters in each"
+                        + " preloaded message", depends = { "-preload" })
+        private int _preloadMessageSize = DEFAULT_PRELOAD_MESSAGE_SIZE;
+
+        @Option(name = "-receivelatency", aliases = { "--receive-latency-micros" }, usage = "Latency to inject for"
+                        + " each received message in microseconds")
+        private int _receiveLatencyMicros;
+
+        @Option(name = "-commitlatency", aliases = { "--commit-latency-micros" }, usage = "Latency to inject for"
+                        + " each commit or rollback in microseconds")
+        private int _commitLatencyMicros;
+
+        private LoopbackBroker _broker;
+
+        @Override
+        public ConnectionFactory createConnectionFactory() throws JMSException {
+            return new LoopbackConnectionFactory(getBroker());
+        }
+
+        @Override
+        public XAConnectionFactory createXAConnectionFactory() throws JMSException {
+            return new LoopbackConnectionFactory(getBroker());
+        }
+
+        private synchronized LoopbackBroker getBroker() throws JMSException {
+            if (_broker == null) {
+                LoopbackBroker broker = new LoopbackBroker(_maxDepth, 0, _receiveLatencyMicros, _commitLatencyMicros);
+                if (_preloadMessages > 0) {
+                    broker.preload(isDestinationTypeQueue() ? broker.getQueue(getDestinationName())
+                                    : broker.getTopic(getDestinationName()), _preloadMessages, _preloadMessageSize);
+                }
+                _broker = broker;
+            }
+            return _broker;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Erik Wramner.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package name.wramner.jmstools.producer;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.XAConnectionFactory;
+
+import org.kohsuke.args4j.Option;
+
+import name.wramner.jmstools.loopback.LoopbackBroker;
+import name.wramner.jmstools.loopback.LoopbackConnectionFactory;
+import name.wramner.jmstools.producer.LoopbackJmsProducer.LoopbackProducerConfiguration;
+
+/**
+ * Command line JMS message producer for the in-memory loopback provider. It measures the overhead in the producer
+ * itself, as the provider does very little.
+ *
+ * @author Erik Wramner
+ */
+public class LoopbackJmsProducer extends JmsProducer<LoopbackProducerConfiguration> {
+
+    /**
+     * Program entry point.
+     *
+     * @param args Command line.
+     * @see LoopbackProducerConfiguration
+     */
+    public static void main(String[] args) {
+        new LoopbackJmsProducer().run(args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected LoopbackProducerConfiguration createConfiguration() {
+        return new LoopbackProducerConfiguration();
+    }
+
+    /**
+     * Loopback producer configuration. It extends the basic JMS producer configuration with settings for the
+     * in-memory broker, such as the maximum depth and the latency to inject.
+     *
+     * @author Erik Wramner
+     */
+    public static class LoopbackProducerConfiguration extends JmsProducerConfiguration {
+        private static final int DEFAULT_MAX_DEPTH = 100000;
+
+        @Option(name = "-depth", aliases = { "--max-queue-depth" }, usage = "Maximum number of messages in the"
+                        + " in-memory queue, the oldest messages are dropped beyond that")
+        private int _maxDepth = DEFAULT_MAX_DEPTH;
+
+        @Option(name = "-sendlatency", aliases = { "--send-latency-micros" }, usage = "Latency to inject for each"
+                        + " send in microseconds")
+        private int _sendLatencyMicros;
+
+        @Option(name = "-commitlatency", aliases = { "--commit-latency-micros" }, usage = "Latency to inject for"
+                        + " each commit or rollback in microseconds")
+        private int _commitLatencyMicros;
+
+        private LoopbackBroker _broker;
+
+        @Override
+        public ConnectionFactory createConnectionFactory() {
+            return new LoopbackConnectionFactory(getBroker());
+        }
+
+        @Override
+        public XAConnectionFactory createXAConnectionFactory() {
+            return new LoopbackConnectionFactory(getBroker());
+        }
+
+        private synchronized LoopbackBroker getBroker() {
+            if (_broker == null) {
+                _broker = new LoopbackBroker(_maxDepth, _sendLatencyMicros, 0, _commitLatencyMicros);
+            }
+            return _broker;
+        }
+    }
+}